@@ -85,16 +85,18 @@ import skinjob.SkinJobGlobals;
  */
 public class BasicStroke implements Stroke {
 
+  /**
+   * The reusable stages of the stroking pipeline, and the buffers they work in. Instances are
+   * pooled so that stroking doesn't allocate once the buffers have grown to fit the paths seen.
+   */
   private static class RenderContext {
-    public Stroker stroker;
-    public Dasher dasher;
-    public TransformerPC2D transformerPC2D;
-
-    public RenderContext() {
-      stroker = new Stroker();
-      dasher = new Dasher();
-      transformerPC2D = new TransformerPC2D();
-    }
+    public final Path2D.Float path2D = new Path2D.Float(Path2D.WIND_NON_ZERO, INITIAL_MEDIUM_ARRAY);
+    public final float[] coords = new float[6];
+    public final Flattener flattener = new Flattener();
+    public final CollinearSimplifier simplifier = new CollinearSimplifier();
+    public final Stroker stroker = new Stroker();
+    public final Dasher dasher = new Dasher();
+    public final TransformerPC2D transformerPC2D = new TransformerPC2D();
   }
 
   private static Pools.SynchronizedPool<RenderContext> renderContextPool
@@ -133,6 +135,21 @@ public class BasicStroke implements Stroke {
    */
   public static final int CAP_SQUARE = 2;
   private static final int INITIAL_MEDIUM_ARRAY = 1024;
+  /**
+   * The largest distance a flattened curve may stray from the true curve, as a fraction of the
+   * line width (or of 1, for lines thinner than that).
+   */
+  private static final float FLATNESS = 0.01f;
+  private static final int MAX_CURVE_SUBDIVISIONS = 256;
+  /**
+   * The largest sine of the angle between two segments for which they're considered collinear.
+   */
+  private static final float COLLINEAR_EPSILON = 1e-5f;
+  /**
+   * The cosine of the largest turn inside a flattened curve that is beveled rather than rounded.
+   * Beveling a 16 degree turn cuts in by 1% of the half-width.
+   */
+  private static final float SMOOTH_BEVEL_COS = 0.96f;
 
   float width;
 
@@ -265,8 +282,6 @@ public class BasicStroke implements Stroke {
     this(1.0f, CAP_SQUARE, JOIN_MITER, SkinJobGlobals.defaultMiterLimit, null, 0.0f);
   }
 
-  private static volatile Path2D.Float cachedPath2D;
-
   /**
    * Returns a {@code Shape} whose interior defines the stroked outline of a specified {@code
    * Shape}.
@@ -276,35 +291,29 @@ public class BasicStroke implements Stroke {
    */
   @Override
   public Shape createStrokedShape(Shape s) {
-    final Path2D.Float p2d;
-    synchronized (BasicStroke.class) {
-      // initialize a large copyable Path2D to avoid a lot of array growing:
-
-      if (cachedPath2D == null) {
-        cachedPath2D = new Path2D.Float(Path2D.WIND_NON_ZERO,
-            INITIAL_MEDIUM_ARRAY);
-      }
-      p2d = cachedPath2D;
-    }
-    // reset
-    p2d.reset();
-
-    strokeTo(s,
-        null,
-        width,
-        cap,
-        join,
-        miterlimit,
-        dash,
-        dash_phase,
-        p2d);
-
-    // Use Path2D copy constructor (trim)
-    return new Path2D.Float(p2d);
+    RenderContext rdrCtx = acquireRenderContext();
+    try {
+      // The context's path has already grown to fit earlier outlines, so this avoids a lot of
+      // array growing
+      Path2D.Float p2d = rdrCtx.path2D;
+      p2d.reset();
+      strokeTo(rdrCtx, s, null, width, cap, join, miterlimit, dash, dash_phase, p2d);
+      // Use Path2D copy constructor (trim)
+      return new Path2D.Float(p2d);
+    } finally {
+      renderContextPool.release(rdrCtx);
+    }
   }
 
-  // From https://github.com/bourgesl/marlin-renderer/blob/master/src/main/java/org/marlin/pisces/MarlinRenderingEngine.java
-  static void strokeTo(Shape src,
+  private static RenderContext acquireRenderContext() {
+    RenderContext rdrCtx = renderContextPool.acquire();
+    return rdrCtx == null ? new RenderContext() : rdrCtx;
+  }
+
+  // Structured like strokeTo in
+  // https://github.com/bourgesl/marlin-renderer/blob/master/src/main/java/org/marlin/pisces/MarlinRenderingEngine.java
+  static void strokeTo(RenderContext rdrCtx,
+      Shape src,
       AffineTransform at,
       float width,
       int caps,
@@ -313,28 +322,8 @@ public class BasicStroke implements Stroke {
       float[] dashes,
       float dashphase,
       Path2D.Float pc2d) {
-    // We use strokerat and outat so that in Stroker and Dasher we can work only
-    // with the pre-transformation coordinates. This will repeat a lot of
-    // computations done in the path iterator, but the alternative is to
-    // work with transformed paths and compute untransformed coordinates
-    // as needed. This would be faster but I do not think the complexity
-    // of working with both untransformed and transformed coordinates in
-    // the same code is worth it.
-    // However, if a path's width is constant after a transformation,
-    // we can skip all this untransforming.
-
-    // If normalization is off we save some transformations by not
-    // transforming the input to pisces. Instead, we apply the
-    // transformation after the path processing has been done.
-    // We can't do this if normalization is on, because it isn't a good
-    // idea to normalize before the transformation is applied.
-    AffineTransform strokerat = null;
-    AffineTransform outat = null;
-
-    PathIterator pi;
-    int dashLen = -1;
-    boolean recycleDashes = false;
-
+    // We stroke the untransformed path, so that the width, miter limit and dashes are all in user
+    // space, and apply the transformation to the stroker's output.
     if (at != null && !at.isIdentity()) {
       final double a = at.getScaleX();
       final double b = at.getShearX();
@@ -351,43 +340,54 @@ public class BasicStroke implements Stroke {
       }
     }
 
-    outat = at;
-    pi = src.getPathIterator(null);
-    // outat == at && strokerat == null. This is because if no
-    // normalization is done, we can just apply all our
-    // transformations to stroker's output.
-
-    RenderContext rdrCtx = renderContextPool.acquire();
-    pc2d = rdrCtx.stroker.init(pc2d, width, caps, join, miterlimit);
-
+    /*
+     * The pipeline is:
+     *    shape.getPathIterator
+     * -> Flattener, to turn curves into polylines
+     * -> CollinearSimplifier, to remove redundant vertices
+     * -> Dasher, if there are dashes
+     * -> Stroker
+     * -> TransformerPC2D, to apply the transform and append to pc2d
+     */
+    LineConsumer pipeline = rdrCtx.stroker.init(
+        rdrCtx.transformerPC2D.init(pc2d, at), width, caps, join, miterlimit);
     if (dashes != null) {
-      if (!recycleDashes) {
-        dashLen = dashes.length;
-      }
-      pc2d = rdrCtx.dasher.init(pc2d, dashes, dashLen, dashphase,
-          recycleDashes);
-    }
-    pc2d = rdrCtx.transformerPC2D.inverseDeltaTransformConsumer(pc2d, strokerat);
-    pathTo(rdrCtx, pi, pc2d);
-    renderContextPool.release(rdrCtx);
-
-        /*
-         * Pipeline seems to be:
-         *    shape.getPathIterator
-         * -> NormalizingPathIterator
-         * -> inverseDeltaTransformConsumer
-         * -> Dasher
-         * -> Stroker
-         * -> deltaTransformConsumer OR transformConsumer
-         *
-         * -> CollinearSimplifier to remove redundant segments
-         *
-         * -> pc2d = Renderer (bounding box)
-         */
+      pipeline = rdrCtx.dasher.init(pipeline, dashes, dashphase);
+    }
+    pipeline = rdrCtx.simplifier.init(pipeline);
+    Flattener flattener = rdrCtx.flattener.init(pipeline, Math.max(width, 1f) * FLATNESS);
+    try {
+      pathTo(src.getPathIterator(null), rdrCtx.coords, flattener);
+    } finally {
+      // Don't keep the caller's path reachable from the pool
+      rdrCtx.transformerPC2D.init(null, null);
+    }
   }
 
-  private static void pathTo(RenderContext rdrCtx, PathIterator pi, Path2D.Float pc2d) {
-    // TODO
+  private static void pathTo(PathIterator pi, float[] coords, Flattener flattener) {
+    while (!pi.isDone()) {
+      switch (pi.currentSegment(coords)) {
+        case PathIterator.SEG_MOVETO:
+          flattener.moveTo(coords[0], coords[1]);
+          break;
+        case PathIterator.SEG_LINETO:
+          flattener.lineTo(coords[0], coords[1]);
+          break;
+        case PathIterator.SEG_QUADTO:
+          flattener.quadTo(coords[0], coords[1], coords[2], coords[3]);
+          break;
+        case PathIterator.SEG_CUBICTO:
+          flattener.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+          break;
+        case PathIterator.SEG_CLOSE:
+          flattener.closePath();
+          break;
+        default:
+          throw new IllegalArgumentException("unknown path segment type");
+      }
+      pi.next();
+    }
+    flattener.pathDone();
   }
 
   /**
@@ -532,26 +532,722 @@ public class BasicStroke implements Stroke {
     return true;
   }
 
-  private static class Stroker {
-    public Path2D.Float init(Path2D.Float pc2d, float width, int caps, int join, float miterlimit) {
-      // TODO
-      return pc2d;
+  /**
+   * Receives the straight segments of a path. Curves are flattened before they reach this
+   * interface, so the later stages of the pipeline only deal with polylines.
+   */
+  private interface LineConsumer {
+    void moveTo(float x, float y);
+
+    /**
+     * @param smooth whether (x, y) lies inside a flattened curve, so that the path has no corner
+     *     there even though the segments meet at an angle
+     */
+    void lineTo(float x, float y, boolean smooth);
+
+    void closePath();
+
+    void pathDone();
+  }
+
+  /**
+   * Replaces each curve with enough line segments that none strays from the curve by more than the
+   * tolerance. Also starts a new subpath explicitly when a segment follows a close, so that the
+   * later stages needn't track the start of a closed subpath.
+   */
+  private static class Flattener {
+    private LineConsumer out;
+    private float tolerance;
+    private float cx;
+    private float cy;
+    private float sx;
+    private float sy;
+    private boolean closed;
+
+    public Flattener init(LineConsumer out, float tolerance) {
+      this.out = out;
+      this.tolerance = tolerance;
+      closed = false;
+      return this;
+    }
+
+    public void moveTo(float x, float y) {
+      cx = sx = x;
+      cy = sy = y;
+      closed = false;
+      out.moveTo(x, y);
+    }
+
+    private void reopen() {
+      if (closed) {
+        closed = false;
+        out.moveTo(sx, sy);
+      }
+    }
+
+    public void lineTo(float x, float y) {
+      reopen();
+      cx = x;
+      cy = y;
+      out.lineTo(x, y, false);
+    }
+
+    /**
+     * Returns how many equal steps in t keep a curve within the tolerance, given the length of the
+     * largest second difference of its control points and the factor relating that to the error.
+     */
+    private int subdivisions(float ddx, float ddy, float factor) {
+      double n = Math.ceil(Math.sqrt(factor * Math.hypot(ddx, ddy) / tolerance));
+      return n < 1 ? 1 : n > MAX_CURVE_SUBDIVISIONS ? MAX_CURVE_SUBDIVISIONS : (int) n;
+    }
+
+    public void quadTo(float x1, float y1, float x2, float y2) {
+      reopen();
+      // A quadratic's second derivative is 2 * (p0 - 2 * p1 + p2), and the error of a chord over
+      // a step h is at most h^2 / 8 of that
+      int n = subdivisions(cx - 2 * x1 + x2, cy - 2 * y1 + y2, 0.25f);
+      // Raise to the equivalent cubic
+      flatten(cx + (x1 - cx) * 2 / 3, cy + (y1 - cy) * 2 / 3,
+          x2 + (x1 - x2) * 2 / 3, y2 + (y1 - y2) * 2 / 3, x2, y2, n);
+    }
+
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+      reopen();
+      // A cubic's second derivative is bounded by 6 times the larger second difference
+      float ddx1 = cx - 2 * x1 + x2;
+      float ddy1 = cy - 2 * y1 + y2;
+      float ddx2 = x1 - 2 * x2 + x3;
+      float ddy2 = y1 - 2 * y2 + y3;
+      int n = ddx1 * ddx1 + ddy1 * ddy1 > ddx2 * ddx2 + ddy2 * ddy2
+          ? subdivisions(ddx1, ddy1, 0.75f) : subdivisions(ddx2, ddy2, 0.75f);
+      flatten(x1, y1, x2, y2, x3, y3, n);
+    }
+
+    /**
+     * Emits the cubic from the current point in n equal steps of t. Very short chords are added at
+     * either end, so that the joins and caps there follow the curve's end tangents rather than the
+     * direction of its first and last steps.
+     */
+    private void flatten(float x1, float y1, float x2, float y2, float x3, float y3, int n) {
+      if (n > 1) {
+        float x0 = cx;
+        float y0 = cy;
+        float tip = 1f / (16 * n);
+        point(tip, x0, y0, x1, y1, x2, y2, x3, y3);
+        for (int i = 1; i < n; i++) {
+          point((float) i / n, x0, y0, x1, y1, x2, y2, x3, y3);
+        }
+        point(1 - tip, x0, y0, x1, y1, x2, y2, x3, y3);
+      }
+      lineTo(x3, y3);
+    }
+
+    private void point(
+        float t, float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3) {
+      float mt = 1 - t;
+      float a = mt * mt * mt;
+      float b = 3 * mt * mt * t;
+      float c = 3 * mt * t * t;
+      float d = t * t * t;
+      out.lineTo(a * x0 + b * x1 + c * x2 + d * x3, a * y0 + b * y1 + c * y2 + d * y3, true);
+    }
+
+    public void closePath() {
+      if (!closed) {
+        closed = true;
+        cx = sx;
+        cy = sy;
+        out.closePath();
+      }
+    }
+
+    public void pathDone() {
+      out.pathDone();
+      out = null;
     }
   }
 
-  private static class Dasher {
-    public Path2D.Float init(Path2D.Float pc2d, float[] dashes, int dashLen, float dashphase,
-        boolean recycleDashes) {
-      // TODO
-      return pc2d;
+  /**
+   * Drops vertices that lie on a straight line between their neighbours, so that the stroker
+   * doesn't compute joins for them. A vertex where the path doubles back is kept.
+   */
+  private static class CollinearSimplifier implements LineConsumer {
+    private LineConsumer out;
+    private boolean pending;
+    private float px;
+    private float py;
+    private boolean pendingSmooth;
+    private float lx;
+    private float ly;
+
+    public CollinearSimplifier init(LineConsumer out) {
+      this.out = out;
+      pending = false;
+      return this;
+    }
+
+    private void flush() {
+      if (pending) {
+        pending = false;
+        out.lineTo(px, py, pendingSmooth);
+        lx = px;
+        ly = py;
+      }
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+      flush();
+      out.moveTo(x, y);
+      lx = x;
+      ly = y;
+    }
+
+    @Override
+    public void lineTo(float x, float y, boolean smooth) {
+      if (pending) {
+        float ax = px - lx;
+        float ay = py - ly;
+        float bx = x - px;
+        float by = y - py;
+        float cross = ax * by - ay * bx;
+        if (ax * bx + ay * by > 0 && Math.abs(cross)
+            <= COLLINEAR_EPSILON * Math.sqrt((ax * ax + ay * ay) * (bx * bx + by * by))) {
+          px = x;
+          py = y;
+          pendingSmooth = smooth;
+          return;
+        }
+        flush();
+      }
+      pending = true;
+      px = x;
+      py = y;
+      pendingSmooth = smooth;
+    }
+
+    @Override
+    public void closePath() {
+      flush();
+      out.closePath();
+    }
+
+    @Override
+    public void pathDone() {
+      flush();
+      out.pathDone();
     }
   }
 
+  /**
+   * Splits each subpath into dashes, restarting the pattern (offset by the phase) at the start of
+   * each subpath. When a closed subpath both starts and ends inside a dash, those two pieces are
+   * joined into one dash, so the stroker draws a join rather than two caps there. To make that
+   * possible the first dash is held back until the end of its subpath.
+   */
+  private static class Dasher implements LineConsumer {
+    private LineConsumer out;
+    private float[] dash;
+    private int startIdx;
+    private float startLeft;
+    private int idx;
+    private float left;
+    private boolean on;
+    private float cx;
+    private float cy;
+    private float sx;
+    private float sy;
+    private boolean started;
+    // The first dash's vertices, as x, y and 1 if smooth or 0 if not
+    private float[] firstDash = new float[48];
+    private int firstDashCoords;
+    private boolean recordingFirstDash;
+
+    public Dasher init(LineConsumer out, float[] dash, float phase) {
+      this.out = out;
+      this.dash = dash;
+      float total = 0;
+      for (float d : dash) {
+        total += d;
+      }
+      if (dash.length % 2 == 1) {
+        // An odd-length pattern repeats with on and off swapped
+        total *= 2;
+      }
+      phase %= total;
+      int i = 0;
+      if (phase > 0) {
+        while (phase >= dash[i % dash.length]) {
+          phase -= dash[i % dash.length];
+          i++;
+        }
+      }
+      startIdx = i;
+      startLeft = dash[i % dash.length] - phase;
+      started = false;
+      return this;
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+      finishSubpath();
+      idx = startIdx;
+      left = startLeft;
+      on = (idx & 1) == 0;
+      cx = sx = x;
+      cy = sy = y;
+      started = true;
+      firstDashCoords = 0;
+      recordingFirstDash = on;
+      if (on) {
+        record(x, y, false);
+      }
+    }
+
+    private void record(float x, float y, boolean smooth) {
+      if (firstDashCoords + 3 > firstDash.length) {
+        firstDash = Arrays.copyOf(firstDash, firstDash.length * 2);
+      }
+      firstDash[firstDashCoords++] = x;
+      firstDash[firstDashCoords++] = y;
+      firstDash[firstDashCoords++] = smooth ? 1 : 0;
+    }
+
+    private void emitLine(float x, float y, boolean smooth) {
+      if (recordingFirstDash) {
+        record(x, y, smooth);
+      } else {
+        out.lineTo(x, y, smooth);
+      }
+    }
+
+    private void emitFirstDashLines() {
+      for (int i = 3; i < firstDashCoords; i += 3) {
+        out.lineTo(firstDash[i], firstDash[i + 1], firstDash[i + 2] != 0);
+      }
+      firstDashCoords = 0;
+    }
+
+    @Override
+    public void lineTo(float x, float y, boolean smooth) {
+      float dx = x - cx;
+      float dy = y - cy;
+      float len = (float) Math.hypot(dx, dy);
+      float pos = 0;
+      while (len - pos > left) {
+        pos += left;
+        float t = pos / len;
+        float px = cx + dx * t;
+        float py = cy + dy * t;
+        if (on) {
+          emitLine(px, py, false);
+          recordingFirstDash = false;
+        } else {
+          out.moveTo(px, py);
+        }
+        idx++;
+        left = dash[idx % dash.length];
+        on = !on;
+      }
+      left -= len - pos;
+      if (on) {
+        emitLine(x, y, smooth);
+      }
+      cx = x;
+      cy = y;
+    }
+
+    /**
+     * Sends the held-back first dash on as a subpath of its own.
+     */
+    private void emitFirstDash() {
+      if (firstDashCoords >= 6) {
+        out.moveTo(firstDash[0], firstDash[1]);
+        emitFirstDashLines();
+      }
+      firstDashCoords = 0;
+    }
+
+    @Override
+    public void closePath() {
+      if (!started) {
+        return;
+      }
+      lineTo(sx, sy, false);
+      if (recordingFirstDash) {
+        // The whole subpath is one dash
+        emitFirstDash();
+        out.closePath();
+      } else if (on && firstDashCoords > 0) {
+        // Continue the last dash into the first
+        emitFirstDashLines();
+      } else {
+        emitFirstDash();
+      }
+      started = false;
+    }
+
+    private void finishSubpath() {
+      if (started) {
+        recordingFirstDash = false;
+        emitFirstDash();
+        started = false;
+      }
+    }
+
+    @Override
+    public void pathDone() {
+      finishSubpath();
+      out.pathDone();
+    }
+  }
+
+  /**
+   * Widens polylines into closed outlines, with the caps and joins of the stroke. Each subpath is
+   * buffered until it ends, since the outline of an open subpath runs along one side and back
+   * along the other. Joins only add geometry on the outside of a turn; on the inside the outline
+   * passes through the vertex, which the non-zero winding rule fills correctly.
+   */
+  private static class Stroker implements LineConsumer {
+    private TransformerPC2D out;
+    private float halfWidth;
+    private int cap;
+    private int join;
+    private float miterLimitSq;
+    private float[] points = new float[64];
+    private boolean[] smooth = new boolean[32];
+    private int numPoints;
+    private boolean hadSegment;
+    // The unit direction computed by direction()
+    private float ux;
+    private float uy;
+
+    public Stroker init(
+        TransformerPC2D out, float width, int caps, int join, float miterlimit) {
+      this.out = out;
+      halfWidth = width / 2;
+      cap = caps;
+      this.join = join;
+      float limit = miterlimit * halfWidth;
+      miterLimitSq = limit * limit;
+      numPoints = 0;
+      return this;
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+      finish(false);
+      hadSegment = false;
+      addPoint(x, y, false);
+    }
+
+    private void addPoint(float x, float y, boolean isSmooth) {
+      int i = numPoints << 1;
+      if (i + 2 > points.length) {
+        points = Arrays.copyOf(points, points.length * 2);
+        smooth = Arrays.copyOf(smooth, smooth.length * 2);
+      }
+      points[i] = x;
+      points[i + 1] = y;
+      smooth[numPoints] = isSmooth;
+      numPoints++;
+    }
+
+    @Override
+    public void lineTo(float x, float y, boolean isSmooth) {
+      if (numPoints == 0) {
+        // No preceding moveTo
+        addPoint(x, y, false);
+        return;
+      }
+      hadSegment = true;
+      int i = (numPoints - 1) << 1;
+      if (points[i] != x || points[i + 1] != y) {
+        addPoint(x, y, isSmooth);
+      }
+    }
+
+    @Override
+    public void closePath() {
+      finish(true);
+    }
+
+    @Override
+    public void pathDone() {
+      finish(false);
+    }
+
+    private void finish(boolean closed) {
+      int n = numPoints;
+      numPoints = 0;
+      if (closed && n > 1 && points[0] == points[(n - 1) << 1]
+          && points[1] == points[((n - 1) << 1) + 1]) {
+        n--;
+      }
+      if (n == 0) {
+        return;
+      }
+      if (n == 1) {
+        if (hadSegment) {
+          dot(points[0], points[1]);
+        }
+      } else if (closed) {
+        side(n, false, true);
+        out.closePath();
+        side(n, true, true);
+        out.closePath();
+      } else {
+        side(n, false, false);
+        direction(n, n - 2, n - 1, false);
+        cap(points[(n - 1) << 1], points[((n - 1) << 1) + 1], ux, uy);
+        side(n, true, false);
+        direction(n, 1, 0, false);
+        cap(points[0], points[1], ux, uy);
+        out.closePath();
+      }
+    }
+
+    /**
+     * Returns the index in {@link #points} of the x coordinate of the k-th vertex, counting from
+     * the last vertex if {@code reverse} is true and wrapping around.
+     */
+    private static int at(int n, int k, boolean reverse) {
+      k %= n;
+      return (reverse ? n - 1 - k : k) << 1;
+    }
+
+    /**
+     * Sets {@link #ux} and {@link #uy} to the unit direction from vertex {@code from} to vertex
+     * {@code to}.
+     */
+    private void direction(int n, int from, int to, boolean reverse) {
+      int i = at(n, from, reverse);
+      int j = at(n, to, reverse);
+      float dx = points[j] - points[i];
+      float dy = points[j + 1] - points[i + 1];
+      float len = (float) Math.hypot(dx, dy);
+      ux = dx / len;
+      uy = dy / len;
+    }
+
+    /**
+     * Emits the outline along the left of the polyline, in the direction of travel; the right side
+     * is the left of the polyline traversed in reverse. The outline of an open polyline's reverse
+     * side continues from the end cap, so it doesn't start with a move.
+     */
+    private void side(int n, boolean reverse, boolean closed) {
+      float w = halfWidth;
+      direction(n, 0, 1, reverse);
+      if (closed || !reverse) {
+        int i = at(n, 0, reverse);
+        out.moveTo(points[i] - uy * w, points[i + 1] + ux * w);
+      }
+      int lastJoin = closed ? n : n - 2;
+      for (int k = 1; k <= lastJoin; k++) {
+        float ax = ux;
+        float ay = uy;
+        int i = at(n, k, reverse);
+        float vx = points[i];
+        float vy = points[i + 1];
+        out.lineTo(vx - ay * w, vy + ax * w);
+        direction(n, k, k + 1, reverse);
+        join(vx, vy, ax, ay, ux, uy, smooth[i >> 1]);
+      }
+      if (!closed) {
+        int i = at(n, n - 1, reverse);
+        out.lineTo(points[i] - uy * w, points[i + 1] + ux * w);
+      }
+    }
+
+    /**
+     * Joins the offset of the incoming segment, where the outline currently is, to that of the
+     * outgoing one. Both are given as unit directions. A smooth vertex is rounded, as the true
+     * outline of the curve would be, unless the turn is too slight for that to matter.
+     */
+    private void join(
+        float vx, float vy, float ax, float ay, float bx, float by, boolean isSmooth) {
+      float w = halfWidth;
+      float n1x = -ay * w;
+      float n1y = ax * w;
+      float n2x = -by * w;
+      float n2y = bx * w;
+      float cross = ax * by - ay * bx;
+      float dot = ax * bx + ay * by;
+      if (dot > 0 && Math.abs(cross) <= COLLINEAR_EPSILON) {
+        out.lineTo(vx + n2x, vy + n2y);
+        return;
+      }
+      if (cross > 0) {
+        // This side is on the inside of the turn
+        out.lineTo(vx, vy);
+        out.lineTo(vx + n2x, vy + n2y);
+        return;
+      }
+      int style = join;
+      if (isSmooth) {
+        style = dot >= SMOOTH_BEVEL_COS ? JOIN_BEVEL : JOIN_ROUND;
+      }
+      switch (style) {
+        case JOIN_ROUND:
+          arc(vx, vy, n1x, n1y, n2x, n2y, false);
+          return;
+        case JOIN_MITER:
+          // The miter point lies along the bisector of the two offsets
+          float denom = w * w + n1x * n2x + n1y * n2y;
+          if (denom > 0) {
+            float scale = w * w / denom;
+            float mx = (n1x + n2x) * scale;
+            float my = (n1y + n2y) * scale;
+            if (mx * mx + my * my <= miterLimitSq) {
+              out.lineTo(vx + mx, vy + my);
+            }
+          }
+          out.lineTo(vx + n2x, vy + n2y);
+          return;
+        default:
+          out.lineTo(vx + n2x, vy + n2y);
+      }
+    }
+
+    /**
+     * Caps the end of a polyline at (x, y) travelling in the unit direction (dx, dy). The outline
+     * arrives on the left of the end and leaves from the right.
+     */
+    private void cap(float x, float y, float dx, float dy) {
+      float w = halfWidth;
+      float nx = -dy * w;
+      float ny = dx * w;
+      switch (cap) {
+        case CAP_ROUND:
+          arc(x, y, nx, ny, -nx, -ny, false);
+          break;
+        case CAP_SQUARE:
+          out.lineTo(x + nx + dx * w, y + ny + dy * w);
+          out.lineTo(x - nx + dx * w, y - ny + dy * w);
+          out.lineTo(x - nx, y - ny);
+          break;
+        default:
+          out.lineTo(x - nx, y - ny);
+      }
+    }
+
+    /**
+     * Strokes a subpath with no extent, which is drawn as a dot if the cap has an extent.
+     */
+    private void dot(float x, float y) {
+      float w = halfWidth;
+      switch (cap) {
+        case CAP_ROUND:
+          out.moveTo(x + w, y);
+          arc(x, y, w, 0, -w, 0, true);
+          arc(x, y, -w, 0, w, 0, true);
+          out.closePath();
+          break;
+        case CAP_SQUARE:
+          out.moveTo(x - w, y - w);
+          out.lineTo(x + w, y - w);
+          out.lineTo(x + w, y + w);
+          out.lineTo(x - w, y + w);
+          out.closePath();
+          break;
+        default:
+          // A butt cap adds nothing
+      }
+    }
+
+    /**
+     * Emits a circular arc around (cx, cy) from offset (ax, ay) to offset (bx, by), as cubic
+     * segments of at most 90 degrees each.
+     *
+     * @param ccw whether to turn from the x axis towards the y axis
+     */
+    private void arc(float cx, float cy, float ax, float ay, float bx, float by, boolean ccw) {
+      double angle = Math.atan2(ax * by - ay * bx, ax * bx + ay * by);
+      if (ccw && angle < 0) {
+        angle += 2 * Math.PI;
+      } else if (!ccw && angle > 0) {
+        angle -= 2 * Math.PI;
+      }
+      int pieces = (int) Math.ceil(Math.abs(angle) / (Math.PI / 2) - 1e-6);
+      if (pieces < 1) {
+        out.lineTo(cx + bx, cy + by);
+        return;
+      }
+      double step = angle / pieces;
+      float cos = (float) Math.cos(step);
+      float sin = (float) Math.sin(step);
+      float k = (float) (4.0 / 3.0 * Math.tan(step / 4));
+      float px = ax;
+      float py = ay;
+      for (int i = 1; i <= pieces; i++) {
+        float qx;
+        float qy;
+        if (i == pieces) {
+          qx = bx;
+          qy = by;
+        } else {
+          qx = px * cos - py * sin;
+          qy = px * sin + py * cos;
+        }
+        out.curveTo(cx + px - k * py, cy + py + k * px,
+            cx + qx + k * qy, cy + qy - k * qx,
+            cx + qx, cy + qy);
+        px = qx;
+        py = qy;
+      }
+    }
+  }
+
+  /**
+   * The last stage of the pipeline, which applies the transform (if any) and appends the outline
+   * to the output path.
+   */
   private static class TransformerPC2D {
-    public Path2D.Float inverseDeltaTransformConsumer(Path2D.Float pc2d,
-        AffineTransform strokerat) {
-      // TODO
-      return pc2d;
+    private Path2D.Float out;
+    private boolean identity;
+    private float m00;
+    private float m01;
+    private float m02;
+    private float m10;
+    private float m11;
+    private float m12;
+
+    public TransformerPC2D init(Path2D.Float out, AffineTransform at) {
+      this.out = out;
+      identity = at == null || at.isIdentity();
+      if (!identity) {
+        m00 = (float) at.getScaleX();
+        m01 = (float) at.getShearX();
+        m02 = (float) at.getTranslateX();
+        m10 = (float) at.getShearY();
+        m11 = (float) at.getScaleY();
+        m12 = (float) at.getTranslateY();
+      }
+      return this;
+    }
+
+    private float tx(float x, float y) {
+      return identity ? x : m00 * x + m01 * y + m02;
+    }
+
+    private float ty(float x, float y) {
+      return identity ? y : m10 * x + m11 * y + m12;
+    }
+
+    public void moveTo(float x, float y) {
+      out.moveTo(tx(x, y), ty(x, y));
+    }
+
+    public void lineTo(float x, float y) {
+      out.lineTo(tx(x, y), ty(x, y));
+    }
+
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+      out.curveTo(tx(x1, y1), ty(x1, y1), tx(x2, y2), ty(x2, y2), tx(x3, y3), ty(x3, y3));
+    }
+
+    public void closePath() {
+      out.closePath();
     }
   }
 }
@@ -98,6 +98,8 @@ import sun.awt.dnd.SunDropTargetEvent;
 import sun.awt.graphicscallback.PeerPaintCallback;
 import sun.awt.graphicscallback.PeerPrintCallback;
 import sun.awt.image.VSyncedBSManager;
+import sun.java2d.pipe.hw.ExtendedBufferCapabilities;
+import sun.java2d.pipe.hw.ExtendedBufferCapabilities.VSyncType;
 
 /**
  * A <em>component</em> is an object having a graphical representation that can be displayed on the
@@ -7871,6 +7873,7 @@ public abstract class Component extends ComponentOrMenuComponent
         Image backBuffer = getBackBuffer();
         if (backBuffer != null) {
           peer.flip(0, 0, backBuffer.getWidth(null), backBuffer.getHeight(null), flipAction);
+          waitForVsync();
         }
       } else {
         throw new IllegalStateException("Component must have a valid peer");
@@ -7880,11 +7883,28 @@ public abstract class Component extends ComponentOrMenuComponent
     void flipSubRegion(int x1, int y1, int x2, int y2, FlipContents flipAction) {
       if (peer != null) {
         peer.flip(x1, y1, x2, y2, flipAction);
+        waitForVsync();
       } else {
         throw new IllegalStateException("Component must have a valid peer");
       }
     }
 
+    /**
+     * Paces flipping to the display's refresh rate, if this strategy asked for v-sync and is the one
+     * allowed to be v-synced.
+     */
+    private void waitForVsync() {
+      if (caps instanceof ExtendedBufferCapabilities
+          && ((ExtendedBufferCapabilities) caps).getVSync() == VSyncType.VSYNC_ON
+          && VSyncedBSManager.vsyncAllowed(this)) {
+        try {
+          VSyncedBSManager.waitForVsync();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
     /**
      * Destroys the buffers created through this object
      */
@@ -3133,7 +3133,7 @@ public class Container extends Component {
 
     Runnable pumpEventsForHierarchy = new Runnable() {
       public void run() {
-        EventDispatchThread dispatchThread = (EventDispatchThread) Thread.currentThread();
+        EventDispatchThread dispatchThread = EventDispatchThread.current();
         dispatchThread.pumpEventsForHierarchy(new Conditional() {
           public boolean evaluate() {
             return ((windowClosingException == null) && (nativeContainer.modalComp != null));
@@ -94,7 +94,7 @@ public class DefaultKeyboardFocusManager extends KeyboardFocusManager {
       }
       SunToolkit.postEvent(targetAppContext, se);
       if (EventQueue.isDispatchThread()) {
-        EventDispatchThread edt = (EventDispatchThread) Thread.currentThread();
+        EventDispatchThread edt = EventDispatchThread.current();
         edt.pumpEvents(SentEvent.ID, new Conditional() {
           @Override
           public boolean evaluate() {
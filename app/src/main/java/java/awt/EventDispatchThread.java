@@ -55,16 +55,29 @@ import sun.awt.dnd.SunDragSourceContextPeer;
 class EventDispatchThread extends Thread {
   private static final String TAG = "EventDispatchThread";
 
-  private static final int ANY_EVENT = -1;
+  static final int ANY_EVENT = -1;
   private final ArrayList<EventFilter> eventFilters = new ArrayList<>();
   private EventQueue theQueue;
-  private volatile boolean doDispatch = true;
+  volatile boolean doDispatch = true;
 
   EventDispatchThread(ThreadGroup group, String name, EventQueue queue) {
     super(group, name);
     setEventQueue(queue);
   }
 
+  /**
+   * Returns the dispatcher that the calling thread is running, which must be the dispatch thread
+   * of the current {@link EventQueue}.
+   */
+  static EventDispatchThread current() {
+    Thread thread = Thread.currentThread();
+    if (thread instanceof EventDispatchThread) {
+      return (EventDispatchThread) thread;
+    }
+    // Dispatching on a thread we don't own, such as the Android main thread
+    return Toolkit.getEventQueue().getDispatchThread();
+  }
+
   /*
    * Must be called on EDT only, that's why no synchronization
    */
@@ -72,6 +85,20 @@ class EventDispatchThread extends Thread {
     doDispatch = false;
   }
 
+  /**
+   * Returns whether events are being dispatched on the calling thread.
+   */
+  boolean runsOnCurrentThread() {
+    return Thread.currentThread() == this;
+  }
+
+  /**
+   * Called by the {@link EventQueue}, with its lock held, whenever an event is posted. This thread
+   * waits on the queue's condition, which the queue signals itself, so there's nothing to do.
+   */
+  void wakeup() {
+  }
+
   @Override
   public void run() {
     try {
@@ -148,36 +175,16 @@ class EventDispatchThread extends Thread {
 
   void pumpOneEventForFilters(int id) {
     AWTEvent event;
-    boolean eventOK;
     try {
       EventQueue eq;
       do {
         // EventQueue may change during the dispatching
         eq = getEventQueue();
         event = id == ANY_EVENT ? eq.getNextEvent() : eq.getNextEvent(id);
-
-        eventOK = true;
-        synchronized (eventFilters) {
-          for (int i = eventFilters.size() - 1; i >= 0; i--) {
-            EventFilter f = eventFilters.get(i);
-            FilterAction accept = f.acceptEvent(event);
-            if (accept == FilterAction.REJECT) {
-              eventOK = false;
-              break;
-            } else if (accept == FilterAction.ACCEPT_IMMEDIATELY) {
-              break;
-            }
-          }
-        }
-        eventOK = eventOK && SunDragSourceContextPeer.checkEvent(event);
-        if (!eventOK) {
-          event.consume();
-        }
-      } while (!eventOK);
+      } while (!acceptEvent(event));
 
       Log.v(TAG, "Dispatching: " + event);
 
-      Object handle = null;
       eq.dispatchEvent(event);
     } catch (ThreadDeath death) {
       doDispatch = false;
@@ -190,7 +197,33 @@ class EventDispatchThread extends Thread {
     }
   }
 
-  private void processException(Throwable e) {
+  /**
+   * Runs {@code event} past the installed filters, and consumes it if it mustn't be dispatched.
+   *
+   * @return whether the event should be dispatched
+   */
+  boolean acceptEvent(AWTEvent event) {
+    boolean eventOK = true;
+    synchronized (eventFilters) {
+      for (int i = eventFilters.size() - 1; i >= 0; i--) {
+        EventFilter f = eventFilters.get(i);
+        FilterAction accept = f.acceptEvent(event);
+        if (accept == FilterAction.REJECT) {
+          eventOK = false;
+          break;
+        } else if (accept == FilterAction.ACCEPT_IMMEDIATELY) {
+          break;
+        }
+      }
+    }
+    eventOK = eventOK && SunDragSourceContextPeer.checkEvent(event);
+    if (!eventOK) {
+      event.consume();
+    }
+    return eventOK;
+  }
+
+  void processException(Throwable e) {
     Log.d(TAG, "Processing exception: ", e);
     getUncaughtExceptionHandler().uncaughtException(this, e);
   }
@@ -46,6 +46,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
+import skinjob.SkinJobGlobals;
 import sun.awt.AWTAccessor;
 import sun.awt.AWTAccessor.EventQueueAccessor;
 import sun.awt.AWTAutoShutdown;
@@ -454,6 +455,9 @@ public class EventQueue {
         pushPopCond.signalAll();
       }
     }
+    if (dispatchThread != null) {
+      dispatchThread.wakeup();
+    }
   }
 
   private boolean coalescePaintEvent(PaintEvent e) {
@@ -654,22 +658,9 @@ public class EventQueue {
       SunToolkit.flushPendingEvents(appContext);
       pushPopLock.lock();
       try {
-        for (int i = 0; i < NUM_PRIORITIES; i++) {
-          for (EventQueueItem entry = queues[i].head, prev = null; entry != null;
-              prev = entry, entry = entry.next) {
-            if (entry.event.getID() == id) {
-              if (prev == null) {
-                queues[i].head = entry.next;
-              } else {
-                prev.next = entry.next;
-              }
-              if (queues[i].tail == entry) {
-                queues[i].tail = prev;
-              }
-              uncacheEQItem(entry);
-              return entry.event;
-            }
-          }
+        AWTEvent event = getNextEventPrivate(id);
+        if (event != null) {
+          return event;
         }
         waitForID = id;
         pushPopCond.await();
@@ -680,6 +671,53 @@ public class EventQueue {
     } while (true);
   }
 
+  /*
+   * Must be called under the lock. Removes and returns the first event with the given ID, or
+   * returns null if there isn't one.
+   */
+  private AWTEvent getNextEventPrivate(int id) {
+    for (int i = 0; i < NUM_PRIORITIES; i++) {
+      for (EventQueueItem entry = queues[i].head, prev = null; entry != null;
+          prev = entry, entry = entry.next) {
+        if (entry.event.getID() == id) {
+          if (prev == null) {
+            queues[i].head = entry.next;
+          } else {
+            prev.next = entry.next;
+          }
+          if (queues[i].tail == entry) {
+            queues[i].tail = prev;
+          }
+          uncacheEQItem(entry);
+          return entry.event;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes and returns the next event, like {@link #getNextEvent()}, or the next with the given
+   * ID if {@code id} isn't negative, like {@link #getNextEvent(int)}; but returns null rather than
+   * waiting if there isn't one. For dispatchers that mustn't block their thread.
+   */
+  AWTEvent pollNextEvent(int id) throws InterruptedException {
+    SunToolkit.flushPendingEvents(appContext);
+    pushPopLock.lock();
+    try {
+      if (id >= 0) {
+        return getNextEventPrivate(id);
+      }
+      AWTEvent event = getNextEventPrivate();
+      if (event == null) {
+        AWTAutoShutdown.getInstance().notifyThreadFree(dispatchThread);
+      }
+      return event;
+    } finally {
+      pushPopLock.unlock();
+    }
+  }
+
   /**
    * Returns the first event on the {@code EventQueue} without removing it.
    *
@@ -778,8 +816,7 @@ public class EventQueue {
   long getMostRecentEventTimeImpl() {
     pushPopLock.lock();
     try {
-      return Thread.currentThread() == dispatchThread ? mostRecentEventTime
-          : System.currentTimeMillis();
+      return onDispatchThread() ? mostRecentEventTime : System.currentTimeMillis();
     } finally {
       pushPopLock.unlock();
     }
@@ -800,7 +837,7 @@ public class EventQueue {
   private AWTEvent getCurrentEventImpl() {
     pushPopLock.lock();
     try {
-      return Thread.currentThread() == dispatchThread ? currentEvent.get() : null;
+      return onDispatchThread() ? currentEvent.get() : null;
     } finally {
       pushPopLock.unlock();
     }
@@ -954,12 +991,19 @@ public class EventQueue {
         eq = next;
         next = eq.nextQueue;
       }
-      return Thread.currentThread() == eq.dispatchThread;
+      return eq.onDispatchThread();
     } finally {
       pushPopLock.unlock();
     }
   }
 
+  /*
+   * Must be called under the lock.
+   */
+  private boolean onDispatchThread() {
+    return dispatchThread != null && dispatchThread.runsOnCurrentThread();
+  }
+
   final void initDispatchThread() {
     pushPopLock.lock();
     try {
@@ -967,7 +1011,9 @@ public class EventQueue {
         dispatchThread = AccessController.doPrivileged(new PrivilegedAction<EventDispatchThread>() {
           @Override
           public EventDispatchThread run() {
-            EventDispatchThread t = new EventDispatchThread(threadGroup, name, EventQueue.this);
+            EventDispatchThread t = SkinJobGlobals.dispatchEventsOnMainLooper
+                ? new LooperEventDispatchThread(threadGroup, name, EventQueue.this)
+                : new EventDispatchThread(threadGroup, name, EventQueue.this);
             t.setContextClassLoader(classLoader);
             t.setPriority(Thread.NORM_PRIORITY + 1);
             t.setDaemon(false);
@@ -1094,7 +1140,7 @@ public class EventQueue {
   private void setCurrentEventAndMostRecentTimeImpl(AWTEvent e) {
     pushPopLock.lock();
     try {
-      if (Thread.currentThread() != dispatchThread) {
+      if (!onDispatchThread()) {
         return;
       }
 
@@ -1145,6 +1191,7 @@ public class EventQueue {
         nextQueue.wakeup(isShutdown);
       } else if (dispatchThread != null) {
         pushPopCond.signalAll();
+        dispatchThread.wakeup();
       } else if (!isShutdown) {
         initDispatchThread();
       }
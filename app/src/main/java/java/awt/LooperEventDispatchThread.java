@@ -0,0 +1,220 @@
+package java.awt;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import skinjob.SkinJobGlobals;
+
+/**
+ * An {@link EventDispatchThread} that never starts a thread of its own, but dispatches on Android's
+ * main thread as messages to the main {@link Looper}. Used when {@link
+ * SkinJobGlobals#dispatchEventsOnMainLooper} is set, so that event handlers can touch the wrapped
+ * Android views without handing off to that thread.
+ * <p>
+ * Each time events are posted, a message is queued that dispatches up to {@link
+ * SkinJobGlobals#mainLooperEventBatchSize} of them, and queues another if any are left, so that
+ * input and drawing aren't starved while AWT is busy. A batch that takes longer than {@link
+ * SkinJobGlobals#mainLooperStallMs} is logged.
+ * <p>
+ * A secondary event pump, as used by modal dialogs and {@link SecondaryLoop}, can't block the main
+ * thread the way it would an ordinary dispatch thread, since the Android input that would end it
+ * arrives through the same {@link Looper}. Instead it runs a nested {@link Looper#loop()}, which
+ * keeps dispatching both Android messages and AWT events, and which is left by throwing out of it
+ * once the pump's condition fails.
+ */
+class LooperEventDispatchThread extends EventDispatchThread {
+  private static final String TAG = "LooperEventDispatch";
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable drain = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+  /**
+   * Whether a {@link #drain} message is waiting in the {@link Looper}.
+   */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  /**
+   * The secondary pumps running on the main thread, innermost first. Only touched on that thread.
+   */
+  private final ArrayDeque<Pump> pumps = new ArrayDeque<>();
+  /**
+   * Number of secondary pumps ever entered, so a batch that entered one isn't reported as a stall.
+   */
+  private int pumpsEntered;
+  private volatile boolean detached;
+
+  LooperEventDispatchThread(ThreadGroup group, String name, EventQueue queue) {
+    super(group, name, queue);
+  }
+
+  /**
+   * Starts dispatching on the main {@link Looper}, rather than starting a thread.
+   */
+  @Override
+  public synchronized void start() {
+    wakeup();
+  }
+
+  @Override
+  boolean runsOnCurrentThread() {
+    return !detached && Looper.getMainLooper().getThread() == Thread.currentThread();
+  }
+
+  @Override
+  void wakeup() {
+    if (!detached && scheduled.compareAndSet(false, true)) {
+      handler.post(drain);
+    }
+  }
+
+  @Override
+  void pumpEventsForFilter(int id, Conditional cond, EventFilter filter) {
+    if (!runsOnCurrentThread()) {
+      throw new IllegalStateException("Events can only be pumped on the main thread");
+    }
+    addEventFilter(filter);
+    doDispatch = true;
+    Pump pump = new Pump(id, cond);
+    pumps.push(pump);
+    pumpsEntered++;
+    try {
+      if (cond.evaluate()) {
+        // The message that got us here is still running, so the nested loop needs its own
+        scheduled.set(false);
+        wakeup();
+        Looper.loop();
+      }
+    } catch (ExitPump e) {
+      if (e.pump != pump) {
+        throw e;
+      }
+    } finally {
+      pumps.pop();
+      removeEventFilter(filter);
+    }
+  }
+
+  /**
+   * Dispatches a batch of events. Runs as a {@link Looper} message on the main thread.
+   */
+  void drain() {
+    scheduled.set(false);
+    if (detached) {
+      return;
+    }
+    long start = SystemClock.uptimeMillis();
+    int entered = pumpsEntered;
+    int count = 0;
+    long slowest = 0;
+    AWTEvent slowestEvent = null;
+    int batchSize = Math.max(1, SkinJobGlobals.mainLooperEventBatchSize);
+    Pump pump = pumps.peek();
+    while (count < batchSize) {
+      if (pump != null && !(doDispatch && pump.cond.evaluate())) {
+        throw new ExitPump(pump);
+      }
+      if (!doDispatch) {
+        break;
+      }
+      long eventStart = SystemClock.uptimeMillis();
+      AWTEvent event = pollAndDispatch(pump == null ? ANY_EVENT : pump.id);
+      if (event == null) {
+        break;
+      }
+      count++;
+      long elapsed = SystemClock.uptimeMillis() - eventStart;
+      if (elapsed >= slowest) {
+        slowest = elapsed;
+        slowestEvent = event;
+      }
+    }
+    if (pump != null && !(doDispatch && pump.cond.evaluate())) {
+      throw new ExitPump(pump);
+    }
+    if (!doDispatch && pumps.isEmpty()) {
+      detached = true;
+      getEventQueue().detachDispatchThread(this);
+      return;
+    }
+    if (count == batchSize) {
+      // There may be more; let Android's own messages go first
+      wakeup();
+    }
+    long elapsed = SystemClock.uptimeMillis() - start;
+    if (elapsed >= SkinJobGlobals.mainLooperStallMs && pumpsEntered == entered) {
+      Log.w(TAG, count + " AWT events held up the main thread for " + elapsed
+          + " ms; the slowest took " + slowest + " ms: " + slowestEvent);
+    }
+  }
+
+  /**
+   * Takes the next event that the filters accept off the queue and dispatches it.
+   *
+   * @return the event, or null if the queue had none left
+   */
+  private AWTEvent pollAndDispatch(int id) {
+    AWTEvent event;
+    EventQueue eq;
+    try {
+      do {
+        // EventQueue may change during the dispatching
+        eq = getEventQueue();
+        event = eq.pollNextEvent(id);
+        if (event == null) {
+          return null;
+        }
+      } while (!acceptEvent(event));
+    } catch (InterruptedException e) {
+      doDispatch = false;
+      return null;
+    }
+    try {
+      eq.dispatchEvent(event);
+    } catch (ExitPump e) {
+      throw e;
+    } catch (ThreadDeath death) {
+      doDispatch = false;
+      throw death;
+    } catch (Throwable e) {
+      processException(e);
+    }
+    return event;
+  }
+
+  private static final class Pump {
+    final int id;
+    final Conditional cond;
+
+    Pump(int id, Conditional cond) {
+      this.id = id;
+      this.cond = cond;
+    }
+  }
+
+  /**
+   * Thrown out of a {@link #drain} message to leave the nested {@link Looper#loop()} of a
+   * secondary pump whose condition has failed.
+   */
+  private static final class ExitPump extends RuntimeException {
+    private static final long serialVersionUID = -4476021837210569912L;
+    final transient Pump pump;
+
+    ExitPump(Pump pump) {
+      this.pump = pump;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      // Only ever caught, so the trace would be wasted work
+      return this;
+    }
+  }
+}
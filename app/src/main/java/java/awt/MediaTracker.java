@@ -29,6 +29,7 @@ import java.awt.image.ImageObserver;
 import java.io.Serializable;
 
 import sun.awt.image.MultiResolutionToolkitImage;
+import sun.awt.image.ToolkitImage;
 
 /**
  * The {@code MediaTracker} class is a utility class to track the status of a number of media
@@ -865,6 +866,10 @@ class ImageMediaEntry extends MediaEntry implements ImageObserver, Serializable
 
   @Override
   void startLoad() {
+    if (image instanceof ToolkitImage) {
+      // Lower IDs are loaded in preference to higher ones
+      ((ToolkitImage) image).setFetchPriority(ID);
+    }
     if (tracker.target.prepareImage(image, width, height, this)) {
       setStatus(COMPLETE);
     }
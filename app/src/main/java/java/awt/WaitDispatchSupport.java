@@ -180,8 +180,7 @@ class WaitDispatchSupport implements SecondaryLoop {
     // dispatch thread, start a new event pump; if we're
     // on any other thread, call wait() on the treelock
 
-    Thread currentThread = Thread.currentThread();
-    if (currentThread == dispatchThread) {
+    if (dispatchThread.runsOnCurrentThread()) {
       Log.v(TAG, "On dispatch thread: " + dispatchThread);
       if (interval != 0) {
         Log.v(TAG, "scheduling the timer for " + interval + " ms");
@@ -208,7 +207,7 @@ class WaitDispatchSupport implements SecondaryLoop {
       // starts. Thus, the enter() method will not hang.
       run.run();
     } else {
-      Log.v(TAG, "On non-dispatch thread: " + currentThread);
+      Log.v(TAG, "On non-dispatch thread: " + Thread.currentThread());
       synchronized (getTreeLock()) {
         if (filter != null) {
           dispatchThread.addEventFilter(filter);
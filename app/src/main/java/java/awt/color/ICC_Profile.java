@@ -870,7 +870,12 @@ public class ICC_Profile implements Serializable {
     try {
       p = getInstance(pdi.filename);
     } catch (IOException ex) {
-      throw new IllegalArgumentException("Can't load standard profile: " + pdi.filename);
+      // No .pf files on Android; fall back to the CMM's built-in copy
+      byte[] data = PCMM.INSTANCE.getStandardProfileData(pdi.filename);
+      if (data == null) {
+        throw new IllegalArgumentException("Can't load standard profile: " + pdi.filename);
+      }
+      p = getInstance(data);
     }
     return p;
   }
@@ -38,6 +38,10 @@ import skinjob.SkinJobGlobals;
  */
 class ArcIterator implements PathIterator {
   protected static final double BTAN_OF_HALF_PI = 0.5522847498307933;
+  /**
+   * How far a spline segment spanning 90 degrees strays from its arc, as a fraction of the radius.
+   */
+  private static final double RADIUS_ERROR_AT_90_DEGREES = 0.00027253;
   private static final String TAG = "AWT ArcIterator";
   final double x;
   final double y;
@@ -61,20 +65,14 @@ class ArcIterator implements PathIterator {
     affine = at;
     double ext = -a.getAngleExtent();
     if (ext >= 360.0 || ext <= -360) {
-      arcSegs = 4;
-      increment = Math.PI / 2;
-      cv = BTAN_OF_HALF_PI;
-      if (ext < 0) {
-        increment = -increment;
-        cv = -cv;
-      }
-    } else {
-      arcSegs = (int) Math.ceil(Math.abs(ext) / SkinJobGlobals.maxDegreesPerArcSegment);
-      increment = Math.toRadians(ext / arcSegs);
-      cv = btan(increment);
-      if (cv == 0) {
-        arcSegs = 0;
-      }
+      ext = ext < 0 ? -360.0 : 360.0;
+    }
+    arcSegs = (int) Math.ceil(Math.abs(ext) / maxDegreesPerSegment(Math.max(w, h), at));
+    increment = Math.toRadians(ext / arcSegs);
+    cv = arcSegs == 4 && Math.abs(ext) == 360.0
+        ? Math.copySign(BTAN_OF_HALF_PI, ext) : btan(increment);
+    if (cv == 0) {
+      arcSegs = 0;
     }
     int type = a.getArcType();
     switch (type) {
@@ -178,6 +176,36 @@ class ArcIterator implements PathIterator {
     return 4.0 / 3.0 * Math.sin(increment) / (1.0 + Math.cos(increment));
   }
 
+  /*
+   * Returns the widest angle that a segment of an arc of the given radius
+   * can span while its spline stays within SkinJobGlobals.arcFlatness of it
+   * once transformed by at.  The transform can stretch the arc by at most
+   * its largest singular value, and a spline segment spanning 90 degrees
+   * strays from the arc by RADIUS_ERROR_AT_90_DEGREES of its radius, a
+   * fraction that grows with the sixth power of the angle.
+   */
+  @SuppressWarnings("MagicNumber")
+  private static double maxDegreesPerSegment(double radius, AffineTransform at) {
+    double scale = 1.0;
+    if (at != null) {
+      double a = at.getScaleX();
+      double b = at.getShearY();
+      double c = at.getShearX();
+      double d = at.getScaleY();
+      double sum = a * a + b * b + c * c + d * d;
+      double det = a * d - b * c;
+      scale = Math.sqrt((sum + Math.sqrt(Math.max(0.0, sum * sum - 4 * det * det))) / 2);
+    }
+    double error = radius * scale * RADIUS_ERROR_AT_90_DEGREES;
+    double degrees = SkinJobGlobals.maxDegreesPerArcSegment;
+    if (error > SkinJobGlobals.arcFlatness) {
+      // At least 1 degree, so that absurdly large arcs still get a bounded number of segments
+      degrees = Math.max(1.0,
+          Math.min(degrees, 90.0 * Math.pow(SkinJobGlobals.arcFlatness / error, 1.0 / 6)));
+    }
+    return degrees;
+  }
+
   /**
    * Return the winding rule for determining the insideness of the path.
    *
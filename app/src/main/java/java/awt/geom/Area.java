@@ -29,20 +29,24 @@ import android.util.Log;
 
 import java.awt.Rectangle;
 import java.awt.Shape;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Vector;
 
 import sun.awt.geom.AreaOp;
 import sun.awt.geom.AreaOp.AddOp;
+import sun.awt.geom.AreaOp.CAGOp;
 import sun.awt.geom.AreaOp.EOWindOp;
 import sun.awt.geom.AreaOp.IntOp;
 import sun.awt.geom.AreaOp.NZWindOp;
 import sun.awt.geom.AreaOp.SubOp;
 import sun.awt.geom.AreaOp.XorOp;
+import sun.awt.geom.BandRegion;
 import sun.awt.geom.Crossings;
 import sun.awt.geom.Crossings.EvenOdd;
 import sun.awt.geom.Curve;
+import sun.awt.geom.CurveIndex;
 
 /**
  * An {@code Area} object stores and manipulates a resolution-independent description of an enclosed
@@ -95,9 +99,18 @@ public class Area implements Shape, Cloneable {
   //             3 parametric equation derivative coefficients
   protected static final int COORD_ARRAY_SIZE = 23;
   private static final String TAG = "java.awt.geom.Area";
-  private static final Vector EmptyCurves = new Vector();
-  private Vector curves;
+  // Every empty area shares this, so an empty area costs no list of its own. No list of curves is
+  // changed once it belongs to an area, so areas can also share non-empty ones.
+  private static final List<Curve> EmptyCurves = Collections.emptyList();
+  // Null while the area is only known as bands, until something needs its outline
+  private List<Curve> curves;
+  // Rectangles and rectilinear areas are also kept as bands, which their boolean operations use
+  // instead of the sweep over curves. Null if the area isn't rectilinear, or hasn't been checked.
+  private BandRegion bands;
+  private boolean bandsChecked;
   private Rectangle2D cachedBounds;
+  // Built on the first hit test of an area with many curves, and dropped with cachedBounds
+  private CurveIndex curveIndex;
 
   /**
    * Default constructor which creates an empty area.
@@ -106,6 +119,8 @@ public class Area implements Shape, Cloneable {
    */
   public Area() {
     curves = EmptyCurves;
+    bands = BandRegion.EMPTY;
+    bandsChecked = true;
   }
 
   /**
@@ -119,11 +134,22 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public Area(Shape s) {
-    curves = s instanceof Area ? ((Area) s).curves : pathToCurves(s.getPathIterator(null));
+    if (s instanceof Area) {
+      Area a = (Area) s;
+      curves = a.curves;
+      bands = a.bands;
+      bandsChecked = a.bandsChecked;
+      curveIndex = a.curveIndex;
+    } else if (s instanceof Rectangle2D) {
+      Rectangle2D r = (Rectangle2D) s;
+      setBands(BandRegion.of(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY()));
+    } else {
+      curves = pathToCurves(s.getPathIterator(null));
+    }
   }
 
-  private static Vector pathToCurves(PathIterator pi) {
-    Vector curves = new Vector();
+  private static List<Curve> pathToCurves(PathIterator pi) {
+    ArrayList<Curve> curves = new ArrayList<>();
     int windingRule = pi.getWindingRule();
     double[] coords = new double[COORD_ARRAY_SIZE];
     double movx = 0, movy = 0;
@@ -216,8 +242,7 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public void add(Area rhs) {
-    curves = new AddOp().calculate(curves, rhs.curves);
-    invalidateBounds();
+    calculate(new AddOp(), rhs);
   }
 
   /**
@@ -247,8 +272,7 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public void subtract(Area rhs) {
-    curves = new SubOp().calculate(curves, rhs.curves);
-    invalidateBounds();
+    calculate(new SubOp(), rhs);
   }
 
   /**
@@ -278,8 +302,7 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public void intersect(Area rhs) {
-    curves = new IntOp().calculate(curves, rhs.curves);
-    invalidateBounds();
+    calculate(new IntOp(), rhs);
   }
 
   /**
@@ -310,8 +333,7 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public void exclusiveOr(Area rhs) {
-    curves = new XorOp().calculate(curves, rhs.curves);
-    invalidateBounds();
+    calculate(new XorOp(), rhs);
   }
 
   /**
@@ -320,10 +342,52 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public void reset() {
-    curves = new Vector();
+    setBands(BandRegion.EMPTY);
+  }
+
+  private void calculate(CAGOp op, Area rhs) {
+    BandRegion left = getBands();
+    BandRegion right = left == null ? null : rhs.getBands();
+    if (right != null) {
+      setBands(left.calculate(op, right));
+    } else {
+      setCurves(op.calculate(getCurves(), rhs.getCurves()));
+    }
+  }
+
+  private void setCurves(List<Curve> newCurves) {
+    curves = newCurves;
+    bands = null;
+    bandsChecked = false;
+    invalidateBounds();
+  }
+
+  private void setBands(BandRegion newBands) {
+    curves = newBands.isEmpty() ? EmptyCurves : null;
+    bands = newBands;
+    bandsChecked = true;
     invalidateBounds();
   }
 
+  private List<Curve> getCurves() {
+    if (curves == null) {
+      curves = bands.toCurves();
+    }
+    return curves;
+  }
+
+  /**
+   * Returns this area as bands, converting its curves if they're all vertical lines, or null if
+   * they aren't.
+   */
+  private BandRegion getBands() {
+    if (!bandsChecked) {
+      bands = BandRegion.fromCurves(curves);
+      bandsChecked = true;
+    }
+    return bands;
+  }
+
   /**
    * Tests whether this {@code Area} object encloses any area.
    *
@@ -332,7 +396,7 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public boolean isEmpty() {
-    return curves.isEmpty();
+    return bands != null ? bands.isEmpty() : curves.isEmpty();
   }
 
   /**
@@ -343,9 +407,11 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public boolean isPolygonal() {
-    Enumeration enum_ = curves.elements();
-    while (enum_.hasMoreElements()) {
-      if (((Curve) enum_.nextElement()).getOrder() > 1) {
+    if (bands != null) {
+      return true;
+    }
+    for (int i = 0, n = curves.size(); i < n; i++) {
+      if (curves.get(i).getOrder() > 1) {
         return false;
       }
     }
@@ -360,6 +426,9 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public boolean isRectangular() {
+    if (bands != null) {
+      return bands.isRectangle();
+    }
     int size = curves.size();
     if (size == 0) {
       return true;
@@ -367,8 +436,8 @@ public class Area implements Shape, Cloneable {
     if (size > 3) {
       return false;
     }
-    Curve c1 = (Curve) curves.get(1);
-    Curve c2 = (Curve) curves.get(2);
+    Curve c1 = curves.get(1);
+    Curve c2 = curves.get(2);
     if (c1.getOrder() != 1 || c2.getOrder() != 1) {
       return false;
     }
@@ -387,13 +456,13 @@ public class Area implements Shape, Cloneable {
    * @since 1.2
    */
   public boolean isSingular() {
+    List<Curve> curves = getCurves();
     if (curves.size() < 3) {
       return true;
     }
-    Enumeration enum_ = curves.elements();
-    enum_.nextElement(); // First Order0 "moveto"
-    while (enum_.hasMoreElements()) {
-      if (((Curve) enum_.nextElement()).getOrder() == 0) {
+    // Skip the first Order0 "moveto"
+    for (int i = 1, n = curves.size(); i < n; i++) {
+      if (curves.get(i).getOrder() == 0) {
         return false;
       }
     }
@@ -402,19 +471,40 @@ public class Area implements Shape, Cloneable {
 
   private void invalidateBounds() {
     cachedBounds = null;
+    curveIndex = null;
+  }
+
+  /**
+   * Returns an index of the curves, or null if there are too few to be worth indexing.
+   */
+  private CurveIndex getCurveIndex() {
+    if (curveIndex == null && curves.size() >= CurveIndex.MIN_CURVES) {
+      curveIndex = new CurveIndex(curves);
+    }
+    return curveIndex;
+  }
+
+  private Crossings findCrossings(double xlo, double ylo, double xhi, double yhi) {
+    List<Curve> curves = getCurves();
+    CurveIndex index = getCurveIndex();
+    return index != null ? Crossings.findCrossings(index, xlo, ylo, xhi, yhi)
+        : findCrossings(curves, xlo, ylo, xhi, yhi);
   }
 
   private Rectangle2D getCachedBounds() {
     if (cachedBounds != null) {
       return cachedBounds;
     }
+    if (bands != null) {
+      return cachedBounds = bands.getBounds();
+    }
     Rectangle2D r = new Rectangle2D.Double();
     if (!curves.isEmpty()) {
-      Curve c = (Curve) curves.get(0);
+      Curve c = curves.get(0);
       // First point is always an order 0 curve (moveto)
       r.setRect(c.getX0(), c.getY0(), 0, 0);
-      for (int i = 1; i < curves.size(); i++) {
-        ((Curve) curves.get(i)).enlarge(r);
+      for (int i = 1, n = curves.size(); i < n; i++) {
+        curves.get(i).enlarge(r);
       }
     }
     return cachedBounds = r;
@@ -461,11 +551,17 @@ public class Area implements Shape, Cloneable {
     if (!getCachedBounds().contains(x, y)) {
       return false;
     }
-    Enumeration enum_ = curves.elements();
+    if (bands != null) {
+      return bands.contains(x, y);
+    }
+    CurveIndex index = getCurveIndex();
     int crossings = 0;
-    while (enum_.hasMoreElements()) {
-      Curve c = (Curve) enum_.nextElement();
-      crossings += c.crossingsFor(x, y);
+    if (index != null) {
+      crossings = index.crossingsFor(x, y);
+    } else {
+      for (int i = 0, n = curves.size(); i < n; i++) {
+        crossings += curves.get(i).crossingsFor(x, y);
+      }
     }
     return (crossings & 1) == 1;
   }
@@ -489,7 +585,10 @@ public class Area implements Shape, Cloneable {
     if (!getCachedBounds().intersects(x, y, w, h)) {
       return false;
     }
-    Crossings c = findCrossings(curves, x, y, x + w, y + h);
+    if (bands != null && w > 0 && h > 0) {
+      return bands.intersects(x, y, x + w, y + h);
+    }
+    Crossings c = findCrossings(x, y, x + w, y + h);
     return c == null || !c.isEmpty();
   }
 
@@ -512,7 +611,10 @@ public class Area implements Shape, Cloneable {
     if (!getCachedBounds().contains(x, y, w, h)) {
       return false;
     }
-    Crossings c = findCrossings(curves, x, y, x + w, y + h);
+    if (bands != null && w > 0 && h > 0) {
+      return bands.contains(x, y, x + w, y + h);
+    }
+    Crossings c = findCrossings(x, y, x + w, y + h);
     return c != null && c.covers(y, y + h);
   }
 
@@ -536,7 +638,7 @@ public class Area implements Shape, Cloneable {
    */
   @Override
   public PathIterator getPathIterator(AffineTransform at) {
-    return new AreaIterator(curves, at);
+    return new AreaIterator(getCurves(), at);
   }
 
   /**
@@ -574,7 +676,13 @@ public class Area implements Shape, Cloneable {
       return true;
     }
     if (other instanceof Area) {
-      Vector c = new XorOp().calculate(curves, ((Area) other).curves);
+      Area a = (Area) other;
+      BandRegion b = getBands();
+      BandRegion ob = b == null ? null : a.getBands();
+      if (ob != null) {
+        return b.equals(ob);
+      }
+      List<Curve> c = new XorOp().calculate(getCurves(), a.getCurves());
       return c.isEmpty();
     }
     return false;
@@ -612,8 +720,14 @@ public class Area implements Shape, Cloneable {
     }
     // REMIND: A simpler operation can be performed for some types
     // of transform.
-    curves = pathToCurves(getPathIterator(t));
-    invalidateBounds();
+    if (bands != null) {
+      BandRegion transformed = bands.transform(t);
+      if (transformed != null) {
+        setBands(transformed);
+        return;
+      }
+    }
+    setCurves(pathToCurves(getPathIterator(t)));
   }
 
   /**
@@ -634,16 +748,16 @@ public class Area implements Shape, Cloneable {
 
 class AreaIterator implements PathIterator {
   private final AffineTransform transform;
-  private final Vector curves;
+  private final List<Curve> curves;
   private int index;
   private Curve prevcurve;
   private Curve thiscurve;
 
-  public AreaIterator(Vector curves, AffineTransform at) {
+  public AreaIterator(List<Curve> curves, AffineTransform at) {
     this.curves = curves;
     transform = at;
     if (curves.size() >= 1) {
-      thiscurve = (Curve) curves.get(0);
+      thiscurve = curves.get(0);
     }
   }
 
@@ -668,7 +782,7 @@ class AreaIterator implements PathIterator {
       prevcurve = thiscurve;
       index++;
       if (index < curves.size()) {
-        thiscurve = (Curve) curves.get(index);
+        thiscurve = curves.get(index);
         if (thiscurve.getOrder() != 0 &&
             prevcurve.getX1() == thiscurve.getX0() &&
             prevcurve.getY1() == thiscurve.getY0()) {
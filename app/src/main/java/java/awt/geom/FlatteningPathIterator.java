@@ -31,12 +31,16 @@ import java.util.NoSuchElementException;
  * The {@code FlatteningPathIterator} class returns a flattened view of another {@link PathIterator}
  * object.  Other {@link java.awt.Shape Shape} classes can use this class to provide flattening
  * behavior for their paths without having to perform the interpolation calculations themselves.
+ * <p>
+ * Each curve is split into as many equal steps of its parameter as it needs to stay within the
+ * flatness of its line segments, which is worked out up front from how sharply the curve bends
+ * (Wang's formula), and the points are then generated by forward differencing. So a curve that's
+ * small in the coordinates of the source iterator, which are usually device space, is cut into few
+ * segments and a large one into many, without allocating anything per curve.
  *
  * @author Jim Graham
  */
 public class FlatteningPathIterator implements PathIterator {
-  static final int GROW_SIZE = 24;    // Multiple of cubic & quad curve size
-
   PathIterator src;                   // The source iterator
 
   double squareflat;                  // Square of the flatness parameter
@@ -44,39 +48,23 @@ public class FlatteningPathIterator implements PathIterator {
 
   int limit;                          // Maximum number of recursion levels
 
-  double[] hold = new double[14];     // The cache of interpolated coords
-  // Note that this must be long enough
-  // to store a full cubic segment and
-  // a relative cubic segment to avoid
-  // aliasing when copying the coords
-  // of a curve to the end of the array.
-  // This is also serendipitously equal
-  // to the size of a full quad segment
-  // and 2 relative quad segments.
+  final double[] hold = new double[6]; // The coords of the source segment
 
   double curx, cury;                  // The ending x,y of the last segment
 
   double movx, movy;                  // The x,y of the last move segment
 
-  int holdType;                       // The type of the curve being held
-  // for interpolation
-
-  int holdEnd;                        // The index of the last curve segment
-  // being held for interpolation
+  int holdType;                       // The type of the source segment
 
-  int holdIndex;                      // The index of the curve segment
-  // that was last interpolated.  This
-  // is the curve segment ready to be
-  // returned in the next call to
-  // currentSegment().
+  double pointx, pointy;              // The point of the current segment
 
-  int[] levels;                       // The recursion level at which
-  // each curve being held in storage
-  // was generated.
+  int stepsLeft;                      // The line segments of the curve
+  // being flattened that are still to be
+  // returned after the current one
 
-  int levelIndex;                     // The index of the entry in the
-  // levels array of the curve segment
-  // at the holdIndex
+  // Forward differences of the curve being flattened: the point at the
+  // current step, and its first, second and third differences
+  double fx, fy, dx, dy, ddx, ddy, dddx, dddy;
 
   boolean done;                       // True when iteration is done
 
@@ -116,7 +104,6 @@ public class FlatteningPathIterator implements PathIterator {
     this.src = src;
     squareflat = flatness * flatness;
     this.limit = limit;
-    levels = new int[limit + 1];
     // prime the first path segment
     next(false);
   }
@@ -192,8 +179,8 @@ public class FlatteningPathIterator implements PathIterator {
     }
     int type = holdType;
     if (type != SEG_CLOSE) {
-      coords[0] = (float) hold[holdIndex];
-      coords[1] = (float) hold[holdIndex + 1];
+      coords[0] = (float) pointx;
+      coords[1] = (float) pointy;
       if (type != SEG_MOVETO) {
         type = SEG_LINETO;
       }
@@ -223,8 +210,8 @@ public class FlatteningPathIterator implements PathIterator {
     }
     int type = holdType;
     if (type != SEG_CLOSE) {
-      coords[0] = hold[holdIndex];
-      coords[1] = hold[holdIndex + 1];
+      coords[0] = pointx;
+      coords[1] = pointy;
       if (type != SEG_MOVETO) {
         type = SEG_LINETO;
       }
@@ -232,144 +219,148 @@ public class FlatteningPathIterator implements PathIterator {
     return type;
   }
 
-  /*
-   * Ensures that the hold array can hold up to (want) more values.
-   * It is currently holding (hold.length - holdIndex) values.
-   */
-  void ensureHoldCapacity(int want) {
-    if (holdIndex - want < 0) {
-      int have = hold.length - holdIndex;
-      int newsize = hold.length + GROW_SIZE;
-      double[] newhold = new double[newsize];
-      System.arraycopy(hold, holdIndex, newhold, holdIndex + GROW_SIZE, have);
-      hold = newhold;
-      holdIndex += GROW_SIZE;
-      holdEnd += GROW_SIZE;
-    }
-  }
-
   private void next(boolean doNext) {
-    int level;
-
-    if (holdIndex >= holdEnd) {
-      if (doNext) {
-        src.next();
-      }
-      if (src.isDone()) {
-        done = true;
-        return;
-      }
-      holdType = src.currentSegment(hold);
-      levelIndex = 0;
-      levels[0] = 0;
+    if (stepsLeft > 0) {
+      step();
+      return;
     }
-
+    if (doNext) {
+      src.next();
+    }
+    if (src.isDone()) {
+      done = true;
+      return;
+    }
+    holdType = src.currentSegment(hold);
     switch (holdType) {
       case SEG_MOVETO:
       case SEG_LINETO:
-        curx = hold[0];
-        cury = hold[1];
+        pointx = curx = hold[0];
+        pointy = cury = hold[1];
         if (holdType == SEG_MOVETO) {
           movx = curx;
           movy = cury;
         }
-        holdIndex = 0;
-        holdEnd = 0;
         break;
       case SEG_CLOSE:
         curx = movx;
         cury = movy;
-        holdIndex = 0;
-        holdEnd = 0;
         break;
       case SEG_QUADTO:
-        if (holdIndex >= holdEnd) {
-          // Move the coordinates to the end of the array.
-          holdIndex = hold.length - 6;
-          holdEnd = hold.length - 2;
-          hold[holdIndex] = curx;
-          hold[holdIndex + 1] = cury;
-          hold[holdIndex + 2] = hold[0];
-          hold[holdIndex + 3] = hold[1];
-          hold[holdIndex + 4] = curx = hold[2];
-          hold[holdIndex + 5] = cury = hold[3];
-        }
-
-        level = levels[levelIndex];
-        while (level < limit) {
-          if (QuadCurve2D.getFlatnessSq(hold, holdIndex) < squareflat) {
-            break;
-          }
-
-          ensureHoldCapacity(4);
-          QuadCurve2D.subdivide(hold, holdIndex, hold, holdIndex - 4, hold, holdIndex);
-          holdIndex -= 4;
-
-          // Now that we have subdivided, we have constructed
-          // two curves of one depth lower than the original
-          // curve.  One of those curves is in the place of
-          // the former curve and one of them is in the next
-          // set of held coordinate slots.  We now set both
-          // curves level values to the next higher level.
-          level++;
-          levels[levelIndex] = level;
-          levelIndex++;
-          levels[levelIndex] = level;
-        }
-
-        // This curve segment is flat enough, or it is too deep
-        // in recursion levels to try to flatten any more.  The
-        // two coordinates at holdIndex+4 and holdIndex+5 now
-        // contain the endpoint of the curve which can be the
-        // endpoint of an approximating line segment.
-        holdIndex += 4;
-        levelIndex--;
+        startQuad();
         break;
       case SEG_CUBICTO:
-        if (holdIndex >= holdEnd) {
-          // Move the coordinates to the end of the array.
-          holdIndex = hold.length - 8;
-          holdEnd = hold.length - 2;
-          hold[holdIndex] = curx;
-          hold[holdIndex + 1] = cury;
-          hold[holdIndex + 2] = hold[0];
-          hold[holdIndex + 3] = hold[1];
-          hold[holdIndex + 4] = hold[2];
-          hold[holdIndex + 5] = hold[3];
-          hold[holdIndex + 6] = curx = hold[4];
-          hold[holdIndex + 7] = cury = hold[5];
-        }
+        startCubic();
+        break;
+    }
+  }
 
-        level = levels[levelIndex];
-        while (level < limit) {
-          if (CubicCurve2D.getFlatnessSq(hold, holdIndex) < squareflat) {
-            break;
-          }
+  /*
+   * Returns how many equal steps of its parameter a Bezier curve of the
+   * given degree needs so that no point of it is further than the flatness
+   * from the line segments joining the steps, when the largest second
+   * difference of its control points has the given squared length.  This
+   * is Wang's formula: sqrt(degree * (degree - 1) / 8 * length / flatness).
+   */
+  private int stepsFor(int degree, double squareLength) {
+    int maxSteps = 1 << Math.min(limit, 30);
+    if (squareLength == 0) {
+      return 1;
+    }
+    if (squareflat == 0) {
+      return maxSteps;
+    }
+    double k = degree * (degree - 1) / 8.0;
+    // sqrt(k * length / flatness) == (k^2 * length^2 / flatness^2) ^ (1/4)
+    double steps = Math.ceil(Math.sqrt(Math.sqrt(k * k * squareLength / squareflat)));
+    return steps < maxSteps ? Math.max(1, (int) steps) : maxSteps;
+  }
 
-          ensureHoldCapacity(6);
-          CubicCurve2D.subdivide(hold, holdIndex, hold, holdIndex - 6, hold, holdIndex);
-          holdIndex -= 6;
+  private void startQuad() {
+    double x0 = curx;
+    double y0 = cury;
+    double x1 = hold[0];
+    double y1 = hold[1];
+    double x2 = hold[2];
+    double y2 = hold[3];
+    double ax = x0 - 2 * x1 + x2;
+    double ay = y0 - 2 * y1 + y2;
+    int steps = stepsFor(2, ax * ax + ay * ay);
+    double h = 1.0 / steps;
+    double h2 = h * h;
+    double bx = 2 * (x1 - x0);
+    double by = 2 * (y1 - y0);
+    fx = x0;
+    fy = y0;
+    dx = ax * h2 + bx * h;
+    dy = ay * h2 + by * h;
+    ddx = 2 * ax * h2;
+    ddy = 2 * ay * h2;
+    dddx = 0;
+    dddy = 0;
+    curx = x2;
+    cury = y2;
+    stepsLeft = steps;
+    step();
+  }
 
-          // Now that we have subdivided, we have constructed
-          // two curves of one depth lower than the original
-          // curve.  One of those curves is in the place of
-          // the former curve and one of them is in the next
-          // set of held coordinate slots.  We now set both
-          // curves level values to the next higher level.
-          level++;
-          levels[levelIndex] = level;
-          levelIndex++;
-          levels[levelIndex] = level;
-        }
+  private void startCubic() {
+    double x0 = curx;
+    double y0 = cury;
+    double x1 = hold[0];
+    double y1 = hold[1];
+    double x2 = hold[2];
+    double y2 = hold[3];
+    double x3 = hold[4];
+    double y3 = hold[5];
+    double d1x = x0 - 2 * x1 + x2;
+    double d1y = y0 - 2 * y1 + y2;
+    double d2x = x1 - 2 * x2 + x3;
+    double d2y = y1 - 2 * y2 + y3;
+    int steps = stepsFor(3, Math.max(d1x * d1x + d1y * d1y, d2x * d2x + d2y * d2y));
+    double h = 1.0 / steps;
+    double h2 = h * h;
+    double h3 = h2 * h;
+    // The curve is a*t^3 + b*t^2 + c*t + p0
+    double ax = x3 - 3 * x2 + 3 * x1 - x0;
+    double ay = y3 - 3 * y2 + 3 * y1 - y0;
+    double bx = 3 * d1x;
+    double by = 3 * d1y;
+    double cx = 3 * (x1 - x0);
+    double cy = 3 * (y1 - y0);
+    fx = x0;
+    fy = y0;
+    dx = ax * h3 + bx * h2 + cx * h;
+    dy = ay * h3 + by * h2 + cy * h;
+    ddx = 6 * ax * h3 + 2 * bx * h2;
+    ddy = 6 * ay * h3 + 2 * by * h2;
+    dddx = 6 * ax * h3;
+    dddy = 6 * ay * h3;
+    curx = x3;
+    cury = y3;
+    stepsLeft = steps;
+    step();
+  }
 
-        // This curve segment is flat enough, or it is too deep
-        // in recursion levels to try to flatten any more.  The
-        // two coordinates at holdIndex+6 and holdIndex+7 now
-        // contain the endpoint of the curve which can be the
-        // endpoint of an approximating line segment.
-        holdIndex += 6;
-        levelIndex--;
-        break;
+  /*
+   * Moves to the next point of the curve being flattened.  The last point
+   * is taken from the curve's end rather than from the differences, so that
+   * rounding errors don't leave a gap before the next segment.
+   */
+  private void step() {
+    stepsLeft--;
+    if (stepsLeft == 0) {
+      pointx = curx;
+      pointy = cury;
+      return;
     }
+    fx += dx;
+    fy += dy;
+    dx += ddx;
+    dy += ddy;
+    ddx += dddx;
+    ddy += dddy;
+    pointx = fx;
+    pointy = fy;
   }
 }
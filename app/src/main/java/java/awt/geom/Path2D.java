@@ -35,6 +35,7 @@ import java.io.Serializable;
 import java.io.StreamCorruptedException;
 import java.util.Arrays;
 
+import skinjob.util.FrozenPath2D;
 import sun.awt.geom.Curve;
 
 /**
@@ -106,6 +107,11 @@ public abstract class Path2D implements Shape, Cloneable {
   transient int numTypes;
   transient int numCoords;
   transient int windingRule;
+  /**
+   * Incremented whenever the geometry or winding rule changes, so that data derived from this path
+   * can be cached against it.
+   */
+  transient int modCount;
 
   /**
    * Constructs a new empty {@code Path2D} object. It is assumed that the package sibling subclass
@@ -705,6 +711,32 @@ public abstract class Path2D implements Shape, Cloneable {
     return windingRule;
   }
 
+  /**
+   * Returns a count that changes whenever this path's geometry or winding rule is modified. Two
+   * equal results from the same path mean it hasn't changed in between.
+   */
+  public final synchronized int sjGetModCount() {
+    return modCount;
+  }
+
+  /**
+   * Returns an immutable copy of this path, with its coordinates packed in single precision and no
+   * spare capacity, for shapes that are kept and drawn many times, such as those held by tile
+   * caches.
+   */
+  public final FrozenPath2D sjFreeze() {
+    return sjFreeze(null);
+  }
+
+  /**
+   * Returns an immutable copy of this path transformed by {@code at}, or untransformed if {@code
+   * at} is null. This is the frozen counterpart of {@link #createTransformedShape}, which still
+   * returns a path of this path's class because callers may cast it back.
+   */
+  public final synchronized FrozenPath2D sjFreeze(AffineTransform at) {
+    return FrozenPath2D.of(this, at);
+  }
+
   /**
    * Sets the winding rule for this path to the specified value.
    *
@@ -721,6 +753,7 @@ public abstract class Path2D implements Shape, Cloneable {
           "WIND_NON_ZERO");
     }
     windingRule = rule;
+    modCount++;
   }
 
   /**
@@ -767,6 +800,7 @@ public abstract class Path2D implements Shape, Cloneable {
    */
   public final synchronized void reset() {
     numTypes = numCoords = 0;
+    modCount++;
   }
 
   /**
@@ -1181,6 +1215,7 @@ public abstract class Path2D implements Shape, Cloneable {
       if (numTypes > 0 && pointTypes[numTypes - 1] == SEG_MOVETO) {
         floatCoords[numCoords - 2] = x;
         floatCoords[numCoords - 1] = y;
+        modCount++;
       } else {
         needRoom(false, 2);
         pointTypes[numTypes] = SEG_MOVETO;
@@ -1441,6 +1476,7 @@ public abstract class Path2D implements Shape, Cloneable {
       if (needMove && numTypes == 0) {
         throw new IllegalPathStateException("missing initial moveto " + "in path definition");
       }
+      modCount++;
       int size = pointTypes.length;
       if (numTypes >= size) {
         int grow = size;
@@ -1472,6 +1508,7 @@ public abstract class Path2D implements Shape, Cloneable {
       if (numTypes > 0 && pointTypes[numTypes - 1] == SEG_MOVETO) {
         floatCoords[numCoords - 2] = (float) x;
         floatCoords[numCoords - 1] = (float) y;
+        modCount++;
       } else {
         needRoom(false, 2);
         pointTypes[numTypes] = SEG_MOVETO;
@@ -1563,7 +1600,7 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 endx = coords[ci],
-                endy = coords[ci]);
+                endy = coords[ci + 1]);
             ci++;
             ci++;
             curx = endx;
@@ -1575,9 +1612,9 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                endx = coords[ci + 2],
+                endy = coords[ci + 3],
                 0);
             ci++;
             ci++;
@@ -1592,11 +1629,11 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                coords[ci + 2],
+                coords[ci + 3],
+                endx = coords[ci + 4],
+                endy = coords[ci + 5],
                 0);
             ci++;
             ci++;
@@ -1660,7 +1697,7 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 endx = coords[ci],
-                endy = coords[ci]);
+                endy = coords[ci + 1]);
             ci++;
             ci++;
             curx = endx;
@@ -1675,9 +1712,9 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                endx = coords[ci + 2],
+                endy = coords[ci + 3],
                 0);
             ci++;
             ci++;
@@ -1695,11 +1732,11 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                coords[ci + 2],
+                coords[ci + 3],
+                endx = coords[ci + 4],
+                endy = coords[ci + 5],
                 0);
             ci++;
             ci++;
@@ -1790,6 +1827,7 @@ public abstract class Path2D implements Shape, Cloneable {
     @Override
     public final void transform(AffineTransform at) {
       at.transform(floatCoords, 0, floatCoords, 0, numCoords / 2);
+      modCount++;
     }
 
     /**
@@ -2126,6 +2164,7 @@ public abstract class Path2D implements Shape, Cloneable {
       if (needMove && numTypes == 0) {
         throw new IllegalPathStateException("missing initial moveto " + "in path definition");
       }
+      modCount++;
       int size = pointTypes.length;
       if (numTypes >= size) {
         int grow = size;
@@ -2157,6 +2196,7 @@ public abstract class Path2D implements Shape, Cloneable {
       if (numTypes > 0 && pointTypes[numTypes - 1] == SEG_MOVETO) {
         doubleCoords[numCoords - 2] = x;
         doubleCoords[numCoords - 1] = y;
+        modCount++;
       } else {
         needRoom(false, 2);
         pointTypes[numTypes] = SEG_MOVETO;
@@ -2248,7 +2288,7 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 endx = coords[ci],
-                endy = coords[ci]);
+                endy = coords[ci + 1]);
             ci++;
             ci++;
             curx = endx;
@@ -2260,9 +2300,9 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                endx = coords[ci + 2],
+                endy = coords[ci + 3],
                 0);
             ci++;
             ci++;
@@ -2277,11 +2317,11 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                coords[ci + 2],
+                coords[ci + 3],
+                endx = coords[ci + 4],
+                endy = coords[ci + 5],
                 0);
             ci++;
             ci++;
@@ -2362,9 +2402,9 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                endx = coords[ci + 2],
+                endy = coords[ci + 3],
                 0);
             ci++;
             ci++;
@@ -2382,11 +2422,11 @@ public abstract class Path2D implements Shape, Cloneable {
                 curx,
                 cury,
                 coords[ci],
-                coords[ci],
-                coords[ci],
-                coords[ci],
-                endx = coords[ci],
-                endy = coords[ci],
+                coords[ci + 1],
+                coords[ci + 2],
+                coords[ci + 3],
+                endx = coords[ci + 4],
+                endy = coords[ci + 5],
                 0);
             ci++;
             ci++;
@@ -2477,6 +2517,7 @@ public abstract class Path2D implements Shape, Cloneable {
     @Override
     public final void transform(AffineTransform at) {
       at.transform(doubleCoords, 0, doubleCoords, 0, numCoords / 2);
+      modCount++;
     }
 
     /**
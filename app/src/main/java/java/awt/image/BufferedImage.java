@@ -40,6 +40,7 @@ import sun.awt.image.ByteComponentRaster;
 import sun.awt.image.BytePackedRaster;
 import sun.awt.image.IntegerComponentRaster;
 import sun.awt.image.OffScreenImageSource;
+import sun.awt.image.RgbRows;
 import sun.awt.image.ShortComponentRaster;
 
 /**
@@ -210,6 +211,12 @@ public class BufferedImage extends Image implements WritableRenderedImage, Trans
   OffScreenImageSource osis;
   Hashtable properties;
   boolean isAlphaPremultiplied;// If true, alpha has been premultiplied in
+  /**
+   * Direct access to the pixels for {@link #getRGB} and {@link #setRGB}; null until first needed,
+   * and also if there's no fast path for this image's type.
+   */
+  private RgbRows rgbRows;
+  private boolean rgbRowsChecked;
 
   /**
    * Constructs a {@code BufferedImage} of one of the predefined image types.  The {@code
@@ -731,6 +738,10 @@ public class BufferedImage extends Image implements WritableRenderedImage, Trans
    * @see #setRGB(int, int, int, int, int[], int, int)
    */
   public int getRGB(int x, int y) {
+    RgbRows rows = getRgbRows(x, y, 1, 1);
+    if (rows != null) {
+      return rows.getRGB(x, y);
+    }
     return colorModel.getRGB(raster.getDataElements(x, y, null));
   }
 
@@ -762,6 +773,17 @@ public class BufferedImage extends Image implements WritableRenderedImage, Trans
    */
   public int[] getRGB(
       int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+    RgbRows rows = getRgbRows(startX, startY, w, h);
+    if (rows != null) {
+      if (rgbArray == null) {
+        rgbArray = new int[offset + h * scansize];
+      }
+      for (int y = startY, yoff = offset; y < startY + h; y++, yoff += scansize) {
+        rows.getRGB(startX, y, w, rgbArray, yoff);
+      }
+      return rgbArray;
+    }
+
     int yoff = offset;
     int off;
     Object data;
@@ -819,6 +841,11 @@ public class BufferedImage extends Image implements WritableRenderedImage, Trans
    * @see #getRGB(int, int, int, int, int[], int, int)
    */
   public synchronized void setRGB(int x, int y, int rgb) {
+    RgbRows rows = getRgbRows(x, y, 1, 1);
+    if (rows != null) {
+      rows.setRGB(x, y, rgb);
+      return;
+    }
     raster.setDataElements(x, y, colorModel.getDataElements(rgb, null));
   }
 
@@ -850,6 +877,18 @@ public class BufferedImage extends Image implements WritableRenderedImage, Trans
    */
   public void setRGB(
       int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+    RgbRows rows = getRgbRows(startX, startY, w, h);
+    if (rows != null) {
+      try {
+        for (int y = startY, yoff = offset; y < startY + h; y++, yoff += scansize) {
+          rows.setRGB(startX, y, w, rgbArray, yoff);
+        }
+      } finally {
+        rows.markDirty(startX, startY, w, h);
+      }
+      return;
+    }
+
     int yoff = offset;
     int off;
     Object pixel = null;
@@ -864,6 +903,24 @@ public class BufferedImage extends Image implements WritableRenderedImage, Trans
     }
   }
 
+  /**
+   * Returns direct access to the pixels for converting the given region to and from the default
+   * RGB color model, or null if the color model and raster must be used instead: because this
+   * image's type has no fast path, or because the region isn't entirely within the image and the
+   * raster should report that.
+   */
+  private RgbRows getRgbRows(int x, int y, int w, int h) {
+    if (x < 0 || y < 0 || w < 0 || h < 0 || x > raster.getWidth() - w
+        || y > raster.getHeight() - h) {
+      return null;
+    }
+    if (!rgbRowsChecked) {
+      rgbRows = RgbRows.of(imageType, raster, colorModel);
+      rgbRowsChecked = true;
+    }
+    return rgbRows;
+  }
+
   /**
    * Returns the width of the {@code BufferedImage}.
    *
@@ -988,6 +1045,9 @@ public class BufferedImage extends Image implements WritableRenderedImage, Trans
     if (colorModel.hasAlpha() && colorModel.isAlphaPremultiplied() != isAlphaPremultiplied) {
       // Make the color model do the conversion
       colorModel = colorModel.coerceData(raster, isAlphaPremultiplied);
+      // The fast path for getRGB and setRGB depends on whether alpha is premultiplied
+      rgbRows = null;
+      rgbRowsChecked = false;
     }
   }
 
@@ -35,6 +35,7 @@
 
 package java.awt.image;
 
+import sun.awt.image.DirtyTracker;
 import sun.awt.image.SunWritableRaster;
 import sun.awt.image.SunWritableRaster.DataStealer;
 
@@ -120,6 +121,11 @@ public abstract class DataBuffer {
       public void setTrackable(DataBuffer db, Object trackable) {
         db.theTrackable = trackable;
       }
+
+      @Override
+      public Object getTrackable(DataBuffer db) {
+        return db.theTrackable;
+      }
     });
   }
 
@@ -345,8 +351,42 @@ public abstract class DataBuffer {
     setElem(0, i, val);
   }
 
+  /**
+   * Notifies any {@link DirtyTracker} that the first bank's array is about to be written.
+   */
+  void sjWillWrite() {
+    Object trackable = theTrackable;
+    if (trackable instanceof DirtyTracker) {
+      ((DirtyTracker) trackable).willWrite();
+    }
+  }
+
+  /**
+   * Notifies any {@link DirtyTracker} that this buffer's contents may have changed anywhere.
+   */
   protected void sjMarkDirty() {
-    // TODO
+    sjMarkDirty(0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Notifies any {@link DirtyTracker} that elements {@code [from, to)} of the first bank's array,
+   * including the offset, have changed.
+   */
+  void sjMarkDirty(int from, int to) {
+    Object trackable = theTrackable;
+    if (trackable instanceof DirtyTracker) {
+      ((DirtyTracker) trackable).markDirty(from, to);
+    }
+  }
+
+  /**
+   * Notifies any {@link DirtyTracker} that this buffer's arrays are being handed out.
+   */
+  void sjMarkUntrackable() {
+    Object trackable = theTrackable;
+    if (trackable instanceof DirtyTracker) {
+      ((DirtyTracker) trackable).markUntrackable();
+    }
   }
 
   /**
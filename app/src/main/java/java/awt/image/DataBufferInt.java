@@ -174,8 +174,7 @@ public final class DataBufferInt extends DataBuffer {
    * @return The first integer data array.
    */
   public int[] getData() {
-    synchronized (theTrackable) {
-    }
+    sjMarkUntrackable();
     return data;
   }
 
@@ -190,8 +189,7 @@ public final class DataBufferInt extends DataBuffer {
    * @return The data array for the specified bank.
    */
   public int[] getData(int bank) {
-    synchronized (theTrackable) {
-    }
+    sjMarkUntrackable();
     return bankdata[bank];
   }
 
@@ -205,8 +203,7 @@ public final class DataBufferInt extends DataBuffer {
    * @return All of the data arrays.
    */
   public int[][] getBankData() {
-    synchronized (theTrackable) {
-    }
+    sjMarkUntrackable();
     return bankdata.clone();
   }
 
@@ -247,7 +244,9 @@ public final class DataBufferInt extends DataBuffer {
    */
   @Override
   public void setElem(int i, int val) {
+    sjWillWrite();
     data[i + offset] = val;
+    sjMarkDirty(i + offset, i + offset + 1);
   }
 
   /**
@@ -261,6 +260,14 @@ public final class DataBufferInt extends DataBuffer {
    */
   @Override
   public void setElem(int bank, int i, int val) {
+    if (bank == 0) {
+      sjWillWrite();
+    }
     bankdata[bank][i + offsets[bank]] = val;
+    if (bank == 0) {
+      sjMarkDirty(i + offsets[0], i + offsets[0] + 1);
+    } else {
+      sjMarkDirty();
+    }
   }
 }
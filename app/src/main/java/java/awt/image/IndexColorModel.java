@@ -92,6 +92,11 @@ import java.util.Arrays;
  */
 public class IndexColorModel extends ColorModel {
   private static final int CACHESIZE = 40;
+  /**
+   * Number of searches of the palette after which {@link #getDataElements(int, Object)} builds an
+   * {@link InverseColorMap}, for palettes that can have one.
+   */
+  private static final int INVERSE_MAP_THRESHOLD = 1024;
   private static final int[] opaqueBits = {8, 8, 8};
   private static final int[] alphaBits = {8, 8, 8, 8};
 
@@ -106,6 +111,11 @@ public class IndexColorModel extends ColorModel {
   private int transparent_index = -1;
   private boolean allgrayopaque;
   private BigInteger validBits;
+  /**
+   * Published once built, after which colors are looked up without locking.
+   */
+  private volatile InverseColorMap inverseMap;
+  private int paletteSearches;
 
   /**
    * Constructs an {@code IndexColorModel} from the specified arrays of red, green, and blue
@@ -647,12 +657,18 @@ public class IndexColorModel extends ColorModel {
    * @see SampleModel#setDataElements
    */
   @Override
-  public synchronized Object getDataElements(int rgb, Object pixel) {
-    int red = rgb >> 16 & 0xff;
-    int green = rgb >> 8 & 0xff;
-    int blue = rgb & 0xff;
-    int alpha = rgb >>> 24;
-    int pix = 0;
+  public Object getDataElements(int rgb, Object pixel) {
+    InverseColorMap map = inverseMap;
+    return installpixel(pixel, map != null ? map.lookup(rgb) : lookupPixel(rgb));
+  }
+
+  /**
+   * Finds the pixel whose color is closest to {@code rgb}, consulting and updating {@link
+   * #lookupcache}. Once enough searches have been done, builds an {@link InverseColorMap} to
+   * answer future lookups instead.
+   */
+  private synchronized int lookupPixel(int rgb) {
+    int pix;
 
     // Note that pixels are stored at lookupcache[2*i]
     // and the rgb that was searched is stored at
@@ -664,9 +680,29 @@ public class IndexColorModel extends ColorModel {
         break;
       }
       if (rgb == lookupcache[i + 1]) {
-        return installpixel(pixel, ~pix);
+        return ~pix;
       }
     }
+    pix = searchPalette(rgb);
+    System.arraycopy(lookupcache, 2, lookupcache, 0, CACHESIZE - 2);
+    lookupcache[CACHESIZE - 1] = rgb;
+    lookupcache[CACHESIZE - 2] = ~pix;
+    if (++paletteSearches == INVERSE_MAP_THRESHOLD && inverseMap == null
+        && InverseColorMap.canMap(this)) {
+      inverseMap = new InverseColorMap(this.rgb, map_size, allgrayopaque);
+    }
+    return pix;
+  }
+
+  /**
+   * Searches the whole palette for the pixel whose color is closest to {@code rgb}.
+   */
+  private int searchPalette(int rgb) {
+    int red = rgb >> 16 & 0xff;
+    int green = rgb >> 8 & 0xff;
+    int blue = rgb & 0xff;
+    int alpha = rgb >>> 24;
+    int pix = 0;
 
     if (allgrayopaque) {
       // IndexColorModel objects are all tagged as
@@ -795,10 +831,7 @@ public class IndexColorModel extends ColorModel {
         }
       }
     }
-    System.arraycopy(lookupcache, 2, lookupcache, 0, CACHESIZE - 2);
-    lookupcache[CACHESIZE - 1] = rgb;
-    lookupcache[CACHESIZE - 2] = ~pix;
-    return installpixel(pixel, pix);
+    return pix;
   }
 
   /**
@@ -1323,4 +1356,148 @@ public class IndexColorModel extends ColorModel {
   public boolean isAllGrayOpaque() {
     return allgrayopaque;
   }
+
+  /**
+   * An immutable map from colors to the pixels that {@link #searchPalette} would choose for them,
+   * for palettes whose search ignores alpha. A gray palette is mapped with a table indexed by gray
+   * level. Other palettes divide RGB space into a cube of cells, each listing the only palette
+   * entries that can be nearest to a color inside it, so that a lookup searches just that list.
+   * The lists keep palette order, so ties go to the lowest pixel as in the full search.
+   */
+  private static final class InverseColorMap {
+    private static final int CELL_SHIFT = 4;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    private static final int CELLS_PER_AXIS = 256 >> CELL_SHIFT;
+    private static final int MAX_CUBE_PALETTE = 256;
+
+    private final int[] lut;
+    private final int[] grayPixels;
+    private final int[] cellStarts;
+    private final byte[] candidates;
+
+    InverseColorMap(int[] lut, int mapSize, boolean allGray) {
+      this.lut = lut;
+      if (allGray) {
+        grayPixels = mapGrays(lut, mapSize);
+        cellStarts = null;
+        candidates = null;
+        return;
+      }
+      grayPixels = null;
+      // squares[axis][cell * mapSize + i] hold the nearest and furthest distances, squared, from
+      // entry i's component to the cell's range on that axis
+      int[][] minSquares = new int[3][CELLS_PER_AXIS * mapSize];
+      int[][] maxSquares = new int[3][CELLS_PER_AXIS * mapSize];
+      for (int axis = 0; axis < 3; axis++) {
+        int shift = 16 - 8 * axis;
+        for (int cell = 0; cell < CELLS_PER_AXIS; cell++) {
+          int lo = cell << CELL_SHIFT;
+          int hi = lo + CELL_SIZE - 1;
+          for (int i = 0; i < mapSize; i++) {
+            int c = lut[i] >> shift & 0xff;
+            int near = c < lo ? lo - c : c > hi ? c - hi : 0;
+            int far = Math.max(c - lo, hi - c);
+            minSquares[axis][cell * mapSize + i] = near * near;
+            maxSquares[axis][cell * mapSize + i] = far * far;
+          }
+        }
+      }
+      int[] minR = minSquares[0];
+      int[] minG = minSquares[1];
+      int[] minB = minSquares[2];
+      int[] maxR = maxSquares[0];
+      int[] maxG = maxSquares[1];
+      int[] maxB = maxSquares[2];
+      cellStarts = new int[CELLS_PER_AXIS * CELLS_PER_AXIS * CELLS_PER_AXIS + 1];
+      byte[] list = new byte[cellStarts.length * 4];
+      int count = 0;
+      int cell = 0;
+      for (int r = 0; r < CELLS_PER_AXIS * mapSize; r += mapSize) {
+        for (int g = 0; g < CELLS_PER_AXIS * mapSize; g += mapSize) {
+          for (int b = 0; b < CELLS_PER_AXIS * mapSize; b += mapSize) {
+            // The nearest entry to any color in the cell is no further than the entry whose
+            // furthest point of the cell is closest
+            int bound = Integer.MAX_VALUE;
+            for (int i = 0; i < mapSize; i++) {
+              if (lut[i] != 0) {
+                bound = Math.min(bound, maxR[r + i] + maxG[g + i] + maxB[b + i]);
+              }
+            }
+            cellStarts[cell++] = count;
+            for (int i = 0; i < mapSize; i++) {
+              if (lut[i] != 0 && minR[r + i] + minG[g + i] + minB[b + i] <= bound) {
+                if (count == list.length) {
+                  list = Arrays.copyOf(list, count * 2);
+                }
+                list[count++] = (byte) i;
+              }
+            }
+          }
+        }
+      }
+      cellStarts[cell] = count;
+      candidates = Arrays.copyOf(list, count);
+    }
+
+    /**
+     * Returns whether {@code model}'s palette searches can be answered by an {@code
+     * InverseColorMap}.
+     */
+    static boolean canMap(IndexColorModel model) {
+      return model.allgrayopaque
+          || model.transparency == OPAQUE && model.map_size <= MAX_CUBE_PALETTE;
+    }
+
+    private static int[] mapGrays(int[] lut, int mapSize) {
+      int[] firstPixel = new int[256];
+      Arrays.fill(firstPixel, -1);
+      for (int i = 0; i < mapSize; i++) {
+        // Zero entries are invalid colors
+        if (lut[i] != 0 && firstPixel[lut[i] & 0xff] < 0) {
+          firstPixel[lut[i] & 0xff] = i;
+        }
+      }
+      int[] grayPixels = new int[256];
+      for (int gray = 0; gray < 256; gray++) {
+        for (int d = 0; d < 256; d++) {
+          int below = gray - d >= 0 ? firstPixel[gray - d] : -1;
+          int above = gray + d < 256 ? firstPixel[gray + d] : -1;
+          if (below >= 0 || above >= 0) {
+            grayPixels[gray] = below < 0 ? above : above < 0 ? below : Math.min(below, above);
+            break;
+          }
+        }
+      }
+      return grayPixels;
+    }
+
+    int lookup(int rgb) {
+      int red = rgb >> 16 & 0xff;
+      int green = rgb >> 8 & 0xff;
+      int blue = rgb & 0xff;
+      if (grayPixels != null) {
+        return grayPixels[(red * 77 + green * 150 + blue * 29 + 128) / 256];
+      }
+      int cell = ((red >> CELL_SHIFT) * CELLS_PER_AXIS + (green >> CELL_SHIFT)) * CELLS_PER_AXIS
+          + (blue >> CELL_SHIFT);
+      int end = cellStarts[cell + 1];
+      int pix = 0;
+      int smallestError = Integer.MAX_VALUE;
+      for (int k = cellStarts[cell]; k < end; k++) {
+        int i = candidates[k] & 0xff;
+        int lutrgb = lut[i];
+        int tmp = (lutrgb >> 16 & 0xff) - red;
+        int currentError = tmp * tmp;
+        tmp = (lutrgb >> 8 & 0xff) - green;
+        currentError += tmp * tmp;
+        tmp = (lutrgb & 0xff) - blue;
+        currentError += tmp * tmp;
+        if (currentError < smallestError) {
+          pix = i;
+          smallestError = currentError;
+        }
+      }
+      return pix;
+    }
+  }
 }
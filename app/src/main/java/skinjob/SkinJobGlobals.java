@@ -57,6 +57,13 @@ public final class SkinJobGlobals {
    * concentric true circles of radius 1.0 and radius 1.00027253.
    */
   public static final double maxDegreesPerArcSegment = 90.0;
+  /**
+   * How far, in device pixels, {@link java.awt.geom.ArcIterator} lets its spline stray from the
+   * true arc. Arcs that are big enough on the device to stray further than this with segments of
+   * {@link #maxDegreesPerArcSegment} get more, narrower segments; since the error grows with the
+   * sixth power of the angle, a radius of 64 times that threshold only needs twice as many.
+   */
+  public static final double arcFlatness = 0.1;
   /**
    * Default value for the miterLimit parameter of {@link BasicStroke#BasicStroke(float, int, int,
    * float)} when called from another constructor that doesn't take that parameter. OpenJDK AWT uses
@@ -160,6 +167,55 @@ public final class SkinJobGlobals {
    * See {@link android.graphics.Bitmap#compress}.
    */
   public static volatile int imageQuality = SERIAL_IMAGE_QUALITY;
+
+  /**
+   * Maximum number of threads, including the calling thread, that pure-Java imaging operations
+   * (e.g. {@link java.awt.image.ConvolveOp}) will split an image across. A value of 1 or less
+   * disables multithreading.
+   */
+  public static volatile int imagingThreads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Smallest number of pixels that a pure-Java imaging operation will hand to a single thread.
+   * Images smaller than twice this value are processed entirely on the calling thread, since the
+   * handoff would cost more than it saves.
+   */
+  public static volatile int minPixelsPerImagingBand = 32768;
+
+  /**
+   * Maximum number of threads that will fetch and decode images loaded through {@link
+   * java.awt.Toolkit#getImage} and {@link java.awt.Toolkit#createImage}. Further requests wait in
+   * a queue ordered by {@link java.awt.MediaTracker} ID. Takes effect when the fetcher pool is
+   * first used.
+   */
+  public static volatile int imageFetcherThreads = 4;
+
+  /**
+   * Approximate number of bytes of pixel data that {@link skinjob.util.ImageCache} keeps for
+   * images loaded by {@link java.awt.Toolkit#getImage}. The least recently used images are dropped
+   * from the cache beyond this.
+   */
+  public static volatile long imageCacheMaxBytes = Runtime.getRuntime().maxMemory() / 8;
+
+  /**
+   * If true, AWT events are dispatched on Android's main thread by its {@link android.os.Looper},
+   * rather than on a separate event dispatch thread, so that event handlers can touch the wrapped
+   * Android views directly. Takes effect when an {@link java.awt.EventQueue} next starts
+   * dispatching.
+   */
+  public static volatile boolean dispatchEventsOnMainLooper = false;
+
+  /**
+   * When {@link #dispatchEventsOnMainLooper} is set, the most AWT events dispatched in one turn of
+   * the main {@link android.os.Looper} before it's given back to Android's own messages.
+   */
+  public static volatile int mainLooperEventBatchSize = 32;
+
+  /**
+   * When {@link #dispatchEventsOnMainLooper} is set, a batch of AWT events that holds up the main
+   * {@link android.os.Looper} for at least this many milliseconds is logged as a stall.
+   */
+  public static volatile int mainLooperStallMs = 100;
   private static final Class<?> activityThreadClass;
   private static final Method currentActivityMethod;
 
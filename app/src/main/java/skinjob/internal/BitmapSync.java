@@ -0,0 +1,226 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+import sun.awt.image.DirtyTracker;
+import sun.awt.image.SunWritableRaster;
+
+/**
+ * Keeps an INT_ARGB raster and an ARGB_8888 {@link Bitmap} holding the same image in step. Each
+ * side records the span of rows it has changed since the other side last caught up. Those rows
+ * are copied across with one bulk {@link Bitmap#setPixels} or {@link Bitmap#getPixels} call when
+ * the other side is next used. Both store non-premultiplied ARGB, so no conversion is needed.
+ * <p>
+ * Raster writes are reported through the {@link DirtyTracker} installed on the raster's {@link
+ * DataBufferInt}, which is also told before each write, so that rows the bitmap has changed are
+ * copied in first rather than later copied over the write. While the bitmap has no such rows,
+ * both calls skip the monitor. Canvas drawing is reported by {@link SkinJobGraphics}, which
+ * passes the rows each draw can reach: those of the drawn shape's device-space bounds and the
+ * clip's. It holds this object's monitor from marking them until the draw has finished, so that
+ * a sync to the raster can't run in between and clear rows the draw hasn't reached yet. Once the
+ * raster's array has been handed out, writes to it can't be seen, so every sync to the bitmap
+ * copies the whole raster.
+ */
+public final class BitmapSync implements DirtyTracker {
+  private final Bitmap bitmap;
+  private final int[] data;
+  private final int offset;
+  private final int scanlineStride;
+  private final int width;
+  private final int height;
+
+  /**
+   * Rows {@code [rasterDirtyTop, rasterDirtyBottom)} have changed in the raster but not the bitmap.
+   */
+  private int rasterDirtyTop;
+  private int rasterDirtyBottom;
+  /**
+   * Rows {@code [bitmapDirtyTop, bitmapDirtyBottom)} have changed in the bitmap but not the raster.
+   */
+  private int bitmapDirtyTop;
+  private int bitmapDirtyBottom;
+  /**
+   * Whether the bitmap has rows the raster hasn't caught up with. Read without the lock before
+   * every raster write.
+   */
+  private volatile boolean bitmapDirty;
+  /**
+   * Elements {@code [pendingFrom, pendingTo)} of the raster's array span those written since the
+   * last sync that haven't yet been counted in the raster's dirty rows. Updated without the lock,
+   * so that writing one element costs two comparisons, and turned into rows when syncing. Writes
+   * racing on other threads may be missed, as with any unsynchronized raster writes.
+   */
+  private int pendingFrom = Integer.MAX_VALUE;
+  private int pendingTo = Integer.MIN_VALUE;
+  private boolean untrackable;
+
+  /**
+   * Starts tracking changes to {@code raster}, which must be INT_ARGB and the same size as {@code
+   * bitmap}. Neither side is considered dirty.
+   */
+  BitmapSync(Bitmap bitmap, WritableRaster raster) {
+    this.bitmap = bitmap;
+    SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+    DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+    data = SunWritableRaster.stealData(db, 0);
+    offset = db.getOffset() + sm.getOffset(
+        raster.getMinX() - raster.getSampleModelTranslateX(),
+        raster.getMinY() - raster.getSampleModelTranslateY());
+    scanlineStride = sm.getScanlineStride();
+    width = raster.getWidth();
+    height = raster.getHeight();
+    clearRaster();
+    clearBitmap();
+    SunWritableRaster.setDirtyTracker(db, this);
+  }
+
+  private void clearRaster() {
+    rasterDirtyTop = height;
+    rasterDirtyBottom = 0;
+  }
+
+  private void clearBitmap() {
+    bitmapDirtyTop = height;
+    bitmapDirtyBottom = 0;
+    bitmapDirty = false;
+  }
+
+  @Override
+  public void willWrite() {
+    if (bitmapDirty) {
+      syncToRaster();
+    }
+  }
+
+  @Override
+  public void markDirty(int from, int to) {
+    if (bitmapDirty || to == Integer.MAX_VALUE) {
+      // Rare, and may need the bitmap's rows merged in
+      markDirtyLocked(from, to);
+      return;
+    }
+    if (from < pendingFrom) {
+      pendingFrom = from;
+    }
+    if (to > pendingTo) {
+      pendingTo = to;
+    }
+  }
+
+  private synchronized void markDirtyLocked(int from, int to) {
+    markRasterDirty(rowOf(from), to == Integer.MAX_VALUE ? height : rowOf(to - 1) + 1);
+  }
+
+  /**
+   * Returns the row of element {@code i} of the raster's array, clamped to the raster.
+   */
+  private int rowOf(int i) {
+    return Math.min(Math.max((i - offset) / scanlineStride, 0), height - 1);
+  }
+
+  /**
+   * Adds the rows of the elements written without the lock to the raster's dirty rows.
+   */
+  private void foldPending() {
+    int from = pendingFrom;
+    int to = pendingTo;
+    if (from < to) {
+      pendingFrom = Integer.MAX_VALUE;
+      pendingTo = Integer.MIN_VALUE;
+      markRasterDirty(rowOf(from), rowOf(to - 1) + 1);
+    }
+  }
+
+  @Override
+  public synchronized void markUntrackable() {
+    syncToRaster();
+    untrackable = true;
+  }
+
+  /**
+   * Notes that rows {@code [top, bottom)} of the raster have changed. Rows the bitmap has also
+   * changed since the last sync are resolved in favor of the raster, whose write is the later one;
+   * the bitmap's other rows are copied in first, so that neither side's rows overwrite the other's.
+   * Writes that call {@link #willWrite} first never overlap the bitmap's rows.
+   */
+  synchronized void markRasterDirty(int top, int bottom) {
+    if (top < bitmapDirtyBottom && bitmapDirtyTop < bottom) {
+      copyToRaster(bitmapDirtyTop, Math.min(top, bitmapDirtyBottom));
+      copyToRaster(Math.max(bottom, bitmapDirtyTop), bitmapDirtyBottom);
+      clearBitmap();
+    }
+    if (top < rasterDirtyTop) {
+      rasterDirtyTop = top;
+    }
+    if (bottom > rasterDirtyBottom) {
+      rasterDirtyBottom = bottom;
+    }
+  }
+
+  /**
+   * Notes that the whole bitmap has changed or is about to change, after bringing it up to date
+   * with the raster so that the change isn't later overwritten by older raster rows.
+   */
+  synchronized void markBitmapDirty() {
+    markBitmapDirty(0, height);
+  }
+
+  /**
+   * Notes that rows {@code [top, bottom)} of the bitmap have changed or are about to change, after
+   * bringing the bitmap up to date with the raster. An empty span only does the latter.
+   */
+  synchronized void markBitmapDirty(int top, int bottom) {
+    syncToBitmap();
+    top = Math.max(top, 0);
+    bottom = Math.min(bottom, height);
+    if (top >= bottom) {
+      return;
+    }
+    if (top < bitmapDirtyTop) {
+      bitmapDirtyTop = top;
+    }
+    if (bottom > bitmapDirtyBottom) {
+      bitmapDirtyBottom = bottom;
+    }
+    bitmapDirty = true;
+  }
+
+  /**
+   * Copies the rows that have changed in the raster to the bitmap.
+   */
+  synchronized void syncToBitmap() {
+    foldPending();
+    if (untrackable) {
+      rasterDirtyTop = 0;
+      rasterDirtyBottom = height;
+    }
+    if (rasterDirtyTop < rasterDirtyBottom) {
+      bitmap.setPixels(data, offset + rasterDirtyTop * scanlineStride, scanlineStride, 0,
+          rasterDirtyTop, width, rasterDirtyBottom - rasterDirtyTop);
+    }
+    clearRaster();
+  }
+
+  /**
+   * Copies the rows that have changed in the bitmap to the raster. This writes the raster's array
+   * directly, so it doesn't dirty the raster.
+   */
+  synchronized void syncToRaster() {
+    copyToRaster(bitmapDirtyTop, bitmapDirtyBottom);
+    clearBitmap();
+  }
+
+  /**
+   * Copies rows {@code [top, bottom)} of the bitmap to the raster, if there are any.
+   */
+  private void copyToRaster(int top, int bottom) {
+    if (top < bottom) {
+      bitmap.getPixels(data, offset + top * scanlineStride, scanlineStride, 0, top, width,
+          bottom - top);
+    }
+  }
+}
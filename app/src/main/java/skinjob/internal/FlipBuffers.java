@@ -0,0 +1,275 @@
+package skinjob.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff.Mode;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.View.OnLayoutChangeListener;
+
+import java.awt.BufferCapabilities.FlipContents;
+import java.awt.ImageCapabilities;
+import java.awt.Transparency;
+import java.awt.image.VolatileImage;
+
+/**
+ * The page-flipping buffers of a {@link java.awt.image.BufferStrategy} on an Android {@link View}.
+ * The view shows the front buffer through a background drawable, so a flip only changes which
+ * bitmap that drawable draws, and invalidates the view; pixels are copied only when the requested
+ * {@link FlipContents} needs it.
+ * <p>
+ * The buffers form a ring, in which the back buffer is always the one after the front buffer.
+ * Flipping makes the back buffer the new front buffer, and the buffer that's been off screen the
+ * longest the new back buffer. With two buffers, that's the old front buffer, which the main
+ * thread may still be drawing; so the new back buffer is readied on the main thread, after any
+ * draw of the old front has finished, and {@link #getBackBuffer} and {@link #flip} wait for that.
+ * <p>
+ * The buffers follow the view's size: when a layout changes it, they're replaced with new ones
+ * filled with the background color. The old ones aren't recycled, since a caller may still be
+ * drawing on one.
+ */
+public class FlipBuffers {
+  private static final Paint COPY_PAINT = new Paint();
+
+  static {
+    COPY_PAINT.setXfermode(new PorterDuffXfermode(Mode.SRC));
+  }
+
+  private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  private final View view;
+  private SkinJobVolatileImage[] buffers;
+  private final FrontDrawable drawable = new FrontDrawable();
+  private final OnLayoutChangeListener layoutListener = new OnLayoutChangeListener() {
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft,
+        int oldTop, int oldRight, int oldBottom) {
+      resize(right - left, bottom - top);
+    }
+  };
+  private int front;
+  private int backgroundColor;
+  /**
+   * Readies the back buffer after the last flip, until it has run on the main thread; else null.
+   */
+  private Runnable pendingPrepare;
+  private boolean disposed;
+
+  /**
+   * Creates {@code numBuffers} buffers of the given size, including the front buffer, and has
+   * {@code view} show the front one. They start out filled with {@code backgroundColor}.
+   */
+  public FlipBuffers(final View view, int numBuffers, int width, int height,
+      int backgroundColor) {
+    this.view = view;
+    this.backgroundColor = backgroundColor;
+    buffers = createBuffers(numBuffers, width, height, backgroundColor);
+    drawable.bitmap = buffers[0].sjGetAndroidBitmap();
+    view.post(new Runnable() {
+      @Override
+      public void run() {
+        if (!isDisposed()) {
+          view.setBackground(drawable);
+          view.addOnLayoutChangeListener(layoutListener);
+          // The view may have been laid out since its size was read
+          if (view.getWidth() > 0 && view.getHeight() > 0) {
+            resize(view.getWidth(), view.getHeight());
+          }
+        }
+      }
+    });
+  }
+
+  private static SkinJobVolatileImage[] createBuffers(
+      int numBuffers, int width, int height, int backgroundColor) {
+    SkinJobVolatileImage[] buffers = new SkinJobVolatileImage[numBuffers];
+    ImageCapabilities caps = new ImageCapabilities(true);
+    for (int i = 0; i < numBuffers; i++) {
+      buffers[i] = new SkinJobVolatileImage(width, height, caps, Transparency.TRANSLUCENT);
+      buffers[i].sjGetAndroidBitmap().eraseColor(backgroundColor);
+    }
+    return buffers;
+  }
+
+  /**
+   * Returns the buffer that's drawn on between flips, once it's ready.
+   */
+  public synchronized VolatileImage getBackBuffer() {
+    awaitBackBuffer();
+    return disposed ? null : buffers[backIndex()];
+  }
+
+  /**
+   * Shows the back buffer, and readies a new back buffer with the contents {@code flipAction} asks
+   * for. The whole buffer is shown, which covers the region from ({@code x1}, {@code y1}) to
+   * ({@code x2}, {@code y2}) that was asked for; only that region of the view is invalidated.
+   */
+  public synchronized void flip(
+      int x1, int y1, int x2, int y2, final FlipContents flipAction, final int backgroundColor) {
+    awaitBackBuffer();
+    if (disposed) {
+      return;
+    }
+    this.backgroundColor = backgroundColor;
+    final Bitmap oldFront = buffers[front].sjGetAndroidBitmap();
+    front = backIndex();
+    final Bitmap newFront = buffers[front].sjGetAndroidBitmap();
+    final Bitmap newBack = buffers[backIndex()].sjGetAndroidBitmap();
+    drawable.bitmap = newFront;
+    view.postInvalidateOnAnimation(x1, y1, x2, y2);
+    // Runs on the main thread, which draws the front buffer, so it can't overlap a draw of newBack
+    pendingPrepare = new Runnable() {
+      @Override
+      public void run() {
+        synchronized (FlipBuffers.this) {
+          if (pendingPrepare != this) {
+            return; // Already run, or the buffers were replaced
+          }
+          pendingPrepare = null;
+          FlipBuffers.this.notifyAll();
+          if (disposed) {
+            return;
+          }
+          if (flipAction == FlipContents.BACKGROUND) {
+            newBack.eraseColor(backgroundColor);
+          } else if (flipAction == FlipContents.PRIOR) {
+            if (newBack != oldFront) {
+              copy(oldFront, newBack);
+            }
+          } else if (flipAction == FlipContents.COPIED) {
+            // The back buffer must look as if it hadn't moved
+            copy(newFront, newBack);
+          }
+        }
+      }
+    };
+    if (isMainThread()) {
+      pendingPrepare.run();
+    } else {
+      mainHandler.post(pendingPrepare);
+    }
+  }
+
+  /**
+   * Waits until the back buffer has been readied after the last flip. On the main thread, which
+   * the wait would block, readies it directly instead.
+   */
+  private void awaitBackBuffer() {
+    if (pendingPrepare != null && isMainThread()) {
+      pendingPrepare.run();
+    }
+    boolean interrupted = false;
+    while (pendingPrepare != null && !disposed) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        // Drawing on the back buffer before it's ready could race with the main thread
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Replaces the buffers with ones of the given size, unless they're that size already. Runs on
+   * the main thread.
+   */
+  private synchronized void resize(int width, int height) {
+    if (disposed || width <= 0 || height <= 0
+        || (width == buffers[0].getWidth() && height == buffers[0].getHeight())) {
+      return;
+    }
+    buffers = createBuffers(buffers.length, width, height, backgroundColor);
+    front = 0;
+    // The new buffers need no readying, and a pending prepare would touch the old ones
+    pendingPrepare = null;
+    notifyAll();
+    drawable.bitmap = buffers[0].sjGetAndroidBitmap();
+    view.invalidate();
+  }
+
+  private static boolean isMainThread() {
+    return Looper.myLooper() == Looper.getMainLooper();
+  }
+
+  /**
+   * Stops showing the buffers and frees them. The view's background becomes {@code
+   * backgroundColor}.
+   */
+  public void dispose(final int backgroundColor) {
+    synchronized (this) {
+      if (disposed) {
+        return;
+      }
+      disposed = true;
+      notifyAll();
+    }
+    // The buffers may still be drawn until the background is replaced on the main thread
+    view.post(new Runnable() {
+      @Override
+      public void run() {
+        view.removeOnLayoutChangeListener(layoutListener);
+        if (view.getBackground() == drawable) {
+          view.setBackgroundColor(backgroundColor);
+        }
+        SkinJobVolatileImage[] buffers;
+        synchronized (FlipBuffers.this) {
+          buffers = FlipBuffers.this.buffers;
+        }
+        for (SkinJobVolatileImage buffer : buffers) {
+          buffer.sjGetAndroidBitmap().recycle();
+        }
+      }
+    });
+  }
+
+  private synchronized boolean isDisposed() {
+    return disposed;
+  }
+
+  private int backIndex() {
+    return (front + 1) % buffers.length;
+  }
+
+  private static void copy(Bitmap src, Bitmap dst) {
+    new Canvas(dst).drawBitmap(src, 0, 0, COPY_PAINT);
+  }
+
+  /**
+   * Draws whichever buffer is in front.
+   */
+  private static final class FrontDrawable extends Drawable {
+    volatile Bitmap bitmap;
+
+    @Override
+    public void draw(Canvas canvas) {
+      Bitmap front = bitmap;
+      if (front != null && !front.isRecycled()) {
+        canvas.drawBitmap(front, 0, 0, null);
+      }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+      // No-op: the buffers are drawn as they are
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+      // No-op: the buffers are drawn as they are
+    }
+
+    @Override
+    public int getOpacity() {
+      return PixelFormat.TRANSLUCENT;
+    }
+  }
+}
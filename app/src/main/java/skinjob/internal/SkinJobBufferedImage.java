@@ -4,7 +4,11 @@ import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
 
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -20,25 +24,146 @@ public class SkinJobBufferedImage extends BufferedImage implements SkinJobAndroi
     Serializable {
   private static final long serialVersionUID = -4732300791764352434L;
   private transient Bitmap androidBitmap;
+  /**
+   * Keeps the raster and {@link #androidBitmap} consistent. Null while the superclass constructor
+   * runs, and after deserialization if the raster couldn't be rebuilt.
+   */
+  private transient BitmapSync sync;
 
   public SkinJobBufferedImage(Bitmap androidBitmap) {
     super(androidBitmap.getWidth(), androidBitmap.getHeight(), TYPE_INT_ARGB);
-    this.androidBitmap = androidBitmap;
-    // TODO: Convert androidBitmap contents to the BufferedImage contents
+    this.androidBitmap = androidBitmap.isMutable() && androidBitmap.getConfig() == Config.ARGB_8888
+        ? androidBitmap : androidBitmap.copy(Config.ARGB_8888, true);
+    sync = new BitmapSync(this.androidBitmap, super.getRaster());
+    // The raster is filled from the bitmap when it's first read
+    sync.markBitmapDirty();
   }
 
   public SkinJobBufferedImage(int width, int height) {
     super(width, height, TYPE_INT_ARGB);
     androidBitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+    sync = new BitmapSync(androidBitmap, super.getRaster());
   }
 
   @Override
   public Bitmap sjGetAndroidBitmap() {
+    if (sync != null) {
+      sync.syncToBitmap();
+    }
     return androidBitmap;
   }
 
+  @Override
+  public void sjMarkDirty() {
+    if (sync != null) {
+      sync.markRasterDirty(0, getHeight());
+    }
+  }
+
+  private void syncToRaster() {
+    if (sync != null) {
+      sync.syncToRaster();
+    }
+  }
+
+  @Override
+  public Graphics2D createGraphics() {
+    if (sync == null) {
+      return super.createGraphics();
+    }
+    sync.syncToBitmap();
+    return new SkinJobGraphics(androidBitmap, sync);
+  }
+
+  @Override
+  public WritableRaster getRaster() {
+    syncToRaster();
+    return super.getRaster();
+  }
+
+  @Override
+  public WritableRaster getAlphaRaster() {
+    syncToRaster();
+    return super.getAlphaRaster();
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    syncToRaster();
+    return super.getRGB(x, y);
+  }
+
+  @Override
+  public int[] getRGB(
+      int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+    syncToRaster();
+    return super.getRGB(startX, startY, w, h, rgbArray, offset, scansize);
+  }
+
+  @Override
+  public synchronized void setRGB(int x, int y, int rgb) {
+    syncToRaster();
+    super.setRGB(x, y, rgb);
+  }
+
+  @Override
+  public void setRGB(
+      int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+    syncToRaster();
+    super.setRGB(startX, startY, w, h, rgbArray, offset, scansize);
+  }
+
+  @Override
+  public BufferedImage getSubimage(int x, int y, int w, int h) {
+    syncToRaster();
+    return super.getSubimage(x, y, w, h);
+  }
+
+  @Override
+  public void coerceData(boolean isAlphaPremultiplied) {
+    syncToRaster();
+    super.coerceData(isAlphaPremultiplied);
+  }
+
+  @Override
+  public Raster getTile(int tileX, int tileY) {
+    syncToRaster();
+    return super.getTile(tileX, tileY);
+  }
+
+  @Override
+  public Raster getData() {
+    syncToRaster();
+    return super.getData();
+  }
+
+  @Override
+  public Raster getData(Rectangle rect) {
+    syncToRaster();
+    return super.getData(rect);
+  }
+
+  @Override
+  public WritableRaster copyData(WritableRaster outRaster) {
+    syncToRaster();
+    return super.copyData(outRaster);
+  }
+
+  @Override
+  public void setData(Raster r) {
+    syncToRaster();
+    super.setData(r);
+  }
+
+  @Override
+  public WritableRaster getWritableTile(int tileX, int tileY) {
+    syncToRaster();
+    return super.getWritableTile(tileX, tileY);
+  }
+
   private void writeObject(ObjectOutputStream out) throws IOException {
     out.defaultWriteObject();
+    sjGetAndroidBitmap();
     ByteArrayOutputStream stream = new ByteArrayOutputStream();
     androidBitmap.compress(
         SkinJobGlobals.SERIAL_IMAGE_FORMAT, SkinJobGlobals.SERIAL_IMAGE_QUALITY, stream);
@@ -50,9 +175,16 @@ public class SkinJobBufferedImage extends BufferedImage implements SkinJobAndroi
     try {
       byte[] androidBitmapBytes = (byte[]) in.readObject();
       androidBitmap = BitmapFactory
-          .decodeByteArray(androidBitmapBytes, 0, androidBitmapBytes.length);
+          .decodeByteArray(androidBitmapBytes, 0, androidBitmapBytes.length)
+          .copy(Config.ARGB_8888, true);
     } catch (ClassCastException e) {
       throw new IOException(e);
     }
+    WritableRaster raster = super.getRaster();
+    if (raster != null && raster.getWidth() == androidBitmap.getWidth()
+        && raster.getHeight() == androidBitmap.getHeight()) {
+      sync = new BitmapSync(androidBitmap, raster);
+      sync.markBitmapDirty();
+    }
   }
 }
@@ -2,19 +2,20 @@ package skinjob.internal;
 
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.ColorFilter;
 import android.graphics.DashPathEffect;
 import android.graphics.Paint;
 import android.graphics.Paint.Cap;
 import android.graphics.Paint.Join;
 import android.graphics.Paint.Style;
 import android.graphics.Path;
+import android.graphics.RectF;
 import android.graphics.PorterDuff.Mode;
 import android.graphics.PorterDuffColorFilter;
 import android.os.Build;
 import android.support.annotation.RequiresApi;
-import android.text.SpannableStringBuilder;
+import android.text.StaticLayout;
 import android.util.Log;
-import android.widget.TextView;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -34,7 +35,7 @@ import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
-import java.awt.geom.Point2D;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
@@ -42,16 +43,17 @@ import java.awt.image.ImageObserver;
 import java.awt.image.RenderedImage;
 import java.awt.image.renderable.RenderableImage;
 import java.text.AttributedCharacterIterator;
-import java.text.AttributedCharacterIterator.Attribute;
-import java.text.CharacterIterator;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import skinjob.SkinJobGlobals;
 import skinjob.util.Geometry;
+import sun.awt.SunToolkit;
+import sun.awt.image.ToolkitImage;
 
 import static java.awt.BasicStroke.CAP_BUTT;
 import static java.awt.BasicStroke.CAP_ROUND;
@@ -63,27 +65,89 @@ import static skinjob.util.SkinJobUtil.asAndroidBitmap;
 
 /**
  * SkinJob Android implementation of {@link Graphics}.
+ * <p>
+ * Graphics made by {@link #create()} draw on the same {@link Canvas} as the one they were made
+ * from, and share its {@link Paint}s until either changes them. Each graphics keeps its clip and
+ * transform as one save level over the canvas's initial state, and puts it back on the canvas only
+ * when it draws after another graphics has, so switching between nested graphics costs a {@link
+ * Canvas#restoreToCount} and a {@link Canvas#save} however deep they're nested.
  */
 public class SkinJobGraphics extends Graphics2D {
   private static final String TAG = "SkinJobGraphics";
   private static final Color TRANSPARENT = new Color(0);
+  private static final AffineTransform IDENTITY = new AffineTransform();
+  private static final double SQRT_2 = Math.sqrt(2);
+  private static final int MAX_XOR_FILTERS = 16;
+  /**
+   * XOR-mode filters by alternation color, since a few colors are set over and over.
+   */
+  private static final Map<Integer, ColorFilter> xorFilters =
+      new LinkedHashMap<Integer, ColorFilter>(16, 0.75f, true) {
+        private static final long serialVersionUID = 4215385931532871745L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ColorFilter> eldest) {
+          return size() > MAX_XOR_FILTERS;
+        }
+      };
   private final Set<CancelableImageObserver> pendingObservers = Collections.synchronizedSet(
       new HashSet<CancelableImageObserver>());
+  private final SharedCanvas shared;
   private final Canvas canvas;
   private final Bitmap bitmap;
-  private final Paint pen;
-  private final Paint brush;
+  private final BitmapSync sync;
+  private Paint pen;
+  private Paint brush;
   private final Paint eraser;
+  /**
+   * Whether {@link #pen} and {@link #brush} may be in use by another graphics created from or by
+   * this one, and so must be copied before they're changed.
+   */
+  private boolean paintsShared;
+  /**
+   * The color filter on {@link #pen} and {@link #brush}, or null in paint mode.
+   */
+  private ColorFilter colorFilter;
+  /**
+   * The stroke {@link #pen} was last set up for, so that setting an equal one again is free.
+   */
+  private BasicStroke penStroke;
   private final RenderingHints renderingHints = SkinJobGlobals.defaultRenderingHints;
   private Stroke stroke = new BasicStroke();
   private java.awt.Paint awtPaint;
   private int color = Color.BLACK.getRGB();
+  /**
+   * The clip in device space, or null if unclipped. Rectangular clips are kept as {@link
+   * Rectangle2D}s, and as {@link Rectangle}s when their edges are whole pixels, so that clipping to
+   * a rectangle, the usual case, needs no {@link Area} arithmetic. Never modified in place, since
+   * graphics created from this one share it.
+   */
   private Shape clip;
-  // TODO: Most methods currently don't apply the transform; they need to!
-  private AffineTransform transform = new AffineTransform();
+  private final double[] scratchPoints = new double[8];
+  /**
+   * The user-to-device transform. Only ever changed in place, and copied when handed out, so that
+   * drawing doesn't have to copy it.
+   */
+  private final AffineTransform transform = new AffineTransform();
+  /**
+   * Whether the canvas still has this graphics' clip and transform, if it was the last to draw.
+   * Each draw brings the canvas up to date first, so the state is converted once per change rather
+   * than once per primitive.
+   */
+  private volatile boolean stateValid;
+  private final RectF scratchRect = new RectF();
   private Font font = SkinJobGlobals.defaultFont;
 
   public SkinJobGraphics(Bitmap androidBitmap) {
+    this(androidBitmap, null);
+  }
+
+  /**
+   * @param sync if not null, told before each draw so that a raster sharing the bitmap's contents
+   *     stays consistent with it
+   */
+  SkinJobGraphics(Bitmap androidBitmap, BitmapSync sync) {
+    this.sync = sync;
     pen = new Paint();
     pen.setStrokeWidth(0);
     pen.setStyle(Style.STROKE);
@@ -94,16 +158,162 @@ public class SkinJobGraphics extends Graphics2D {
     eraser.setAlpha(0);
     bitmap = androidBitmap;
     canvas = new Canvas(androidBitmap);
-    clip = new Rectangle2D.Double(0, 0, androidBitmap.getWidth(), androidBitmap.getHeight());
+    shared = new SharedCanvas(canvas, sync);
+    clip = new Rectangle(0, 0, androidBitmap.getWidth(), androidBitmap.getHeight());
+  }
+
+  /**
+   * Creates a graphics with the same state as {@code parent}, which draws on the same canvas.
+   */
+  private SkinJobGraphics(SkinJobGraphics parent) {
+    shared = parent.shared;
+    canvas = parent.canvas;
+    bitmap = parent.bitmap;
+    sync = parent.sync;
+    eraser = parent.eraser;
+    synchronized (parent) {
+      pen = parent.pen;
+      brush = parent.brush;
+      parent.paintsShared = true;
+      paintsShared = true;
+      colorFilter = parent.colorFilter;
+      penStroke = parent.penStroke;
+      stroke = parent.stroke;
+      awtPaint = parent.awtPaint;
+      color = parent.color;
+      clip = parent.clip;
+      transform.setTransform(parent.transform);
+      font = parent.font;
+    }
   }
 
   public Bitmap sjGetAndroidBitmap() {
     return bitmap;
   }
 
+  /**
+   * Brings the canvas up to date with this graphics' clip and transform before a draw. Callers hold
+   * the shared canvas's lock from here until the draw has finished, so that no other graphics on
+   * the canvas can put its own state on it or draw in between. This graphics' lock is taken inside
+   * the shared canvas's, which is the only order the two are ever nested in; so callers mustn't
+   * hold this graphics' lock, or two graphics on one canvas could deadlock.
+   */
+  private void willDraw() {
+    if (sync != null) {
+      int top;
+      int bottom;
+      synchronized (this) {
+        top = clipTop();
+        bottom = clipBottom();
+      }
+      sync.markBitmapDirty(top, bottom);
+    }
+    applyState();
+  }
+
+  /**
+   * Like {@link #willDraw()}, for a draw inside the user-space rectangle from ({@code x1}, {@code
+   * y1}) to ({@code x2}, {@code y2}) with {@code paint}, so that only the bitmap rows it can reach
+   * are marked changed. Outsets the rectangle for {@code paint}'s stroke, if it strokes, and by a
+   * pixel for antialiasing.
+   */
+  private void willDraw(double x1, double y1, double x2, double y2, Paint paint) {
+    if (sync != null) {
+      if (paint != null && paint.getStyle() != Style.FILL) {
+        // Square caps reach half the width times root 2 past an end, and miters farther
+        double outset = paint.getStrokeWidth() / 2 * (paint.getStrokeJoin() == Join.MITER
+            ? Math.max(paint.getStrokeMiter(), SQRT_2) : SQRT_2);
+        x1 -= outset;
+        y1 -= outset;
+        x2 += outset;
+        y2 += outset;
+      }
+      int top;
+      int bottom;
+      synchronized (this) {
+        double[] points = scratchPoints;
+        points[0] = x1;
+        points[1] = y1;
+        points[2] = x2;
+        points[3] = y1;
+        points[4] = x1;
+        points[5] = y2;
+        points[6] = x2;
+        points[7] = y2;
+        transform.transform(points, 0, points, 0, 4);
+        double minY = Math.min(Math.min(points[1], points[3]), Math.min(points[5], points[7]));
+        double maxY = Math.max(Math.max(points[1], points[3]), Math.max(points[5], points[7]));
+        top = clipTop();
+        bottom = clipBottom();
+        if (minY <= maxY) { // false if NaN
+          top = Math.max(top, (int) Math.floor(minY) - 1);
+          bottom = Math.min(bottom, (int) Math.ceil(maxY) + 1);
+        }
+      }
+      sync.markBitmapDirty(top, bottom);
+    }
+    applyState();
+  }
+
+  /**
+   * Returns the first bitmap row inside the clip.
+   */
+  private int clipTop() {
+    return clip == null ? 0 : Math.max((int) Math.floor(clip.getBounds2D().getMinY()), 0);
+  }
+
+  /**
+   * Returns the bitmap row after the last one inside the clip.
+   */
+  private int clipBottom() {
+    int height = bitmap.getHeight();
+    return clip == null
+        ? height : Math.min((int) Math.ceil(clip.getBounds2D().getMaxY()), height);
+  }
+
+  /**
+   * The part of {@link #willDraw()} that puts this graphics' clip and transform on the canvas.
+   * Called with the shared canvas's lock held.
+   */
+  private void applyState() {
+    if (shared.applied != this || !stateValid) {
+      canvas.restoreToCount(shared.baseSaveCount);
+      canvas.save();
+      synchronized (this) {
+        if (clip instanceof Rectangle2D) {
+          Rectangle2D r = (Rectangle2D) clip;
+          if (r.getMinX() > 0 || r.getMinY() > 0 || r.getMaxX() < bitmap.getWidth()
+              || r.getMaxY() < bitmap.getHeight()) {
+            canvas.clipRect((float) r.getMinX(), (float) r.getMinY(), (float) r.getMaxX(),
+                (float) r.getMaxY());
+          }
+        } else if (clip != null) {
+          canvas.clipPath(Geometry.asAndroidPath(clip, IDENTITY));
+        }
+        if (!transform.isIdentity()) {
+          canvas.concat(Geometry.asAndroidMatrix(transform));
+        }
+        stateValid = true;
+      }
+      shared.applied = this;
+    }
+  }
+
+  /**
+   * Copies {@link #pen} and {@link #brush} if another graphics may be using them, so that they can
+   * be changed.
+   */
+  private void ownPaints() {
+    if (paintsShared) {
+      pen = new Paint(pen);
+      brush = new Paint(brush);
+      paintsShared = false;
+    }
+  }
+
   @Override
   public Graphics create() {
-    return null;
+    return new SkinJobGraphics(this);
   }
 
   @Override
@@ -117,7 +327,12 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   @Override
-  public void setPaintMode() {
+  public synchronized void setPaintMode() {
+    if (colorFilter == null) {
+      return;
+    }
+    colorFilter = null;
+    ownPaints();
     brush.setColorFilter(null);
     pen.setColorFilter(null);
   }
@@ -129,9 +344,26 @@ public class SkinJobGraphics extends Graphics2D {
    * @param c1 the XOR alternation color
    */
   @Override
-  public void setXORMode(Color c1) {
-    brush.setColorFilter(new PorterDuffColorFilter(c1.getRGB(), Mode.XOR));
-    pen.setColorFilter(new PorterDuffColorFilter(c1.getRGB(), Mode.XOR));
+  public synchronized void setXORMode(Color c1) {
+    ColorFilter filter = getXorFilter(c1.getRGB());
+    if (filter == colorFilter) {
+      return;
+    }
+    colorFilter = filter;
+    ownPaints();
+    brush.setColorFilter(filter);
+    pen.setColorFilter(filter);
+  }
+
+  private static ColorFilter getXorFilter(int rgb) {
+    synchronized (xorFilters) {
+      ColorFilter filter = xorFilters.get(rgb);
+      if (filter == null) {
+        filter = new PorterDuffColorFilter(rgb, Mode.XOR);
+        xorFilters.put(rgb, filter);
+      }
+      return filter;
+    }
   }
 
   @Override
@@ -150,39 +382,117 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   @Override
-  public Rectangle getClipBounds() {
-    if (clip == null) {
-      return null;
-    } else {
-      return clip.getBounds();
-    }
+  public synchronized Rectangle getClipBounds() {
+    Shape userClip = getClip();
+    return userClip == null ? null : userClip.getBounds();
   }
 
   @Override
-  public synchronized void clipRect(int x, int y, int width, int height) {
-    if (clip == null) {
-      // No existing clip to intersect with
-      setClip(x, y, width, height);
-    } else {
-      Area clipArea = Geometry.asArea(clip);
-      clipArea.intersect(new Area(new Rectangle2D.Double(x, y, width, height)));
-      clip = clipArea;
-    }
+  public void clipRect(int x, int y, int width, int height) {
+    clip(new Rectangle(x, y, width, height));
   }
 
   @Override
   public void setClip(int x, int y, int width, int height) {
-    clip = new Rectangle2D.Double(x, y, width, height);
+    setClip(new Rectangle(x, y, width, height));
   }
 
   @Override
-  public Shape getClip() {
-    return clip;
+  public synchronized Shape getClip() {
+    if (clip == null) {
+      return null;
+    }
+    try {
+      if (clip instanceof Rectangle2D) {
+        Rectangle2D userRect = mapRect((Rectangle2D) clip, true);
+        if (userRect != null) {
+          return userRect;
+        }
+      }
+      if (transform.isIdentity()) {
+        return clip;
+      }
+      return transform.createInverse().createTransformedShape(clip);
+    } catch (NoninvertibleTransformException e) {
+      return null;
+    }
   }
 
   @Override
-  public void setClip(Shape clip) {
-    this.clip = clip;
+  public synchronized void setClip(Shape clip) {
+    this.clip = clip == null ? null : toDevice(clip);
+    stateValid = false;
+  }
+
+  /**
+   * Returns {@code s} transformed from user space to device space.
+   */
+  private Shape toDevice(Shape s) {
+    if (s instanceof Rectangle2D) {
+      try {
+        Rectangle2D deviceRect = mapRect((Rectangle2D) s, false);
+        if (deviceRect != null) {
+          return deviceRect;
+        }
+      } catch (NoninvertibleTransformException e) {
+        throw new AssertionError(e); // only thrown when inverting
+      }
+    }
+    return transform.isIdentity() ? s : transform.createTransformedShape(s);
+  }
+
+  /**
+   * Returns a copy of {@code r} transformed from user space to device space, or the other way if
+   * {@code inverse}; or null if the transform doesn't map rectangles to rectangles. The copy is a
+   * {@link Rectangle} if its edges are whole pixels.
+   */
+  private Rectangle2D mapRect(Rectangle2D r, boolean inverse)
+      throws NoninvertibleTransformException {
+    if ((transform.getType()
+        & (AffineTransform.TYPE_GENERAL_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM)) != 0) {
+      return null;
+    }
+    double[] points = scratchPoints;
+    points[0] = r.getMinX();
+    points[1] = r.getMinY();
+    points[2] = r.getMaxX();
+    points[3] = r.getMaxY();
+    if (inverse) {
+      transform.inverseTransform(points, 0, points, 0, 2);
+    } else {
+      transform.transform(points, 0, points, 0, 2);
+    }
+    double x1 = Math.min(points[0], points[2]);
+    double y1 = Math.min(points[1], points[3]);
+    double x2 = Math.max(points[0], points[2]);
+    double y2 = Math.max(points[1], points[3]);
+    if (isInt(x1) && isInt(y1) && isInt(x2 - x1) && isInt(y2 - y1)) {
+      return new Rectangle((int) x1, (int) y1, (int) (x2 - x1), (int) (y2 - y1));
+    }
+    return new Rectangle2D.Double(x1, y1, x2 - x1, y2 - y1);
+  }
+
+  private static boolean isInt(double d) {
+    return d == (int) d;
+  }
+
+  /**
+   * Returns the intersection of two device-space clips, as a rectangle if both are.
+   */
+  private static Shape intersectClips(Shape a, Shape b) {
+    if (a instanceof Rectangle && b instanceof Rectangle) {
+      Rectangle r = ((Rectangle) a).intersection((Rectangle) b);
+      r.width = Math.max(r.width, 0);
+      r.height = Math.max(r.height, 0);
+      return r;
+    }
+    if (a instanceof Rectangle2D && b instanceof Rectangle2D) {
+      Rectangle2D r = new Rectangle2D.Double();
+      Rectangle2D.intersect((Rectangle2D) a, (Rectangle2D) b, r);
+      r.setRect(r.getX(), r.getY(), Math.max(r.getWidth(), 0), Math.max(r.getHeight(), 0));
+      return r;
+    }
+    return Geometry.getIntersection(a, b);
   }
 
   @Override
@@ -192,65 +502,103 @@ public class SkinJobGraphics extends Graphics2D {
 
   @Override
   public void drawLine(int x1, int y1, int x2, int y2) {
-    canvas.drawLine(x1, y1, x2, y2, pen);
+    synchronized (shared.lock) {
+      willDraw(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2), pen);
+      canvas.drawLine(x1, y1, x2, y2, pen);
+    }
   }
 
   @Override
   public void fillRect(int x, int y, int width, int height) {
-    canvas.drawRect(x, y, x + width, y + height, brush);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, brush);
+      canvas.drawRect(x, y, x + width, y + height, brush);
+    }
   }
 
   @Override
   public void clearRect(int x, int y, int width, int height) {
-    canvas.drawRect(x, y, x + width, y + height, eraser);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, eraser);
+      canvas.drawRect(x, y, x + width, y + height, eraser);
+    }
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   @Override
   public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
-    canvas.drawRoundRect(x, y, x + width, y + height, arcWidth, arcHeight, pen);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, pen);
+      canvas.drawRoundRect(x, y, x + width, y + height, arcWidth, arcHeight, pen);
+    }
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   @Override
   public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
-    canvas.drawRoundRect(x, y, x + width, y + height, arcWidth, arcHeight, brush);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, brush);
+      canvas.drawRoundRect(x, y, x + width, y + height, arcWidth, arcHeight, brush);
+    }
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   @Override
   public void drawOval(int x, int y, int width, int height) {
-    canvas.drawOval(x, y, x + width, y + height, pen);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, pen);
+      canvas.drawOval(x, y, x + width, y + height, pen);
+    }
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   @Override
   public void fillOval(int x, int y, int width, int height) {
-    canvas.drawOval(x, y, x + width, y + height, brush);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, brush);
+      canvas.drawOval(x, y, x + width, y + height, brush);
+    }
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   @Override
   public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
-    canvas.drawArc(x, y, x + width, y + height, startAngle, arcAngle, false, pen);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, pen);
+      canvas.drawArc(x, y, x + width, y + height, startAngle, arcAngle, false, pen);
+    }
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   @Override
   public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
-    canvas.drawArc(x, y, x + width, y + height, startAngle, arcAngle, false, brush);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, brush);
+      canvas.drawArc(x, y, x + width, y + height, startAngle, arcAngle, false, brush);
+    }
   }
 
   protected void drawPath(int[] xPoints, int[] yPoints, int nPoints, boolean close, Paint paint) {
     Path path = new Path();
     path.moveTo(xPoints[0], yPoints[0]);
+    int minY = yPoints[0];
+    int maxY = yPoints[0];
+    int minX = xPoints[0];
+    int maxX = xPoints[0];
     for (int i = 1; i < nPoints; i++) {
       path.lineTo(xPoints[i], yPoints[i]);
+      minX = Math.min(minX, xPoints[i]);
+      maxX = Math.max(maxX, xPoints[i]);
+      minY = Math.min(minY, yPoints[i]);
+      maxY = Math.max(maxY, yPoints[i]);
     }
     if (close) {
       path.lineTo(xPoints[0], yPoints[0]);
     }
-    canvas.drawPath(path, paint);
+    synchronized (shared.lock) {
+      willDraw(minX, minY, maxX, maxY, paint);
+      canvas.drawPath(path, paint);
+    }
   }
 
   @Override
@@ -269,16 +617,21 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   @Override
-  public synchronized boolean drawImage(Image img, int x, int y, ImageObserver observer) {
-    AffineTransform combinedTransform = new AffineTransform(transform);
-    combinedTransform.translate(x, y);
-    canvas.drawBitmap(asAndroidBitmap(img),
-        Geometry.transformToMatrix(combinedTransform), brush);
-    return true;
+  public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+    boolean loaded = isLoaded(img, observer);
+    if (!loaded && !hasPixels(img)) {
+      return false;
+    }
+    Bitmap androidBitmap = asAndroidBitmap(img);
+    synchronized (shared.lock) {
+      willDraw(x, y, x + androidBitmap.getWidth(), y + androidBitmap.getHeight(), null);
+      canvas.drawBitmap(androidBitmap, x, y, brush);
+    }
+    return loaded;
   }
 
   @Override
-  public synchronized boolean drawImage(Image img, int x, int y, int width, int height,
+  public boolean drawImage(Image img, int x, int y, int width, int height,
       ImageObserver observer) {
     return drawImage(img, x, y, width, height, TRANSPARENT, observer);
   }
@@ -301,13 +654,10 @@ public class SkinJobGraphics extends Graphics2D {
     int width = img.getWidth(wrapperObserver);
     int height = img.getHeight(wrapperObserver);
     if (width >= 0 && height >= 0) {
-      Paint bg = new Paint();
-      bg.setStyle(Style.FILL);
-      bg.setColor(bgcolor.getRGB());
-      canvas.drawRect(x, y, x + width, y + height, bg);
+      fillBackground(x, y, x + width, y + height, bgcolor);
       return drawImage(img, x, y, observer);
     } else {
-      pendingObservers.add(wrapperObserver);
+      defer(wrapperObserver);
       return false;
     }
   }
@@ -316,39 +666,24 @@ public class SkinJobGraphics extends Graphics2D {
   public boolean drawImage(
       final Image img, final int x, final int y, final int width, final int height,
       final Color bgcolor, final ImageObserver observer) {
-
-    final Paint currentBrush;
-    // Position & scale image, & apply current transform too
-    final AffineTransform combinedTransform;
-    synchronized (this) {
-      currentBrush = brush;
-      combinedTransform = new AffineTransform(transform);
-    }
-    combinedTransform.translate(x, y);
-
     CancelableImageObserver wrapperObserver = new CancelableImageObserver(observer) {
       @Override
       public boolean imageUpdateInternal(
           Image img_, int infoflags, int x_, int y_, int origWidth, int origHeight) {
-        float scaleX = width / (float) origWidth;
-        float scaleY = height / (float) origHeight;
-        canvas.drawBitmap(asAndroidBitmap(img),
-            Geometry.transformToMatrix(combinedTransform), currentBrush);
-        drawImage(img, x, y, bgcolor, observer);
+        if (hasPixels(img)) {
+          drawBitmap(asAndroidBitmap(img), x, y, width, height);
+        }
         return false;
       }
     };
-    Paint bg = new Paint();
-    bg.setStyle(Style.FILL);
-    bg.setColor(bgcolor.getRGB());
-    canvas.drawRect(x, y, x + width, y + height, bg);
+    fillBackground(x, y, x + width, y + height, bgcolor);
     int origWidth = img.getWidth(wrapperObserver);
     int origHeight = img.getHeight(wrapperObserver);
     if (origWidth >= 0 && origHeight >= 0) {
       wrapperObserver.imageUpdateInternal(img, 0, x, y, origWidth, origHeight);
       return true;
     } else {
-      pendingObservers.add(wrapperObserver);
+      defer(wrapperObserver);
       return false;
     }
   }
@@ -365,10 +700,7 @@ public class SkinJobGraphics extends Graphics2D {
   public boolean drawImage(
       Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
       Color bgcolor, ImageObserver observer) {
-    Paint bg = new Paint();
-    bg.setStyle(Style.FILL);
-    bg.setColor(bgcolor.getRGB());
-    canvas.drawRect(dx1, dy1, dx2, dy2, bg);
+    fillBackground(dx1, dy1, dx2, dy2, bgcolor);
     return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
   }
 
@@ -377,9 +709,29 @@ public class SkinJobGraphics extends Graphics2D {
     for (CancelableImageObserver observer : pendingObservers) {
       observer.cancel();
     }
+    synchronized (shared.lock) {
+      if (shared.applied == this) {
+        canvas.restoreToCount(shared.baseSaveCount);
+        shared.applied = null;
+      }
+    }
+  }
+
+  /**
+   * Fills the given rectangle with the background color of an image draw.
+   */
+  private void fillBackground(int left, int top, int right, int bottom, Color bgcolor) {
+    synchronized (shared.lock) {
+      willDraw(left, top, right, bottom, null);
+      canvas.drawRect(left, top, right, bottom, shared.paints.getFill(bgcolor.getRGB()));
+    }
   }
 
   public synchronized void setColor(int color) {
+    if (color == this.color) {
+      return;
+    }
+    ownPaints();
     pen.setColor(color);
     brush.setColor(color);
     this.color = color;
@@ -387,18 +739,72 @@ public class SkinJobGraphics extends Graphics2D {
 
   @Override
   public void draw(Shape s) {
-    canvas.drawPath(Geometry.asAndroidPath(s, transform), pen);
+    Rectangle2D bounds = s.getBounds2D();
+    synchronized (shared.lock) {
+      willDraw(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), pen);
+      canvas.drawPath(Geometry.asAndroidPath(s, IDENTITY), pen);
+    }
   }
 
-  private synchronized void drawBitmap(Bitmap bitmap, AffineTransform transform) {
-    canvas.drawBitmap(bitmap, Geometry.transformToMatrix(transform), brush);
+  /**
+   * Starts loading {@code img} if it's a {@link ToolkitImage} that hasn't finished, and returns
+   * whether it has. {@code observer}, if any, is told as more of the image arrives.
+   */
+  private static boolean isLoaded(Image img, ImageObserver observer) {
+    return !(img instanceof ToolkitImage) || SunToolkit.prepareImage(img, -1, -1, observer);
+  }
+
+  /**
+   * Returns whether any of {@code img}'s pixels can be drawn yet. A {@link ToolkitImage} that is
+   * still loading is drawn as far as it has got.
+   */
+  private static boolean hasPixels(Image img) {
+    return !(img instanceof ToolkitImage) || ((ToolkitImage) img).getBufferedImage() != null;
+  }
+
+  /**
+   * Draws {@code bitmap} transformed by {@code xform}, and then by the current transform.
+   */
+  private void drawBitmap(Bitmap bitmap, AffineTransform xform) {
+    Rectangle2D bounds = xform.createTransformedShape(
+        new Rectangle(bitmap.getWidth(), bitmap.getHeight())).getBounds2D();
+    synchronized (shared.lock) {
+      willDraw(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), null);
+      canvas.drawBitmap(bitmap, Geometry.asAndroidMatrix(xform), brush);
+    }
+  }
+
+  /**
+   * Draws {@code bitmap} scaled to fill the given rectangle.
+   */
+  private void drawBitmap(Bitmap bitmap, int x, int y, int width, int height) {
+    synchronized (shared.lock) {
+      willDraw(x, y, x + width, y + height, null);
+      scratchRect.set(x, y, x + width, y + height);
+      canvas.drawBitmap(bitmap, null, scratchRect, brush);
+    }
+  }
+
+  /**
+   * Keeps {@code observer} until its image can be drawn, along with a copy of the current
+   * transform, which the image will be drawn under.
+   */
+  private void defer(CancelableImageObserver observer) {
+    synchronized (this) {
+      observer.deferredTransform = new AffineTransform(transform);
+    }
+    pendingObservers.add(observer);
   }
 
   @Override
   public boolean drawImage(
       Image img, AffineTransform xform, ImageObserver obs) {
+    boolean loaded = isLoaded(img, obs);
+    if (!loaded && !hasPixels(img)) {
+      return false;
+    }
     drawBitmap(asAndroidBitmap(img), xform);
-    return true;
+    return loaded;
   }
 
   @Override
@@ -425,7 +831,10 @@ public class SkinJobGraphics extends Graphics2D {
 
   @Override
   public void drawString(String str, float x, float y) {
-    canvas.drawText(str, x, y, brush);
+    synchronized (shared.lock) {
+      willDraw();
+      canvas.drawText(str, x, y, brush);
+    }
   }
 
   @Override
@@ -436,29 +845,42 @@ public class SkinJobGraphics extends Graphics2D {
   @Override
   public void drawGlyphVector(GlyphVector g, float x, float y) {
     int nGlyphs = g.getNumGlyphs();
-    Paint fontAndColor = new Paint(g.getFont().sjGetAndroidPaint());
-    fontAndColor.setColor(color);
-    for (int i = 0; i < nGlyphs; i++) {
-      Point2D glyphPos = g.getGlyphPosition(i);
-      Point2D absGlyphPos = new Point2D.Double(x + glyphPos.getX(), y + glyphPos.getY());
-      char[] glyph = Character.toChars(g.getGlyphCode(i));
-      canvas.drawText(glyph,
-          0,
-          glyph.length,
-          (float) absGlyphPos.getX(),
-          (float) absGlyphPos.getY(),
-          fontAndColor);
+    if (nGlyphs == 0) {
+      return;
+    }
+    synchronized (shared.lock) {
+      willDraw();
+      PaintCache paints = shared.paints;
+      Paint fontAndColor =
+          paints.getText(g.getFont().sjGetAndroidPaint(), color, colorFilter);
+      paints.ensureGlyphCapacity(nGlyphs);
+      int[] codes = g.getGlyphCodes(0, nGlyphs, paints.glyphCodes);
+      float[] positions = g.getGlyphPositions(0, nGlyphs, paints.glyphPositions);
+      char[] chars = paints.glyphChars;
+      // StandardGlyphVector's glyph codes are the chars of its text
+      for (int i = 0; i < nGlyphs; i++) {
+        positions[2 * i] += x;
+        positions[2 * i + 1] += y;
+        chars[i] = (char) codes[i];
+      }
+      // One position per char, so the whole vector is one call
+      canvas.drawPosText(chars, 0, nGlyphs, positions, fontAndColor);
     }
   }
 
   @Override
-  public synchronized void fill(Shape s) {
-    canvas.drawPath(Geometry.asAndroidPath(s, transform), brush);
+  public void fill(Shape s) {
+    Rectangle2D bounds = s.getBounds2D();
+    synchronized (shared.lock) {
+      willDraw(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), brush);
+      canvas.drawPath(Geometry.asAndroidPath(s, IDENTITY), brush);
+    }
   }
 
   @Override
   public synchronized boolean hit(Rectangle rect, Shape s, boolean onStroke) {
-    if (!clip.intersects(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight())) {
+    if (clip != null
+        && !clip.intersects(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight())) {
       return false;
     }
     Shape shapeToCheck;
@@ -505,7 +927,7 @@ public class SkinJobGraphics extends Graphics2D {
 
   @Override
   public void translate(int x, int y) {
-    canvas.translate(x, y);
+    translate((double) x, (double) y);
   }
 
   @Override
@@ -514,78 +936,83 @@ public class SkinJobGraphics extends Graphics2D {
   }
 
   @Override
-  public synchronized void drawString(AttributedCharacterIterator iterator, int x, int y) {
-    SpannableStringBuilder formattedText = new SpannableStringBuilder();
-    int charsWritten = 0;
-    for (char c = iterator.first(); c != CharacterIterator.DONE; c = iterator.next()) {
-      formattedText.append(c);
-      charsWritten++;
-      Map<Attribute, Object> attributes = iterator.getAttributes();
-      if (!attributes.isEmpty()) {
-        new TextAttributesDecoder(color)
-            .addAttributes(attributes)
-            .applyTo(formattedText, charsWritten - 1, charsWritten);
+  public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+    int right;
+    Font textFont;
+    int textColor;
+    synchronized (this) {
+      Shape userClip = getClip();
+      if (userClip == null) {
+        right = canvas.getWidth();
+      } else {
+        right = (int) userClip.getBounds2D().getMaxX();
       }
+      textFont = font;
+      textColor = color;
     }
-    TextView formattedTextView = new TextView(SkinJobGlobals.getAndroidApplicationContext());
-    formattedTextView.setText(formattedText);
-    int right, bottom;
-    if (clip == null) {
-      right = canvas.getWidth();
-      bottom = canvas.getHeight();
-    } else {
-      Rectangle2D bounds = clip.getBounds2D();
-      right = (int) bounds.getMaxX();
-      bottom = (int) bounds.getMaxY();
+    StaticLayout layout =
+        TextLayoutCache.getLayout(iterator, textFont, textColor, Math.max(1, right - x));
+    // Held so that no other graphics puts its state on the canvas before the draw has finished
+    synchronized (shared.lock) {
+      willDraw();
+      synchronized (layout) {
+        int saveCount = canvas.save();
+        try {
+          // y is the first line's baseline
+          canvas.translate(x, y - layout.getLineBaseline(0));
+          layout.draw(canvas);
+        } finally {
+          canvas.restoreToCount(saveCount);
+        }
+      }
     }
-    formattedTextView.layout(x, y, right, bottom);
-    formattedTextView.draw(canvas);
   }
 
   @Override
   public synchronized void translate(double tx, double ty) {
-    transform = new AffineTransform(transform);
     transform.translate(tx, ty);
+    stateValid = false;
   }
 
   @Override
   public synchronized void rotate(double theta) {
-    transform = new AffineTransform(transform);
     transform.rotate(theta);
+    stateValid = false;
   }
 
   @Override
   public synchronized void rotate(double theta, double x, double y) {
-    transform = new AffineTransform(transform);
     transform.rotate(theta, x, y);
+    stateValid = false;
   }
 
   @Override
   public synchronized void scale(double sx, double sy) {
-    transform = new AffineTransform(transform);
     transform.scale(sx, sy);
+    stateValid = false;
   }
 
   @Override
   public synchronized void shear(double shx, double shy) {
-    transform = new AffineTransform(transform);
     transform.shear(shx, shy);
+    stateValid = false;
   }
 
   @Override
   public synchronized void transform(AffineTransform tx) {
-    transform = new AffineTransform(transform);
     transform.concatenate(tx);
+    stateValid = false;
   }
 
   @Override
-  public AffineTransform getTransform() {
-    return transform;
+  public synchronized AffineTransform getTransform() {
+    return new AffineTransform(transform);
   }
 
   @Override
-  public void setTransform(AffineTransform Tx) {
-    transform = Tx;
+  public synchronized void setTransform(AffineTransform Tx) {
+    transform.setTransform(Tx);
+    stateValid = false;
   }
 
   @Override
@@ -635,8 +1062,10 @@ public class SkinJobGraphics extends Graphics2D {
   @Override
   public synchronized void setStroke(Stroke s) {
     stroke = s;
-    if (s instanceof BasicStroke) {
+    if (s instanceof BasicStroke && !s.equals(penStroke)) {
+      ownPaints();
       BasicStroke basicStroke = (BasicStroke) s;
+      penStroke = basicStroke;
       pen.setStrokeWidth(basicStroke.getLineWidth());
       pen.setStrokeMiter(basicStroke.getMiterLimit());
       int join = basicStroke.getLineJoin();
@@ -678,7 +1107,13 @@ public class SkinJobGraphics extends Graphics2D {
 
   @Override
   public synchronized void clip(Shape s) {
-    clip = Geometry.getIntersection(clip, s);
+    if (s == null) {
+      setClip(null);
+      return;
+    }
+    Shape deviceShape = toDevice(s);
+    clip = clip == null ? deviceShape : intersectClips(clip, deviceShape);
+    stateValid = false;
   }
 
   @Override
@@ -686,13 +1121,108 @@ public class SkinJobGraphics extends Graphics2D {
     return null;
   }
 
+  /**
+   * Returns the canvas this draws on, with this graphics' clip and transform applied, for drawing
+   * on directly. The state is only guaranteed to stay applied while no other graphics created from
+   * or by this one draws.
+   */
   public Canvas sjGetAndroidCanvas() {
+    synchronized (shared.lock) {
+      willDraw();
+    }
     return canvas;
   }
 
-  private abstract static class CancelableImageObserver implements ImageObserver {
+  /**
+   * The canvas a graphics shares with those created from it, and which of them last put its state
+   * on it. Also holds the paints they use for one-off draws. Both are only used while holding
+   * {@link #lock}.
+   */
+  private static final class SharedCanvas {
+    final int baseSaveCount;
+    final PaintCache paints = new PaintCache();
+    /**
+     * Held from putting a graphics' state on the canvas until its draw has finished. This is the
+     * {@link BitmapSync}, if there is one, so that the raster can't be synced between marking the
+     * rows a draw changes and the draw itself; otherwise this.
+     */
+    final Object lock;
+    SkinJobGraphics applied;
+
+    SharedCanvas(Canvas canvas, BitmapSync sync) {
+      baseSaveCount = canvas.getSaveCount();
+      lock = sync != null ? sync : this;
+    }
+  }
+
+  /**
+   * Paints for draws that don't use the pen or brush, kept between draws and changed only when a
+   * draw needs different settings.
+   */
+  private static final class PaintCache {
+    int[] glyphCodes = new int[16];
+    float[] glyphPositions = new float[32];
+    char[] glyphChars = new char[16];
+    private Paint fill;
+    private Paint text;
+    private Paint textFontPaint;
+    private ColorFilter textFilter;
+
+    /**
+     * Makes the glyph buffers big enough for a vector of {@code nGlyphs}.
+     */
+    void ensureGlyphCapacity(int nGlyphs) {
+      if (glyphCodes.length < nGlyphs) {
+        int capacity = Math.max(nGlyphs, glyphCodes.length * 2);
+        glyphCodes = new int[capacity];
+        glyphPositions = new float[2 * capacity];
+        glyphChars = new char[capacity];
+      }
+    }
+
+    Paint getFill(int color) {
+      if (fill == null) {
+        fill = new Paint();
+        fill.setStyle(Style.FILL);
+      }
+      if (fill.getColor() != color) {
+        fill.setColor(color);
+      }
+      return fill;
+    }
+
+    /**
+     * Returns a paint with the settings of {@code fontPaint}, a {@link Font}'s, {@code color}, and
+     * {@code filter}, which is the XOR-mode filter or null in paint mode.
+     */
+    Paint getText(Paint fontPaint, int color, ColorFilter filter) {
+      if (text == null) {
+        text = new Paint(fontPaint);
+        textFontPaint = fontPaint;
+        textFilter = text.getColorFilter();
+      } else if (textFontPaint != fontPaint) {
+        text.set(fontPaint);
+        textFontPaint = fontPaint;
+        textFilter = text.getColorFilter();
+      }
+      if (text.getColor() != color) {
+        text.setColor(color);
+      }
+      if (textFilter != filter) {
+        text.setColorFilter(filter);
+        textFilter = filter;
+      }
+      return text;
+    }
+  }
+
+  private abstract class CancelableImageObserver implements ImageObserver {
     private final AtomicBoolean canceled = new AtomicBoolean(false);
     private volatile ImageObserver innerObserver;
+    /**
+     * The transform to draw under, if drawing was deferred; otherwise the current one is used.
+     */
+    volatile AffineTransform deferredTransform;
 
     CancelableImageObserver(ImageObserver innerObserver) {
       this.innerObserver = innerObserver;
@@ -711,7 +1241,23 @@ public class SkinJobGraphics extends Graphics2D {
         Image img, int infoflags, int x, int y, int width, int height) {
       boolean drawn = false;
       if (!canceled.get()) {
-        drawn = imageUpdateInternal(img, infoflags, x, y, width, height);
+        AffineTransform deferred = deferredTransform;
+        if (deferred == null) {
+          drawn = imageUpdateInternal(img, infoflags, x, y, width, height);
+        } else {
+          // Nested in the same order as willDraw's, so that no other draw sees the transform
+          synchronized (shared.lock) {
+            synchronized (SkinJobGraphics.this) {
+              AffineTransform current = getTransform();
+              setTransform(deferred);
+              try {
+                drawn = imageUpdateInternal(img, infoflags, x, y, width, height);
+              } finally {
+                setTransform(current);
+              }
+            }
+          }
+        }
       }
       ImageObserver thisInnerObserver = innerObserver;
       if (thisInnerObserver != null) {
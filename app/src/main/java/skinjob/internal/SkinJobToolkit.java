@@ -94,7 +94,9 @@ import skinjob.internal.peer.SkinJobScrollPanePeer;
 import skinjob.internal.peer.SkinJobScrollbarPeer;
 import skinjob.internal.peer.SkinJobTextFieldPeer;
 import skinjob.internal.peer.SkinJobWindowPeer;
+import skinjob.util.ImageCache;
 import sun.awt.DefaultMouseInfoPeer;
+import sun.awt.SunToolkit;
 
 /**
  * The Android implementation of {@link Toolkit}.
@@ -111,6 +113,7 @@ public class SkinJobToolkit extends Toolkit {
    */
   public SkinJobToolkit() {
     androidContext = getAndroidContext();
+    ImageCache.registerTrimCallbacks(androidContext);
   }
 
   protected Context getAndroidContext() {
@@ -276,44 +279,50 @@ public class SkinJobToolkit extends Toolkit {
     // No-op
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The image is fetched and decoded on a pool of background threads once it's first drawn or
+   * prepared; see {@link sun.awt.image.ImageFetcher}.
+   */
   @Override
   public Image getImage(String filename) {
-    return new SkinJobImage(filename);
+    return SunToolkit.getImage(filename);
   }
 
   @Override
   public Image getImage(URL url) {
-    return null;
+    return SunToolkit.getImage(url);
   }
 
   @Override
   public Image createImage(String filename) {
-    return null;
+    return SunToolkit.createImage(filename);
   }
 
   @Override
   public Image createImage(URL url) {
-    return null;
+    return SunToolkit.createImage(url);
   }
 
   @Override
   public boolean prepareImage(Image image, int width, int height, ImageObserver observer) {
-    return false;
+    return SunToolkit.prepareImage(image, width, height, observer);
   }
 
   @Override
   public int checkImage(Image image, int width, int height, ImageObserver observer) {
-    return 0;
+    return SunToolkit.checkImage(image, width, height, observer);
   }
 
   @Override
   public Image createImage(ImageProducer producer) {
-    return null;
+    return SunToolkit.createImage(producer);
   }
 
   @Override
   public Image createImage(byte[] imagedata, int imageoffset, int imagelength) {
-    return null;
+    return SunToolkit.createImage(imagedata, imageoffset, imagelength);
   }
 
   @Override
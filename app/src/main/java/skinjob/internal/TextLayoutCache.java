@@ -0,0 +1,130 @@
+package skinjob.internal;
+
+import android.text.Layout;
+import android.text.SpannableStringBuilder;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.awt.Font;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedCharacterIterator.Attribute;
+import java.text.CharacterIterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the {@link StaticLayout}s that {@link SkinJobGraphics} draws attributed text with, so that
+ * text drawn again with the same attributes, font, color and width, such as a label repainted every
+ * frame, isn't styled and laid out again. Entries are keyed by value: the text, and each run of
+ * attributes with where it ends.
+ * <p>
+ * A {@link Layout} isn't safe to draw from two threads at once, so the returned layouts should
+ * only be drawn while holding their locks.
+ */
+public final class TextLayoutCache {
+  private static final int MAX_ENTRIES = 64;
+
+  private static final Map<List<Object>, StaticLayout> layouts =
+      new LinkedHashMap<List<Object>, StaticLayout>(MAX_ENTRIES, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, StaticLayout> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+  private static long hitCount;
+  private static long missCount;
+
+  /**
+   * Utility class; do not instantiate.
+   */
+  private TextLayoutCache() {
+  }
+
+  /**
+   * Returns a layout of the text in {@code iterator}, styled by its attributes over {@code font}
+   * and {@code color}, and wrapped at {@code width} pixels.
+   */
+  public static StaticLayout getLayout(
+      AttributedCharacterIterator iterator, Font font, int color, int width) {
+    int begin = iterator.getBeginIndex();
+    int end = iterator.getEndIndex();
+    StringBuilder text = new StringBuilder(end - begin);
+    for (char c = iterator.first(); c != CharacterIterator.DONE; c = iterator.next()) {
+      text.append(c);
+    }
+    List<Object> key = new ArrayList<>();
+    key.add(text.toString());
+    key.add(font);
+    key.add(color);
+    key.add(width);
+    for (int i = begin; i < end; ) {
+      iterator.setIndex(i);
+      int limit = iterator.getRunLimit();
+      key.add(limit - begin);
+      key.add(iterator.getAttributes());
+      i = limit;
+    }
+    synchronized (TextLayoutCache.class) {
+      StaticLayout layout = layouts.get(key);
+      if (layout != null) {
+        hitCount++;
+        return layout;
+      }
+      missCount++;
+    }
+    StaticLayout layout = createLayout(key, text, font, color, width);
+    synchronized (TextLayoutCache.class) {
+      layouts.put(key, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * Returns the number of {@link #getLayout} calls that reused a cached layout.
+   */
+  public static synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of {@link #getLayout} calls that had to lay the text out.
+   */
+  public static synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Discards every cached layout, and resets the hit and miss counts.
+   */
+  public static synchronized void clear() {
+    layouts.clear();
+    hitCount = 0;
+    missCount = 0;
+  }
+
+  private static StaticLayout createLayout(
+      List<Object> key, CharSequence text, Font font, int color, int width) {
+    SpannableStringBuilder styledText = new SpannableStringBuilder(text);
+    int start = 0;
+    // The runs follow the text, font, color and width in the key
+    for (int i = 4; i < key.size(); i += 2) {
+      int limit = (Integer) key.get(i);
+      @SuppressWarnings("unchecked")
+      Map<Attribute, Object> attributes = (Map<Attribute, Object>) key.get(i + 1);
+      if (!attributes.isEmpty()) {
+        new TextAttributesDecoder(color)
+            .addAttributes(attributes)
+            .applyTo(styledText, start, limit);
+      }
+      start = limit;
+    }
+    TextPaint paint = new TextPaint(font.sjGetAndroidPaint());
+    paint.setColor(color);
+    return new StaticLayout(
+        styledText, paint, width, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+  }
+}
@@ -4,7 +4,6 @@ import android.view.Display;
 import android.view.View;
 
 import java.awt.Canvas;
-import java.awt.Color;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.peer.CanvasPeer;
@@ -22,11 +21,6 @@ public class SkinJobCanvasPeer extends SkinJobComponentPeerForView<View> impleme
     super(target.sjAndroidWidget, SkinJobGraphicsConfiguration.getDefault());
   }
 
-  @Override
-  public void setBackground(Color c) {
-    androidWidget.setBackgroundColor(c.getRGB());
-  }
-
   @Override
   public GraphicsConfiguration getAppropriateGraphicsConfiguration(GraphicsConfiguration gc) {
     Display myDisplay = null;
@@ -7,6 +7,7 @@ import java.awt.AWTException;
 import java.awt.BufferCapabilities;
 import java.awt.BufferCapabilities.FlipContents;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
@@ -26,6 +27,8 @@ import skinjob.internal.SkinJobBufferedImage;
 import skinjob.internal.SkinJobFontMetrics;
 import skinjob.internal.SkinJobGraphics;
 import skinjob.internal.SkinJobVolatileImage;
+import sun.awt.RepaintArea;
+import sun.awt.SunToolkit;
 
 import static java.awt.Transparency.TRANSLUCENT;
 
@@ -39,6 +42,14 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
   protected GraphicsConfiguration graphicsConfiguration;
   protected volatile int foregroundColor = SkinJobGlobals.defaultForegroundColor;
   protected Font font = SkinJobGlobals.defaultFont;
+  /**
+   * What PAINT and UPDATE events have asked to have repainted since the last paint.
+   */
+  protected final RepaintArea paintArea = new RepaintArea();
+  /**
+   * The component that paint events for this peer come from.
+   */
+  protected volatile Component paintTarget;
 
   public SkinJobComponentPeer(T androidWidget, GraphicsConfiguration configuration) {
     this.androidWidget = androidWidget;
@@ -62,12 +73,33 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
 
   @Override
   public void handleEvent(AWTEvent e) {
-    // TODO
+    int id = e.getID();
+    if (id == PaintEvent.PAINT || id == PaintEvent.UPDATE) {
+      repaintRequested();
+    }
+    // TODO: Other events
   }
 
+  /**
+   * Records the area of a paint event as it's posted, so that however many are posted before the
+   * next paint, it covers them all.
+   */
   @Override
   public void coalescePaintEvent(PaintEvent e) {
-    // No-op.
+    paintTarget = (Component) e.getSource();
+    paintArea.add(e.getUpdateRect(), e.getID());
+  }
+
+  /**
+   * Called on the event dispatch thread when a paint event is dispatched. By default, paints the
+   * accumulated {@link #paintArea} right away.
+   */
+  protected void repaintRequested() {
+    Component target = paintTarget;
+    Graphics g = getGraphics();
+    if (target != null && g != null && !paintArea.isEmpty()) {
+      paintArea.cloneAndReset().paint(target, g);
+    }
   }
 
   @Override
@@ -107,8 +139,7 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
 
   @Override
   public Image createImage(ImageProducer producer) {
-    // TODO
-    return null;
+    return SunToolkit.createImage(producer);
   }
 
   @Override
@@ -123,15 +154,12 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
 
   @Override
   public boolean prepareImage(Image img, int w, int h, ImageObserver o) {
-    // Image loading is synchronous on Android, so report that it's always already finished.
-    return true;
+    return SunToolkit.prepareImage(img, w, h, o);
   }
 
   @Override
   public int checkImage(Image img, int w, int h, ImageObserver o) {
-    // Image loading is synchronous on Android, so report that it's always already finished.
-    return ImageObserver.ALLBITS | ImageObserver.WIDTH | ImageObserver.HEIGHT
-        | ImageObserver.PROPERTIES;
+    return SunToolkit.checkImage(img, w, h, o);
   }
 
   @Override
@@ -141,23 +169,22 @@ public abstract class SkinJobComponentPeer<T> implements ContainerPeer {
 
   @Override
   public void createBuffers(int numBuffers, BufferCapabilities caps) throws AWTException {
-    // TODO
+    throw new AWTException("Page flipping needs an Android view");
   }
 
   @Override
   public Image getBackBuffer() {
-    // TODO
     return null;
   }
 
   @Override
   public void flip(int x1, int y1, int x2, int y2, FlipContents flipAction) {
-    // TODO
+    // No-op: there are never any buffers to flip
   }
 
   @Override
   public void destroyBuffers() {
-    // TODO
+    // No-op: there are never any buffers to destroy
   }
 
   @Override
@@ -7,21 +7,30 @@ import android.text.Spanned;
 import android.util.DisplayMetrics;
 import android.view.View;
 
+import java.awt.BufferCapabilities;
+import java.awt.BufferCapabilities.FlipContents;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.Insets;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.peer.ComponentPeer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import skinjob.SkinJobGlobals;
+import skinjob.internal.FlipBuffers;
 import skinjob.internal.SkinJobGraphics;
 import skinjob.internal.SkinJobGraphicsConfiguration;
 import skinjob.util.SkinJobUtil;
 import sun.awt.CausedFocusEvent.Cause;
+import sun.awt.RepaintArea;
+import sun.awt.SunToolkit;
 
 /**
  * Skeletal implementation of {@link SkinJobComponentPeer}&lt;T extends {@link View}&gt;.
@@ -30,6 +39,21 @@ public abstract class SkinJobComponentPeerForView<T extends View> extends SkinJo
 
   protected final Graphics graphics;
   protected CharSequence text;
+  /**
+   * RGBA value of the background color last set through AWT.
+   */
+  protected volatile int backgroundColor = SkinJobGlobals.defaultBackgroundColor;
+  /**
+   * The page-flipping buffers shown in place of the view's background, if any.
+   */
+  private FlipBuffers flipBuffers;
+  private final AtomicBoolean framePending = new AtomicBoolean();
+  private final Runnable frameCallback = new Runnable() {
+    @Override
+    public void run() {
+      paintFrame();
+    }
+  };
 
   public SkinJobComponentPeerForView(T androidComponent) {
     this(androidComponent, getGraphicsConfiguration(androidComponent));
@@ -95,6 +119,49 @@ public abstract class SkinJobComponentPeerForView<T extends View> extends SkinJo
     androidWidget.draw(getCanvas(g));
   }
 
+  /**
+   * Defers painting to the view's next animation frame, so that all the paint events up to then
+   * are served by one paint.
+   */
+  @Override
+  protected void repaintRequested() {
+    if (framePending.compareAndSet(false, true)) {
+      androidWidget.postOnAnimation(frameCallback);
+    }
+  }
+
+  /**
+   * Runs on the Android main thread at the start of a frame. Takes the accumulated area and paints
+   * the component clipped to it on the event dispatch thread, which then invalidates that area of
+   * the view once, so that the view isn't redrawn before the paint has finished.
+   */
+  private void paintFrame() {
+    framePending.set(false);
+    final Component target = paintTarget;
+    if (target == null) {
+      return;
+    }
+    // Taken in one step, so that requests arriving meanwhile are left for the next frame
+    final RepaintArea area = paintArea.cloneAndReset();
+    final Rectangle bounds = area.getBounds();
+    if (bounds == null) {
+      return;
+    }
+    Runnable paint = new Runnable() {
+      @Override
+      public void run() {
+        area.paint(target, getGraphics());
+        androidWidget.postInvalidate(
+            bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height);
+      }
+    };
+    if (EventQueue.isDispatchThread()) {
+      paint.run();
+    } else {
+      SunToolkit.executeOnEventHandlerThread(target, paint);
+    }
+  }
+
   @Override
   public void setBounds(int x, int y, int width, int height, int op) {
     SkinJobUtil.setBounds(androidWidget, x, y, width, height, op);
@@ -119,7 +186,52 @@ public abstract class SkinJobComponentPeerForView<T extends View> extends SkinJo
 
   @Override
   public void setBackground(Color c) {
-    androidWidget.setBackgroundColor(c.getRGB());
+    backgroundColor = c.getRGB();
+    synchronized (this) {
+      if (flipBuffers != null) {
+        // Shown once the buffers are destroyed
+        return;
+      }
+    }
+    androidWidget.setBackgroundColor(backgroundColor);
+  }
+
+  @Override
+  public synchronized void createBuffers(int numBuffers, BufferCapabilities caps) {
+    if (flipBuffers != null) {
+      flipBuffers.dispose(backgroundColor);
+    }
+    flipBuffers = new FlipBuffers(androidWidget, numBuffers, Math.max(1, androidWidget.getWidth()),
+        Math.max(1, androidWidget.getHeight()), backgroundColor);
+  }
+
+  @Override
+  public Image getBackBuffer() {
+    FlipBuffers buffers;
+    synchronized (this) {
+      buffers = flipBuffers;
+    }
+    // Called unlocked, since it waits for the main thread, which may need this peer's lock
+    return buffers == null ? null : buffers.getBackBuffer();
+  }
+
+  @Override
+  public void flip(int x1, int y1, int x2, int y2, FlipContents flipAction) {
+    FlipBuffers buffers;
+    synchronized (this) {
+      buffers = flipBuffers;
+    }
+    if (buffers != null) {
+      buffers.flip(x1, y1, x2, y2, flipAction, backgroundColor);
+    }
+  }
+
+  @Override
+  public synchronized void destroyBuffers() {
+    if (flipBuffers != null) {
+      flipBuffers.dispose(backgroundColor);
+      flipBuffers = null;
+    }
   }
 
   @Override
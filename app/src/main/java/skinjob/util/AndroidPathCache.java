@@ -0,0 +1,359 @@
+package skinjob.util;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.Path.FillType;
+import android.util.Log;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.geom.RoundRectangle2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.awt.geom.PathIterator.SEG_CLOSE;
+import static java.awt.geom.PathIterator.SEG_CUBICTO;
+import static java.awt.geom.PathIterator.SEG_LINETO;
+import static java.awt.geom.PathIterator.SEG_MOVETO;
+import static java.awt.geom.PathIterator.SEG_QUADTO;
+import static java.awt.geom.PathIterator.WIND_EVEN_ODD;
+import static java.awt.geom.PathIterator.WIND_NON_ZERO;
+
+/**
+ * Caches the Android {@link Path}s that {@link Geometry#asAndroidPath} builds, and the {@link
+ * Matrix} for each recently used {@link AffineTransform}. Rectangles, ellipses and round rectangles
+ * are looked up by value, since they are cheap to compare and are often recreated for every frame.
+ * {@link Path2D}s are looked up by identity, and an entry is only reused while {@link
+ * Path2D#sjGetModCount()} shows the path hasn't changed since it was converted. {@link
+ * FrozenPath2D}s are looked up by identity too, and since they can't change, an entry is reused
+ * for as long as the same transform is asked for. Any other shape is converted on every call.
+ * <p>
+ * Lookups that hit don't allocate: the key is built in a reusable probe, and the coordinate buffer
+ * used for conversions is shared. A shape looked up by value is only cached the second time it's
+ * seen, so shapes that are drawn once don't add cache entries; a small table of recently seen key
+ * hashes, overwritten as it fills, tells the two apart. Each map has its own lock, taken in the
+ * order value or {@link Path2D} lock, then matrix lock. The returned objects are shared, so they
+ * must not be modified.
+ */
+public final class AndroidPathCache {
+  private static final String TAG = "AndroidPathCache";
+  private static final int MAX_VALUE_ENTRIES = 512;
+  private static final int MAX_MATRICES = 64;
+  private static final int RECTANGLE = 0;
+  private static final int ELLIPSE = 1;
+  private static final int ROUND_RECTANGLE = 2;
+  private static final int SEEN_HASHES = 256;
+  private static final AffineTransform IDENTITY_TRANSFORM = new AffineTransform();
+
+  private static final Map<ValueKey, Path> valuePaths = new LinkedHashMap<ValueKey, Path>(
+      MAX_VALUE_ENTRIES, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<ValueKey, Path> eldest) {
+      return size() > MAX_VALUE_ENTRIES;
+    }
+  };
+  private static final Map<Shape, Path2DEntry> path2DPaths = new WeakHashMap<>();
+  private static final Map<ValueKey, Matrix> matrices = new LinkedHashMap<ValueKey, Matrix>(
+      MAX_MATRICES, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<ValueKey, Matrix> eldest) {
+      return size() > MAX_MATRICES;
+    }
+  };
+  /**
+   * Guards {@link #valuePaths}, {@link #probe}, {@link #seenHashes} and {@link #valueCoords}.
+   */
+  private static final Object valueLock = new Object();
+  /**
+   * Guards {@link #path2DPaths} and {@link #path2DCoords}.
+   */
+  private static final Object path2DLock = new Object();
+  /**
+   * Guards {@link #matrices}, {@link #matrixProbe} and {@link #matrixValues}.
+   */
+  private static final Object matrixLock = new Object();
+  private static final ValueKey probe = new ValueKey(0, new double[12]);
+  private static final int[] seenHashes = new int[SEEN_HASHES];
+  private static final double[] valueCoords = new double[6];
+  private static final double[] path2DCoords = new double[6];
+  private static final ValueKey matrixProbe = new ValueKey(0, new double[12]);
+  private static final float[] matrixValues = new float[9];
+  private static final AtomicLong hitCount = new AtomicLong();
+  private static final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * Utility class; do not instantiate.
+   */
+  private AndroidPathCache() {
+  }
+
+  /**
+   * Returns {@code shape} transformed by {@code transform} as an Android {@link Path}, which must
+   * not be modified.
+   */
+  public static Path getPath(Shape shape, AffineTransform transform) {
+    if (shape instanceof Path2D || shape instanceof FrozenPath2D) {
+      synchronized (path2DLock) {
+        int modCount = shape instanceof Path2D ? ((Path2D) shape).sjGetModCount() : 0;
+        Path2DEntry entry = path2DPaths.get(shape);
+        if (entry != null && entry.modCount == modCount && entry.matches(transform)) {
+          hitCount.incrementAndGet();
+          return entry.path;
+        }
+        missCount.incrementAndGet();
+        Path path = convert(shape, transform, path2DCoords);
+        if (entry == null) {
+          path2DPaths.put(shape, new Path2DEntry(modCount, transform, path));
+        } else {
+          entry.set(modCount, transform, path);
+        }
+        return path;
+      }
+    }
+    synchronized (valueLock) {
+      if (!setProbe(shape, transform)) {
+        missCount.incrementAndGet();
+        return convert(shape, transform, valueCoords);
+      }
+      Path path = valuePaths.get(probe);
+      if (path != null) {
+        hitCount.incrementAndGet();
+        return path;
+      }
+      missCount.incrementAndGet();
+      path = convert(shape, transform, valueCoords);
+      int hash = probe.hashCode();
+      int slot = (hash ^ hash >>> 16) & (SEEN_HASHES - 1);
+      if (seenHashes[slot] == hash) {
+        valuePaths.put(probe.copy(), path);
+      } else {
+        seenHashes[slot] = hash;
+      }
+      return path;
+    }
+  }
+
+  /**
+   * Returns the Android equivalent of {@code transform}, which must not be modified.
+   */
+  public static Matrix getMatrix(AffineTransform transform) {
+    synchronized (matrixLock) {
+      matrixProbe.kind = -1;
+      Arrays.fill(matrixProbe.values, 0, 6, 0.0);
+      setTransformValues(matrixProbe.values, transform);
+      matrixProbe.rehash();
+      Matrix matrix = matrices.get(matrixProbe);
+      if (matrix == null) {
+        matrix = new Matrix();
+        matrixValues[0] = (float) transform.getScaleX();
+        matrixValues[1] = (float) transform.getShearX();
+        matrixValues[2] = (float) transform.getTranslateX();
+        matrixValues[3] = (float) transform.getShearY();
+        matrixValues[4] = (float) transform.getScaleY();
+        matrixValues[5] = (float) transform.getTranslateY();
+        matrixValues[6] = 0.0f;
+        matrixValues[7] = 0.0f;
+        matrixValues[8] = 1.0f;
+        matrix.setValues(matrixValues);
+        matrices.put(matrixProbe.copy(), matrix);
+      }
+      return matrix;
+    }
+  }
+
+  /**
+   * Returns the number of {@link #getPath} calls that reused a cached path.
+   */
+  public static long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of {@link #getPath} calls that had to convert the shape.
+   */
+  public static long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Discards every cached path and matrix, and resets the hit and miss counts.
+   */
+  public static void clear() {
+    synchronized (valueLock) {
+      valuePaths.clear();
+      Arrays.fill(seenHashes, 0);
+    }
+    synchronized (path2DLock) {
+      path2DPaths.clear();
+    }
+    synchronized (matrixLock) {
+      matrices.clear();
+    }
+    hitCount.set(0);
+    missCount.set(0);
+  }
+
+  /**
+   * Fills in {@link #probe} for {@code shape} and {@code transform}, if the shape can be looked up
+   * by value.
+   */
+  private static boolean setProbe(Shape shape, AffineTransform transform) {
+    double[] values = probe.values;
+    if (shape instanceof RoundRectangle2D) {
+      RoundRectangle2D r = (RoundRectangle2D) shape;
+      probe.kind = ROUND_RECTANGLE;
+      values[4] = r.getArcWidth();
+      values[5] = r.getArcHeight();
+    } else if (shape instanceof Rectangle2D) {
+      probe.kind = RECTANGLE;
+      values[4] = 0.0;
+      values[5] = 0.0;
+    } else if (shape instanceof Ellipse2D) {
+      probe.kind = ELLIPSE;
+      values[4] = 0.0;
+      values[5] = 0.0;
+    } else {
+      return false;
+    }
+    RectangularShape r = (RectangularShape) shape;
+    values[0] = r.getX();
+    values[1] = r.getY();
+    values[2] = r.getWidth();
+    values[3] = r.getHeight();
+    setTransformValues(values, transform);
+    probe.rehash();
+    return true;
+  }
+
+  private static void setTransformValues(double[] values, AffineTransform transform) {
+    values[6] = transform.getScaleX();
+    values[7] = transform.getShearY();
+    values[8] = transform.getShearX();
+    values[9] = transform.getScaleY();
+    values[10] = transform.getTranslateX();
+    values[11] = transform.getTranslateY();
+  }
+
+  private static Path convert(Shape shape, AffineTransform transform, double[] coords) {
+    PathIterator iterator = shape.getPathIterator(IDENTITY_TRANSFORM);
+    Path path = new Path();
+    int windingRule = iterator.getWindingRule();
+    switch (windingRule) {
+      case WIND_EVEN_ODD:
+        path.setFillType(FillType.EVEN_ODD);
+        break;
+      case WIND_NON_ZERO:
+        path.setFillType(FillType.WINDING);
+        break;
+      default:
+        Log.e(TAG, "Unknown winding rule " + windingRule);
+    }
+    while (!iterator.isDone()) {
+      int segmentType = iterator.currentSegment(coords);
+      switch (segmentType) {
+        case SEG_MOVETO:
+          path.moveTo((float) coords[0], (float) coords[1]);
+          break;
+        case SEG_LINETO:
+          path.lineTo((float) coords[0], (float) coords[1]);
+          break;
+        case SEG_QUADTO:
+          path.quadTo((float) coords[0], (float) coords[1],
+              (float) coords[2], (float) coords[3]);
+          break;
+        case SEG_CUBICTO:
+          path.cubicTo((float) coords[0], (float) coords[1],
+              (float) coords[2], (float) coords[3],
+              (float) coords[4], (float) coords[5]);
+          break;
+        case SEG_CLOSE:
+          path.close();
+          break;
+        default:
+          Log.e(TAG, "Unknown path segment type " + segmentType);
+      }
+      iterator.next();
+    }
+    if (!transform.isIdentity()) {
+      path.transform(getMatrix(transform));
+    }
+    return path;
+  }
+
+  /**
+   * A shape kind and its defining values, followed by the six values of a transform.
+   */
+  private static final class ValueKey {
+    int kind;
+    final double[] values;
+    private int hash;
+
+    ValueKey(int kind, double[] values) {
+      this.kind = kind;
+      this.values = values;
+      rehash();
+    }
+
+    void rehash() {
+      hash = 31 * kind + Arrays.hashCode(values);
+    }
+
+    ValueKey copy() {
+      return new ValueKey(kind, values.clone());
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ValueKey)) {
+        return false;
+      }
+      ValueKey other = (ValueKey) obj;
+      return kind == other.kind && hash == other.hash && Arrays.equals(values, other.values);
+    }
+  }
+
+  /**
+   * The most recent conversion of a {@link Path2D} or {@link FrozenPath2D}.
+   */
+  private static final class Path2DEntry {
+    int modCount;
+    final double[] transform = new double[6];
+    Path path;
+
+    Path2DEntry(int modCount, AffineTransform transform, Path path) {
+      set(modCount, transform, path);
+    }
+
+    void set(int modCount, AffineTransform transform, Path path) {
+      this.modCount = modCount;
+      transform.getMatrix(this.transform);
+      this.path = path;
+    }
+
+    boolean matches(AffineTransform transform) {
+      return transform.getScaleX() == this.transform[0]
+          && transform.getShearY() == this.transform[1]
+          && transform.getShearX() == this.transform[2]
+          && transform.getScaleY() == this.transform[3]
+          && transform.getTranslateX() == this.transform[4]
+          && transform.getTranslateY() == this.transform[5];
+    }
+  }
+}
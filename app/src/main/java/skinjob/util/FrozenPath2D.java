@@ -0,0 +1,253 @@
+package skinjob.util;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * An immutable path, made by {@link Path2D#sjFreeze} or {@link #of}. It holds exactly its segment
+ * types and its coordinates, packed in single precision, with no spare capacity, and works out its
+ * bounds once; so it takes about half the memory of a {@link Path2D.Double}, and less than a {@link
+ * Path2D.Float} that grew as it was built. Since it can't change, it can be shared between threads
+ * without locking, and {@link AndroidPathCache} can keep its Android conversion for as long as the
+ * path is in use.
+ * <p>
+ * Like a {@link Path2D}, it is equal only to itself.
+ */
+public final class FrozenPath2D implements Shape {
+  /**
+   * The number of coordinates that follow each segment type.
+   */
+  private static final int[] CURVE_COORDS = {2, 2, 4, 6, 0};
+
+  private final byte[] pointTypes;
+  private final float[] floatCoords;
+  private final int windingRule;
+  private final float xmin;
+  private final float ymin;
+  private final float xmax;
+  private final float ymax;
+
+  /**
+   * Returns an immutable copy of the outline of {@code shape}, transformed by {@code at} if it
+   * isn't null. The shape must not change while it is copied; {@link Path2D#sjFreeze} holds the
+   * path's lock for that.
+   */
+  public static FrozenPath2D of(Shape shape, AffineTransform at) {
+    float[] coords = new float[6];
+    int numTypes = 0;
+    int numCoords = 0;
+    for (PathIterator pi = shape.getPathIterator(at); !pi.isDone(); pi.next()) {
+      numTypes++;
+      numCoords += CURVE_COORDS[pi.currentSegment(coords)];
+    }
+    byte[] pointTypes = new byte[numTypes];
+    float[] floatCoords = new float[numCoords];
+    PathIterator pi = shape.getPathIterator(at);
+    int windingRule = pi.getWindingRule();
+    for (int t = 0, c = 0; t < numTypes; t++, pi.next()) {
+      int type = pi.currentSegment(coords);
+      pointTypes[t] = (byte) type;
+      System.arraycopy(coords, 0, floatCoords, c, CURVE_COORDS[type]);
+      c += CURVE_COORDS[type];
+    }
+    return new FrozenPath2D(pointTypes, floatCoords, windingRule);
+  }
+
+  private FrozenPath2D(byte[] pointTypes, float[] floatCoords, int windingRule) {
+    this.pointTypes = pointTypes;
+    this.floatCoords = floatCoords;
+    this.windingRule = windingRule;
+    float x1, y1, x2, y2;
+    int i = floatCoords.length;
+    if (i > 0) {
+      --i;
+      y1 = y2 = floatCoords[i];
+      --i;
+      x1 = x2 = floatCoords[i];
+      while (i > 0) {
+        --i;
+        float y = floatCoords[i];
+        --i;
+        float x = floatCoords[i];
+        if (x < x1) {
+          x1 = x;
+        }
+        if (y < y1) {
+          y1 = y;
+        }
+        if (x > x2) {
+          x2 = x;
+        }
+        if (y > y2) {
+          y2 = y;
+        }
+      }
+    } else {
+      x1 = y1 = x2 = y2 = 0.0f;
+    }
+    xmin = x1;
+    ymin = y1;
+    xmax = x2;
+    ymax = y2;
+  }
+
+  /**
+   * Returns the fill style winding rule.
+   *
+   * @return {@link PathIterator#WIND_EVEN_ODD} or {@link PathIterator#WIND_NON_ZERO}
+   */
+  public int getWindingRule() {
+    return windingRule;
+  }
+
+  /**
+   * Returns a new {@link Path2D.Float} with the same geometry, which can be modified.
+   */
+  public Path2D.Float toPath2D() {
+    return new Path2D.Float(this);
+  }
+
+  @Override
+  public Rectangle getBounds() {
+    return getBounds2D().getBounds();
+  }
+
+  @Override
+  public Rectangle2D getBounds2D() {
+    return new Rectangle2D.Float(xmin, ymin, xmax - xmin, ymax - ymin);
+  }
+
+  @Override
+  public boolean contains(double x, double y) {
+    // Also false for NaN
+    if (!(x >= xmin && y >= ymin && x <= xmax && y <= ymax)) {
+      return false;
+    }
+    return Path2D.contains(getPathIterator(null), x, y);
+  }
+
+  @Override
+  public boolean contains(Point2D p) {
+    return contains(p.getX(), p.getY());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * As with {@link Path2D#contains(double, double, double, double)}, this may conservatively return
+   * false where the rectangle crosses segments that don't bound the interior.
+   */
+  @Override
+  public boolean contains(double x, double y, double w, double h) {
+    if (!(x >= xmin && y >= ymin && x + w <= xmax && y + h <= ymax)) {
+      return false;
+    }
+    return Path2D.contains(getPathIterator(null), x, y, w, h);
+  }
+
+  @Override
+  public boolean contains(Rectangle2D r) {
+    return contains(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * As with {@link Path2D#intersects(double, double, double, double)}, this may conservatively
+   * return true where the rectangle crosses segments that don't bound the interior.
+   */
+  @Override
+  public boolean intersects(double x, double y, double w, double h) {
+    if (!(x < xmax && y < ymax && x + w > xmin && y + h > ymin)) {
+      return false;
+    }
+    return Path2D.intersects(getPathIterator(null), x, y, w, h);
+  }
+
+  @Override
+  public boolean intersects(Rectangle2D r) {
+    return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * A null or identity transform gives an iterator that copies the stored coordinates without
+   * transforming them. Iterators aren't safe to share between threads, but the path they iterate
+   * over can't change under them.
+   */
+  @Override
+  public PathIterator getPathIterator(AffineTransform at) {
+    return new Iterator(this, at == null || at.isIdentity() ? null : at);
+  }
+
+  @Override
+  public PathIterator getPathIterator(AffineTransform at, double flatness) {
+    return new FlatteningPathIterator(getPathIterator(at), flatness);
+  }
+
+  private static final class Iterator implements PathIterator {
+    private final FrozenPath2D path;
+    private final AffineTransform affine;
+    private int typeIdx;
+    private int pointIdx;
+
+    Iterator(FrozenPath2D path, AffineTransform at) {
+      this.path = path;
+      affine = at;
+    }
+
+    @Override
+    public int getWindingRule() {
+      return path.windingRule;
+    }
+
+    @Override
+    public boolean isDone() {
+      return typeIdx >= path.pointTypes.length;
+    }
+
+    @Override
+    public void next() {
+      int type = path.pointTypes[typeIdx];
+      typeIdx++;
+      pointIdx += CURVE_COORDS[type];
+    }
+
+    @Override
+    public int currentSegment(float[] coords) {
+      int type = path.pointTypes[typeIdx];
+      int numCoords = CURVE_COORDS[type];
+      if (numCoords > 0) {
+        if (affine == null) {
+          System.arraycopy(path.floatCoords, pointIdx, coords, 0, numCoords);
+        } else {
+          affine.transform(path.floatCoords, pointIdx, coords, 0, numCoords / 2);
+        }
+      }
+      return type;
+    }
+
+    @Override
+    public int currentSegment(double[] coords) {
+      int type = path.pointTypes[typeIdx];
+      int numCoords = CURVE_COORDS[type];
+      if (numCoords > 0) {
+        if (affine == null) {
+          for (int i = 0; i < numCoords; i++) {
+            coords[i] = path.floatCoords[pointIdx + i];
+          }
+        } else {
+          affine.transform(path.floatCoords, pointIdx, coords, 0, numCoords / 2);
+        }
+      }
+      return type;
+    }
+  }
+}
@@ -2,24 +2,13 @@ package skinjob.util;
 
 import android.graphics.Matrix;
 import android.graphics.Path;
-import android.graphics.Path.FillType;
 import android.graphics.Rect;
-import android.util.Log;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
-import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
 
-import static java.awt.geom.PathIterator.SEG_CLOSE;
-import static java.awt.geom.PathIterator.SEG_CUBICTO;
-import static java.awt.geom.PathIterator.SEG_LINETO;
-import static java.awt.geom.PathIterator.SEG_MOVETO;
-import static java.awt.geom.PathIterator.SEG_QUADTO;
-import static java.awt.geom.PathIterator.WIND_EVEN_ODD;
-import static java.awt.geom.PathIterator.WIND_NON_ZERO;
-
 /**
  * Utility methods for use with {@link Shape}.
  */
@@ -27,10 +16,6 @@ public final class Geometry {
 
   public static final Area EMPTY = new Area();
 
-  private static final AffineTransform IDENTITY_TRANSFORM = new AffineTransform();
-  private static final String TAG = "Geometry";
-  private static final int COORD_ARRAY_SIZE = 23;
-
   /**
    * Utility class; do not instantiate.
    */
@@ -48,50 +33,12 @@ public final class Geometry {
     return new Area(shape);
   }
 
+  /**
+   * Returns {@code shape} transformed by {@code transform} as an Android {@link Path}. The result
+   * may be shared through {@link AndroidPathCache}, so it must not be modified.
+   */
   public static Path asAndroidPath(Shape shape, AffineTransform transform) {
-    PathIterator iterator = shape.getPathIterator(IDENTITY_TRANSFORM);
-    double[] coords = new double[COORD_ARRAY_SIZE];
-    Path path = new Path();
-    int windingRule = iterator.getWindingRule();
-    switch (windingRule) {
-      case WIND_EVEN_ODD:
-        path.setFillType(FillType.EVEN_ODD);
-        break;
-      case WIND_NON_ZERO:
-        path.setFillType(FillType.WINDING);
-        break;
-      default:
-        Log.e(TAG, "Unknown winding rule " + windingRule);
-    }
-    while (!iterator.isDone()) {
-      int segmentType = iterator.currentSegment(coords);
-      switch (segmentType) {
-        case SEG_MOVETO:
-          path.moveTo((float) coords[0], (float) coords[1]);
-          break;
-        case SEG_LINETO:
-          path.lineTo((float) coords[0], (float) coords[1]);
-          break;
-        case SEG_QUADTO:
-          path.quadTo((float) coords[0], (float) coords[1],
-              (float) coords[2], (float) coords[3]);
-          break;
-        case SEG_CUBICTO:
-          path.cubicTo((float) coords[0], (float) coords[1],
-              (float) coords[2], (float) coords[3],
-              (float) coords[4], (float) coords[5]);
-          break;
-        case SEG_CLOSE:
-          path.close();
-          break;
-        default:
-          Log.e(TAG, "Unknown path segment type " + segmentType);
-      }
-    }
-    if (!transform.isIdentity()) {
-      path.transform(transformToMatrix(transform));
-    }
-    return path;
+    return AndroidPathCache.getPath(shape, transform);
   }
 
   public static Area getIntersection(Shape shape1, Shape shape2) {
@@ -126,6 +73,15 @@ public final class Geometry {
     return out;
   }
 
+  /**
+   * Returns the Android equivalent of {@code transform}. The result is shared through {@link
+   * AndroidPathCache}, so it must not be modified; use {@link #transformToMatrix} for a private
+   * copy.
+   */
+  public static Matrix asAndroidMatrix(AffineTransform transform) {
+    return AndroidPathCache.getMatrix(transform);
+  }
+
   /**
    * See Javadoc for {@link AffineTransform#getDeterminant()} for underlying matrix.
    */
@@ -0,0 +1,362 @@
+package skinjob.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import skinjob.SkinJobGlobals;
+import skinjob.internal.SkinJobAndroidBitmapWrapper;
+import sun.awt.image.ImageWatched;
+import sun.awt.image.ToolkitImage;
+
+/**
+ * Holds the images that {@link java.awt.Toolkit#getImage} has returned, so that asking for the
+ * same file or URL again reuses the loaded pixels. The cache is bounded by {@link
+ * SkinJobGlobals#imageCacheMaxBytes}, and each image is charged the bytes of pixel data it holds,
+ * including any Android {@link android.graphics.Bitmap} copy. Toolkit images grow as they load, so
+ * each one is watched and charged again whenever a frame or the whole image completes.
+ * <p>
+ * Keys are spread over independently locked segments, so lookups from different threads rarely
+ * contend, but the budget is shared: when it's exceeded, the least recently used image across all
+ * segments is dropped first. Once {@link #registerTrimCallbacks} has been called, the cache
+ * shrinks when Android reports memory pressure.
+ */
+public final class ImageCache {
+  private static final int SEGMENTS = 16;
+  /**
+   * What an image with no pixels yet is charged, so that failed or unstarted loads still count.
+   */
+  private static final long MIN_ENTRY_BYTES = 64;
+  private static final Segment[] segments = new Segment[SEGMENTS];
+  /**
+   * The bytes charged to all segments' entries.
+   */
+  private static final AtomicLong totalBytes = new AtomicLong();
+  /**
+   * Stamps each use of an entry, so that segments can be compared to find the least recently used.
+   */
+  private static final AtomicLong clock = new AtomicLong();
+  /**
+   * Held while evicting, so that concurrent trims don't each drop entries for the same excess.
+   * Never taken while holding a segment's lock.
+   */
+  private static final Object trimLock = new Object();
+  private static final AtomicLong hitCount = new AtomicLong();
+  private static final AtomicLong missCount = new AtomicLong();
+  private static final AtomicLong evictionCount = new AtomicLong();
+  private static final TrimCallbacks trimCallbacks = new TrimCallbacks();
+  private static boolean registered;
+
+  static {
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  /**
+   * Utility class; do not instantiate.
+   */
+  private ImageCache() {
+  }
+
+  /**
+   * Returns the image cached under {@code key}, or null if there isn't one.
+   */
+  public static Image get(Object key) {
+    Image image = segmentFor(key).get(key);
+    if (image == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+    return image;
+  }
+
+  /**
+   * Caches {@code image} under {@code key} unless another image is already there.
+   *
+   * @return the image that was already cached, or null if {@code image} was added
+   */
+  public static Image putIfAbsent(Object key, Image image) {
+    // Measured outside the segment's lock, since measuring takes the image's locks
+    Entry entry = new Entry(key, image, sizeOf(image));
+    Image existing = segmentFor(key).putIfAbsent(entry);
+    if (existing != null) {
+      return existing;
+    }
+    if (image instanceof ToolkitImage) {
+      ((ToolkitImage) image).getImageRep().addWatcher(entry);
+      // In case loading finished before the watcher was added
+      entry.remeasure();
+    }
+    trimToSize(SkinJobGlobals.imageCacheMaxBytes);
+    return null;
+  }
+
+  /**
+   * Drops the image cached under {@code key}, if any.
+   */
+  public static void remove(Object key) {
+    segmentFor(key).remove(key);
+  }
+
+  /**
+   * Drops least recently used images until the cache holds no more than {@code maxBytes}.
+   */
+  public static void trimToSize(long maxBytes) {
+    synchronized (trimLock) {
+      while (totalBytes.get() > maxBytes) {
+        Segment oldest = null;
+        long oldestStamp = Long.MAX_VALUE;
+        for (Segment segment : segments) {
+          long stamp = segment.getEldestStamp();
+          if (stamp < oldestStamp) {
+            oldest = segment;
+            oldestStamp = stamp;
+          }
+        }
+        if (oldest == null) {
+          return;
+        }
+        // Skipped if the entry was used meanwhile, and the next oldest is looked for again
+        oldest.removeEldest(oldestStamp);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes the cached images were charged when last measured.
+   */
+  public static long getSizeBytes() {
+    return totalBytes.get();
+  }
+
+  /**
+   * Returns the number of {@link #get} calls that found an image.
+   */
+  public static long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of {@link #get} calls that didn't find an image.
+   */
+  public static long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Returns the number of images dropped to stay within the size limit or relieve memory pressure.
+   */
+  public static long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Discards every cached image, and resets the hit, miss and eviction counts.
+   */
+  public static void clear() {
+    trimToSize(0);
+    hitCount.set(0);
+    missCount.set(0);
+    evictionCount.set(0);
+  }
+
+  /**
+   * Shrinks the cache in response to an Android memory-pressure {@code level}, as passed to {@link
+   * ComponentCallbacks2#onTrimMemory}. The cache is emptied once the process is in the background
+   * list and likely to be killed, and trimmed to a fraction of its limit at gentler levels.
+   */
+  public static void onTrimMemory(int level) {
+    long maxBytes = SkinJobGlobals.imageCacheMaxBytes;
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+      trimToSize(0);
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+        || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+      trimToSize(maxBytes / 4);
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      trimToSize(maxBytes / 2);
+    }
+  }
+
+  /**
+   * Has {@link #onTrimMemory} called whenever {@code context}'s application is asked to trim
+   * memory. Only the first call has any effect.
+   */
+  public static synchronized void registerTrimCallbacks(Context context) {
+    if (!registered && context != null) {
+      context.getApplicationContext().registerComponentCallbacks(trimCallbacks);
+      registered = true;
+    }
+  }
+
+  private static Segment segmentFor(Object key) {
+    int h = key.hashCode();
+    // Spread the high bits down, since the segment is picked from the low bits
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return segments[h & (SEGMENTS - 1)];
+  }
+
+  /**
+   * Returns the number of bytes of pixel data {@code image} currently holds.
+   */
+  static long sizeOf(Image image) {
+    long size = 0;
+    if (image instanceof SkinJobAndroidBitmapWrapper) {
+      size = ((SkinJobAndroidBitmapWrapper) image).sjGetAndroidBitmap().getByteCount();
+    } else if (image instanceof ToolkitImage) {
+      BufferedImage pixels = ((ToolkitImage) image).getBufferedImage();
+      if (pixels != null) {
+        // ImageRepresentation stores one int per pixel
+        size = 4L * pixels.getWidth() * pixels.getHeight()
+            + SkinJobUtil.getAndroidCopyByteCount(pixels);
+      }
+    }
+    return Math.max(size, MIN_ENTRY_BYTES);
+  }
+
+  /**
+   * A cached image and what it's charged. Also watches a {@link ToolkitImage} as it loads, and
+   * holds the only strong reference to itself as a watcher, which {@link ImageWatched} keeps only
+   * weakly.
+   */
+  private static final class Entry implements ImageObserver {
+    final Object key;
+    final Image image;
+    /**
+     * Guarded by the lock of the segment holding this entry.
+     */
+    long size;
+    /**
+     * When this entry was last used, from {@link #clock}. Guarded like {@link #size}.
+     */
+    long stamp = clock.incrementAndGet();
+    /**
+     * Whether this entry is in its segment's map, so that checking doesn't have to look it up and
+     * thereby reorder the map. Guarded like {@link #size}.
+     */
+    boolean cached;
+
+    Entry(Object key, Image image, long size) {
+      this.key = key;
+      this.image = image;
+      this.size = size;
+    }
+
+    /**
+     * Charges this entry for the pixels its image holds now, if it's still cached.
+     */
+    void remeasure() {
+      long newSize = sizeOf(image);
+      if (segmentFor(key).resize(this, newSize)) {
+        trimToSize(SkinJobGlobals.imageCacheMaxBytes);
+      }
+    }
+
+    @Override
+    public boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height) {
+      if ((infoflags & (FRAMEBITS | ALLBITS | ERROR | ABORT)) != 0) {
+        remeasure();
+      }
+      // Animations keep loading frames, so only a finished image stops being watched
+      return (infoflags & (ALLBITS | ERROR | ABORT)) == 0;
+    }
+  }
+
+  /**
+   * One lock's worth of the cache, in least recently used order.
+   */
+  private static final class Segment {
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    synchronized Image get(Object key) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      entry.stamp = clock.incrementAndGet();
+      return entry.image;
+    }
+
+    synchronized Image putIfAbsent(Entry entry) {
+      Entry existing = entries.get(entry.key);
+      if (existing != null) {
+        existing.stamp = clock.incrementAndGet();
+        return existing.image;
+      }
+      entries.put(entry.key, entry);
+      entry.cached = true;
+      totalBytes.addAndGet(entry.size);
+      return null;
+    }
+
+    /**
+     * Changes what {@code entry} is charged, and returns whether it's still cached and changed.
+     */
+    synchronized boolean resize(Entry entry, long newSize) {
+      if (!entry.cached || entry.size == newSize) {
+        return false;
+      }
+      totalBytes.addAndGet(newSize - entry.size);
+      entry.size = newSize;
+      return true;
+    }
+
+    synchronized void remove(Object key) {
+      Entry entry = entries.remove(key);
+      if (entry != null) {
+        entry.cached = false;
+        totalBytes.addAndGet(-entry.size);
+      }
+    }
+
+    /**
+     * Returns the stamp of the least recently used entry, or {@link Long#MAX_VALUE} if empty.
+     */
+    synchronized long getEldestStamp() {
+      Iterator<Entry> iterator = entries.values().iterator();
+      return iterator.hasNext() ? iterator.next().stamp : Long.MAX_VALUE;
+    }
+
+    /**
+     * Drops the least recently used entry, if its stamp is still {@code stamp}.
+     */
+    synchronized void removeEldest(long stamp) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      if (iterator.hasNext()) {
+        Entry eldest = iterator.next();
+        if (eldest.stamp == stamp) {
+          totalBytes.addAndGet(-eldest.size);
+          iterator.remove();
+          eldest.cached = false;
+          evictionCount.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  private static final class TrimCallbacks implements ComponentCallbacks2 {
+    @Override
+    public void onTrimMemory(int level) {
+      ImageCache.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+      trimToSize(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // No-op
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package skinjob.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import skinjob.SkinJobGlobals;
+
+/**
+ * Splits row-oriented image processing into horizontal bands and runs them on a shared pool of
+ * daemon worker threads, with the calling thread processing the first band itself. The number of
+ * bands is governed by {@link SkinJobGlobals#imagingThreads} and {@link
+ * SkinJobGlobals#minPixelsPerImagingBand}.
+ */
+public final class ParallelBands {
+
+  private static final long KEEP_ALIVE_SECONDS = 30;
+  private static ThreadPoolExecutor pool;
+
+  /**
+   * Utility class; do not instantiate.
+   */
+  private ParallelBands() {
+  }
+
+  /**
+   * Runs {@code task} over the rows {@code [y, y + height)}, possibly in parallel. Returns when
+   * every band has finished. Calls made from a worker thread run serially, so that nested
+   * operations can't deadlock the pool.
+   *
+   * @param y the first row
+   * @param height the number of rows
+   * @param width the number of pixels in each row, used to decide how many bands are worthwhile
+   * @param task the work to perform on each band
+   * @throws RuntimeException or {@link Error} if any band threw one
+   */
+  public static void run(int y, int height, int width, BandTask task) {
+    int numBands = countBands(height, width);
+    if (numBands <= 1 || Thread.currentThread() instanceof Worker) {
+      if (height > 0) {
+        task.run(y, y + height);
+      }
+      return;
+    }
+    ThreadPoolExecutor executor = getPool(numBands - 1);
+    List<Future<?>> futures = new ArrayList<>(numBands - 1);
+    for (int i = 1; i < numBands; i++) {
+      final int yStart = y + (int) ((long) height * i / numBands);
+      final int yEnd = y + (int) ((long) height * (i + 1) / numBands);
+      futures.add(executor.submit(new BandRunnable(task, yStart, yEnd)));
+    }
+    Throwable failure = null;
+    try {
+      task.run(y, y + (int) ((long) height / numBands));
+    } catch (RuntimeException | Error e) {
+      failure = e;
+    }
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          // Bands write into the caller's buffers, so we can't return until they're done
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause();
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+  }
+
+  /**
+   * @return the number of bands {@link #run} would use for an image of the given size.
+   */
+  public static int countBands(int height, int width) {
+    long pixels = (long) height * width;
+    long byPixels = pixels / Math.max(1, SkinJobGlobals.minPixelsPerImagingBand);
+    int threads = SkinJobGlobals.imagingThreads;
+    return (int) Math.max(1, Math.min(Math.min(threads, byPixels), height));
+  }
+
+  private static synchronized ThreadPoolExecutor getPool(int minThreads) {
+    if (pool == null) {
+      pool = new ThreadPoolExecutor(minThreads,
+          minThreads,
+          KEEP_ALIVE_SECONDS,
+          TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new WorkerFactory());
+      pool.allowCoreThreadTimeOut(true);
+    } else if (pool.getMaximumPoolSize() < minThreads) {
+      // Grow only; SkinJobGlobals.imagingThreads may have been raised since the pool was created
+      pool.setMaximumPoolSize(minThreads);
+      pool.setCorePoolSize(minThreads);
+    }
+    return pool;
+  }
+
+  /**
+   * A unit of work covering a range of rows.
+   */
+  public interface BandTask {
+    /**
+     * @param yStart the first row to process
+     * @param yEnd one past the last row to process
+     */
+    void run(int yStart, int yEnd);
+  }
+
+  private static final class BandRunnable implements Runnable {
+    private final BandTask task;
+    private final int yStart;
+    private final int yEnd;
+
+    BandRunnable(BandTask task, int yStart, int yEnd) {
+      this.task = task;
+      this.yStart = yStart;
+      this.yEnd = yEnd;
+    }
+
+    @Override
+    public void run() {
+      task.run(yStart, yEnd);
+    }
+  }
+
+  private static final class Worker extends Thread {
+    Worker(Runnable target, String name) {
+      super(target, name);
+      setDaemon(true);
+    }
+  }
+
+  private static final class WorkerFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      return new Worker(r, "SkinJob-Imaging-" + count.incrementAndGet());
+    }
+  }
+}
@@ -8,14 +8,20 @@ import android.view.Window;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import skinjob.internal.SkinJobAndroidBitmapWrapper;
 import skinjob.internal.SkinJobBufferedImage;
 import skinjob.internal.SkinJobGraphics;
+import sun.awt.image.ToolkitImage;
 
 import static java.awt.peer.ComponentPeer.SET_BOUNDS;
 import static java.awt.peer.ComponentPeer.SET_LOCATION;
@@ -26,6 +32,12 @@ import static java.awt.peer.ComponentPeer.SET_SIZE;
  */
 public final class SkinJobUtil {
   public static final Constructor<? extends Window> ANDROID_WINDOW_IMPL_CTOR;
+  /**
+   * Copies of fully loaded {@link ToolkitImage}s, keyed by the image's pixels so that an image
+   * that is flushed and reloaded gets a fresh copy.
+   */
+  private static final Map<BufferedImage, Bitmap> toolkitImageBitmaps
+      = Collections.synchronizedMap(new WeakHashMap<BufferedImage, Bitmap>());
 
   static {
     try {
@@ -84,6 +96,8 @@ public final class SkinJobUtil {
   public static Bitmap asAndroidBitmap(Image image) {
     if (image instanceof SkinJobAndroidBitmapWrapper) {
       return ((SkinJobAndroidBitmapWrapper) image).sjGetAndroidBitmap();
+    } else if (image instanceof ToolkitImage) {
+      return toolkitImageBitmap((ToolkitImage) image);
     } else if (image instanceof RenderedImage) {
       return copyToAndroidBitmap((RenderedImage) image);
     } else {
@@ -96,6 +110,32 @@ public final class SkinJobUtil {
     }
   }
 
+  private static Bitmap toolkitImageBitmap(ToolkitImage image) {
+    BufferedImage pixels = image.getBufferedImage();
+    if (pixels == null) {
+      throw new UnsupportedOperationException("This Image hasn't started loading");
+    }
+    if ((image.getImageRep().check(null) & ImageObserver.ALLBITS) == 0) {
+      // Still loading, so the pixels may change
+      return copyToAndroidBitmap(pixels);
+    }
+    Bitmap bitmap = toolkitImageBitmaps.get(pixels);
+    if (bitmap == null) {
+      bitmap = copyToAndroidBitmap(pixels);
+      toolkitImageBitmaps.put(pixels, bitmap);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns the size of the Android copy {@link #asAndroidBitmap} has kept of a loaded {@link
+   * ToolkitImage} whose pixels are {@code pixels}, or 0 if there isn't one.
+   */
+  static long getAndroidCopyByteCount(BufferedImage pixels) {
+    Bitmap bitmap = toolkitImageBitmaps.get(pixels);
+    return bitmap == null ? 0 : bitmap.getByteCount();
+  }
+
   private static Bitmap copyToAndroidBitmap(RenderedImage image) {
     Raster raster = image.getData();
     int width = image.getWidth();
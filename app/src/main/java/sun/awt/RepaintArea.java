@@ -0,0 +1,110 @@
+package sun.awt;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.PaintEvent;
+
+/**
+ * The part of a heavyweight component that {@link PaintEvent}s have asked to have repainted, so
+ * that a burst of requests can be served with one paint. PAINT and UPDATE requests are kept apart,
+ * since they're served by {@link Component#paint} and {@link Component#update} respectively; each
+ * kind is merged into the bounding rectangle of its requests.
+ * <p>
+ * Areas are usually added by the threads posting the events, and painted on the event dispatch
+ * thread, so all methods are thread-safe.
+ */
+public class RepaintArea {
+  private static final int PAINT = 0;
+  private static final int UPDATE = 1;
+
+  private final Rectangle[] rects = new Rectangle[2];
+
+  /**
+   * Adds the area of a request of the given type, which is {@link PaintEvent#PAINT} or {@link
+   * PaintEvent#UPDATE}.
+   */
+  public synchronized void add(Rectangle r, int id) {
+    if (r == null || r.isEmpty()) {
+      return;
+    }
+    int index = id == PaintEvent.PAINT ? PAINT : UPDATE;
+    if (rects[index] == null) {
+      rects[index] = new Rectangle(r);
+    } else {
+      rects[index].add(r);
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    return rects[PAINT] == null && rects[UPDATE] == null;
+  }
+
+  /**
+   * Returns the bounding rectangle of everything waiting to be painted, or null if nothing is.
+   */
+  public synchronized Rectangle getBounds() {
+    Rectangle bounds = null;
+    for (Rectangle r : rects) {
+      if (r != null) {
+        if (bounds == null) {
+          bounds = new Rectangle(r);
+        } else {
+          bounds.add(r);
+        }
+      }
+    }
+    return bounds;
+  }
+
+  /**
+   * Returns a copy of this area and empties this one, so that requests arriving while the copy is
+   * painted are kept for the next paint.
+   */
+  public synchronized RepaintArea cloneAndReset() {
+    RepaintArea copy = new RepaintArea();
+    System.arraycopy(rects, 0, copy.rects, 0, rects.length);
+    rects[PAINT] = null;
+    rects[UPDATE] = null;
+    return copy;
+  }
+
+  /**
+   * Paints {@code target} through {@code g}, clipped to each kind of request in turn and to the
+   * target's size. A PAINT area that the UPDATE area covers is skipped, since updating a component
+   * paints it too.
+   */
+  public void paint(Component target, Graphics g) {
+    Rectangle paint;
+    Rectangle update;
+    synchronized (this) {
+      paint = rects[PAINT];
+      update = rects[UPDATE];
+    }
+    Rectangle size = new Rectangle(0, 0, target.getWidth(), target.getHeight());
+    if (paint != null && (update == null || !update.contains(paint))) {
+      paint = paint.intersection(size);
+      if (!paint.isEmpty()) {
+        Graphics pg = g.create();
+        try {
+          pg.clipRect(paint.x, paint.y, paint.width, paint.height);
+          target.paint(pg);
+        } finally {
+          pg.dispose();
+        }
+      }
+    }
+    if (update != null) {
+      update = update.intersection(size);
+      if (!update.isEmpty()) {
+        Graphics ug = g.create();
+        try {
+          ug.clipRect(update.x, update.y, update.width, update.height);
+          target.update(ug);
+        } finally {
+          ug.dispose();
+        }
+      }
+    }
+  }
+}
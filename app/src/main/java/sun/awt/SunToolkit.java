@@ -47,6 +47,7 @@ import java.util.WeakHashMap;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+import skinjob.util.ImageCache;
 import sun.awt.image.ByteArrayImageSource;
 import sun.awt.image.FileImageSource;
 import sun.awt.image.ImageRepresentation;
@@ -99,7 +100,6 @@ public final class SunToolkit {
    * }
    */
   public static final ReentrantLock AWT_LOCK = new ReentrantLock();
-  static final SoftCache imgCache = new SoftCache<URL, Image>();
   /* The key to put()/get() the PostEventQueue into/from the AppContext.
    */
   private static final String POST_EVENT_QUEUE_KEY = "PostEventQueue";
@@ -309,17 +309,38 @@ public final class SunToolkit {
 
   static Image getImageFromHash(Toolkit tk, String filename) {
     checkPermissions(filename);
-    synchronized (imgCache) {
-      Image img = (Image) imgCache.get(filename);
-      if (img == null) {
-        try {
-          img = tk.createImage(new FileImageSource(filename));
-          imgCache.put(filename, img);
-        } catch (Exception e) {
-        }
+    Image img = ImageCache.get(filename);
+    if (img == null) {
+      try {
+        img = tk.createImage(new FileImageSource(filename));
+      } catch (Exception e) {
+        return null;
+      }
+      // Creating the image is cheap, so if another thread raced us, just use its image
+      Image existing = ImageCache.putIfAbsent(filename, img);
+      if (existing != null) {
+        img = existing;
+      }
+    }
+    return img;
+  }
+
+  static Image getImageFromHash(Toolkit tk, URL url) {
+    // Keyed by string, since URL.equals may resolve host names
+    String key = url.toString();
+    Image img = ImageCache.get(key);
+    if (img == null) {
+      try {
+        img = tk.createImage(new URLImageSource(url));
+      } catch (Exception e) {
+        return null;
+      }
+      Image existing = ImageCache.putIfAbsent(key, img);
+      if (existing != null) {
+        img = existing;
       }
-      return img;
     }
+    return img;
   }
 
   private static int getRVSize(int size) {
@@ -502,7 +523,7 @@ public final class SunToolkit {
   }
 
   public static Image getImage(URL url) {
-    return getImageFromHash(Toolkit.getDefaultToolkit(), url.toString());
+    return getImageFromHash(Toolkit.getDefaultToolkit(), url);
   }
 
   public static Image createImage(String filename) {
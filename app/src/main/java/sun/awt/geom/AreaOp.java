@@ -25,11 +25,10 @@
 
 package sun.awt.geom;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Enumeration;
 import java.util.List;
-import java.util.Vector;
 
 public abstract class AreaOp {
   /* Constants to tag the left and right curves in the edge list */
@@ -42,11 +41,11 @@ public abstract class AreaOp {
   /* Constants used to classify result state */
   public static final int RSTAG_INSIDE = 1;
   public static final int RSTAG_OUTSIDE = -1;
-  private static final Comparator YXTopComparator = new Comparator() {
+  private static final Comparator<Edge> YXTopComparator = new Comparator<Edge>() {
     @Override
-    public int compare(Object o1, Object o2) {
-      Curve c1 = ((Edge) o1).getCurve();
-      Curve c2 = ((Edge) o2).getCurve();
+    public int compare(Edge o1, Edge o2) {
+      Curve c1 = o1.getCurve();
+      Curve c2 = o2.getCurve();
       double v1, v2;
       if ((v1 = c1.getYTop()) == (v2 = c2.getYTop())) {
         if ((v1 = c1.getXTop()) == (v2 = c2.getXTop())) {
@@ -59,23 +58,32 @@ public abstract class AreaOp {
       return 1;
     }
   };
-  private static final CurveLink[] EmptyLinkList = new CurveLink[2];
-  private static final ChainEnd[] EmptyChainList = new ChainEnd[2];
+  /**
+   * The working storage of {@link #calculate}, kept per thread so that each operation doesn't
+   * allocate its own. Only used by one operation at a time, and emptied after each one so that it
+   * doesn't keep the curves reachable.
+   */
+  private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
 
   private AreaOp() {
   }
 
-  private static void addEdges(Vector edges, Vector curves, int curvetag) {
-    Enumeration enum_ = curves.elements();
-    while (enum_.hasMoreElements()) {
-      Curve c = (Curve) enum_.nextElement();
+  private static int addEdges(Edge[] edges, int numedges, List<Curve> curves, int curvetag) {
+    for (int i = 0, n = curves.size(); i < n; i++) {
+      Curve c = curves.get(i);
       if (c.getOrder() > 0) {
-        edges.add(new Edge(c, curvetag));
+        edges[numedges++] = new Edge(c, curvetag);
       }
     }
+    return numedges;
   }
 
-  public static void finalizeSubCurves(List subcurves, List chains) {
+  public static void finalizeSubCurves(List<CurveLink> subcurves, List<ChainEnd> chains) {
     int numchains = chains.size();
     if (numchains == 0) {
       return;
@@ -83,11 +91,9 @@ public abstract class AreaOp {
     if ((numchains & 1) != 0) {
       throw new InternalError("Odd number of chains!");
     }
-    ChainEnd[] endlist = new ChainEnd[numchains];
-    chains.toArray(endlist);
     for (int i = 1; i < numchains; i += 2) {
-      ChainEnd open = endlist[i - 1];
-      ChainEnd close = endlist[i];
+      ChainEnd open = chains.get(i - 1);
+      ChainEnd close = chains.get(i);
       CurveLink subcurve = open.linkTo(close);
       if (subcurve != null) {
         subcurves.add(subcurve);
@@ -97,29 +103,40 @@ public abstract class AreaOp {
   }
 
   public static void resolveLinks(
-      List subcurves, List chains, List links) {
+      List<CurveLink> subcurves, List<ChainEnd> chains, List<CurveLink> links) {
+    resolveLinks(subcurves, chains, links, scratch.get());
+  }
+
+  private static void resolveLinks(
+      List<CurveLink> subcurves, List<ChainEnd> chains, List<CurveLink> links, Scratch s) {
     int numlinks = links.size();
-    CurveLink[] linklist;
-    if (numlinks == 0) {
-      linklist = EmptyLinkList;
-    } else {
-      if ((numlinks & 1) != 0) {
-        throw new InternalError("Odd number of new curves!");
-      }
-      linklist = new CurveLink[numlinks + 2];
-      links.toArray(linklist);
+    if ((numlinks & 1) != 0) {
+      throw new InternalError("Odd number of new curves!");
     }
     int numchains = chains.size();
-    ChainEnd[] endlist;
-    if (numchains == 0) {
-      endlist = EmptyChainList;
-    } else {
-      if ((numchains & 1) != 0) {
-        throw new InternalError("Odd number of chains!");
-      }
-      endlist = new ChainEnd[numchains + 2];
-      chains.toArray(endlist);
+    if ((numchains & 1) != 0) {
+      throw new InternalError("Odd number of chains!");
+    }
+    // Both lists are followed by two nulls, which end the walk below
+    CurveLink[] linklist = s.linkArray(numlinks + 2);
+    for (int i = 0; i < numlinks; i++) {
+      linklist[i] = links.get(i);
     }
+    ChainEnd[] endlist = s.chainArray(numchains + 2);
+    for (int i = 0; i < numchains; i++) {
+      endlist[i] = chains.get(i);
+    }
+    try {
+      resolveLinks(subcurves, chains, linklist, endlist);
+    } finally {
+      Arrays.fill(linklist, 0, numlinks, null);
+      Arrays.fill(endlist, 0, numchains, null);
+    }
+  }
+
+  private static void resolveLinks(
+      List<CurveLink> subcurves, List<ChainEnd> chains, CurveLink[] linklist,
+      ChainEnd[] endlist) {
     int curchain = 0;
     int curlink = 0;
     chains.clear();
@@ -220,30 +237,35 @@ public abstract class AreaOp {
 
   public abstract int getState();
 
-  public Vector calculate(Vector left, Vector right) {
-    Vector edges = new Vector();
-    addEdges(edges, left, CTAG_LEFT);
-    addEdges(edges, right, CTAG_RIGHT);
-    edges = pruneEdges(edges);
-    return edges;
-  }
-
-  private Vector pruneEdges(Vector edges) {
-    int numedges = edges.size();
+  public ArrayList<Curve> calculate(List<Curve> left, List<Curve> right) {
+    Edge[] edgelist = new Edge[left.size() + right.size()];
+    int numedges = addEdges(edgelist, 0, left, CTAG_LEFT);
+    numedges = addEdges(edgelist, numedges, right, CTAG_RIGHT);
     if (numedges < 2) {
-      return edges;
+      // Fewer than 2 edges enclose nothing
+      return new ArrayList<>();
     }
-    Edge[] edgelist = (Edge[]) edges.toArray(new Edge[numedges]);
-    Arrays.sort(edgelist, YXTopComparator);
+    Scratch s = scratch.get();
+    try {
+      return pruneEdges(edgelist, numedges, s);
+    } finally {
+      s.clear();
+    }
+  }
+
+  private ArrayList<Curve> pruneEdges(Edge[] edgelist, int numedges, Scratch s) {
+    Arrays.sort(edgelist, 0, numedges, YXTopComparator);
     Edge e;
     int left = 0;
     int right = 0;
     int cur;
     int next;
-    double[] yrange = new double[2];
-    Vector subcurves = new Vector();
-    Vector chains = new Vector();
-    Vector links = new Vector();
+    double[] yrange = s.yrange;
+    yrange[0] = 0;
+    yrange[1] = 0;
+    ArrayList<CurveLink> subcurves = s.subcurves;
+    ArrayList<ChainEnd> chains = s.chains;
+    ArrayList<CurveLink> links = s.links;
     // Active edges are between left (inclusive) and right (exclusive)
     while (left < numedges) {
       double y = yrange[0];
@@ -343,7 +365,6 @@ public abstract class AreaOp {
           Edge activematch = null;
           Edge longestmatch = e;
           double furthesty = yend;
-          ++cur;
           do {
             // Note: classify() must be called
             // on every edge we consume here.
@@ -356,8 +377,7 @@ public abstract class AreaOp {
               longestmatch = e;
               furthesty = y;
             }
-            ++cur;
-          } while (cur < right && (e = edgelist[cur]).getEquivalence() == eq);
+          } while (++cur < right && (e = edgelist[cur]).getEquivalence() == eq);
           --cur;
           if (getState() == origstate) {
             etag = ETAG_IGNORE;
@@ -392,17 +412,16 @@ public abstract class AreaOp {
           }
         }
       }
-      resolveLinks(subcurves, chains, links);
+      resolveLinks(subcurves, chains, links, s);
       links.clear();
       // Finally capture the bottom of the valid Y range as the top
       // of the next Y range.
       yrange[0] = yend;
     }
     finalizeSubCurves(subcurves, chains);
-    Vector ret = new Vector();
-    Enumeration enum_ = subcurves.elements();
-    while (enum_.hasMoreElements()) {
-      CurveLink link = (CurveLink) enum_.nextElement();
+    ArrayList<Curve> ret = new ArrayList<>(subcurves.size() * 2);
+    for (int i = 0, n = subcurves.size(); i < n; i++) {
+      CurveLink link = subcurves.get(i);
       ret.add(link.getMoveto());
       CurveLink nextlink = link;
       while ((nextlink = nextlink.getNext()) != null) {
@@ -527,4 +546,37 @@ public abstract class AreaOp {
       return inside ? RSTAG_INSIDE : RSTAG_OUTSIDE;
     }
   }
+
+  /**
+   * Lists and arrays reused by every operation on one thread. The arrays are only ever grown, and
+   * hold nothing but nulls between uses.
+   */
+  private static final class Scratch {
+    final double[] yrange = new double[2];
+    final ArrayList<CurveLink> subcurves = new ArrayList<>();
+    final ArrayList<ChainEnd> chains = new ArrayList<>();
+    final ArrayList<CurveLink> links = new ArrayList<>();
+    private CurveLink[] linkArray = new CurveLink[16];
+    private ChainEnd[] chainArray = new ChainEnd[16];
+
+    CurveLink[] linkArray(int length) {
+      if (linkArray.length < length) {
+        linkArray = new CurveLink[Math.max(length, linkArray.length * 2)];
+      }
+      return linkArray;
+    }
+
+    ChainEnd[] chainArray(int length) {
+      if (chainArray.length < length) {
+        chainArray = new ChainEnd[Math.max(length, chainArray.length * 2)];
+      }
+      return chainArray;
+    }
+
+    void clear() {
+      subcurves.clear();
+      chains.clear();
+      links.clear();
+    }
+  }
 }
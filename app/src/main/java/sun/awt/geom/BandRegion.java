@@ -0,0 +1,542 @@
+package sun.awt.geom;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import sun.awt.geom.AreaOp.CAGOp;
+import sun.awt.geom.AreaOp.EOWindOp;
+
+/**
+ * A union of axis-aligned rectangles, kept as horizontal bands in the manner of an X11 region or
+ * Android's {@code Region}. Each band covers a range of y, and holds the ranges of x that it covers
+ * there. Bands are sorted from top to bottom and don't overlap; the x ranges of a band are sorted
+ * and neither overlap nor touch; and a band that continues the one above it with the same x ranges
+ * is merged into it. So each region has exactly one representation.
+ * <p>
+ * A boolean operation on two regions only merges sorted lists, so it's much cheaper than the sweep
+ * in {@link AreaOp#calculate}. Rectangles, and the rectilinear shapes that clips and repaint areas
+ * are built from, are kept this way by {@link java.awt.geom.Area}. Regions are immutable.
+ */
+public final class BandRegion {
+  public static final BandRegion EMPTY = new Builder().build();
+
+  private static final Comparator<Curve> YTopComparator = new Comparator<Curve>() {
+    @Override
+    public int compare(Curve c1, Curve c2) {
+      return Double.compare(c1.getYTop(), c2.getYTop());
+    }
+  };
+
+  private final int numBands;
+  /**
+   * The top and bottom of each band.
+   */
+  private final double[] ys;
+  /**
+   * Where the x ranges of each band start in {@link #xs}, followed by where the last band's end.
+   */
+  private final int[] starts;
+  /**
+   * The start and end of each x range.
+   */
+  private final double[] xs;
+
+  private BandRegion(int numBands, double[] ys, int[] starts, double[] xs) {
+    this.numBands = numBands;
+    this.ys = ys;
+    this.starts = starts;
+    this.xs = xs;
+  }
+
+  /**
+   * Returns the region covering the rectangle from ({@code x0}, {@code y0}) to ({@code x1}, {@code
+   * y1}), which is empty unless {@code x0 < x1} and {@code y0 < y1}.
+   */
+  public static BandRegion of(double x0, double y0, double x1, double y1) {
+    if (!(x0 < x1 && y0 < y1)) {
+      return EMPTY;
+    }
+    return new BandRegion(1, new double[]{y0, y1}, new int[]{0, 2}, new double[]{x0, x1});
+  }
+
+  /**
+   * Returns the region enclosed by {@code curves}, as calculated by {@link AreaOp}, or null if the
+   * curves aren't all vertical lines.
+   */
+  public static BandRegion fromCurves(List<Curve> curves) {
+    int numcurves = curves.size();
+    int numedges = 0;
+    for (int i = 0; i < numcurves; i++) {
+      Curve c = curves.get(i);
+      if (c.getOrder() > 1 || (c.getOrder() == 1 && c.getXTop() != c.getXBot())) {
+        return null;
+      }
+      if (c.getOrder() == 1) {
+        numedges++;
+      }
+    }
+    Curve[] edges = new Curve[numedges];
+    double[] edgeys = new double[numedges * 2];
+    numedges = 0;
+    for (int i = 0; i < numcurves; i++) {
+      Curve c = curves.get(i);
+      if (c.getOrder() == 1) {
+        edgeys[numedges * 2] = c.getYTop();
+        edgeys[numedges * 2 + 1] = c.getYBot();
+        edges[numedges++] = c;
+      }
+    }
+    Arrays.sort(edges, YTopComparator);
+    Arrays.sort(edgeys);
+    // The curves don't overlap, so the x ranges covered between each pair of consecutive y values
+    // are those between alternate edges
+    Builder builder = new Builder();
+    Curve[] active = new Curve[numedges];
+    double[] activexs = new double[numedges];
+    int numactive = 0;
+    int next = 0;
+    for (int i = 1; i < edgeys.length; i++) {
+      double y0 = edgeys[i - 1];
+      double y1 = edgeys[i];
+      if (y0 == y1) {
+        continue;
+      }
+      int kept = 0;
+      for (int j = 0; j < numactive; j++) {
+        if (active[j].getYBot() > y0) {
+          active[kept++] = active[j];
+        }
+      }
+      numactive = kept;
+      while (next < numedges && edges[next].getYTop() <= y0) {
+        active[numactive++] = edges[next++];
+      }
+      if ((numactive & 1) != 0) {
+        return null;
+      }
+      for (int j = 0; j < numactive; j++) {
+        activexs[j] = active[j].getXTop();
+      }
+      Arrays.sort(activexs, 0, numactive);
+      for (int j = 0; j < numactive; j += 2) {
+        builder.addRange(activexs[j], activexs[j + 1]);
+      }
+      builder.endBand(y0, y1);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the region that {@code op} makes of this region as its left operand and {@code right}
+   * as its right.
+   */
+  public BandRegion calculate(CAGOp op, BandRegion right) {
+    BandRegion left = this;
+    Builder builder = new Builder();
+    int ia = 0;
+    int ib = 0;
+    double y = Double.NEGATIVE_INFINITY;
+    while (ia < left.numBands || ib < right.numBands) {
+      double atop = ia < left.numBands ? left.ys[ia * 2] : Double.POSITIVE_INFINITY;
+      double btop = ib < right.numBands ? right.ys[ib * 2] : Double.POSITIVE_INFINITY;
+      // Skip any gap where neither region has a band
+      y = Math.max(y, Math.min(atop, btop));
+      boolean inLeft = atop <= y;
+      boolean inRight = btop <= y;
+      double yend = Math.min(inLeft ? left.ys[ia * 2 + 1] : atop,
+          inRight ? right.ys[ib * 2 + 1] : btop);
+      merge(op,
+          left.xs, inLeft ? left.starts[ia] : 0, inLeft ? left.starts[ia + 1] : 0,
+          right.xs, inRight ? right.starts[ib] : 0, inRight ? right.starts[ib + 1] : 0,
+          builder);
+      builder.endBand(y, yend);
+      y = yend;
+      if (inLeft && left.ys[ia * 2 + 1] == y) {
+        ia++;
+      }
+      if (inRight && right.ys[ib * 2 + 1] == y) {
+        ib++;
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Adds the x ranges that {@code op} makes of the ranges {@code axs[ai..aend)} and {@code
+   * bxs[bi..bend)} to the current band of {@code builder}.
+   */
+  private static void merge(
+      CAGOp op, double[] axs, int ai, int aend, double[] bxs, int bi, int bend,
+      Builder builder) {
+    boolean inLeft = false;
+    boolean inRight = false;
+    boolean inResult = false;
+    double start = 0;
+    while (ai < aend || bi < bend) {
+      double x = bi >= bend || (ai < aend && axs[ai] <= bxs[bi]) ? axs[ai] : bxs[bi];
+      if (ai < aend && axs[ai] == x) {
+        inLeft = !inLeft;
+        ai++;
+      }
+      if (bi < bend && bxs[bi] == x) {
+        inRight = !inRight;
+        bi++;
+      }
+      boolean newResult = op.newClassification(inLeft, inRight);
+      if (newResult != inResult) {
+        if (newResult) {
+          start = x;
+        } else {
+          builder.addRange(start, x);
+        }
+        inResult = newResult;
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return numBands == 0;
+  }
+
+  /**
+   * Returns whether this region is empty or a single rectangle.
+   */
+  public boolean isRectangle() {
+    return numBands == 0 || (numBands == 1 && starts[1] == 2);
+  }
+
+  /**
+   * Returns the bounds of this region, or an empty rectangle at the origin if it's empty.
+   */
+  public Rectangle2D getBounds() {
+    Rectangle2D.Double r = new Rectangle2D.Double();
+    if (numBands > 0) {
+      double xmin = Double.POSITIVE_INFINITY;
+      double xmax = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < numBands; i++) {
+        xmin = Math.min(xmin, xs[starts[i]]);
+        xmax = Math.max(xmax, xs[starts[i + 1] - 1]);
+      }
+      r.setRect(xmin, ys[0], xmax - xmin, ys[numBands * 2 - 1] - ys[0]);
+    }
+    return r;
+  }
+
+  /**
+   * Returns whether the point is in this region. Like {@link Rectangle2D#contains(double, double)},
+   * points on the bottom and right edges are outside.
+   */
+  public boolean contains(double x, double y) {
+    int band = findBand(y);
+    if (band >= numBands || ys[band * 2] > y) {
+      return false;
+    }
+    for (int i = starts[band], end = starts[band + 1]; i < end && xs[i] <= x; i += 2) {
+      if (x < xs[i + 1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether this region covers the whole rectangle from ({@code x0}, {@code y0}) to
+   * ({@code x1}, {@code y1}), which mustn't be empty.
+   */
+  public boolean contains(double x0, double y0, double x1, double y1) {
+    double y = y0;
+    for (int band = findBand(y0); y < y1; band++) {
+      if (band >= numBands || ys[band * 2] > y || !bandCovers(band, x0, x1)) {
+        return false;
+      }
+      y = ys[band * 2 + 1];
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether this region overlaps the inside of the rectangle from ({@code x0}, {@code y0})
+   * to ({@code x1}, {@code y1}), which mustn't be empty.
+   */
+  public boolean intersects(double x0, double y0, double x1, double y1) {
+    for (int band = findBand(y0); band < numBands && ys[band * 2] < y1; band++) {
+      for (int i = starts[band], end = starts[band + 1]; i < end && xs[i] < x1; i += 2) {
+        if (xs[i + 1] > x0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns this region transformed by {@code at}, or null if {@code at} rotates or shears, so that
+   * the result wouldn't be made of axis-aligned rectangles.
+   */
+  public BandRegion transform(AffineTransform at) {
+    if (at.getShearX() != 0 || at.getShearY() != 0) {
+      return null;
+    }
+    double sx = at.getScaleX();
+    double sy = at.getScaleY();
+    double tx = at.getTranslateX();
+    double ty = at.getTranslateY();
+    if (sx == 0 || sy == 0) {
+      return EMPTY;
+    }
+    Builder builder = new Builder();
+    // A negative scale reverses the order of the bands or of the ranges within them
+    for (int k = 0; k < numBands; k++) {
+      int band = sy > 0 ? k : numBands - 1 - k;
+      int start = starts[band];
+      int end = starts[band + 1];
+      for (int j = start; j < end; j += 2) {
+        int i = sx > 0 ? j : end - 2 - (j - start);
+        double x0 = xs[i] * sx + tx;
+        double x1 = xs[i + 1] * sx + tx;
+        builder.addRange(Math.min(x0, x1), Math.max(x0, x1));
+      }
+      double y0 = ys[band * 2] * sy + ty;
+      double y1 = ys[band * 2 + 1] * sy + ty;
+      builder.endBand(Math.min(y0, y1), Math.max(y0, y1));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the outline of this region as {@link AreaOp} would calculate it: the rectangles are
+   * merged into the polygons they form.
+   */
+  public List<Curve> toCurves() {
+    if (numBands == 0) {
+      return Collections.emptyList();
+    }
+    // Each side of an x range that carries on into the next band is extended rather than ended, so
+    // that AreaOp sees one line for it and doesn't split the outline at every band
+    ArrayList<Curve> curves = new ArrayList<>(xs.length);
+    int maxRanges = 0;
+    for (int band = 0; band < numBands; band++) {
+      maxRanges = Math.max(maxRanges, starts[band + 1] - starts[band]);
+    }
+    double[] openTops = new double[maxRanges];
+    double[] newTops = new double[maxRanges];
+    int openStart = 0;
+    int numOpen = 0;
+    double openBottom = 0;
+    for (int band = 0; band < numBands; band++) {
+      double y0 = ys[band * 2];
+      int start = starts[band];
+      int count = starts[band + 1] - start;
+      boolean touches = numOpen > 0 && openBottom == y0;
+      int j = 0;
+      for (int k = 0; k < count; k++) {
+        double x = xs[start + k];
+        double top = y0;
+        if (touches) {
+          while (j < numOpen && xs[openStart + j] < x) {
+            addSide(curves, j, xs[openStart + j], openTops[j], openBottom);
+            j++;
+          }
+          if (j < numOpen && xs[openStart + j] == x) {
+            if ((j & 1) == (k & 1)) {
+              top = openTops[j];
+            } else {
+              addSide(curves, j, x, openTops[j], openBottom);
+            }
+            j++;
+          }
+        }
+        newTops[k] = top;
+      }
+      for (; j < numOpen; j++) {
+        addSide(curves, j, xs[openStart + j], openTops[j], openBottom);
+      }
+      double[] swap = openTops;
+      openTops = newTops;
+      newTops = swap;
+      openStart = start;
+      numOpen = count;
+      openBottom = ys[band * 2 + 1];
+    }
+    for (int j = 0; j < numOpen; j++) {
+      addSide(curves, j, xs[openStart + j], openTops[j], openBottom);
+    }
+    return new EOWindOp().calculate(curves, Collections.<Curve>emptyList());
+  }
+
+  /**
+   * Adds the left side of an x range, going up, if {@code index} is even, or its right side, going
+   * down, if it's odd.
+   */
+  private static void addSide(List<Curve> curves, int index, double x, double y0, double y1) {
+    if ((index & 1) == 0) {
+      Curve.insertLine(curves, x, y1, x, y0);
+    } else {
+      Curve.insertLine(curves, x, y0, x, y1);
+    }
+  }
+
+  /**
+   * Returns the index of the first band whose bottom is below {@code y}, or {@link #numBands} if
+   * there's none.
+   */
+  private int findBand(double y) {
+    int lo = 0;
+    int hi = numBands;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (ys[mid * 2 + 1] > y) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return lo;
+  }
+
+  private boolean bandCovers(int band, double x0, double x1) {
+    for (int i = starts[band], end = starts[band + 1]; i < end && xs[i] <= x0; i += 2) {
+      if (xs[i + 1] >= x1) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof BandRegion)) {
+      return false;
+    }
+    BandRegion other = (BandRegion) o;
+    if (numBands != other.numBands || starts[numBands] != other.starts[numBands]) {
+      return false;
+    }
+    for (int i = 0; i < numBands * 2; i++) {
+      if (ys[i] != other.ys[i]) {
+        return false;
+      }
+    }
+    for (int i = 0; i <= numBands; i++) {
+      if (starts[i] != other.starts[i]) {
+        return false;
+      }
+    }
+    for (int i = 0; i < starts[numBands]; i++) {
+      if (xs[i] != other.xs[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    long bits = numBands;
+    for (int i = 0; i < numBands * 2; i++) {
+      bits = bits * 31 + Double.doubleToLongBits(ys[i]);
+    }
+    for (int i = 0; i < starts[numBands]; i++) {
+      bits = bits * 31 + Double.doubleToLongBits(xs[i]);
+    }
+    return (int) (bits ^ (bits >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("BandRegion[");
+    for (int band = 0; band < numBands; band++) {
+      if (band > 0) {
+        sb.append(", ");
+      }
+      sb.append(ys[band * 2]).append("..").append(ys[band * 2 + 1]).append(':');
+      for (int i = starts[band], end = starts[band + 1]; i < end; i += 2) {
+        sb.append(' ').append(xs[i]).append("..").append(xs[i + 1]);
+      }
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Builds a region one band at a time, from top to bottom. The x ranges of each band are added in
+   * order, and then the band is ended.
+   */
+  private static final class Builder {
+    private int numBands;
+    private double[] ys = new double[8];
+    private int[] starts = new int[5];
+    private double[] xs = new double[16];
+    private int numXs;
+
+    /**
+     * Adds a range to the current band. A range that's empty is ignored, and one that touches the
+     * previous range is merged into it.
+     */
+    void addRange(double x0, double x1) {
+      if (!(x0 < x1)) {
+        return;
+      }
+      if (numXs > starts[numBands] && xs[numXs - 1] >= x0) {
+        xs[numXs - 1] = Math.max(xs[numXs - 1], x1);
+        return;
+      }
+      if (numXs + 2 > xs.length) {
+        xs = Arrays.copyOf(xs, xs.length * 2);
+      }
+      xs[numXs++] = x0;
+      xs[numXs++] = x1;
+    }
+
+    /**
+     * Ends the current band, giving it the range of y from {@code y0} to {@code y1}. It's dropped
+     * if it's empty, and merged into the previous band if that band ends at {@code y0} with the
+     * same ranges.
+     */
+    void endBand(double y0, double y1) {
+      int start = starts[numBands];
+      if (numXs == start || !(y0 < y1)) {
+        numXs = start;
+        return;
+      }
+      if (numBands > 0 && ys[numBands * 2 - 1] == y0 && sameAsPrevious(start)) {
+        ys[numBands * 2 - 1] = y1;
+        numXs = start;
+        return;
+      }
+      if (numBands * 2 + 2 > ys.length) {
+        ys = Arrays.copyOf(ys, ys.length * 2);
+        starts = Arrays.copyOf(starts, starts.length * 2);
+      }
+      ys[numBands * 2] = y0;
+      ys[numBands * 2 + 1] = y1;
+      numBands++;
+      starts[numBands] = numXs;
+    }
+
+    private boolean sameAsPrevious(int start) {
+      int prevStart = starts[numBands - 1];
+      if (start - prevStart != numXs - start) {
+        return false;
+      }
+      for (int i = 0; i < start - prevStart; i++) {
+        if (xs[prevStart + i] != xs[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    BandRegion build() {
+      return new BandRegion(numBands, Arrays.copyOf(ys, numBands * 2),
+          Arrays.copyOf(starts, numBands + 1), Arrays.copyOf(xs, numXs));
+    }
+  }
+}
@@ -26,12 +26,11 @@
 package sun.awt.geom;
 
 import java.awt.geom.PathIterator;
-import java.util.Enumeration;
-import java.util.Vector;
+import java.util.ArrayList;
 
 public abstract class Crossings {
   public static final boolean debug = false;
-  private final Vector tmp = new Vector();
+  private final ArrayList<Curve> tmp = new ArrayList<>();
   int limit;
   double[] yranges = new double[10];
   final double xlo;
@@ -129,6 +128,22 @@ public abstract class Crossings {
     return cross;
   }
 
+  /**
+   * Finds the crossings of the curves of an area with the rectangle, visiting only the curves that
+   * {@code index} has near its y range.
+   */
+  public static Crossings findCrossings(
+      CurveIndex index, double xlo, double ylo, double xhi, double yhi) {
+    Crossings cross = new EvenOdd(xlo, ylo, xhi, yhi);
+    if (index.accumulateCrossings(cross)) {
+      return null;
+    }
+    if (debug) {
+      cross.print();
+    }
+    return cross;
+  }
+
   public final double getXLo() {
     return xlo;
   }
@@ -222,15 +237,7 @@ public abstract class Crossings {
       return false;
     }
     Curve.insertQuad(tmp, x0, y0, coords);
-    Enumeration enum_ = tmp.elements();
-    while (enum_.hasMoreElements()) {
-      Curve c = (Curve) enum_.nextElement();
-      if (c.accumulateCrossings(this)) {
-        return true;
-      }
-    }
-    tmp.clear();
-    return false;
+    return accumulateTmp();
   }
 
   public boolean accumulateCubic(double x0, double y0, double[] coords) {
@@ -256,15 +263,24 @@ public abstract class Crossings {
       return false;
     }
     Curve.insertCubic(tmp, x0, y0, coords);
-    Enumeration enum_ = tmp.elements();
-    while (enum_.hasMoreElements()) {
-      Curve c = (Curve) enum_.nextElement();
-      if (c.accumulateCrossings(this)) {
-        return true;
+    return accumulateTmp();
+  }
+
+  /**
+   * Accumulates the curves that a quadratic or cubic was split into, and empties {@link #tmp}
+   * again, even if the curves cross the rectangle.
+   */
+  private boolean accumulateTmp() {
+    try {
+      for (int i = 0, n = tmp.size(); i < n; i++) {
+        if (tmp.get(i).accumulateCrossings(this)) {
+          return true;
+        }
       }
+      return false;
+    } finally {
+      tmp.clear();
     }
-    tmp.clear();
-    return false;
   }
 
   public static final class EvenOdd extends Crossings {
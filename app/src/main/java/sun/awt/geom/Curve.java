@@ -61,11 +61,11 @@ public abstract class Curve {
     this.direction = direction;
   }
 
-  public static void insertMove(List curves, double x, double y) {
+  public static void insertMove(List<Curve> curves, double x, double y) {
     curves.add(new Order0(x, y));
   }
 
-  public static void insertLine(List curves, double x0, double y0, double x1, double y1) {
+  public static void insertLine(List<Curve> curves, double x0, double y0, double x1, double y1) {
     if (y0 < y1) {
       curves.add(new Order1(x0, y0, x1, y1, INCREASING));
     } else if (y0 > y1) {
@@ -75,7 +75,7 @@ public abstract class Curve {
     }
   }
 
-  public static void insertQuad(List curves, double x0, double y0, double[] coords) {
+  public static void insertQuad(List<Curve> curves, double x0, double y0, double[] coords) {
     double y1 = coords[3];
     if (y0 > y1) {
       Order2.insert(curves, coords, coords[2], y1, coords[0], coords[1], x0, y0, DECREASING);
@@ -87,7 +87,7 @@ public abstract class Curve {
     }
   }
 
-  public static void insertCubic(List curves, double x0, double y0, double[] coords) {
+  public static void insertCubic(List<Curve> curves, double x0, double y0, double[] coords) {
     double y1 = coords[5];
     if (y0 > y1) {
       Order3.insert(curves,
@@ -0,0 +1,143 @@
+package sun.awt.geom;
+
+import java.util.List;
+
+/**
+ * The curves of an area, bucketed by the range of y they span, so that a hit test only looks at
+ * the curves near the point or rectangle it tests, rather than at all of them. The area's vertical
+ * extent is split into equal buckets, and each curve is listed in every bucket that it overlaps.
+ * <p>
+ * Building an index costs about as much as a few hit tests over every curve, so it's only worth
+ * having for areas with many curves that are tested often, such as map outlines tested on every
+ * touch.
+ */
+public final class CurveIndex {
+  /**
+   * The fewest curves that an area must have to be worth indexing.
+   */
+  public static final int MIN_CURVES = 64;
+  private static final int CURVES_PER_BUCKET = 4;
+  private static final int MAX_BUCKETS = 1 << 14;
+  /**
+   * How many entries, on average, each curve may have before there are too many buckets. Tall
+   * curves are listed in many buckets.
+   */
+  private static final int MAX_ENTRIES_PER_CURVE = 8;
+
+  private final Curve[] curves;
+  private final double ymin;
+  private final double scale;
+  private final int numBuckets;
+  /**
+   * The first bucket of each curve.
+   */
+  private final int[] firstBuckets;
+  /**
+   * Where each bucket's curves start in {@link #entries}, followed by where the last bucket's end.
+   */
+  private final int[] bucketStarts;
+  /**
+   * The indexes into {@link #curves} of the curves in each bucket, in order.
+   */
+  private final int[] entries;
+
+  /**
+   * Indexes {@code curves}, which mustn't change while the index is used.
+   */
+  public CurveIndex(List<Curve> curves) {
+    int numcurves = curves.size();
+    this.curves = curves.toArray(new Curve[numcurves]);
+    double lo = Double.POSITIVE_INFINITY;
+    double hi = Double.NEGATIVE_INFINITY;
+    for (Curve c : this.curves) {
+      lo = Math.min(lo, c.getYTop());
+      hi = Math.max(hi, c.getYBot());
+    }
+    ymin = lo;
+    int buckets = Math.max(1, Math.min(numcurves / CURVES_PER_BUCKET, MAX_BUCKETS));
+    if (!(hi > lo)) {
+      buckets = 1;
+    }
+    firstBuckets = new int[numcurves];
+    int[] lastBuckets = new int[numcurves];
+    long numentries;
+    double s;
+    while (true) {
+      s = buckets / (hi - lo);
+      numentries = 0;
+      for (int i = 0; i < numcurves; i++) {
+        firstBuckets[i] = bucketOf(this.curves[i].getYTop(), lo, s, buckets);
+        lastBuckets[i] = bucketOf(this.curves[i].getYBot(), lo, s, buckets);
+        numentries += lastBuckets[i] - firstBuckets[i] + 1;
+      }
+      if (buckets == 1 || numentries <= (long) numcurves * MAX_ENTRIES_PER_CURVE) {
+        break;
+      }
+      buckets /= 2;
+    }
+    scale = s;
+    numBuckets = buckets;
+    bucketStarts = new int[buckets + 1];
+    for (int i = 0; i < numcurves; i++) {
+      for (int b = firstBuckets[i]; b <= lastBuckets[i]; b++) {
+        bucketStarts[b + 1]++;
+      }
+    }
+    for (int b = 0; b < buckets; b++) {
+      bucketStarts[b + 1] += bucketStarts[b];
+    }
+    entries = new int[(int) numentries];
+    int[] fill = new int[buckets];
+    System.arraycopy(bucketStarts, 0, fill, 0, buckets);
+    for (int i = 0; i < numcurves; i++) {
+      for (int b = firstBuckets[i]; b <= lastBuckets[i]; b++) {
+        entries[fill[b]++] = i;
+      }
+    }
+  }
+
+  private static int bucketOf(double y, double ymin, double scale, int numBuckets) {
+    if (numBuckets == 1) {
+      return 0;
+    }
+    int b = (int) ((y - ymin) * scale);
+    return b < 0 ? 0 : b >= numBuckets ? numBuckets - 1 : b;
+  }
+
+  private int bucketOf(double y) {
+    return bucketOf(y, ymin, scale, numBuckets);
+  }
+
+  /**
+   * Returns the sum of {@link Curve#crossingsFor} over the indexed curves.
+   */
+  public int crossingsFor(double x, double y) {
+    int b = bucketOf(y);
+    int crossings = 0;
+    for (int i = bucketStarts[b], end = bucketStarts[b + 1]; i < end; i++) {
+      crossings += curves[entries[i]].crossingsFor(x, y);
+    }
+    return crossings;
+  }
+
+  /**
+   * Accumulates the crossings of every indexed curve that overlaps the y range of {@code c}, as
+   * {@link Curve#accumulateCrossings} does.
+   *
+   * @return true if any of them is found to cross into the rectangle
+   */
+  public boolean accumulateCrossings(Crossings c) {
+    int lo = bucketOf(c.getYLo());
+    int hi = bucketOf(c.getYHi());
+    for (int b = lo; b <= hi; b++) {
+      for (int i = bucketStarts[b], end = bucketStarts[b + 1]; i < end; i++) {
+        int curve = entries[i];
+        // A curve in several of these buckets is only visited in the first
+        if (Math.max(firstBuckets[curve], lo) == b && curves[curve].accumulateCrossings(c)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -73,7 +73,7 @@ final class Order2 extends Curve {
   }
 
   public static void insert(
-      List curves, double[] tmp, double x0, double y0, double cx0, double cy0, double x1,
+      List<Curve> curves, double[] tmp, double x0, double y0, double cx0, double cy0, double x1,
       double y1, int direction) {
     int numparams = getHorizontalParams(y0, cy0, y1, tmp);
     if (numparams == 0) {
@@ -114,7 +114,7 @@ final class Order2 extends Curve {
   }
 
   public static void addInstance(
-      List curves, double x0, double y0, double cx0, double cy0, double x1, double y1,
+      List<Curve> curves, double x0, double y0, double cx0, double cy0, double x1, double y1,
       int direction) {
     if (y0 > y1) {
       curves.add(new Order2(x1, y1, cx0, cy0, x0, y0, -direction));
@@ -94,7 +94,7 @@ final class Order3 extends Curve {
   }
 
   public static void insert(
-      List curves, double[] tmp, double x0, double y0, double cx0, double cy0, double cx1,
+      List<Curve> curves, double[] tmp, double x0, double y0, double cx0, double cy0, double cx1,
       double cy1, double x1, double y1, int direction) {
     int numparams = getHorizontalParams(y0, cy0, cy1, y1, tmp);
     if (numparams == 0) {
@@ -150,7 +150,7 @@ final class Order3 extends Curve {
   }
 
   public static void addInstance(
-      List curves, double x0, double y0, double cx0, double cy0, double cx1, double cy1,
+      List<Curve> curves, double x0, double y0, double cx0, double cy0, double cx1, double cy1,
       double x1, double y1, int direction) {
     if (y0 > y1) {
       curves.add(new Order3(x1, y1, cx1, cy1, cx0, cy0, x0, y0, -direction));
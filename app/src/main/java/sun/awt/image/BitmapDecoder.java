@@ -0,0 +1,65 @@
+package sun.awt.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.awt.image.ColorModel;
+import java.awt.image.ImageConsumer;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes any format that {@link BitmapFactory} understands. Android decodes the whole image at
+ * once, so the pixels are then handed to the consumers in bands of rows, letting observers draw
+ * the top of a large image before the rest has been converted.
+ */
+public class BitmapDecoder extends ImageDecoder {
+  /**
+   * Roughly how many pixels to deliver in each {@code setPixels} call.
+   */
+  private static final int PIXELS_PER_BAND = 65536;
+  private static final int HINTS = ImageConsumer.TOPDOWNLEFTRIGHT
+      | ImageConsumer.COMPLETESCANLINES | ImageConsumer.SINGLEPASS | ImageConsumer.SINGLEFRAME;
+
+  public BitmapDecoder(InputStreamImageSource src, InputStream is) {
+    super(src, is);
+  }
+
+  @Override
+  public void produceImage() throws IOException, ImageFormatException {
+    Bitmap bitmap;
+    try {
+      bitmap = BitmapFactory.decodeStream(input);
+    } finally {
+      close();
+    }
+    if (bitmap == null) {
+      throw new ImageFormatException("Unrecognized image format");
+    }
+    try {
+      if (aborted) {
+        return;
+      }
+      int width = bitmap.getWidth();
+      int height = bitmap.getHeight();
+      ColorModel model = ColorModel.getRGBdefault();
+      setDimensions(width, height);
+      setColorModel(model);
+      setHints(HINTS);
+      int rowsPerBand = Math.max(1, Math.min(height, PIXELS_PER_BAND / Math.max(1, width)));
+      int[] pixels = new int[width * rowsPerBand];
+      for (int y = 0; y < height; y += rowsPerBand) {
+        int rows = Math.min(rowsPerBand, height - y);
+        // Like the raster, getPixels returns non-premultiplied ARGB
+        bitmap.getPixels(pixels, 0, width, 0, y, width, rows);
+        if (setPixels(0, y, width, rows, model, pixels, 0, width) == 0) {
+          // Every consumer has lost interest
+          break;
+        }
+      }
+      imageComplete(ImageConsumer.STATICIMAGEDONE, true);
+    } finally {
+      bitmap.recycle();
+    }
+  }
+}
@@ -25,6 +25,8 @@
 
 package sun.awt.image;
 
+import java.io.ByteArrayInputStream;
+
 public class ByteArrayImageSource extends InputStreamImageSource {
   final byte[] imagedata;
   final int imageoffset;
@@ -43,4 +45,9 @@ public class ByteArrayImageSource extends InputStreamImageSource {
     // on the image data anyway...
     return true;
   }
+
+  @Override
+  ImageDecoder getDecoder() {
+    return new BitmapDecoder(this, new ByteArrayInputStream(imagedata, imageoffset, imagelength));
+  }
 }
@@ -0,0 +1,28 @@
+package sun.awt.image;
+
+import java.awt.image.DataBuffer;
+
+/**
+ * Receives notice of changes to a {@link DataBuffer}, so that a copy of its contents kept
+ * elsewhere (such as an Android Bitmap) can be brought up to date lazily. Installed with {@link
+ * SunWritableRaster#setDirtyTracker}.
+ */
+public interface DirtyTracker {
+  /**
+   * Notes that the first bank's array is about to be written, so that changes still to be copied
+   * in from the other copy can be applied first, rather than later copied over the write.
+   */
+  void willWrite();
+
+  /**
+   * Notes that elements {@code [from, to)} of the first bank's array have been written. The
+   * indices include the buffer's offset.
+   */
+  void markDirty(int from, int to);
+
+  /**
+   * Notes that the buffer's arrays have been handed out, so that from now on they may be read or
+   * written without notice.
+   */
+  void markUntrackable();
+}
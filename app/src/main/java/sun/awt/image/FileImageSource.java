@@ -25,6 +25,10 @@
 
 package sun.awt.image;
 
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
 public class FileImageSource extends InputStreamImageSource {
   final String imagefile;
 
@@ -42,4 +46,13 @@ public class FileImageSource extends InputStreamImageSource {
     // when the image is retrieved from the cache.
     return true;
   }
+
+  @Override
+  ImageDecoder getDecoder() {
+    try {
+      return new BitmapDecoder(this, new BufferedInputStream(new FileInputStream(imagefile)));
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
 }
@@ -84,6 +84,26 @@ public abstract class ImageDecoder {
     return count;
   }
 
+  protected int setColorModel(ColorModel model) {
+    ImageConsumerQueue cq = null;
+    int count = 0;
+    while ((cq = nextConsumer(cq)) != null) {
+      cq.consumer.setColorModel(model);
+      count++;
+    }
+    return count;
+  }
+
+  protected int setHints(int hints) {
+    ImageConsumerQueue cq = null;
+    int count = 0;
+    while ((cq = nextConsumer(cq)) != null) {
+      cq.consumer.setHints(hints);
+      count++;
+    }
+    return count;
+  }
+
   protected int setPixels(
       int x, int y, int w, int h, ColorModel model, byte[] pix, int off, int scansize) {
     source.latchConsumers(this);
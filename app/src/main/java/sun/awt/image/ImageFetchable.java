@@ -0,0 +1,12 @@
+package sun.awt.image;
+
+/**
+ * An image source that {@link ImageFetcher} can fetch on one of its threads.
+ */
+public interface ImageFetchable {
+  /**
+   * Fetches and decodes the image, feeding it to whichever consumers are waiting. Called on a
+   * fetcher thread.
+   */
+  void doFetch();
+}
@@ -0,0 +1,129 @@
+package sun.awt.image;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import skinjob.SkinJobGlobals;
+
+/**
+ * Runs {@link ImageFetchable#doFetch} for image sources on a bounded pool of daemon threads, so
+ * that loading many images neither blocks the caller nor starts a thread per image. The pool has
+ * at most {@link SkinJobGlobals#imageFetcherThreads} threads, which exit after a while without
+ * work.
+ * <p>
+ * Waiting sources are fetched lowest priority value first, and in the order they were added when
+ * priorities are equal; {@link java.awt.MediaTracker} passes its IDs as priorities. A source is
+ * queued at most once: adding it again while it's waiting only raises its priority.
+ */
+public final class ImageFetcher {
+
+  private static final long KEEP_ALIVE_SECONDS = 10;
+  private static final Map<ImageFetchable, FetchTask> waiting = new HashMap<>();
+  private static ThreadPoolExecutor pool;
+  private static long sequence;
+
+  /**
+   * Utility class; do not instantiate.
+   */
+  private ImageFetcher() {
+  }
+
+  /**
+   * Queues {@code src} to be fetched, or moves it forward if it's already waiting and {@code
+   * priority} is lower than it was queued with.
+   *
+   * @return false if the pool can't accept any more work
+   */
+  static synchronized boolean add(ImageFetchable src, int priority) {
+    FetchTask task = waiting.get(src);
+    if (task != null) {
+      // The queue doesn't reorder existing entries, so requeue with the new priority. If the task
+      // can't be removed, a thread has just taken it.
+      if (priority >= task.priority || !getPool().remove(task)) {
+        return true;
+      }
+    }
+    task = new FetchTask(src, priority, sequence++);
+    try {
+      getPool().execute(task);
+    } catch (RejectedExecutionException e) {
+      waiting.remove(src);
+      return false;
+    }
+    waiting.put(src, task);
+    return true;
+  }
+
+  /**
+   * Takes {@code src} off the queue if it hasn't started being fetched.
+   */
+  static synchronized void remove(ImageFetchable src) {
+    FetchTask task = waiting.remove(src);
+    if (task != null) {
+      getPool().remove(task);
+    }
+  }
+
+  private static synchronized void started(FetchTask task) {
+    if (waiting.get(task.src) == task) {
+      waiting.remove(task.src);
+    }
+  }
+
+  private static ThreadPoolExecutor getPool() {
+    if (pool == null) {
+      int threads = Math.max(1, SkinJobGlobals.imageFetcherThreads);
+      pool = new ThreadPoolExecutor(threads,
+          threads,
+          KEEP_ALIVE_SECONDS,
+          TimeUnit.SECONDS,
+          new PriorityBlockingQueue<Runnable>(),
+          new FetcherFactory());
+      pool.allowCoreThreadTimeOut(true);
+    }
+    return pool;
+  }
+
+  private static final class FetchTask implements Runnable, Comparable<FetchTask> {
+    final ImageFetchable src;
+    final int priority;
+    private final long sequence;
+
+    FetchTask(ImageFetchable src, int priority, long sequence) {
+      this.src = src;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public void run() {
+      started(this);
+      src.doFetch();
+    }
+
+    @Override
+    public int compareTo(FetchTask other) {
+      if (priority != other.priority) {
+        return priority < other.priority ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+    }
+  }
+
+  private static final class FetcherFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "SkinJob-ImageFetcher-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
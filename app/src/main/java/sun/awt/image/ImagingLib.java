@@ -30,12 +30,16 @@ import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ByteLookupTable;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
 import java.awt.image.ConvolveOp;
+import java.awt.image.DirectColorModel;
 import java.awt.image.Kernel;
 import java.awt.image.LookupOp;
 import java.awt.image.LookupTable;
 import java.awt.image.Raster;
 import java.awt.image.RasterOp;
+import java.awt.image.RescaleOp;
 import java.awt.image.WritableRaster;
 
 /**
@@ -47,46 +51,144 @@ import java.awt.image.WritableRaster;
  */
 public final class ImagingLib {
 
-  private static final int NUM_NATIVE_OPS = 3;
+  private static final int NUM_NATIVE_OPS = 4;
   private static final int LOOKUP_OP = 0;
   private static final int AFFINE_OP = 1;
   private static final int CONVOLVE_OP = 2;
+  private static final int RESCALE_OP = 3;
   private static final Class[] nativeOpClass = new Class[NUM_NATIVE_OPS];
   static boolean verbose;
 
+  static {
+    // Ops with a pure-Java implementation in this class
+    nativeOpClass[LOOKUP_OP] = LookupOp.class;
+    nativeOpClass[AFFINE_OP] = AffineTransformOp.class;
+    nativeOpClass[CONVOLVE_OP] = ConvolveOp.class;
+    nativeOpClass[RESCALE_OP] = RescaleOp.class;
+  }
+
   private ImagingLib() {
   }
 
   public static int transformBI(
       BufferedImage src, BufferedImage dst, double[] matrix, int interpType) {
-    // TODO: Native in OpenJDK AWT
-    return 0;
+    ColorModel dstCM = dst.getColorModel();
+    if (!dstCM.equals(src.getColorModel())) {
+      // Resample in the destination's format, so that pixels outside the source stay untouched
+      int w = src.getWidth();
+      int h = src.getHeight();
+      WritableRaster tmp = dstCM.createCompatibleWritableRaster(w, h);
+      BufferedImage converted = new BufferedImage(dstCM, tmp, dstCM.isAlphaPremultiplied(), null);
+      int[] row = new int[w];
+      for (int y = 0; y < h; y++) {
+        src.getRGB(0, y, w, 1, row, 0, w);
+        converted.setRGB(0, y, w, 1, row, 0, w);
+      }
+      src = converted;
+    }
+    return transformRaster(src.getRaster(), dst.getRaster(), matrix, interpType);
   }
 
   public static int transformRaster(Raster src, Raster dst, double[] matrix, int interpType) {
-    // TODO: Native in OpenJDK AWT
-    return 0;
+    if (!(dst instanceof WritableRaster)
+        || !RasterResampler.transform(src, (WritableRaster) dst, matrix, interpType)) {
+      return 0;
+    }
+    return 1;
   }
 
   public static int convolveBI(
       BufferedImage src, BufferedImage dst, Kernel kernel, int edgeHint) {
-    // TODO: Native in OpenJDK AWT
-    return 0;
+    ColorModel srcCM = src.getColorModel();
+    if (srcCM.equals(dst.getColorModel())) {
+      return convolveRaster(src.getRaster(), dst.getRaster(), kernel, edgeHint);
+    }
+    // Convolve in the source's format, then let the destination's ColorModel convert
+    int w = Math.min(src.getWidth(), dst.getWidth());
+    int h = Math.min(src.getHeight(), dst.getHeight());
+    WritableRaster tmp = srcCM.createCompatibleWritableRaster(w, h);
+    if (convolveRaster(src.getRaster(), tmp, kernel, edgeHint) == 0) {
+      return 0;
+    }
+    BufferedImage tmpImage = new BufferedImage(srcCM, tmp, srcCM.isAlphaPremultiplied(), null);
+    int[] row = new int[w];
+    for (int y = 0; y < h; y++) {
+      tmpImage.getRGB(0, y, w, 1, row, 0, w);
+      dst.setRGB(0, y, w, 1, row, 0, w);
+    }
+    return 1;
   }
 
   public static int convolveRaster(Raster src, Raster dst, Kernel kernel, int edgeHint) {
-    // TODO: Native in OpenJDK AWT
-    return 0;
+    if (!(dst instanceof WritableRaster)
+        || !RasterConvolver.convolve(src, (WritableRaster) dst, kernel, edgeHint)) {
+      return 0;
+    }
+    return 1;
   }
 
   public static int lookupByteBI(BufferedImage src, BufferedImage dst, byte[][] table) {
-    // TODO: Native in OpenJDK AWT
-    return 0;
+    return lookupBI(src, dst, new ByteLookupTable(0, table));
   }
 
   public static int lookupByteRaster(Raster src, Raster dst, byte[][] table) {
-    // TODO: Native in OpenJDK AWT
-    return 0;
+    return lookupRaster(src, dst, new ByteLookupTable(0, table));
+  }
+
+  private static int lookupBI(BufferedImage src, BufferedImage dst, LookupTable table) {
+    int mappedBands = getMappedBands(src, dst, table.getNumComponents());
+    if (mappedBands < 0
+        || !RasterLookup.lookup(src.getRaster(), dst.getRaster(), table, mappedBands)) {
+      return 0;
+    }
+    return 1;
+  }
+
+  private static int lookupRaster(Raster src, Raster dst, LookupTable table) {
+    if (!(dst instanceof WritableRaster) || !RasterLookup.lookup(
+        src, (WritableRaster) dst, table, src.getNumBands())) {
+      return 0;
+    }
+    return 1;
+  }
+
+  private static int rescaleBI(BufferedImage src, BufferedImage dst, RescaleOp op) {
+    int numFactors = op.getNumFactors();
+    int mappedBands = getMappedBands(src, dst, numFactors);
+    if (mappedBands < 0 || !RasterLookup.rescale(src.getRaster(), dst.getRaster(),
+        op.getScaleFactors(null), op.getOffsets(null), mappedBands)) {
+      return 0;
+    }
+    return 1;
+  }
+
+  private static int rescaleRaster(Raster src, Raster dst, RescaleOp op) {
+    if (!(dst instanceof WritableRaster) || !RasterLookup.rescale(src, (WritableRaster) dst,
+        op.getScaleFactors(null), op.getOffsets(null), src.getNumBands())) {
+      return 0;
+    }
+    return 1;
+  }
+
+  /**
+   * Works out how many bands of an image a per-component op applies to. As in OpenJDK, a single
+   * table or factor, or one per color component, leaves alpha alone; one per component includes
+   * it.
+   *
+   * @return the number of leading raster bands to map, or -1 if the images can't be processed
+   *     band by band in place
+   */
+  private static int getMappedBands(BufferedImage src, BufferedImage dst, int numParams) {
+    ColorModel cm = src.getColorModel();
+    if (!(cm instanceof ComponentColorModel || cm instanceof DirectColorModel)
+        || !cm.equals(dst.getColorModel())) {
+      return -1;
+    }
+    // Both models keep alpha in the last band
+    if (cm.hasAlpha() && numParams != cm.getNumComponents()) {
+      return cm.getNumColorComponents();
+    }
+    return cm.getNumComponents();
   }
 
   private static int getNativeOpIndex(Class opClass) {
@@ -115,17 +217,8 @@ public final class ImagingLib {
     switch (getNativeOpIndex(op.getClass())) {
 
       case LOOKUP_OP:
-        // REMIND: Fix this!
-        LookupTable table = ((LookupOp) op).getTable();
-        if (table.getOffset() != 0) {
-          // Right now the native code doesn't support offsets
-          return null;
-        }
-        if (table instanceof ByteLookupTable) {
-          ByteLookupTable bt = (ByteLookupTable) table;
-          if (lookupByteRaster(src, dst, bt.getTable()) > 0) {
-            retRaster = dst;
-          }
+        if (lookupRaster(src, dst, ((LookupOp) op).getTable()) > 0) {
+          retRaster = dst;
         }
         break;
 
@@ -145,6 +238,12 @@ public final class ImagingLib {
         }
         break;
 
+      case RESCALE_OP:
+        if (rescaleRaster(src, dst, (RescaleOp) op) > 0) {
+          retRaster = dst;
+        }
+        break;
+
       default:
         break;
     }
@@ -170,17 +269,8 @@ public final class ImagingLib {
     switch (getNativeOpIndex(op.getClass())) {
 
       case LOOKUP_OP:
-        // REMIND: Fix this!
-        LookupTable table = ((LookupOp) op).getTable();
-        if (table.getOffset() != 0) {
-          // Right now the native code doesn't support offsets
-          return null;
-        }
-        if (table instanceof ByteLookupTable) {
-          ByteLookupTable bt = (ByteLookupTable) table;
-          if (lookupByteBI(src, dst, bt.getTable()) > 0) {
-            retBI = dst;
-          }
+        if (lookupBI(src, dst, ((LookupOp) op).getTable()) > 0) {
+          retBI = dst;
         }
         break;
 
@@ -202,6 +292,12 @@ public final class ImagingLib {
         }
         break;
 
+      case RESCALE_OP:
+        if (rescaleBI(src, dst, (RescaleOp) op) > 0) {
+          retBI = dst;
+        }
+        break;
+
       default:
         break;
     }
@@ -27,8 +27,9 @@ package sun.awt.image;
 
 import java.awt.image.ImageConsumer;
 import java.awt.image.ImageProducer;
+import java.io.IOException;
 
-public abstract class InputStreamImageSource implements ImageProducer {
+public abstract class InputStreamImageSource implements ImageProducer, ImageFetchable {
   ImageConsumerQueue consumers;
 
   ImageDecoder decoder;
@@ -36,8 +37,33 @@ public abstract class InputStreamImageSource implements ImageProducer {
 
   boolean awaitingFetch;
 
+  /**
+   * Where this source waits in the {@link ImageFetcher} queue; lower values are fetched first.
+   * Sources that no {@link java.awt.MediaTracker} has asked for wait behind those that one has.
+   */
+  private int fetchPriority = Integer.MAX_VALUE;
+
   abstract boolean checkSecurity(Object context, boolean quiet);
 
+  /**
+   * Opens the image data and returns a decoder for it, or null if it can't be read. Called on a
+   * fetcher thread.
+   */
+  abstract ImageDecoder getDecoder();
+
+  /**
+   * Lowers this source's fetch priority value to {@code priority}, moving it forward in the fetch
+   * queue if it's waiting there. Higher values are ignored, so the most urgent request wins.
+   */
+  public synchronized void setFetchPriority(int priority) {
+    if (priority < fetchPriority) {
+      fetchPriority = priority;
+      if (awaitingFetch) {
+        ImageFetcher.add(this, priority);
+      }
+    }
+  }
+
   @Override
   public void addConsumer(ImageConsumer ic) {
     addConsumer(ic, false);
@@ -59,6 +85,11 @@ public abstract class InputStreamImageSource implements ImageProducer {
       id.removeConsumer(ic);
     }
     consumers = ImageConsumerQueue.removeConsumer(consumers, ic, false);
+    if (consumers == null && awaitingFetch) {
+      // Nobody is waiting any more, so don't spend a fetcher thread on it
+      ImageFetcher.remove(this);
+      awaitingFetch = false;
+    }
   }
 
   @Override
@@ -131,9 +162,76 @@ public abstract class InputStreamImageSource implements ImageProducer {
 
   private synchronized void startProduction() {
     if (!awaitingFetch) {
-      ImageConsumerQueue cq = consumers;
+      if (ImageFetcher.add(this, fetchPriority)) {
+        awaitingFetch = true;
+      } else {
+        ImageConsumerQueue cq = consumers;
+        consumers = null;
+        errorAllConsumers(cq, false);
+      }
+    }
+  }
+
+  private void badDecoder() {
+    ImageConsumerQueue cq;
+    synchronized (this) {
+      cq = consumers;
+      consumers = null;
+      awaitingFetch = false;
+    }
+    errorAllConsumers(cq, false);
+  }
+
+  @Override
+  public void doFetch() {
+    synchronized (this) {
+      if (consumers == null) {
+        awaitingFetch = false;
+        return;
+      }
+    }
+    ImageDecoder imgd = getDecoder();
+    if (imgd == null) {
+      badDecoder();
+      return;
+    }
+    setDecoder(imgd);
+    try {
+      imgd.produceImage();
+    } catch (IOException | ImageFormatException e) {
+      // Whoever is still waiting gets an error below
+    } finally {
+      removeDecoder(imgd);
+      // An aborted decoder interrupts this thread; clear that so it doesn't leak into the next
+      // fetch, and let the consumers reload later
+      errorAllConsumers(imgd.queue, Thread.interrupted());
+    }
+  }
+
+  private synchronized void setDecoder(ImageDecoder mydecoder) {
+    mydecoder.next = decoders;
+    decoders = mydecoder;
+    decoder = mydecoder;
+    if (consumers != null) {
+      mydecoder.queue = consumers;
       consumers = null;
-      errorAllConsumers(cq, false);
+      awaitingFetch = false;
+    }
+  }
+
+  private synchronized void removeDecoder(ImageDecoder mydecoder) {
+    doneDecoding(mydecoder);
+    ImageDecoder idprev = null;
+    for (ImageDecoder id = decoders; id != null; id = id.next) {
+      if (id == mydecoder) {
+        if (idprev == null) {
+          decoders = id.next;
+        } else {
+          idprev.next = id.next;
+        }
+        break;
+      }
+      idprev = id;
     }
   }
 
@@ -253,6 +253,7 @@ public class IntegerComponentRaster extends SunWritableRaster {
         width *= pixelStride;
 
         // Loop through all of the scanlines and copy the data
+        willWrite();
         for (int startY = 0; startY < height; startY++) {
           System.arraycopy(tdata, srcOffset, data, dstOffset, width);
           srcOffset += tss;
@@ -336,6 +337,7 @@ public class IntegerComponentRaster extends SunWritableRaster {
 
     int off = (y - minY) * scanlineStride + (x - minX) * pixelStride;
 
+    willWrite();
     for (int i = 0; i < numDataElements; i++) {
       data[dataOffsets[i] + off] = inData[i];
     }
@@ -395,6 +397,7 @@ public class IntegerComponentRaster extends SunWritableRaster {
     int xstart;
     int ystart;
 
+    willWrite();
     for (ystart = 0; ystart < h; ystart++, yoff += scanlineStride) {
       xoff = yoff;
       for (xstart = 0; xstart < w; xstart++, xoff += pixelStride) {
@@ -217,9 +217,10 @@ public class IntegerInterleavedRaster extends IntegerComponentRaster {
 
     int off = (y - minY) * scanlineStride + x - minX + dataOffsets[0];
 
+    willWrite();
     data[off] = inData[0];
 
-    markDirty();
+    markDirty(off, off + 1);
   }
 
   /**
@@ -270,14 +271,16 @@ public class IntegerInterleavedRaster extends IntegerComponentRaster {
     int[] inData = (int[]) obj;
     int yoff = (y - minY) * scanlineStride + x - minX + dataOffsets[0];
     int off = 0;
+    int first = yoff;
 
+    willWrite();
     for (int ystart = 0; ystart < h; ystart++) {
       System.arraycopy(inData, off, data, yoff, w);
       off += w;
       yoff += scanlineStride;
     }
 
-    markDirty();
+    markDirty(first, yoff - scanlineStride + w);
   }
 
   /**
@@ -429,15 +432,17 @@ public class IntegerInterleavedRaster extends IntegerComponentRaster {
       int srcOffset = ict.getDataOffset(0);
       int dstOffset = dataOffsets[0] + (dstY - minY) * scanlineStride +
           dstX - minX;
+      int first = dstOffset;
 
       // Fastest case.  We can copy scanlines
       // Loop through all of the scanlines and copy the data
+      willWrite();
       for (int startY = 0; startY < height; startY++) {
         System.arraycopy(tdata, srcOffset, data, dstOffset, width);
         srcOffset += tss;
         dstOffset += scanlineStride;
       }
-      markDirty();
+      markDirty(first, dstOffset - scanlineStride + width);
       return;
     }
 
@@ -0,0 +1,283 @@
+package sun.awt.image;
+
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import skinjob.util.ParallelBands;
+import skinjob.util.ParallelBands.BandTask;
+
+/**
+ * Pure-Java replacement for the medialib convolution that backs {@link ConvolveOp} in OpenJDK AWT.
+ * The destination is split into row bands that run in parallel. Each band keeps a ring of source
+ * rows so that every source row is unpacked only once, and the kernel is applied a whole row at a
+ * time. Kernels that are the outer product of a column and a row vector (box and Gaussian blurs,
+ * Sobel operators, etc.) are applied as a horizontal pass followed by a vertical pass, which costs
+ * O(w + h) rather than O(w * h) multiplies per sample.
+ * <p>
+ * As in OpenJDK, the kernel is rotated 180 degrees (a true convolution) and centered on (width / 2,
+ * height / 2) of the rotated kernel. For odd sizes that's the same as ({@link Kernel#getXOrigin()},
+ * {@link Kernel#getYOrigin()}); an even-sized kernel is treated as though it were padded to the next
+ * odd size with a row and column of zeros, so it leaves the same width of edge on both sides.
+ */
+final class RasterConvolver implements BandTask {
+
+  /**
+   * Relative tolerance when testing whether a kernel is separable.
+   */
+  private static final float SEPARABLE_EPSILON = 1.0e-6f;
+
+  private final RasterRows src;
+  private final RasterRows dst;
+  private final int width;
+  private final int height;
+  private final int numBands;
+  private final int kw;
+  private final int kh;
+  private final int cx;
+  private final int cy;
+  private final boolean zeroFill;
+  /**
+   * The kernel rotated 180 degrees, in row-major order.
+   */
+  private final float[] flipped;
+  /**
+   * If the kernel is separable, its horizontal factor; otherwise null.
+   */
+  private final float[] rowFactor;
+  /**
+   * If the kernel is separable, its vertical factor; otherwise null.
+   */
+  private final float[] columnFactor;
+  /**
+   * Destination columns [xStart, xEnd) are those where the kernel fits entirely within the source.
+   */
+  private final int xStart;
+  private final int xEnd;
+  private final int yStart;
+  private final int yEnd;
+
+  private RasterConvolver(
+      RasterRows src, RasterRows dst, int width, int height, Kernel kernel, int edgeHint) {
+    this.src = src;
+    this.dst = dst;
+    this.width = width;
+    this.height = height;
+    numBands = src.numBands;
+    kw = kernel.getWidth();
+    kh = kernel.getHeight();
+    cx = kw >> 1;
+    cy = kh >> 1;
+    zeroFill = edgeHint != ConvolveOp.EDGE_NO_OP;
+    float[] data = kernel.getKernelData(null);
+    int len = kw * kh;
+    flipped = new float[len];
+    for (int i = 0; i < len; i++) {
+      flipped[i] = data[len - 1 - i];
+    }
+    xStart = Math.min(cx, width);
+    xEnd = Math.max(xStart, width - cx);
+    yStart = Math.min(cy, height);
+    yEnd = Math.max(yStart, height - cy);
+
+    float[][] factors = kw > 1 && kh > 1 ? factor(flipped, kw, kh) : null;
+    if (factors == null) {
+      rowFactor = null;
+      columnFactor = null;
+    } else {
+      rowFactor = factors[0];
+      columnFactor = factors[1];
+    }
+  }
+
+  /**
+   * Convolves {@code src} into {@code dst}, which must have the same number of bands. Where the
+   * rasters differ in size, only the overlapping area is written.
+   *
+   * @return false if either raster has non-integral samples; true on success
+   */
+  static boolean convolve(Raster src, WritableRaster dst, Kernel kernel, int edgeHint) {
+    RasterRows in = RasterRows.of(src);
+    RasterRows out = RasterRows.of(dst);
+    if (in == null || out == null || in.numBands != out.numBands) {
+      return false;
+    }
+    int width = Math.min(in.width, out.width);
+    int height = Math.min(in.height, out.height);
+    RasterConvolver convolver = new RasterConvolver(in, out, width, height, kernel, edgeHint);
+    ParallelBands.run(0, height, width, convolver);
+    return true;
+  }
+
+  /**
+   * Tests whether a kernel is the outer product of a row vector and a column vector.
+   *
+   * @return {row, column} if so; null otherwise
+   */
+  private static float[][] factor(float[] k, int kw, int kh) {
+    int pivot = 0;
+    for (int i = 1; i < k.length; i++) {
+      if (Math.abs(k[i]) > Math.abs(k[pivot])) {
+        pivot = i;
+      }
+    }
+    float pv = k[pivot];
+    if (pv == 0.0f) {
+      return null;
+    }
+    int pj = pivot / kw;
+    int pi = pivot % kw;
+    float[] row = new float[kw];
+    float[] column = new float[kh];
+    System.arraycopy(k, pj * kw, row, 0, kw);
+    for (int j = 0; j < kh; j++) {
+      column[j] = k[j * kw + pi] / pv;
+    }
+    float tolerance = Math.abs(pv) * SEPARABLE_EPSILON;
+    for (int j = 0; j < kh; j++) {
+      for (int i = 0; i < kw; i++) {
+        if (Math.abs(k[j * kw + i] - column[j] * row[i]) > tolerance) {
+          return null;
+        }
+      }
+    }
+    return new float[][]{row, column};
+  }
+
+  @Override
+  public void run(int bandStart, int bandEnd) {
+    int rowLen = width * numBands;
+    int[] outRow = new int[rowLen];
+    float[] acc = new float[rowLen];
+    // srcRing[r % kh] holds source row r, for the kh rows under the kernel
+    int[][] srcRing = new int[kh][rowLen];
+    int[] ringRow = new int[kh];
+    for (int i = 0; i < kh; i++) {
+      ringRow[i] = -1;
+    }
+    float[][] passRing = rowFactor == null ? null : new float[kh][rowLen];
+    int[] edgeRow = zeroFill ? null : new int[rowLen];
+    int p0 = xStart * numBands;
+    int p1 = xEnd * numBands;
+
+    for (int y = bandStart; y < bandEnd; y++) {
+      if (y < yStart || y >= yEnd || p0 == p1) {
+        storeEdgeRow(y, outRow, edgeRow);
+        continue;
+      }
+      int top = y - cy;
+      for (int j = 0; j < kh; j++) {
+        int r = top + j;
+        int slot = r % kh;
+        if (ringRow[slot] != r) {
+          ringRow[slot] = r;
+          src.getSamples(0, r, width, srcRing[slot], 0);
+          if (passRing != null) {
+            convolveRow(srcRing[slot], rowFactor, 0, passRing[slot], p0, p1, true);
+          }
+        }
+      }
+      if (passRing == null) {
+        for (int j = 0; j < kh; j++) {
+          convolveRow(srcRing[(top + j) % kh], flipped, j * kw, acc, p0, p1, j == 0);
+        }
+      } else {
+        float w0 = columnFactor[0];
+        float[] first = passRing[top % kh];
+        for (int p = p0; p < p1; p++) {
+          acc[p] = w0 * first[p];
+        }
+        for (int j = 1; j < kh; j++) {
+          float wj = columnFactor[j];
+          if (wj == 0.0f) {
+            continue;
+          }
+          float[] pass = passRing[(top + j) % kh];
+          for (int p = p0; p < p1; p++) {
+            acc[p] += wj * pass[p];
+          }
+        }
+      }
+      dst.clamp(acc, p0, p1, outRow);
+      if (p0 > 0 || p1 < rowLen) {
+        int[] center = srcRing[y % kh];
+        fillEdges(outRow, center, p0, p1, rowLen);
+      }
+      dst.setSamples(0, y, width, outRow, 0);
+    }
+  }
+
+  /**
+   * Applies one row of the (flipped) kernel to a row of source samples.
+   *
+   * @param row source samples
+   * @param weights kernel data
+   * @param wOff index in {@code weights} of the kernel row to apply
+   * @param acc destination accumulator
+   * @param p0 first sample index to compute
+   * @param p1 one past the last sample index to compute
+   * @param overwrite whether to replace, rather than add to, the contents of {@code acc}
+   */
+  private void convolveRow(
+      int[] row, float[] weights, int wOff, float[] acc, int p0, int p1, boolean overwrite) {
+    if (overwrite) {
+      for (int p = p0; p < p1; p++) {
+        acc[p] = 0.0f;
+      }
+    }
+    int nb = numBands;
+    for (int i = 0; i < kw; i++) {
+      float wt = weights[wOff + i];
+      if (wt == 0.0f) {
+        continue;
+      }
+      int shift = (i - cx) * nb;
+      for (int p = p0; p < p1; p++) {
+        acc[p] += wt * row[p + shift];
+      }
+    }
+  }
+
+  private void storeEdgeRow(int y, int[] outRow, int[] edgeRow) {
+    if (zeroFill) {
+      for (int p = 0; p < outRow.length; p++) {
+        outRow[p] = 0;
+      }
+      dst.setSamples(0, y, width, outRow, 0);
+    } else {
+      src.getSamples(0, y, width, edgeRow, 0);
+      clampCopy(edgeRow, 0, edgeRow.length, edgeRow);
+      dst.setSamples(0, y, width, edgeRow, 0);
+    }
+  }
+
+  private void fillEdges(int[] outRow, int[] center, int p0, int p1, int rowLen) {
+    if (zeroFill) {
+      for (int p = 0; p < p0; p++) {
+        outRow[p] = 0;
+      }
+      for (int p = p1; p < rowLen; p++) {
+        outRow[p] = 0;
+      }
+    } else {
+      clampCopy(center, 0, p0, outRow);
+      clampCopy(center, p1, rowLen, outRow);
+    }
+  }
+
+  /**
+   * Copies source samples, clamping them in case the destination has fewer bits per band.
+   */
+  private void clampCopy(int[] in, int from, int to, int[] out) {
+    int nb = numBands;
+    for (int b = 0; b < nb; b++) {
+      int min = dst.minSample[b];
+      int max = dst.maxSample[b];
+      for (int p = from + b; p < to; p += nb) {
+        int v = in[p];
+        out[p] = v < min ? min : v > max ? max : v;
+      }
+    }
+  }
+}
@@ -0,0 +1,320 @@
+package sun.awt.image;
+
+import java.awt.image.ByteLookupTable;
+import java.awt.image.LookupOp;
+import java.awt.image.LookupTable;
+import java.awt.image.Raster;
+import java.awt.image.RescaleOp;
+import java.awt.image.ShortLookupTable;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+import skinjob.util.ParallelBands;
+import skinjob.util.ParallelBands.BandTask;
+
+/**
+ * Pure-Java replacement for the medialib table lookup that backs {@link LookupOp} in OpenJDK AWT,
+ * also used for {@link RescaleOp}. Whatever the source of the mapping, it's first compiled into one
+ * {@code int} table per band, indexed directly by raw source sample and already clamped to the
+ * destination's range; for 8-bit data that's 256 entries per band. The tables are then applied to
+ * row bands in parallel.
+ * <p>
+ * When both rasters are {@link IntegerInterleavedRaster}s with the same bit masks, or both are
+ * unpacked {@link ByteInterleavedRaster}s, the data arrays are read and written in place. Any other
+ * integral raster goes through {@link RasterRows}.
+ */
+final class RasterLookup implements BandTask {
+
+  /**
+   * Largest source sample we'll build a table for.
+   */
+  private static final int MAX_TABLE_INDEX = 0xffff;
+  /**
+   * Table entry for a source sample that the lookup table doesn't cover. It's negative, so OR-ing
+   * together every entry used in a row shows whether any of them was out of range.
+   */
+  private static final int OUT_OF_RANGE = -1;
+
+  private final Raster srcRaster;
+  private final WritableRaster dstRaster;
+  private final RasterRows src;
+  private final RasterRows dst;
+  private final int width;
+  private final int numBands;
+  /**
+   * Maps each band's raw source samples to destination samples.
+   */
+  private final int[][] tables;
+
+  private RasterLookup(
+      Raster srcRaster, WritableRaster dstRaster, RasterRows src, RasterRows dst, int width,
+      int[][] tables) {
+    this.srcRaster = srcRaster;
+    this.dstRaster = dstRaster;
+    this.src = src;
+    this.dst = dst;
+    this.width = width;
+    numBands = src.numBands;
+    this.tables = tables;
+  }
+
+  /**
+   * Applies a {@link ByteLookupTable} or {@link ShortLookupTable}, honoring its offset.
+   *
+   * @param mappedBands bands at or above this index are copied unchanged, e.g. the alpha band of
+   *     an image when the table only covers color components
+   * @return false if the table type isn't supported or either raster has non-integral or signed
+   *     samples; true on success
+   * @throws IllegalArgumentException if a source sample minus the offset falls outside the table,
+   *     as {@link LookupOp} does
+   */
+  static boolean lookup(Raster src, WritableRaster dst, LookupTable table, int mappedBands) {
+    RasterRows in = RasterRows.of(src);
+    RasterRows out = RasterRows.of(dst);
+    if (!isSupported(in, out)) {
+      return false;
+    }
+    byte[][] byteData = null;
+    short[][] shortData = null;
+    int numTables;
+    if (table instanceof ByteLookupTable) {
+      byteData = ((ByteLookupTable) table).getTable();
+      numTables = byteData.length;
+    } else if (table instanceof ShortLookupTable) {
+      shortData = ((ShortLookupTable) table).getTable();
+      numTables = shortData.length;
+    } else {
+      return false;
+    }
+    int offset = table.getOffset();
+    int[][] tables = new int[in.numBands][];
+    for (int b = 0; b < tables.length; b++) {
+      int srcMax = in.maxSample[b];
+      int dstMax = out.maxSample[b];
+      if (numTables == 1 && b > 0 && b < mappedBands && srcMax == in.maxSample[b - 1]
+          && dstMax == out.maxSample[b - 1]) {
+        tables[b] = tables[b - 1];
+        continue;
+      }
+      int[] compiled = new int[srcMax + 1];
+      if (b >= mappedBands) {
+        fillIdentity(compiled, dstMax);
+      } else {
+        int t = numTables == 1 ? 0 : b;
+        int len = byteData != null ? byteData[t].length : shortData[t].length;
+        for (int i = 0; i <= srcMax; i++) {
+          int index = i - offset;
+          if (index < 0 || index >= len) {
+            compiled[i] = OUT_OF_RANGE;
+            continue;
+          }
+          int v = byteData != null ? byteData[t][index] & 0xff : shortData[t][index] & 0xffff;
+          compiled[i] = v > dstMax ? dstMax : v;
+        }
+      }
+      tables[b] = compiled;
+    }
+    run(src, dst, in, out, tables);
+    return true;
+  }
+
+  /**
+   * Applies {@code dst = (int) (src * scale + offset)}, clamped to the destination's range, as
+   * {@link RescaleOp} does.
+   *
+   * @param scaleFactors one factor for all bands, or one per band
+   * @param offsets one offset for all bands, or one per band
+   * @param mappedBands bands at or above this index are copied unchanged
+   * @return false if either raster has non-integral or signed samples; true on success
+   */
+  static boolean rescale(
+      Raster src, WritableRaster dst, float[] scaleFactors, float[] offsets, int mappedBands) {
+    RasterRows in = RasterRows.of(src);
+    RasterRows out = RasterRows.of(dst);
+    if (!isSupported(in, out)) {
+      return false;
+    }
+    int[][] tables = new int[in.numBands][];
+    for (int b = 0; b < tables.length; b++) {
+      int srcMax = in.maxSample[b];
+      int dstMax = out.maxSample[b];
+      int[] compiled = new int[srcMax + 1];
+      if (b >= mappedBands) {
+        fillIdentity(compiled, dstMax);
+      } else {
+        int f = scaleFactors.length == 1 ? 0 : b;
+        float scale = scaleFactors[f];
+        float offset = offsets[f];
+        for (int i = 0; i <= srcMax; i++) {
+          int v = (int) (i * scale + offset);
+          compiled[i] = v < 0 ? 0 : v > dstMax ? dstMax : v;
+        }
+      }
+      tables[b] = compiled;
+    }
+    run(src, dst, in, out, tables);
+    return true;
+  }
+
+  private static boolean isSupported(RasterRows in, RasterRows out) {
+    if (in == null || out == null || in.numBands != out.numBands) {
+      return false;
+    }
+    for (int b = 0; b < in.numBands; b++) {
+      if (in.minSample[b] < 0 || out.minSample[b] < 0 || in.maxSample[b] > MAX_TABLE_INDEX) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void fillIdentity(int[] table, int max) {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = i > max ? max : i;
+    }
+  }
+
+  private static void run(
+      Raster srcRaster, WritableRaster dstRaster, RasterRows in, RasterRows out, int[][] tables) {
+    int width = Math.min(in.width, out.width);
+    int height = Math.min(in.height, out.height);
+    ParallelBands.run(0, height, width,
+        new RasterLookup(srcRaster, dstRaster, in, out, width, tables));
+  }
+
+  @Override
+  public void run(int yStart, int yEnd) {
+    if (srcRaster instanceof IntegerInterleavedRaster
+        && dstRaster instanceof IntegerInterleavedRaster
+        && srcRaster.getSampleModel() instanceof SinglePixelPackedSampleModel
+        && dstRaster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+      int[] srcMasks = ((SinglePixelPackedSampleModel) srcRaster.getSampleModel()).getBitMasks();
+      int[] dstMasks = ((SinglePixelPackedSampleModel) dstRaster.getSampleModel()).getBitMasks();
+      if (Arrays.equals(srcMasks, dstMasks)) {
+        lookupPacked((IntegerInterleavedRaster) srcRaster, (IntegerInterleavedRaster) dstRaster,
+            srcMasks, yStart, yEnd);
+        return;
+      }
+    }
+    if (srcRaster instanceof ByteInterleavedRaster && !((ByteInterleavedRaster) srcRaster).packed
+        && dstRaster instanceof ByteInterleavedRaster
+        && !((ByteInterleavedRaster) dstRaster).packed) {
+      lookupBytes((ByteInterleavedRaster) srcRaster, (ByteInterleavedRaster) dstRaster, yStart,
+          yEnd);
+      return;
+    }
+    int[] row = new int[width * numBands];
+    for (int y = yStart; y < yEnd; y++) {
+      src.getSamples(0, y, width, row, 0);
+      int used = 0;
+      for (int b = 0; b < numBands; b++) {
+        int[] table = tables[b];
+        for (int i = b; i < row.length; i += numBands) {
+          int v = table[row[i]];
+          used |= v;
+          row[i] = v;
+        }
+      }
+      checkRange(used, y);
+      dst.setSamples(0, y, width, row, 0);
+    }
+  }
+
+  private void lookupPacked(
+      IntegerInterleavedRaster in, IntegerInterleavedRaster out, int[] masks, int yStart,
+      int yEnd) {
+    int[] srcData = in.getDataStorage();
+    int[] dstData = out.getDataStorage();
+    int srcStride = in.getScanlineStride();
+    int dstStride = out.getScanlineStride();
+    int srcOff = in.getDataOffset(0);
+    int dstOff = out.getDataOffset(0);
+    int[] shifts = ((SinglePixelPackedSampleModel) in.getSampleModel()).getBitOffsets();
+    // Bits outside the masks belong to bands that aren't part of this raster, so keep them
+    int keep = 0;
+    for (int mask : masks) {
+      keep |= mask;
+    }
+    keep = ~keep;
+    int nb = numBands;
+    for (int y = yStart; y < yEnd; y++) {
+      int s = srcOff + y * srcStride;
+      int d = dstOff + y * dstStride;
+      int end = s + width;
+      int used = 0;
+      if (nb == 4 && keep == 0) {
+        int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3];
+        int m0 = masks[0], m1 = masks[1], m2 = masks[2], m3 = masks[3];
+        int s0 = shifts[0], s1 = shifts[1], s2 = shifts[2], s3 = shifts[3];
+        for (; s < end; s++, d++) {
+          int p = srcData[s];
+          int v0 = t0[(p & m0) >>> s0];
+          int v1 = t1[(p & m1) >>> s1];
+          int v2 = t2[(p & m2) >>> s2];
+          int v3 = t3[(p & m3) >>> s3];
+          used |= v0 | v1 | v2 | v3;
+          dstData[d] = v0 << s0 | v1 << s1 | v2 << s2 | v3 << s3;
+        }
+      } else if (nb == 3) {
+        int[] t0 = tables[0], t1 = tables[1], t2 = tables[2];
+        int m0 = masks[0], m1 = masks[1], m2 = masks[2];
+        int s0 = shifts[0], s1 = shifts[1], s2 = shifts[2];
+        for (; s < end; s++, d++) {
+          int p = srcData[s];
+          int v0 = t0[(p & m0) >>> s0];
+          int v1 = t1[(p & m1) >>> s1];
+          int v2 = t2[(p & m2) >>> s2];
+          used |= v0 | v1 | v2;
+          dstData[d] = dstData[d] & keep | v0 << s0 | v1 << s1 | v2 << s2;
+        }
+      } else {
+        for (; s < end; s++, d++) {
+          int p = srcData[s];
+          int q = dstData[d] & keep;
+          for (int b = 0; b < nb; b++) {
+            int v = tables[b][(p & masks[b]) >>> shifts[b]];
+            used |= v;
+            q |= v << shifts[b];
+          }
+          dstData[d] = q;
+        }
+      }
+      checkRange(used, y);
+    }
+  }
+
+  private void lookupBytes(
+      ByteInterleavedRaster in, ByteInterleavedRaster out, int yStart, int yEnd) {
+    byte[] srcData = in.getDataStorage();
+    byte[] dstData = out.getDataStorage();
+    int srcStride = in.getScanlineStride();
+    int dstStride = out.getScanlineStride();
+    int srcPs = in.getPixelStride();
+    int dstPs = out.getPixelStride();
+    for (int y = yStart; y < yEnd; y++) {
+      int used = 0;
+      for (int b = 0; b < numBands; b++) {
+        int[] table = tables[b];
+        int s = in.getDataOffset(b) + y * srcStride;
+        int d = out.getDataOffset(b) + y * dstStride;
+        for (int end = s + width * srcPs; s < end; s += srcPs, d += dstPs) {
+          int v = table[srcData[s] & 0xff];
+          used |= v;
+          dstData[d] = (byte) v;
+        }
+      }
+      checkRange(used, y);
+    }
+  }
+
+  /**
+   * Throws if any of the table entries OR-ed into {@code used} was {@link #OUT_OF_RANGE}.
+   */
+  private static void checkRange(int used, int y) {
+    if (used < 0) {
+      throw new IllegalArgumentException("Sample in row " + y + " is out of range of the lookup"
+          + " table");
+    }
+  }
+}
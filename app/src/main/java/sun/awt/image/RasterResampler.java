@@ -0,0 +1,602 @@
+package sun.awt.image;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import skinjob.util.ParallelBands;
+import skinjob.util.ParallelBands.BandTask;
+
+/**
+ * Pure-Java replacement for the medialib affine resampler that backs {@link AffineTransformOp} in
+ * OpenJDK AWT. As in OpenJDK, each destination pixel center is mapped back into the source, and
+ * interpolation near the source's edges repeats its outermost pixels. Destination pixels whose
+ * centers land outside the source are left untouched.
+ * <p>
+ * The destination is processed in square tiles, which run in parallel by rows of tiles. For each
+ * tile, the source pixels it can reach are unpacked once into a scratch buffer; source coordinates
+ * are then stepped incrementally along each destination row. Transforms without rotation or shear
+ * precompute the horizontal taps once per tile, and integer translations are plain row copies.
+ */
+final class RasterResampler implements BandTask {
+
+  private static final int TILE_SIZE = 64;
+  /**
+   * Largest source area that will be unpacked for one tile. Tiles that reach further (because of a
+   * large reduction) are split until they fit or are a single pixel.
+   */
+  private static final int MAX_TILE_SOURCE_PIXELS = 1 << 16;
+  /**
+   * The "a" parameter of the cubic convolution kernel; -0.5 matches medialib.
+   */
+  private static final float CUBIC_A = -0.5f;
+
+  private final RasterRows src;
+  private final RasterRows dst;
+  private final int interpolationType;
+  private final int numBands;
+  private final int dstWidth;
+  /**
+   * Inverse transform, from destination to source coordinates.
+   */
+  private final double m00;
+  private final double m01;
+  private final double m02;
+  private final double m10;
+  private final double m11;
+  private final double m12;
+  /**
+   * Whether the transform has no rotation or shear, so that source x depends only on destination x
+   * and source y only on destination y.
+   */
+  private final boolean axisAligned;
+  /**
+   * Whether the transform is a translation by whole pixels, so that rows can be copied as-is.
+   */
+  private final boolean integerTranslation;
+  /**
+   * Whether source samples can exceed the range of the destination's bands.
+   */
+  private final boolean clampCopies;
+
+  private RasterResampler(
+      RasterRows src, RasterRows dst, AffineTransform inverse, int interpolationType) {
+    this.src = src;
+    this.dst = dst;
+    this.interpolationType = interpolationType;
+    numBands = src.numBands;
+    dstWidth = dst.width;
+    m00 = inverse.getScaleX();
+    m01 = inverse.getShearX();
+    m02 = inverse.getTranslateX();
+    m10 = inverse.getShearY();
+    m11 = inverse.getScaleY();
+    m12 = inverse.getTranslateY();
+    axisAligned = m01 == 0.0 && m10 == 0.0;
+    integerTranslation = axisAligned && m00 == 1.0 && m11 == 1.0
+        && m02 == Math.rint(m02) && m12 == Math.rint(m12)
+        && Math.abs(m02) < Integer.MAX_VALUE && Math.abs(m12) < Integer.MAX_VALUE;
+    boolean clamp = false;
+    for (int b = 0; b < numBands; b++) {
+      clamp |= src.minSample[b] < dst.minSample[b] || src.maxSample[b] > dst.maxSample[b];
+    }
+    clampCopies = clamp;
+  }
+
+  /**
+   * Transforms {@code src} into {@code dst}, which must have the same number of bands.
+   *
+   * @param matrix the forward transform, as returned by {@link AffineTransform#getMatrix}
+   * @param interpolationType one of the {@link AffineTransformOp} interpolation types
+   * @return false if either raster has non-integral samples or the transform isn't invertible;
+   * true on success
+   */
+  static boolean transform(Raster src, WritableRaster dst, double[] matrix, int interpolationType) {
+    RasterRows in = RasterRows.of(src);
+    RasterRows out = RasterRows.of(dst);
+    if (in == null || out == null || in.numBands != out.numBands) {
+      return false;
+    }
+    AffineTransform inverse;
+    try {
+      inverse = new AffineTransform(matrix).createInverse();
+    } catch (NoninvertibleTransformException e) {
+      return false;
+    }
+    if (in.width == 0 || in.height == 0) {
+      return true;
+    }
+    RasterResampler resampler = new RasterResampler(in, out, inverse, interpolationType);
+    ParallelBands.run(0, out.height, out.width, resampler);
+    return true;
+  }
+
+  @Override
+  public void run(int bandStart, int bandEnd) {
+    Scratch scratch = new Scratch(numBands);
+    if (integerTranslation) {
+      copyRows(bandStart, bandEnd, scratch);
+      return;
+    }
+    for (int ty = bandStart; ty < bandEnd; ty += TILE_SIZE) {
+      int th = Math.min(TILE_SIZE, bandEnd - ty);
+      for (int tx = 0; tx < dstWidth; tx += TILE_SIZE) {
+        processTile(tx, ty, Math.min(TILE_SIZE, dstWidth - tx), th, scratch);
+      }
+    }
+  }
+
+  private void copyRows(int bandStart, int bandEnd, Scratch scratch) {
+    int dx = (int) m02;
+    int dy = (int) m12;
+    int x0 = Math.max(0, -dx);
+    int x1 = Math.min(dstWidth, src.width - dx);
+    if (x0 >= x1) {
+      return;
+    }
+    int[] row = scratch.row(x1 - x0);
+    for (int y = Math.max(bandStart, -dy), yEnd = Math.min(bandEnd, src.height - dy);
+        y < yEnd; y++) {
+      src.getSamples(x0 + dx, y + dy, x1 - x0, row, 0);
+      if (clampCopies) {
+        clamp(row, (x1 - x0) * numBands);
+      }
+      dst.setSamples(x0, y, x1 - x0, row, 0);
+    }
+  }
+
+  private void processTile(int tx, int ty, int tw, int th, Scratch scratch) {
+    // The transform is affine, so the tile's extremes in source space are at its corners
+    double left = tx + 0.5;
+    double right = tx + tw - 0.5;
+    double top = ty + 0.5;
+    double bottom = ty + th - 0.5;
+    double sx0 = m00 * left + m01 * top;
+    double sx1 = m00 * right + m01 * top;
+    double sx2 = m00 * left + m01 * bottom;
+    double sx3 = m00 * right + m01 * bottom;
+    double sy0 = m10 * left + m11 * top;
+    double sy1 = m10 * right + m11 * top;
+    double sy2 = m10 * left + m11 * bottom;
+    double sy3 = m10 * right + m11 * bottom;
+    double minSx = Math.min(Math.min(sx0, sx1), Math.min(sx2, sx3)) + m02;
+    double maxSx = Math.max(Math.max(sx0, sx1), Math.max(sx2, sx3)) + m02;
+    double minSy = Math.min(Math.min(sy0, sy1), Math.min(sy2, sy3)) + m12;
+    double maxSy = Math.max(Math.max(sy0, sy1), Math.max(sy2, sy3)) + m12;
+    if (maxSx < 0.0 || maxSy < 0.0 || minSx >= src.width || minSy >= src.height) {
+      return;
+    }
+    // Widen by the bicubic footprint; clamping keeps this inside the source
+    int bx0 = (int) Math.max(0.0, Math.floor(minSx - 0.5) - 1.0);
+    int by0 = (int) Math.max(0.0, Math.floor(minSy - 0.5) - 1.0);
+    int bx1 = (int) Math.min(src.width - 1, Math.floor(maxSx - 0.5) + 2.0);
+    int by1 = (int) Math.min(src.height - 1, Math.floor(maxSy - 0.5) + 2.0);
+    int bw = bx1 - bx0 + 1;
+    int bh = by1 - by0 + 1;
+    if ((long) bw * bh > MAX_TILE_SOURCE_PIXELS && (tw > 1 || th > 1)) {
+      if (tw >= th) {
+        int half = tw >> 1;
+        processTile(tx, ty, half, th, scratch);
+        processTile(tx + half, ty, tw - half, th, scratch);
+      } else {
+        int half = th >> 1;
+        processTile(tx, ty, tw, half, scratch);
+        processTile(tx, ty + half, tw, th - half, scratch);
+      }
+      return;
+    }
+    int[] source = scratch.source(bw * bh * numBands);
+    src.getRect(bx0, by0, bw, bh, source);
+    Footprint fp = scratch.footprint;
+    fp.x0 = bx0;
+    fp.y0 = by0;
+    fp.x1 = bx1;
+    fp.y1 = by1;
+    fp.width = bw;
+    if (axisAligned) {
+      resampleAxisAligned(tx, ty, tw, th, source, scratch);
+      return;
+    }
+    int[] row = scratch.row(tw);
+    float[] acc = scratch.acc(tw);
+    for (int y = ty; y < ty + th; y++) {
+      double cy = y + 0.5;
+      double sx = m00 * left + m01 * cy + m02;
+      double sy = m10 * left + m11 * cy + m12;
+      int i0 = spanStart(sx, m00, src.width, sy, m10, src.height, tw);
+      int i1 = spanEnd(sx, m00, src.width, sy, m10, src.height, i0, tw);
+      if (i0 >= i1) {
+        continue;
+      }
+      sx += i0 * m00;
+      sy += i0 * m10;
+      int n = i1 - i0;
+      switch (interpolationType) {
+        case AffineTransformOp.TYPE_NEAREST_NEIGHBOR:
+          nearestRow(source, fp, sx, sy, n, row);
+          break;
+        case AffineTransformOp.TYPE_BILINEAR:
+          bilinearRow(source, fp, sx, sy, n, acc);
+          dst.clamp(acc, 0, n * numBands, row);
+          break;
+        default:
+          bicubicRow(source, fp, sx, sy, n, acc, scratch);
+          dst.clamp(acc, 0, n * numBands, row);
+          break;
+      }
+      dst.setSamples(tx + i0, y, n, row, 0);
+    }
+  }
+
+  /**
+   * Returns the first of the {@code n} steps along a row whose source point is inside the source.
+   */
+  private static int spanStart(
+      double sx, double dsx, int sw, double sy, double dsy, int sh, int n) {
+    long first = Math.max(firstInside(sx, dsx, sw), firstInside(sy, dsy, sh));
+    int lo = (int) Math.max(0, Math.min(n, first - 1));
+    while (lo < n && !inside(sx + lo * dsx, sw, sy + lo * dsy, sh)) {
+      lo++;
+    }
+    return lo;
+  }
+
+  /**
+   * Returns one past the last of the {@code n} steps along a row whose source point is inside the
+   * source, given that step {@code start} is the first. The inside steps are contiguous, since both
+   * the row and the source rectangle are convex.
+   */
+  private static int spanEnd(
+      double sx, double dsx, int sw, double sy, double dsy, int sh, int start, int n) {
+    if (start >= n) {
+      return start;
+    }
+    long hi = Math.min(lastInside(sx, dsx, sw), lastInside(sy, dsy, sh)) + 2L;
+    int end = (int) Math.max(start + 1, Math.min(n, hi));
+    // Step start is known to be inside, so the span is never empty
+    while (end > start + 1 && !inside(sx + (end - 1) * dsx, sw, sy + (end - 1) * dsy, sh)) {
+      end--;
+    }
+    return end;
+  }
+
+  private static long firstInside(double v, double step, int limit) {
+    if (step > 0.0) {
+      return (long) Math.max(Integer.MIN_VALUE, Math.ceil(-v / step));
+    } else if (step < 0.0) {
+      return (long) Math.max(Integer.MIN_VALUE, Math.ceil((limit - v) / step));
+    }
+    return v >= 0.0 && v < limit ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+  }
+
+  private static long lastInside(double v, double step, int limit) {
+    if (step > 0.0) {
+      return (long) Math.min(Integer.MAX_VALUE, Math.floor((limit - v) / step));
+    } else if (step < 0.0) {
+      return (long) Math.min(Integer.MAX_VALUE, Math.floor(-v / step));
+    }
+    return v >= 0.0 && v < limit ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+  }
+
+  private static boolean inside(double sx, int sw, double sy, int sh) {
+    return sx >= 0.0 && sx < sw && sy >= 0.0 && sy < sh;
+  }
+
+  private void nearestRow(int[] source, Footprint fp, double sx, double sy, int n, int[] row) {
+    int nb = numBands;
+    for (int i = 0, o = 0; i < n; i++, sx += m00, sy += m10) {
+      int s = fp.index(fp.clampX((int) sx), fp.clampY((int) sy)) * nb;
+      for (int b = 0; b < nb; b++) {
+        row[o++] = source[s + b];
+      }
+    }
+    if (clampCopies) {
+      clamp(row, n * nb);
+    }
+  }
+
+  private void bilinearRow(
+      int[] source, Footprint fp, double sx, double sy, int n, float[] acc) {
+    int nb = numBands;
+    for (int i = 0, o = 0; i < n; i++, sx += m00, sy += m10) {
+      // sx, sy >= 0 inside the span, so truncation after adding 1 is floor
+      double fx = sx - 0.5;
+      double fy = sy - 0.5;
+      int x0 = (int) (fx + 1.0) - 1;
+      int y0 = (int) (fy + 1.0) - 1;
+      float tx = (float) (fx - x0);
+      float ty = (float) (fy - y0);
+      int xa = fp.clampX(x0);
+      int xb = fp.clampX(x0 + 1);
+      int ya = fp.clampY(y0);
+      int yb = fp.clampY(y0 + 1);
+      int s00 = fp.index(xa, ya) * nb;
+      int s01 = fp.index(xb, ya) * nb;
+      int s10 = fp.index(xa, yb) * nb;
+      int s11 = fp.index(xb, yb) * nb;
+      for (int b = 0; b < nb; b++) {
+        float v0 = source[s00 + b] + tx * (source[s01 + b] - source[s00 + b]);
+        float v1 = source[s10 + b] + tx * (source[s11 + b] - source[s10 + b]);
+        acc[o++] = v0 + ty * (v1 - v0);
+      }
+    }
+  }
+
+  private void bicubicRow(
+      int[] source, Footprint fp, double sx, double sy, int n, float[] acc, Scratch scratch) {
+    int nb = numBands;
+    float[] wx = scratch.wx;
+    float[] wy = scratch.wy;
+    int[] xs = scratch.xs;
+    int[] ys = scratch.ys;
+    for (int i = 0, o = 0; i < n; i++, sx += m00, sy += m10) {
+      double fx = sx - 0.5;
+      double fy = sy - 0.5;
+      int x0 = (int) (fx + 1.0) - 1;
+      int y0 = (int) (fy + 1.0) - 1;
+      cubicWeights((float) (fx - x0), wx, 0);
+      cubicWeights((float) (fy - y0), wy, 0);
+      for (int k = 0; k < 4; k++) {
+        xs[k] = (fp.clampX(x0 - 1 + k) - fp.x0) * nb;
+        ys[k] = (fp.clampY(y0 - 1 + k) - fp.y0) * fp.width * nb;
+      }
+      float h0 = wx[0];
+      float h1 = wx[1];
+      float h2 = wx[2];
+      float h3 = wx[3];
+      int c0 = xs[0];
+      int c1 = xs[1];
+      int c2 = xs[2];
+      int c3 = xs[3];
+      for (int b = 0; b < nb; b++) {
+        float v = 0.0f;
+        for (int j = 0; j < 4; j++) {
+          int r = ys[j] + b;
+          v += wy[j] * (h0 * source[r + c0] + h1 * source[r + c1]
+              + h2 * source[r + c2] + h3 * source[r + c3]);
+        }
+        acc[o++] = v;
+      }
+    }
+  }
+
+  /**
+   * Handles transforms without rotation or shear. The horizontal taps and weights depend only on
+   * the destination column, so they're computed once per tile rather than once per pixel.
+   */
+  private void resampleAxisAligned(
+      int tx, int ty, int tw, int th, int[] source, Scratch scratch) {
+    Footprint fp = scratch.footprint;
+    int nb = numBands;
+    double sx = m00 * (tx + 0.5) + m02;
+    int i0 = spanStart(sx, m00, src.width, 0.0, 0.0, 1, tw);
+    int i1 = spanEnd(sx, m00, src.width, 0.0, 0.0, 1, i0, tw);
+    if (i0 >= i1) {
+      return;
+    }
+    int n = i1 - i0;
+    int taps = interpolationType == AffineTransformOp.TYPE_NEAREST_NEIGHBOR ? 1
+        : interpolationType == AffineTransformOp.TYPE_BILINEAR ? 2 : 4;
+    int[] colIndex = scratch.colIndex(n * taps);
+    float[] colWeight = scratch.colWeight(n * taps);
+    sx += i0 * m00;
+    for (int i = 0; i < n; i++, sx += m00) {
+      if (taps == 1) {
+        colIndex[i] = (fp.clampX((int) sx) - fp.x0) * nb;
+        continue;
+      }
+      double fx = sx - 0.5;
+      int x0 = (int) (fx + 1.0) - 1;
+      float t = (float) (fx - x0);
+      int base = i * taps;
+      if (taps == 2) {
+        colWeight[base] = 1.0f - t;
+        colWeight[base + 1] = t;
+        colIndex[base] = (fp.clampX(x0) - fp.x0) * nb;
+        colIndex[base + 1] = (fp.clampX(x0 + 1) - fp.x0) * nb;
+      } else {
+        cubicWeights(t, colWeight, base);
+        for (int k = 0; k < 4; k++) {
+          colIndex[base + k] = (fp.clampX(x0 - 1 + k) - fp.x0) * nb;
+        }
+      }
+    }
+    int[] row = scratch.row(n);
+    float[] acc = scratch.acc(n);
+    float[] wy = scratch.wy;
+    int stride = fp.width * nb;
+    for (int y = ty; y < ty + th; y++) {
+      double sy = m11 * (y + 0.5) + m12;
+      if (sy < 0.0 || sy >= src.height) {
+        continue;
+      }
+      if (taps == 1) {
+        int r = (fp.clampY((int) sy) - fp.y0) * stride;
+        for (int i = 0, o = 0; i < n; i++) {
+          int s = r + colIndex[i];
+          for (int b = 0; b < nb; b++) {
+            row[o++] = source[s + b];
+          }
+        }
+        if (clampCopies) {
+          clamp(row, n * nb);
+        }
+      } else {
+        double fy = sy - 0.5;
+        int y0 = (int) (fy + 1.0) - 1;
+        float t = (float) (fy - y0);
+        // Interpolate vertically across the whole footprint row, then horizontally from that
+        int rowLen = fp.width * nb;
+        float[] column = scratch.column(rowLen);
+        if (taps == 2) {
+          float w0 = 1.0f - t;
+          int r0 = (fp.clampY(y0) - fp.y0) * stride;
+          int r1 = (fp.clampY(y0 + 1) - fp.y0) * stride;
+          for (int c = 0; c < rowLen; c++) {
+            column[c] = w0 * source[r0 + c] + t * source[r1 + c];
+          }
+          for (int i = 0, o = 0; i < n; i++) {
+            int c0 = colIndex[2 * i];
+            int c1 = colIndex[2 * i + 1];
+            float h0 = colWeight[2 * i];
+            float h1 = colWeight[2 * i + 1];
+            for (int b = 0; b < nb; b++) {
+              acc[o++] = h0 * column[c0 + b] + h1 * column[c1 + b];
+            }
+          }
+        } else {
+          cubicWeights(t, wy, 0);
+          int r0 = (fp.clampY(y0 - 1) - fp.y0) * stride;
+          int r1 = (fp.clampY(y0) - fp.y0) * stride;
+          int r2 = (fp.clampY(y0 + 1) - fp.y0) * stride;
+          int r3 = (fp.clampY(y0 + 2) - fp.y0) * stride;
+          float w0 = wy[0];
+          float w1 = wy[1];
+          float w2 = wy[2];
+          float w3 = wy[3];
+          for (int c = 0; c < rowLen; c++) {
+            column[c] = w0 * source[r0 + c] + w1 * source[r1 + c]
+                + w2 * source[r2 + c] + w3 * source[r3 + c];
+          }
+          for (int i = 0, o = 0; i < n; i++) {
+            int base = 4 * i;
+            int c0 = colIndex[base];
+            int c1 = colIndex[base + 1];
+            int c2 = colIndex[base + 2];
+            int c3 = colIndex[base + 3];
+            float h0 = colWeight[base];
+            float h1 = colWeight[base + 1];
+            float h2 = colWeight[base + 2];
+            float h3 = colWeight[base + 3];
+            for (int b = 0; b < nb; b++) {
+              acc[o++] = h0 * column[c0 + b] + h1 * column[c1 + b]
+                  + h2 * column[c2 + b] + h3 * column[c3 + b];
+            }
+          }
+        }
+        dst.clamp(acc, 0, n * nb, row);
+      }
+      dst.setSamples(tx + i0, y, n, row, 0);
+    }
+  }
+
+  /**
+   * Computes the four cubic convolution weights for a sample at fraction {@code t} past the second
+   * tap.
+   */
+  private static void cubicWeights(float t, float[] w, int off) {
+    float a = CUBIC_A;
+    float d0 = 1.0f + t;
+    float d1 = t;
+    float d2 = 1.0f - t;
+    float d3 = 2.0f - t;
+    w[off] = ((a * d0 - 5.0f * a) * d0 + 8.0f * a) * d0 - 4.0f * a;
+    w[off + 1] = ((a + 2.0f) * d1 - (a + 3.0f)) * d1 * d1 + 1.0f;
+    w[off + 2] = ((a + 2.0f) * d2 - (a + 3.0f)) * d2 * d2 + 1.0f;
+    w[off + 3] = ((a * d3 - 5.0f * a) * d3 + 8.0f * a) * d3 - 4.0f * a;
+  }
+
+  private void clamp(int[] row, int len) {
+    int nb = numBands;
+    for (int b = 0; b < nb; b++) {
+      int min = dst.minSample[b];
+      int max = dst.maxSample[b];
+      for (int i = b; i < len; i += nb) {
+        int v = row[i];
+        row[i] = v < min ? min : v > max ? max : v;
+      }
+    }
+  }
+
+  /**
+   * The block of source pixels unpacked for the current tile.
+   */
+  private static final class Footprint {
+    int x0;
+    int y0;
+    int x1;
+    int y1;
+    int width;
+
+    int clampX(int x) {
+      return x < x0 ? x0 : x > x1 ? x1 : x;
+    }
+
+    int clampY(int y) {
+      return y < y0 ? y0 : y > y1 ? y1 : y;
+    }
+
+    /**
+     * @return the pixel index of (x, y) in the scratch buffer
+     */
+    int index(int x, int y) {
+      return (y - y0) * width + x - x0;
+    }
+  }
+
+  /**
+   * Per-band buffers, grown on demand and reused across tiles.
+   */
+  private static final class Scratch {
+    final Footprint footprint = new Footprint();
+    final float[] wx = new float[4];
+    final float[] wy = new float[4];
+    final int[] xs = new int[4];
+    final int[] ys = new int[4];
+    private final int numBands;
+    private int[] source = new int[0];
+    private int[] row = new int[0];
+    private float[] acc = new float[0];
+    private float[] column = new float[0];
+    private int[] colIndex = new int[0];
+    private float[] colWeight = new float[0];
+
+    Scratch(int numBands) {
+      this.numBands = numBands;
+    }
+
+    int[] source(int len) {
+      if (source.length < len) {
+        source = new int[len];
+      }
+      return source;
+    }
+
+    int[] row(int pixels) {
+      if (row.length < pixels * numBands) {
+        row = new int[pixels * numBands];
+      }
+      return row;
+    }
+
+    float[] acc(int pixels) {
+      if (acc.length < pixels * numBands) {
+        acc = new float[pixels * numBands];
+      }
+      return acc;
+    }
+
+    float[] column(int len) {
+      if (column.length < len) {
+        column = new float[len];
+      }
+      return column;
+    }
+
+    int[] colIndex(int len) {
+      if (colIndex.length < len) {
+        colIndex = new int[len];
+      }
+      return colIndex;
+    }
+
+    float[] colWeight(int len) {
+      if (colWeight.length < len) {
+        colWeight = new float[len];
+      }
+      return colWeight;
+    }
+  }
+}
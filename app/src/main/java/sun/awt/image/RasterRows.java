@@ -0,0 +1,305 @@
+package sun.awt.image;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Reads and writes runs of pixels in a {@link Raster} as interleaved integer samples, one element
+ * per band per pixel. {@link IntegerInterleavedRaster} and unpacked {@link ByteInterleavedRaster}
+ * are accessed directly through their data arrays; any other integral raster goes through {@link
+ * Raster#getPixels(int, int, int, int, int[])}. Coordinates are relative to the raster's minX and
+ * minY.
+ * <p>
+ * Instances hold no per-call state and may be shared between threads, provided they write
+ * disjoint rows.
+ */
+public abstract class RasterRows {
+
+  public final int width;
+  public final int height;
+  public final int numBands;
+  /**
+   * Smallest legal value of each band, used to clamp computed samples before they're stored.
+   */
+  public final int[] minSample;
+  /**
+   * Largest legal value of each band, used to clamp computed samples before they're stored.
+   */
+  public final int[] maxSample;
+
+  RasterRows(Raster raster) {
+    width = raster.getWidth();
+    height = raster.getHeight();
+    numBands = raster.getNumBands();
+    minSample = new int[numBands];
+    maxSample = new int[numBands];
+    SampleModel sm = raster.getSampleModel();
+    boolean signed = sm.getDataType() == DataBuffer.TYPE_SHORT;
+    for (int b = 0; b < numBands; b++) {
+      int bits = sm.getSampleSize(b);
+      if (signed) {
+        minSample[b] = -(1 << bits - 1);
+        maxSample[b] = (1 << bits - 1) - 1;
+      } else {
+        maxSample[b] = bits >= 31 ? Integer.MAX_VALUE : (1 << bits) - 1;
+      }
+    }
+  }
+
+  /**
+   * Returns the fastest accessor for the given raster, or null if its samples aren't integral.
+   */
+  public static RasterRows of(Raster raster) {
+    int dataType = raster.getSampleModel().getDataType();
+    if (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE) {
+      return null;
+    }
+    if (raster instanceof IntegerInterleavedRaster
+        && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+      return new IntPacked((IntegerInterleavedRaster) raster);
+    }
+    if (raster instanceof ByteInterleavedRaster && !((ByteInterleavedRaster) raster).packed) {
+      return new ByteInterleaved((ByteInterleavedRaster) raster);
+    }
+    return new Generic(raster);
+  }
+
+  /**
+   * Copies {@code w} pixels starting at ({@code x}, {@code y}) into {@code buf}, starting at index
+   * {@code off}.
+   */
+  public abstract void getSamples(int x, int y, int w, int[] buf, int off);
+
+  /**
+   * Stores {@code w} pixels starting at ({@code x}, {@code y}) from {@code buf}, starting at index
+   * {@code off}. The samples must already be within {@link #minSample} and {@link #maxSample}.
+   */
+  public abstract void setSamples(int x, int y, int w, int[] buf, int off);
+
+  /**
+   * Copies a {@code w} by {@code h} rectangle into {@code buf}, row by row with no padding.
+   */
+  void getRect(int x, int y, int w, int h, int[] buf) {
+    int rowLen = w * numBands;
+    for (int j = 0; j < h; j++) {
+      getSamples(x, y + j, w, buf, j * rowLen);
+    }
+  }
+
+  /**
+   * Clamps and rounds computed samples, in place, to the legal range of each band.
+   *
+   * @param acc computed samples, interleaved
+   * @param from index of the first sample to convert; must be the first band of a pixel
+   * @param to index one past the last sample to convert
+   * @param out destination, at the same indices
+   */
+  final void clamp(float[] acc, int from, int to, int[] out) {
+    int nb = numBands;
+    for (int b = 0; b < nb; b++) {
+      float lo = minSample[b];
+      float hi = maxSample[b];
+      int min = minSample[b];
+      int max = maxSample[b];
+      for (int i = from + b; i < to; i += nb) {
+        float v = acc[i];
+        if (v <= lo) {
+          out[i] = min;
+        } else if (v >= hi) {
+          out[i] = max;
+        } else if (min >= 0) {
+          out[i] = (int) (v + 0.5f);
+        } else {
+          out[i] = (int) Math.floor(v + 0.5f);
+        }
+      }
+    }
+  }
+
+  private static final class IntPacked extends RasterRows {
+    private final int[] data;
+    private final int offset;
+    private final int scanlineStride;
+    private final int[] masks;
+    private final int[] shifts;
+
+    IntPacked(IntegerInterleavedRaster raster) {
+      super(raster);
+      SinglePixelPackedSampleModel sppsm =
+          (SinglePixelPackedSampleModel) raster.getSampleModel();
+      data = raster.getDataStorage();
+      offset = raster.getDataOffset(0);
+      scanlineStride = raster.getScanlineStride();
+      masks = sppsm.getBitMasks();
+      shifts = sppsm.getBitOffsets();
+    }
+
+    @Override
+    public void getSamples(int x, int y, int w, int[] buf, int off) {
+      int nb = numBands;
+      int src = offset + y * scanlineStride + x;
+      int end = src + w;
+      if (nb == 4) {
+        int m0 = masks[0], m1 = masks[1], m2 = masks[2], m3 = masks[3];
+        int s0 = shifts[0], s1 = shifts[1], s2 = shifts[2], s3 = shifts[3];
+        for (int o = off; src < end; src++) {
+          int pixel = data[src];
+          buf[o++] = (pixel & m0) >>> s0;
+          buf[o++] = (pixel & m1) >>> s1;
+          buf[o++] = (pixel & m2) >>> s2;
+          buf[o++] = (pixel & m3) >>> s3;
+        }
+      } else if (nb == 3) {
+        int m0 = masks[0], m1 = masks[1], m2 = masks[2];
+        int s0 = shifts[0], s1 = shifts[1], s2 = shifts[2];
+        for (int o = off; src < end; src++) {
+          int pixel = data[src];
+          buf[o++] = (pixel & m0) >>> s0;
+          buf[o++] = (pixel & m1) >>> s1;
+          buf[o++] = (pixel & m2) >>> s2;
+        }
+      } else {
+        for (int o = off; src < end; src++) {
+          int pixel = data[src];
+          for (int b = 0; b < nb; b++) {
+            buf[o++] = (pixel & masks[b]) >>> shifts[b];
+          }
+        }
+      }
+    }
+
+    @Override
+    public void setSamples(int x, int y, int w, int[] buf, int off) {
+      int nb = numBands;
+      int dst = offset + y * scanlineStride + x;
+      int end = dst + w;
+      if (nb == 4) {
+        int s0 = shifts[0], s1 = shifts[1], s2 = shifts[2], s3 = shifts[3];
+        for (int i = off; dst < end; dst++) {
+          data[dst] = buf[i++] << s0 | buf[i++] << s1 | buf[i++] << s2 | buf[i++] << s3;
+        }
+      } else if (nb == 3) {
+        // Bits outside the masks are unused, so keep whatever was there
+        int keep = ~(masks[0] | masks[1] | masks[2]);
+        int s0 = shifts[0], s1 = shifts[1], s2 = shifts[2];
+        for (int i = off; dst < end; dst++) {
+          data[dst] = data[dst] & keep | buf[i++] << s0 | buf[i++] << s1 | buf[i++] << s2;
+        }
+      } else {
+        int keep = 0;
+        for (int mask : masks) {
+          keep |= mask;
+        }
+        keep = ~keep;
+        for (int i = off; dst < end; dst++) {
+          int pixel = data[dst] & keep;
+          for (int b = 0; b < nb; b++) {
+            pixel |= buf[i++] << shifts[b];
+          }
+          data[dst] = pixel;
+        }
+      }
+    }
+  }
+
+  private static final class ByteInterleaved extends RasterRows {
+    private final byte[] data;
+    private final int[] offsets;
+    private final int pixelStride;
+    private final int scanlineStride;
+
+    ByteInterleaved(ByteInterleavedRaster raster) {
+      super(raster);
+      data = raster.getDataStorage();
+      offsets = new int[numBands];
+      for (int b = 0; b < numBands; b++) {
+        offsets[b] = raster.getDataOffset(b);
+      }
+      pixelStride = raster.getPixelStride();
+      scanlineStride = raster.getScanlineStride();
+    }
+
+    @Override
+    public void getSamples(int x, int y, int w, int[] buf, int off) {
+      int nb = numBands;
+      int ps = pixelStride;
+      int base = y * scanlineStride + x * ps;
+      if (nb == 1) {
+        int src = base + offsets[0];
+        for (int i = off, end = off + w; i < end; i++, src += ps) {
+          buf[i] = data[src] & 0xff;
+        }
+        return;
+      }
+      for (int b = 0; b < nb; b++) {
+        int src = base + offsets[b];
+        for (int o = off + b, end = off + w * nb; o < end; o += nb, src += ps) {
+          buf[o] = data[src] & 0xff;
+        }
+      }
+    }
+
+    @Override
+    public void setSamples(int x, int y, int w, int[] buf, int off) {
+      int nb = numBands;
+      int ps = pixelStride;
+      int base = y * scanlineStride + x * ps;
+      if (nb == 1) {
+        int dst = base + offsets[0];
+        for (int i = off, end = off + w; i < end; i++, dst += ps) {
+          data[dst] = (byte) buf[i];
+        }
+        return;
+      }
+      for (int b = 0; b < nb; b++) {
+        int dst = base + offsets[b];
+        for (int i = off + b, end = off + w * nb; i < end; i += nb, dst += ps) {
+          data[dst] = (byte) buf[i];
+        }
+      }
+    }
+  }
+
+  private static final class Generic extends RasterRows {
+    private final Raster raster;
+    private final int minX;
+    private final int minY;
+
+    Generic(Raster raster) {
+      super(raster);
+      this.raster = raster;
+      minX = raster.getMinX();
+      minY = raster.getMinY();
+    }
+
+    @Override
+    public void getSamples(int x, int y, int w, int[] buf, int off) {
+      if (off == 0) {
+        raster.getPixels(minX + x, minY + y, w, 1, buf);
+      } else {
+        int[] tmp = raster.getPixels(minX + x, minY + y, w, 1, (int[]) null);
+        System.arraycopy(tmp, 0, buf, off, tmp.length);
+      }
+    }
+
+    @Override
+    public void setSamples(int x, int y, int w, int[] buf, int off) {
+      WritableRaster wr = (WritableRaster) raster;
+      if (off == 0) {
+        wr.setPixels(minX + x, minY + y, w, 1, buf);
+      } else {
+        int[] tmp = new int[w * numBands];
+        System.arraycopy(buf, off, tmp, 0, tmp.length);
+        wr.setPixels(minX + x, minY + y, w, 1, tmp);
+      }
+    }
+
+    @Override
+    void getRect(int x, int y, int w, int h, int[] buf) {
+      raster.getPixels(minX + x, minY + y, w, h, buf);
+    }
+  }
+}
@@ -0,0 +1,450 @@
+package sun.awt.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Converts runs of pixels in a {@link BufferedImage} of one of the common predefined types to and
+ * from the default RGB color model, working on the raster's data array directly. Each conversion
+ * gives exactly what the image's {@link ColorModel} would for a single pixel, so {@link
+ * BufferedImage#getRGB} and {@link BufferedImage#setRGB} can use these in place of going through
+ * the color model and raster one pixel at a time. Coordinates are not checked against the bounds
+ * of the image; callers must do that.
+ * <p>
+ * Writes mark the elements they change dirty in the raster's {@link DataBuffer}. Instances hold
+ * no per-call state and may be shared between threads.
+ */
+public abstract class RgbRows {
+
+  final DataBuffer dataBuffer;
+  final int scanlineStride;
+  final int pixelStride;
+  /**
+   * Index in the data array of the first element of pixel (0, 0).
+   */
+  final int origin;
+
+  RgbRows(SunWritableRaster raster, int scanlineStride, int pixelStride, int origin) {
+    dataBuffer = raster.getDataBuffer();
+    this.scanlineStride = scanlineStride;
+    this.pixelStride = pixelStride;
+    this.origin = origin;
+  }
+
+  /**
+   * Returns the accessor for an image of the given type, or null if there's no fast path for it
+   * and the caller should go through the color model. The color model decides whether alpha is
+   * premultiplied, since {@link BufferedImage#coerceData} changes that without changing the type;
+   * the accessor must be looked up again after it does.
+   */
+  public static RgbRows of(int imageType, WritableRaster raster, ColorModel colorModel) {
+    if (raster.getMinX() != 0 || raster.getMinY() != 0) {
+      return null;
+    }
+    switch (imageType) {
+      case BufferedImage.TYPE_INT_ARGB:
+      case BufferedImage.TYPE_INT_ARGB_PRE:
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_BGR:
+        if (raster instanceof IntegerInterleavedRaster
+            && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+          return IntRows.of(imageType, colorModel.isAlphaPremultiplied(),
+              (IntegerInterleavedRaster) raster);
+        }
+        break;
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+      case BufferedImage.TYPE_BYTE_GRAY:
+        if (raster instanceof ByteInterleavedRaster && !((ByteInterleavedRaster) raster).packed) {
+          ByteInterleavedRaster bir = (ByteInterleavedRaster) raster;
+          if (imageType == BufferedImage.TYPE_3BYTE_BGR) {
+            return new ThreeByteBgr(bir);
+          }
+          if (imageType == BufferedImage.TYPE_4BYTE_ABGR) {
+            return colorModel.isAlphaPremultiplied() ? null : new FourByteAbgr(bir);
+          }
+          return new ByteGray(bir, colorModel);
+        }
+        break;
+      default:
+        break;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the pixel at ({@code x}, {@code y}) in the default RGB color model.
+   */
+  public abstract int getRGB(int x, int y);
+
+  /**
+   * Sets the pixel at ({@code x}, {@code y}) from a value in the default RGB color model.
+   */
+  public abstract void setRGB(int x, int y, int rgb);
+
+  /**
+   * Copies {@code w} pixels starting at ({@code x}, {@code y}) into {@code rgb}, starting at index
+   * {@code off}, in the default RGB color model.
+   */
+  public abstract void getRGB(int x, int y, int w, int[] rgb, int off);
+
+  /**
+   * Sets {@code w} pixels starting at ({@code x}, {@code y}) from {@code rgb}, starting at index
+   * {@code off}, which are in the default RGB color model.
+   */
+  public abstract void setRGB(int x, int y, int w, int[] rgb, int off);
+
+  /**
+   * Marks the elements of {@code h} rows starting at ({@code x}, {@code y}) and {@code w} pixels
+   * wide dirty. Called once after a block of writes, rather than for each row.
+   */
+  public final void markDirty(int x, int y, int w, int h) {
+    if (w > 0 && h > 0) {
+      int from = indexOf(x, y);
+      int to = indexOf(x + w - 1, y + h - 1) + pixelStride;
+      SunWritableRaster.markDirty(dataBuffer, from, to);
+    }
+  }
+
+  final int indexOf(int x, int y) {
+    return origin + y * scanlineStride + x * pixelStride;
+  }
+
+  /**
+   * The packed int types, one element per pixel.
+   */
+  abstract static class IntRows extends RgbRows {
+    final int[] data;
+
+    IntRows(IntegerInterleavedRaster raster) {
+      super(raster, raster.getScanlineStride(), 1, raster.getDataOffset(0));
+      data = raster.getDataStorage();
+    }
+
+    static IntRows of(int imageType, boolean premultiplied, IntegerInterleavedRaster raster) {
+      switch (imageType) {
+        case BufferedImage.TYPE_INT_ARGB:
+        case BufferedImage.TYPE_INT_ARGB_PRE:
+          return premultiplied ? new IntArgbPre(raster) : new IntArgb(raster);
+        case BufferedImage.TYPE_INT_RGB:
+          return new IntRgb(raster);
+        default:
+          return new IntBgr(raster);
+      }
+    }
+
+    abstract int toRGB(int pixel);
+
+    abstract int fromRGB(int rgb);
+
+    @Override
+    public int getRGB(int x, int y) {
+      return toRGB(data[indexOf(x, y)]);
+    }
+
+    @Override
+    public void setRGB(int x, int y, int rgb) {
+      int i = indexOf(x, y);
+      data[i] = fromRGB(rgb);
+      SunWritableRaster.markDirty(dataBuffer, i, i + 1);
+    }
+
+    @Override
+    public void getRGB(int x, int y, int w, int[] rgb, int off) {
+      int i = indexOf(x, y);
+      for (int end = off + w; off < end; off++) {
+        rgb[off] = toRGB(data[i++]);
+      }
+    }
+
+    @Override
+    public void setRGB(int x, int y, int w, int[] rgb, int off) {
+      int i = indexOf(x, y);
+      for (int end = off + w; off < end; off++) {
+        data[i++] = fromRGB(rgb[off]);
+      }
+    }
+  }
+
+  static final class IntArgb extends IntRows {
+    IntArgb(IntegerInterleavedRaster raster) {
+      super(raster);
+    }
+
+    @Override
+    int toRGB(int pixel) {
+      return pixel;
+    }
+
+    @Override
+    int fromRGB(int rgb) {
+      return rgb;
+    }
+
+    @Override
+    public void getRGB(int x, int y, int w, int[] rgb, int off) {
+      System.arraycopy(data, indexOf(x, y), rgb, off, w);
+    }
+
+    @Override
+    public void setRGB(int x, int y, int w, int[] rgb, int off) {
+      System.arraycopy(rgb, off, data, indexOf(x, y), w);
+    }
+  }
+
+  static final class IntArgbPre extends IntRows {
+    IntArgbPre(IntegerInterleavedRaster raster) {
+      super(raster);
+    }
+
+    // Same arithmetic as DirectColorModel, so that results match it to the bit
+
+    @Override
+    int toRGB(int pixel) {
+      int a = pixel >>> 24;
+      if (a == 0) {
+        return 0;
+      }
+      if (a == 0xff) {
+        return pixel;
+      }
+      return a << 24 | unpremultiply(pixel >> 16 & 0xff, a) << 16
+          | unpremultiply(pixel >> 8 & 0xff, a) << 8 | unpremultiply(pixel & 0xff, a);
+    }
+
+    @Override
+    int fromRGB(int rgb) {
+      int a = rgb >>> 24;
+      if (a == 0xff) {
+        return rgb;
+      }
+      float factor = 1.0f / 255.0f * (a * 1.0f / 255.0f);
+      return a << 24 | premultiply(rgb >> 16 & 0xff, factor) << 16
+          | premultiply(rgb >> 8 & 0xff, factor) << 8 | premultiply(rgb & 0xff, factor);
+    }
+
+    private static int unpremultiply(int c, int a) {
+      return (int) (c * 255.0f / a + 0.5f);
+    }
+
+    private static int premultiply(int c, float factor) {
+      return (int) (c * factor * 255 + 0.5f);
+    }
+  }
+
+  static final class IntRgb extends IntRows {
+    IntRgb(IntegerInterleavedRaster raster) {
+      super(raster);
+    }
+
+    @Override
+    int toRGB(int pixel) {
+      return 0xff000000 | pixel;
+    }
+
+    @Override
+    int fromRGB(int rgb) {
+      return rgb & 0xffffff;
+    }
+  }
+
+  static final class IntBgr extends IntRows {
+    IntBgr(IntegerInterleavedRaster raster) {
+      super(raster);
+    }
+
+    @Override
+    int toRGB(int pixel) {
+      return 0xff000000 | (pixel & 0xff) << 16 | pixel & 0xff00 | pixel >> 16 & 0xff;
+    }
+
+    @Override
+    int fromRGB(int rgb) {
+      return (rgb & 0xff) << 16 | rgb & 0xff00 | rgb >> 16 & 0xff;
+    }
+  }
+
+  /**
+   * The interleaved byte types. {@link #origin} is the index of the lowest-addressed band of
+   * pixel (0, 0); the per-band offsets are relative to it.
+   */
+  abstract static class ByteRows extends RgbRows {
+    final byte[] data;
+
+    ByteRows(ByteInterleavedRaster raster, int origin) {
+      super(raster, raster.getScanlineStride(), raster.getPixelStride(), origin);
+      data = raster.getDataStorage();
+    }
+
+    static int minDataOffset(ByteInterleavedRaster raster) {
+      int min = raster.getDataOffset(0);
+      for (int b = 1; b < raster.getNumBands(); b++) {
+        min = Math.min(min, raster.getDataOffset(b));
+      }
+      return min;
+    }
+  }
+
+  static final class ThreeByteBgr extends ByteRows {
+    private final int rOff;
+    private final int gOff;
+    private final int bOff;
+
+    ThreeByteBgr(ByteInterleavedRaster raster) {
+      super(raster, minDataOffset(raster));
+      rOff = raster.getDataOffset(0) - origin;
+      gOff = raster.getDataOffset(1) - origin;
+      bOff = raster.getDataOffset(2) - origin;
+    }
+
+    @Override
+    public int getRGB(int x, int y) {
+      int i = indexOf(x, y);
+      return 0xff000000 | (data[i + rOff] & 0xff) << 16 | (data[i + gOff] & 0xff) << 8
+          | data[i + bOff] & 0xff;
+    }
+
+    @Override
+    public void setRGB(int x, int y, int rgb) {
+      int i = indexOf(x, y);
+      data[i + rOff] = (byte) (rgb >> 16);
+      data[i + gOff] = (byte) (rgb >> 8);
+      data[i + bOff] = (byte) rgb;
+      SunWritableRaster.markDirty(dataBuffer, i, i + pixelStride);
+    }
+
+    @Override
+    public void getRGB(int x, int y, int w, int[] rgb, int off) {
+      int i = indexOf(x, y);
+      for (int end = off + w; off < end; off++, i += pixelStride) {
+        rgb[off] = 0xff000000 | (data[i + rOff] & 0xff) << 16 | (data[i + gOff] & 0xff) << 8
+            | data[i + bOff] & 0xff;
+      }
+    }
+
+    @Override
+    public void setRGB(int x, int y, int w, int[] rgb, int off) {
+      int i = indexOf(x, y);
+      for (int end = off + w; off < end; off++, i += pixelStride) {
+        int p = rgb[off];
+        data[i + rOff] = (byte) (p >> 16);
+        data[i + gOff] = (byte) (p >> 8);
+        data[i + bOff] = (byte) p;
+      }
+    }
+  }
+
+  static final class FourByteAbgr extends ByteRows {
+    private final int aOff;
+    private final int rOff;
+    private final int gOff;
+    private final int bOff;
+
+    FourByteAbgr(ByteInterleavedRaster raster) {
+      super(raster, minDataOffset(raster));
+      rOff = raster.getDataOffset(0) - origin;
+      gOff = raster.getDataOffset(1) - origin;
+      bOff = raster.getDataOffset(2) - origin;
+      aOff = raster.getDataOffset(3) - origin;
+    }
+
+    @Override
+    public int getRGB(int x, int y) {
+      int i = indexOf(x, y);
+      return data[i + aOff] << 24 | (data[i + rOff] & 0xff) << 16
+          | (data[i + gOff] & 0xff) << 8 | data[i + bOff] & 0xff;
+    }
+
+    @Override
+    public void setRGB(int x, int y, int rgb) {
+      int i = indexOf(x, y);
+      data[i + aOff] = (byte) (rgb >> 24);
+      data[i + rOff] = (byte) (rgb >> 16);
+      data[i + gOff] = (byte) (rgb >> 8);
+      data[i + bOff] = (byte) rgb;
+      SunWritableRaster.markDirty(dataBuffer, i, i + pixelStride);
+    }
+
+    @Override
+    public void getRGB(int x, int y, int w, int[] rgb, int off) {
+      int i = indexOf(x, y);
+      for (int end = off + w; off < end; off++, i += pixelStride) {
+        rgb[off] = data[i + aOff] << 24 | (data[i + rOff] & 0xff) << 16
+            | (data[i + gOff] & 0xff) << 8 | data[i + bOff] & 0xff;
+      }
+    }
+
+    @Override
+    public void setRGB(int x, int y, int w, int[] rgb, int off) {
+      int i = indexOf(x, y);
+      for (int end = off + w; off < end; off++, i += pixelStride) {
+        int p = rgb[off];
+        data[i + aOff] = (byte) (p >> 24);
+        data[i + rOff] = (byte) (p >> 16);
+        data[i + gOff] = (byte) (p >> 8);
+        data[i + bOff] = (byte) p;
+      }
+    }
+  }
+
+  /**
+   * The gray color space is linear, so reads go through a table of the 256 levels taken from the
+   * color model, and writes through the color model itself, skipping repeated colors.
+   */
+  static final class ByteGray extends ByteRows {
+    private final ColorModel colorModel;
+    private final int[] toRGB = new int[256];
+
+    ByteGray(ByteInterleavedRaster raster, ColorModel colorModel) {
+      super(raster, raster.getDataOffset(0));
+      this.colorModel = colorModel;
+      byte[] level = new byte[1];
+      for (int v = 0; v < 256; v++) {
+        level[0] = (byte) v;
+        toRGB[v] = colorModel.getRGB(level);
+      }
+    }
+
+    @Override
+    public int getRGB(int x, int y) {
+      return toRGB[data[indexOf(x, y)] & 0xff];
+    }
+
+    @Override
+    public void setRGB(int x, int y, int rgb) {
+      int i = indexOf(x, y);
+      data[i] = ((byte[]) colorModel.getDataElements(rgb, null))[0];
+      SunWritableRaster.markDirty(dataBuffer, i, i + 1);
+    }
+
+    @Override
+    public void getRGB(int x, int y, int w, int[] rgb, int off) {
+      int i = indexOf(x, y);
+      for (int end = off + w; off < end; off++, i += pixelStride) {
+        rgb[off] = toRGB[data[i] & 0xff];
+      }
+    }
+
+    @Override
+    public void setRGB(int x, int y, int w, int[] rgb, int off) {
+      if (w <= 0) {
+        return;
+      }
+      byte[] level = new byte[1];
+      int i = indexOf(x, y);
+      int last = rgb[off];
+      colorModel.getDataElements(last, level);
+      for (int end = off + w; off < end; off++, i += pixelStride) {
+        int p = rgb[off];
+        if (p != last) {
+          colorModel.getDataElements(p, level);
+          last = p;
+        }
+        data[i] = level[0];
+      }
+    }
+  }
+}
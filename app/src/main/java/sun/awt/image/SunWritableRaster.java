@@ -81,8 +81,37 @@ public class SunWritableRaster extends WritableRaster {
     stealer.setTrackable(db, new Object());
   }
 
+  /**
+   * Routes change notifications for {@code db} to {@code tracker}, replacing any earlier one.
+   */
+  public static void setDirtyTracker(DataBuffer db, DirtyTracker tracker) {
+    stealer.setTrackable(db, tracker);
+  }
+
+  /**
+   * Tells any {@link DirtyTracker} of {@code db} that the first bank's array is about to be
+   * written, for code that writes to the array directly.
+   */
+  public static void willWrite(DataBuffer db) {
+    Object trackable = stealer.getTrackable(db);
+    if (trackable instanceof DirtyTracker) {
+      ((DirtyTracker) trackable).willWrite();
+    }
+  }
+
   public static void markDirty(DataBuffer db) {
-    // TODO
+    markDirty(db, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Marks elements {@code [from, to)} of the first bank of {@code db} dirty, for code that writes
+   * to the array directly.
+   */
+  public static void markDirty(DataBuffer db, int from, int to) {
+    Object trackable = stealer.getTrackable(db);
+    if (trackable instanceof DirtyTracker) {
+      ((DirtyTracker) trackable).markDirty(from, to);
+    }
   }
 
   public static void markDirty(WritableRaster wr) {
@@ -97,11 +126,26 @@ public class SunWritableRaster extends WritableRaster {
     img.sjMarkDirty();
   }
 
+  /**
+   * Tells the associated DataBuffer's tracker that its array is about to be written.
+   */
+  protected final void willWrite() {
+    willWrite(dataBuffer);
+  }
+
   /**
    * Mark the TrackableDelegate of the associated DataBuffer dirty.
    */
   public final void markDirty() {
-    // TODO
+    markDirty(dataBuffer);
+  }
+
+  /**
+   * Mark elements {@code [from, to)} of the first bank's array dirty, for subclasses that know
+   * which part of the array they wrote.
+   */
+  protected final void markDirty(int from, int to) {
+    markDirty(dataBuffer, from, to);
   }
 
   public interface DataStealer {
@@ -112,5 +156,7 @@ public class SunWritableRaster extends WritableRaster {
     int[] getData(DataBufferInt dbi, int bank);
 
     void setTrackable(DataBuffer db, Object trackable);
+
+    Object getTrackable(DataBuffer db);
   }
 }
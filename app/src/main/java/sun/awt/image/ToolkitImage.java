@@ -27,6 +27,7 @@ package sun.awt.image;
 
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.ImageConsumer;
 import java.awt.image.ImageObserver;
@@ -293,6 +294,23 @@ public class ToolkitImage extends Image {
     return imagerep;
   }
 
+  /**
+   * Returns the pixels received so far, or null if none have arrived yet.
+   */
+  public BufferedImage getBufferedImage() {
+    return getImageRep().getBufferedImage();
+  }
+
+  /**
+   * Moves this image's data forward in the fetch queue; lower values are fetched first. See
+   * {@link InputStreamImageSource#setFetchPriority}.
+   */
+  public void setFetchPriority(int priority) {
+    if (src != null) {
+      src.setFetchPriority(priority);
+    }
+  }
+
   /* this method is needed by printing code */
   public ColorModel getColorModel() {
     ImageRepresentation imageRep = getImageRep();
@@ -25,6 +25,9 @@
 
 package sun.awt.image;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 
@@ -61,4 +64,33 @@ public class URLImageSource extends InputStreamImageSource {
     }
     return true;
   }
+
+  @Override
+  ImageDecoder getDecoder() {
+    InputStream is = null;
+    try {
+      URLConnection c = url.openConnection();
+      is = c.getInputStream();
+      conn = c;
+      // Note where a redirect took us, so checkSecurity can vet the real host
+      URL u = c.getURL();
+      if (u != url && (!u.getHost().equals(url.getHost()) || u.getPort() != url.getPort())) {
+        if (actualHost != null
+            && (!actualHost.equals(u.getHost()) || actualPort != u.getPort())) {
+          throw new SecurityException("image moved!");
+        }
+        actualHost = u.getHost();
+        actualPort = u.getPort();
+      }
+      return new BitmapDecoder(this, new BufferedInputStream(is));
+    } catch (IOException | SecurityException e) {
+      if (is != null) {
+        try {
+          is.close();
+        } catch (IOException e2) {
+        }
+      }
+      return null;
+    }
+  }
 }
@@ -25,11 +25,19 @@
 
 package sun.awt.image;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+
 import java.awt.image.BufferStrategy;
 import java.lang.ref.WeakReference;
 
 /**
- * Manages v-synced buffer strategies.
+ * Manages v-synced buffer strategies. A v-synced strategy waits after each flip for the start of
+ * the display's next frame, as reported by the main thread's {@link Choreographer}, so that it
+ * flips no faster than the display refreshes.
  */
 public abstract class VSyncedBSManager {
 
@@ -37,6 +45,37 @@ public abstract class VSyncedBSManager {
       .valueOf(System.getProperty("sun.java2d.vsynclimit", "true"));
   private static VSyncedBSManager theInstance;
 
+  /**
+   * Longest wait for a frame, in case the main thread is too busy to report one.
+   */
+  private static final long MAX_VSYNC_WAIT_MS = 100;
+  private static final Object frameLock = new Object();
+  /**
+   * Number of frames reported since the first wait. Guarded by {@link #frameLock}.
+   */
+  private static long frameCount;
+  /**
+   * Whether a frame callback is pending. Guarded by {@link #frameLock}.
+   */
+  private static boolean frameRequested;
+  private static Handler mainHandler;
+  private static final FrameCallback frameCallback = new FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      synchronized (frameLock) {
+        frameCount++;
+        frameRequested = false;
+        frameLock.notifyAll();
+      }
+    }
+  };
+  private static final Runnable requestFrame = new Runnable() {
+    @Override
+    public void run() {
+      Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+  };
+
   private static VSyncedBSManager getInstance(boolean create) {
     if (theInstance == null && create) {
       theInstance = vSyncLimit ? new SingleVSyncedBSMgr() : new NoLimitVSyncBSMgr();
@@ -54,6 +93,48 @@ public abstract class VSyncedBSManager {
     }
   }
 
+  /**
+   * Returns whether the buffer strategy may be v-synced. Only one strategy at a time may be, unless
+   * the {@code sun.java2d.vsynclimit} property is false.
+   */
+  public static synchronized boolean vsyncAllowed(BufferStrategy bs) {
+    return getInstance(true).checkAllowed(bs);
+  }
+
+  /**
+   * Blocks until the display starts its next frame, or for at most {@value #MAX_VSYNC_WAIT_MS} ms.
+   * Returns at once on the main thread, since that's the thread that would report the frame.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static void waitForVsync() throws InterruptedException {
+    Looper mainLooper = Looper.getMainLooper();
+    if (mainLooper.getThread() == Thread.currentThread()) {
+      return;
+    }
+    synchronized (frameLock) {
+      long target = frameCount + 1;
+      if (!frameRequested) {
+        frameRequested = true;
+        if (mainHandler == null) {
+          mainHandler = new Handler(mainLooper);
+        }
+        // Choreographer.getInstance() is per thread, and only the main one's paces the display
+        mainHandler.post(requestFrame);
+      }
+      long deadline = SystemClock.uptimeMillis() + MAX_VSYNC_WAIT_MS;
+      while (frameCount < target) {
+        long remaining = deadline - SystemClock.uptimeMillis();
+        if (remaining <= 0) {
+          return;
+        }
+        frameLock.wait(remaining);
+      }
+    }
+  }
+
+  abstract boolean checkAllowed(BufferStrategy bs);
+
   abstract void relinquishVsync(BufferStrategy bs);
 
   /**
@@ -63,6 +144,11 @@ public abstract class VSyncedBSManager {
     NoLimitVSyncBSMgr() {
     }
 
+    @Override
+    boolean checkAllowed(BufferStrategy bs) {
+      return true;
+    }
+
     @Override
     void relinquishVsync(BufferStrategy bs) {
     }
@@ -78,6 +164,18 @@ public abstract class VSyncedBSManager {
     SingleVSyncedBSMgr() {
     }
 
+    @Override
+    public synchronized boolean checkAllowed(BufferStrategy bs) {
+      if (strategy != null) {
+        BufferStrategy current = strategy.get();
+        if (current != null) {
+          return current == bs;
+        }
+      }
+      strategy = new WeakReference<>(bs);
+      return true;
+    }
+
     @Override
     public synchronized void relinquishVsync(BufferStrategy bs) {
       if (strategy != null) {
@@ -130,10 +130,13 @@ public class StandardGlyphVector extends GlyphVector {
 
   @Override
   public synchronized int[] getGlyphCodes(int beginGlyphIndex, int numEntries, int[] codeReturn) {
-    int numGlyphs = getNumGlyphs();
-    int[] glyphCodes = new int[numGlyphs];
-    System.arraycopy(spannableString.toString().toCharArray(), 0, glyphCodes, 0, numGlyphs);
-    return glyphCodes;
+    if (codeReturn == null) {
+      codeReturn = new int[numEntries];
+    }
+    for (int i = 0; i < numEntries; i++) {
+      codeReturn[i] = spannableString.charAt(beginGlyphIndex + i);
+    }
+    return codeReturn;
   }
 
   @Override
@@ -189,11 +192,15 @@ public class StandardGlyphVector extends GlyphVector {
 
   @Override
   public float[] getGlyphPositions(int beginGlyphIndex, int numEntries, float[] positionReturn) {
+    if (positionReturn == null) {
+      positionReturn = new float[numEntries * 2];
+    }
     int positionIndex = 0;
     for (int i = beginGlyphIndex; i < beginGlyphIndex + numEntries; i++) {
-      positionReturn[positionIndex] = (float) getGlyphPosition(i).getX();
+      Point2D position = getGlyphPosition(i);
+      positionReturn[positionIndex] = (float) position.getX();
       positionIndex++;
-      positionReturn[positionIndex] = (float) getGlyphPosition(i).getY();
+      positionReturn[positionIndex] = (float) position.getY();
       positionIndex++;
     }
     return positionReturn;
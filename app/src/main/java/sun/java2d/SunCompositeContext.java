@@ -3,15 +3,73 @@ package sun.java2d;
 import java.awt.AlphaComposite;
 import java.awt.CompositeContext;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
 import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 
+import skinjob.util.ParallelBands;
+import sun.awt.image.ByteInterleavedRaster;
+import sun.awt.image.IntegerInterleavedRaster;
+import sun.awt.image.SunWritableRaster;
+
 /**
- * Created by chris on 12/7/2016.
+ * Software implementation of the Porter-Duff rules of {@link AlphaComposite}, with extra alpha.
+ * <p>
+ * Each row is read into premultiplied ARGB, blended, and written back in the destination's
+ * format. INT_ARGB, INT_ARGB_PRE and 4BYTE_ABGR (premultiplied or not) rasters are read and written
+ * directly through their data arrays; anything else goes through its {@link ColorModel} one pixel
+ * at a time. When all three rasters have direct access, large rectangles are split between
+ * threads by {@link ParallelBands}.
  */
 public class SunCompositeContext implements CompositeContext {
+  /**
+   * For each rule, the source and destination factors as {@code add + mul * alpha}, where the
+   * source factor depends on the destination's alpha and vice versa: {srcAdd, srcMul, dstAdd,
+   * dstMul}.
+   */
+  private static final int[][] FACTORS = new int[13][];
+
+  static {
+    FACTORS[AlphaComposite.CLEAR] = new int[] {0, 0, 0, 0};
+    FACTORS[AlphaComposite.SRC] = new int[] {255, 0, 0, 0};
+    FACTORS[AlphaComposite.DST] = new int[] {0, 0, 255, 0};
+    FACTORS[AlphaComposite.SRC_OVER] = new int[] {255, 0, 255, -1};
+    FACTORS[AlphaComposite.DST_OVER] = new int[] {255, -1, 255, 0};
+    FACTORS[AlphaComposite.SRC_IN] = new int[] {0, 1, 0, 0};
+    FACTORS[AlphaComposite.DST_IN] = new int[] {0, 0, 0, 1};
+    FACTORS[AlphaComposite.SRC_OUT] = new int[] {255, -1, 0, 0};
+    FACTORS[AlphaComposite.DST_OUT] = new int[] {0, 0, 255, -1};
+    FACTORS[AlphaComposite.SRC_ATOP] = new int[] {0, 1, 255, -1};
+    FACTORS[AlphaComposite.DST_ATOP] = new int[] {255, -1, 0, 1};
+    FACTORS[AlphaComposite.XOR] = new int[] {255, -1, 255, -1};
+  }
+
+  /**
+   * {@code UNPREMULTIPLY[a]} is 255 / a in 16.16 fixed point.
+   */
+  private static final int[] UNPREMULTIPLY = new int[256];
+
+  static {
+    for (int a = 1; a < 256; a++) {
+      UNPREMULTIPLY[a] = (255 << 16) / a;
+    }
+  }
+
+  private final int rule;
+  private final int extraAlpha;
+  private final ColorModel srcColorModel;
+  private final ColorModel dstColorModel;
+
   public SunCompositeContext(AlphaComposite alphaComposite, ColorModel srcColorModel,
       ColorModel dstColorModel) {
+    rule = alphaComposite.getRule();
+    extraAlpha = Math.round(alphaComposite.getAlpha() * 255.0f);
+    this.srcColorModel = srcColorModel;
+    this.dstColorModel = dstColorModel;
   }
 
   @Override
@@ -21,6 +79,319 @@ public class SunCompositeContext implements CompositeContext {
 
   @Override
   public void compose(Raster src, Raster dstIn, WritableRaster dstOut) {
-    // TODO
+    int w = Math.min(src.getWidth(), Math.min(dstIn.getWidth(), dstOut.getWidth()));
+    int h = Math.min(src.getHeight(), Math.min(dstIn.getHeight(), dstOut.getHeight()));
+    if (w <= 0 || h <= 0) {
+      return;
+    }
+    Pixels srcPixels = Pixels.of(src, srcColorModel);
+    Pixels dstInPixels = rule == AlphaComposite.CLEAR || rule == AlphaComposite.SRC
+        ? null : Pixels.of(dstIn, dstColorModel);
+    Pixels dstOutPixels = Pixels.of(dstOut, dstColorModel);
+    ComposeTask task = new ComposeTask(srcPixels, dstInPixels, dstOutPixels, w);
+    if (srcPixels.isDirect() && dstOutPixels.isDirect()
+        && (dstInPixels == null || dstInPixels.isDirect())) {
+      ParallelBands.run(0, h, w, task);
+    } else {
+      // ColorModel conversions aren't guaranteed to be thread-safe
+      task.run(0, h);
+    }
+    SunWritableRaster.markDirty(dstOut);
+  }
+
+  private static int mul8(int a, int b) {
+    int t = a * b + 128;
+    return t + (t >>> 8) >>> 8;
+  }
+
+  /**
+   * Scales every component of premultiplied pixels by {@code alpha}.
+   */
+  private static void fade(int[] row, int w, int alpha) {
+    for (int i = 0; i < w; i++) {
+      int p = row[i];
+      row[i] = mul8(p >>> 24, alpha) << 24 | mul8(p >> 16 & 0xff, alpha) << 16
+          | mul8(p >> 8 & 0xff, alpha) << 8 | mul8(p & 0xff, alpha);
+    }
+  }
+
+  /**
+   * Blends premultiplied source pixels over premultiplied destination pixels, in place.
+   */
+  private static void srcOver(int[] src, int[] dst, int w) {
+    for (int i = 0; i < w; i++) {
+      int s = src[i];
+      int sa = s >>> 24;
+      if (sa == 0xff) {
+        dst[i] = s;
+      } else if (sa != 0) {
+        int d = dst[i];
+        int fd = 0xff - sa;
+        dst[i] = Math.min(sa + mul8(d >>> 24, fd), 0xff) << 24
+            | Math.min((s >> 16 & 0xff) + mul8(d >> 16 & 0xff, fd), 0xff) << 16
+            | Math.min((s >> 8 & 0xff) + mul8(d >> 8 & 0xff, fd), 0xff) << 8
+            | Math.min((s & 0xff) + mul8(d & 0xff, fd), 0xff);
+      }
+    }
+  }
+
+  /**
+   * Applies any rule to premultiplied pixels, storing the result in {@code dst}.
+   */
+  private static void blend(int[] factors, int[] src, int[] dst, int w) {
+    int srcAdd = factors[0];
+    int srcMul = factors[1];
+    int dstAdd = factors[2];
+    int dstMul = factors[3];
+    for (int i = 0; i < w; i++) {
+      int s = src[i];
+      int d = dst[i];
+      int fs = srcAdd + srcMul * (d >>> 24);
+      int fd = dstAdd + dstMul * (s >>> 24);
+      int result = 0;
+      for (int shift = 0; shift < 32; shift += 8) {
+        int c = mul8(s >>> shift & 0xff, fs) + mul8(d >>> shift & 0xff, fd);
+        result |= Math.min(c, 0xff) << shift;
+      }
+      dst[i] = result;
+    }
+  }
+
+  private static int premultiply(int argb) {
+    int a = argb >>> 24;
+    if (a == 0xff) {
+      return argb;
+    }
+    if (a == 0) {
+      return 0;
+    }
+    return a << 24 | mul8(argb >> 16 & 0xff, a) << 16 | mul8(argb >> 8 & 0xff, a) << 8
+        | mul8(argb & 0xff, a);
+  }
+
+  private static int unpremultiply(int argb) {
+    int a = argb >>> 24;
+    if (a == 0xff) {
+      return argb;
+    }
+    if (a == 0) {
+      return 0;
+    }
+    int scale = UNPREMULTIPLY[a];
+    return a << 24 | unpremultiply(argb >> 16 & 0xff, scale) << 16
+        | unpremultiply(argb >> 8 & 0xff, scale) << 8 | unpremultiply(argb & 0xff, scale);
+  }
+
+  private static int unpremultiply(int c, int scale) {
+    return Math.min(c * scale + 0x8000 >>> 16, 0xff);
+  }
+
+  private final class ComposeTask implements ParallelBands.BandTask {
+    private final Pixels src;
+    private final Pixels dstIn;
+    private final Pixels dstOut;
+    private final int width;
+
+    ComposeTask(Pixels src, Pixels dstIn, Pixels dstOut, int width) {
+      this.src = src;
+      this.dstIn = dstIn;
+      this.dstOut = dstOut;
+      this.width = width;
+    }
+
+    @Override
+    public void run(int yStart, int yEnd) {
+      int[] srcRow = new int[width];
+      int[] dstRow = new int[width];
+      for (int y = yStart; y < yEnd; y++) {
+        if (rule == AlphaComposite.CLEAR) {
+          // dstRow stays transparent black
+        } else if (rule == AlphaComposite.SRC) {
+          src.read(y, width, dstRow);
+          if (extraAlpha < 0xff) {
+            fade(dstRow, width, extraAlpha);
+          }
+        } else {
+          src.read(y, width, srcRow);
+          if (extraAlpha < 0xff) {
+            fade(srcRow, width, extraAlpha);
+          }
+          dstIn.read(y, width, dstRow);
+          if (rule == AlphaComposite.SRC_OVER) {
+            srcOver(srcRow, dstRow, width);
+          } else if (rule != AlphaComposite.DST) {
+            blend(FACTORS[rule], srcRow, dstRow, width);
+          }
+        }
+        dstOut.write(y, width, dstRow);
+      }
+    }
+  }
+
+  /**
+   * Reads and writes rows of a raster as premultiplied ARGB. Coordinates are relative to the
+   * raster's minX and minY.
+   */
+  private abstract static class Pixels {
+    static Pixels of(Raster raster, ColorModel cm) {
+      if (cm instanceof DirectColorModel && raster instanceof IntegerInterleavedRaster
+          && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+        DirectColorModel dcm = (DirectColorModel) cm;
+        if (dcm.getAlphaMask() == 0xff000000 && dcm.getRedMask() == 0x00ff0000
+            && dcm.getGreenMask() == 0x0000ff00 && dcm.getBlueMask() == 0x000000ff
+            && dcm.getColorSpace().isCS_sRGB()) {
+          return new IntArgb((IntegerInterleavedRaster) raster, dcm.isAlphaPremultiplied());
+        }
+      }
+      if (cm instanceof ComponentColorModel && raster instanceof ByteInterleavedRaster
+          && raster.getSampleModel() instanceof ComponentSampleModel
+          && cm.getTransferType() == DataBuffer.TYPE_BYTE && cm.getNumComponents() == 4
+          && cm.hasAlpha() && cm.getColorSpace().isCS_sRGB() && raster.getNumBands() == 4) {
+        return new Byte4((ByteInterleavedRaster) raster, cm.isAlphaPremultiplied());
+      }
+      return new Generic(raster, cm);
+    }
+
+    /**
+     * Whether the raster is accessed directly, without going through the color model, so that
+     * rows can be processed concurrently.
+     */
+    abstract boolean isDirect();
+
+    abstract void read(int y, int w, int[] argbPre);
+
+    abstract void write(int y, int w, int[] argbPre);
+  }
+
+  private static final class IntArgb extends Pixels {
+    private final int[] data;
+    private final int offset;
+    private final int scanlineStride;
+    private final boolean premultiplied;
+
+    IntArgb(IntegerInterleavedRaster raster, boolean premultiplied) {
+      data = raster.getDataStorage();
+      offset = raster.getDataOffset(0);
+      scanlineStride = raster.getScanlineStride();
+      this.premultiplied = premultiplied;
+    }
+
+    @Override
+    boolean isDirect() {
+      return true;
+    }
+
+    @Override
+    void read(int y, int w, int[] argbPre) {
+      int start = offset + y * scanlineStride;
+      if (premultiplied) {
+        System.arraycopy(data, start, argbPre, 0, w);
+      } else {
+        for (int i = 0; i < w; i++) {
+          argbPre[i] = premultiply(data[start + i]);
+        }
+      }
+    }
+
+    @Override
+    void write(int y, int w, int[] argbPre) {
+      int start = offset + y * scanlineStride;
+      if (premultiplied) {
+        System.arraycopy(argbPre, 0, data, start, w);
+      } else {
+        for (int i = 0; i < w; i++) {
+          data[start + i] = unpremultiply(argbPre[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Four interleaved 8-bit sRGB bands with alpha last, such as 4BYTE_ABGR.
+   */
+  private static final class Byte4 extends Pixels {
+    private final byte[] data;
+    private final int rOff;
+    private final int gOff;
+    private final int bOff;
+    private final int aOff;
+    private final int pixelStride;
+    private final int scanlineStride;
+    private final boolean premultiplied;
+
+    Byte4(ByteInterleavedRaster raster, boolean premultiplied) {
+      data = raster.getDataStorage();
+      rOff = raster.getDataOffset(0);
+      gOff = raster.getDataOffset(1);
+      bOff = raster.getDataOffset(2);
+      aOff = raster.getDataOffset(3);
+      pixelStride = raster.getPixelStride();
+      scanlineStride = raster.getScanlineStride();
+      this.premultiplied = premultiplied;
+    }
+
+    @Override
+    boolean isDirect() {
+      return true;
+    }
+
+    @Override
+    void read(int y, int w, int[] argbPre) {
+      byte[] d = data;
+      for (int i = 0, p = y * scanlineStride; i < w; i++, p += pixelStride) {
+        int argb = (d[p + aOff] & 0xff) << 24 | (d[p + rOff] & 0xff) << 16
+            | (d[p + gOff] & 0xff) << 8 | d[p + bOff] & 0xff;
+        argbPre[i] = premultiplied ? argb : premultiply(argb);
+      }
+    }
+
+    @Override
+    void write(int y, int w, int[] argbPre) {
+      byte[] d = data;
+      for (int i = 0, p = y * scanlineStride; i < w; i++, p += pixelStride) {
+        int argb = premultiplied ? argbPre[i] : unpremultiply(argbPre[i]);
+        d[p + aOff] = (byte) (argb >>> 24);
+        d[p + rOff] = (byte) (argb >> 16);
+        d[p + gOff] = (byte) (argb >> 8);
+        d[p + bOff] = (byte) argb;
+      }
+    }
+  }
+
+  private static final class Generic extends Pixels {
+    private final Raster raster;
+    private final ColorModel cm;
+    private Object pixel;
+
+    Generic(Raster raster, ColorModel cm) {
+      this.raster = raster;
+      this.cm = cm;
+    }
+
+    @Override
+    boolean isDirect() {
+      return false;
+    }
+
+    @Override
+    void read(int y, int w, int[] argbPre) {
+      int x0 = raster.getMinX();
+      int y0 = raster.getMinY() + y;
+      for (int i = 0; i < w; i++) {
+        pixel = raster.getDataElements(x0 + i, y0, pixel);
+        argbPre[i] = premultiply(cm.getRGB(pixel));
+      }
+    }
+
+    @Override
+    void write(int y, int w, int[] argbPre) {
+      WritableRaster wr = (WritableRaster) raster;
+      int x0 = raster.getMinX();
+      int y0 = raster.getMinY() + y;
+      for (int i = 0; i < w; i++) {
+        pixel = cm.getDataElements(unpremultiply(argbPre[i]), pixel);
+        wr.setDataElements(x0 + i, y0, pixel);
+      }
+    }
   }
 }
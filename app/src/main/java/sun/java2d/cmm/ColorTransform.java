@@ -1,38 +1,379 @@
 package sun.java2d.cmm;
 
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DirectColorModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 
+import skinjob.util.ParallelBands;
+import sun.awt.image.RasterRows;
+import sun.awt.image.SunWritableRaster;
+
 /**
- * Partial reimplementation of the OpenJDK class for use by SkinJob.
+ * A conversion from one profile's device space to another's, possibly through intermediate
+ * profiles. Transforms are created by {@link PCMM}; the lookup tables behind them are built on
+ * first use and shared between transforms over the same profiles.
  */
 public class ColorTransform {
   public static int Any = 0;
   public static int In = 1;
   public static int Out = 2;
-  public static int Simulation;
+  public static int Simulation = 4;
+
+  /**
+   * Pixels converted per pass by the array overloads, bounding their scratch space.
+   */
+  private static final int CHUNK_PIXELS = 1024;
+
+  private final ProfileModel[] chain;
+  private final int type;
+  private volatile LutTransform lut;
+
+  /**
+   * @param chain the profiles to convert through, in order
+   * @param type for a single profile, whether it's the source ({@link #In}) or destination
+   *     ({@link #Out}) of the conversion; the other end is then the PCS
+   */
+  ColorTransform(ProfileModel[] chain, int type) {
+    this.chain = chain;
+    this.type = type;
+  }
+
+  ProfileModel[] getChain() {
+    return chain;
+  }
+
+  int getType() {
+    return type;
+  }
+
+  private LutTransform getLut() {
+    LutTransform result = lut;
+    if (result == null) {
+      ProfileModel[] full = chain;
+      if (full.length == 1) {
+        full = type == Out
+            ? new ProfileModel[] {ProfileModel.XYZ, chain[0]}
+            : new ProfileModel[] {chain[0], ProfileModel.XYZ};
+      }
+      result = PCMM.INSTANCE.getLut(full);
+      lut = result;
+    }
+    return result;
+  }
+
+  /**
+   * Converts 8-bit samples, {@code numIn} per pixel.
+   *
+   * @param dst an array to receive the result, or anything else to allocate one
+   */
+  public byte[] colorConvert(byte[] src, Object dst) {
+    LutTransform t = getLut();
+    int count = src.length / t.numIn;
+    byte[] result = dst instanceof byte[] ? (byte[]) dst : new byte[count * t.numOut];
+    int chunk = Math.min(count, CHUNK_PIXELS);
+    int[] in = new int[chunk * t.numIn];
+    int[] out = new int[chunk * t.numOut];
+    float[] coords = new float[chunk * t.numIn];
+    float[] max = filled(t.numOut, 255.0f);
+    for (int p = 0; p < count; p += chunk) {
+      int n = Math.min(chunk, count - p);
+      for (int i = 0, s = p * t.numIn; i < n * t.numIn; i++, s++) {
+        in[i] = src[s] & 0xff;
+      }
+      t.convert(in, 0, t.numIn, true, out, 0, t.numOut, max, coords, n);
+      for (int i = 0, d = p * t.numOut; i < n * t.numOut; i++, d++) {
+        result[d] = (byte) out[i];
+      }
+    }
+    return result;
+  }
 
-  public byte[] colorConvert(byte[] g8Tos8LUT, Object o) {
-    // TODO
-    return new byte[0];
+  /**
+   * Converts 16-bit samples, {@code numIn} per pixel.
+   *
+   * @param dst an array to receive the result, or anything else to allocate one
+   */
+  public short[] colorConvert(short[] src, Object dst) {
+    LutTransform t = getLut();
+    int count = src.length / t.numIn;
+    short[] result = dst instanceof short[] ? (short[]) dst : new short[count * t.numOut];
+    int chunk = Math.min(count, CHUNK_PIXELS);
+    int[] in = new int[chunk * t.numIn];
+    int[] out = new int[chunk * t.numOut];
+    float[] coords = new float[chunk * t.numIn];
+    float[] max = filled(t.numOut, 65535.0f);
+    for (int p = 0; p < count; p += chunk) {
+      int n = Math.min(chunk, count - p);
+      for (int i = 0, s = p * t.numIn; i < n * t.numIn; i++, s++) {
+        in[i] = src[s] & 0xffff;
+      }
+      t.convert(in, 0, t.numIn, false, out, 0, t.numOut, max, coords, n);
+      for (int i = 0, d = p * t.numOut; i < n * t.numOut; i++, d++) {
+        result[d] = (short) out[i];
+      }
+    }
+    return result;
   }
 
-  public short[] colorConvert(short[] g8Tos8LUT, Object o) {
-    // TODO
-    return new short[0];
+  private static float[] filled(int n, float value) {
+    float[] a = new float[n];
+    for (int i = 0; i < n; i++) {
+      a[i] = value;
+    }
+    return a;
   }
 
+  /**
+   * Converts an image. Non-premultiplied images with a {@link DirectColorModel} or {@link
+   * ComponentColorModel} and integral samples are converted directly on their rasters, in
+   * parallel; anything else goes through the color models one pixel at a time. Alpha is copied
+   * where both images have it, and otherwise dropped or made opaque.
+   */
   public void colorConvert(BufferedImage src, BufferedImage dest) {
-    // TODO
+    LutTransform t = getLut();
+    ColorModel srcCM = src.getColorModel();
+    ColorModel dstCM = dest.getColorModel();
+    Raster srcRas = src.getRaster();
+    WritableRaster dstRas = dest.getRaster();
+    RasterRows srcRows = isDirect(srcCM) ? RasterRows.of(srcRas) : null;
+    RasterRows dstRows = isDirect(dstCM) ? RasterRows.of(dstRas) : null;
+    if (srcRows != null && dstRows != null) {
+      int srcAlpha = srcCM.hasAlpha() ? srcCM.getNumColorComponents() : -1;
+      int dstAlpha = dstCM.hasAlpha() ? dstCM.getNumColorComponents() : -1;
+      convertRows(t, srcRows, dstRows, srcAlpha, dstAlpha);
+    } else {
+      convertPixels(t, src, dest);
+    }
+    SunWritableRaster.markDirty(dest);
   }
 
+  private static boolean isDirect(ColorModel cm) {
+    return (cm instanceof DirectColorModel || cm instanceof ComponentColorModel)
+        && !cm.isAlphaPremultiplied();
+  }
+
+  /**
+   * Converts through the color models, which take care of premultiplication, indexed pixels and
+   * non-integral samples.
+   */
+  private static void convertPixels(LutTransform t, BufferedImage src, BufferedImage dest) {
+    ColorModel srcCM = src.getColorModel();
+    ColorModel dstCM = dest.getColorModel();
+    Raster srcRas = src.getRaster();
+    WritableRaster dstRas = dest.getRaster();
+    ColorSpace srcCS = srcCM.getColorSpace();
+    ColorSpace dstCS = dstCM.getColorSpace();
+    int nIn = t.numIn;
+    int nOut = t.numOut;
+    int w = Math.min(src.getWidth(), dest.getWidth());
+    int h = Math.min(src.getHeight(), dest.getHeight());
+    float[] srcMin = new float[nIn];
+    float[] srcScale = new float[nIn];
+    for (int c = 0; c < nIn; c++) {
+      srcMin[c] = srcCS.getMinValue(c);
+      srcScale[c] = 65535.0f / (srcCS.getMaxValue(c) - srcMin[c]);
+    }
+    float[] dstMin = new float[nOut];
+    float[] dstRange = new float[nOut];
+    for (int c = 0; c < nOut; c++) {
+      dstMin[c] = dstCS.getMinValue(c);
+      dstRange[c] = (dstCS.getMaxValue(c) - dstMin[c]) / 65535.0f;
+    }
+    float[] max = filled(nOut, 65535.0f);
+    boolean copyAlpha = srcCM.hasAlpha() && dstCM.hasAlpha();
+    int[] in = new int[w * nIn];
+    int[] out = new int[w * nOut];
+    float[] coords = new float[w * nIn];
+    float[] alpha = new float[w];
+    float[] srcComps = null;
+    float[] dstComps = new float[dstCM.getNumComponents()];
+    Object pixel = null;
+    Object dstPixel = null;
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        pixel = srcRas.getDataElements(x, y, pixel);
+        srcComps = srcCM.getNormalizedComponents(pixel, srcComps, 0);
+        for (int c = 0; c < nIn; c++) {
+          int v = (int) ((srcComps[c] - srcMin[c]) * srcScale[c] + 0.5f);
+          in[x * nIn + c] = v < 0 ? 0 : v > 65535 ? 65535 : v;
+        }
+        alpha[x] = copyAlpha ? srcComps[nIn] : 1.0f;
+      }
+      t.convert(in, 0, nIn, false, out, 0, nOut, max, coords, w);
+      for (int x = 0; x < w; x++) {
+        for (int c = 0; c < nOut; c++) {
+          dstComps[c] = dstMin[c] + out[x * nOut + c] * dstRange[c];
+        }
+        if (dstCM.hasAlpha()) {
+          dstComps[nOut] = alpha[x];
+        }
+        dstPixel = dstCM.getDataElements(dstComps, 0, dstPixel);
+        dstRas.setDataElements(x, y, dstPixel);
+      }
+    }
+  }
+
+  /**
+   * Converts rasters of floating-point samples, or any samples whose range differs from their
+   * bit depth. Components are scaled from [{@code srcMinVals}, {@code srcMaxVals}] before
+   * conversion and to [{@code dstMinVals}, {@code dstMaxVals}] after.
+   */
   public void colorConvert(Raster src, WritableRaster dest, float[] srcMinVals, float[] srcMaxVals,
       float[] dstMinVals, float[] dstMaxVals) {
-    // TODO
+    LutTransform t = getLut();
+    checkBands(t, src, dest);
+    int nIn = t.numIn;
+    int nOut = t.numOut;
+    int w = Math.min(src.getWidth(), dest.getWidth());
+    int h = Math.min(src.getHeight(), dest.getHeight());
+    float[] srcScale = new float[nIn];
+    for (int c = 0; c < nIn; c++) {
+      srcScale[c] = 65535.0f / (srcMaxVals[c] - srcMinVals[c]);
+    }
+    float[] dstRange = new float[nOut];
+    for (int c = 0; c < nOut; c++) {
+      dstRange[c] = (dstMaxVals[c] - dstMinVals[c]) / 65535.0f;
+    }
+    float[] max = filled(nOut, 65535.0f);
+    float[] srcRow = new float[w * nIn];
+    float[] dstRow = new float[w * nOut];
+    int[] in = new int[w * nIn];
+    int[] out = new int[w * nOut];
+    float[] coords = new float[w * nIn];
+    for (int y = 0; y < h; y++) {
+      src.getPixels(src.getMinX(), src.getMinY() + y, w, 1, srcRow);
+      for (int i = 0; i < srcRow.length; i++) {
+        int c = i % nIn;
+        int v = (int) ((srcRow[i] - srcMinVals[c]) * srcScale[c] + 0.5f);
+        in[i] = v < 0 ? 0 : v > 65535 ? 65535 : v;
+      }
+      t.convert(in, 0, nIn, false, out, 0, nOut, max, coords, w);
+      for (int i = 0; i < dstRow.length; i++) {
+        int c = i % nOut;
+        dstRow[i] = dstMinVals[c] + out[i] * dstRange[c];
+      }
+      dest.setPixels(dest.getMinX(), dest.getMinY() + y, w, 1, dstRow);
+    }
+    SunWritableRaster.markDirty(dest);
   }
 
+  /**
+   * Converts rasters of integral samples, each band scaled by its bit depth. Rows are converted
+   * in parallel.
+   */
   public void colorConvert(Raster src, WritableRaster dest) {
-    // TODO
+    LutTransform t = getLut();
+    checkBands(t, src, dest);
+    RasterRows srcRows = RasterRows.of(src);
+    RasterRows dstRows = RasterRows.of(dest);
+    if (srcRows == null || dstRows == null) {
+      float[] srcMin = new float[t.numIn];
+      float[] srcMax = filled(t.numIn, 1.0f);
+      float[] dstMin = new float[t.numOut];
+      float[] dstMax = filled(t.numOut, 1.0f);
+      colorConvert(src, dest, srcMin, srcMax, dstMin, dstMax);
+      return;
+    }
+    convertRows(t, srcRows, dstRows, -1, -1);
+    SunWritableRaster.markDirty(dest);
+  }
+
+  private static void checkBands(LutTransform t, Raster src, Raster dest) {
+    if (src.getNumBands() != t.numIn || dest.getNumBands() != t.numOut) {
+      throw new IllegalArgumentException("Wrong number of bands in raster");
+    }
+  }
+
+  private static void convertRows(
+      LutTransform t, RasterRows src, RasterRows dst, int srcAlpha, int dstAlpha) {
+    int w = Math.min(src.width, dst.width);
+    int h = Math.min(src.height, dst.height);
+    ParallelBands.run(0, h, w, new RowTask(t, src, dst, srcAlpha, dstAlpha, w));
+  }
+
+  /**
+   * Converts the colour bands of a range of rows through the lookup tables, and copies or fills
+   * alpha.
+   */
+  private static final class RowTask implements ParallelBands.BandTask {
+    private final LutTransform lut;
+    private final RasterRows src;
+    private final RasterRows dst;
+    private final int srcAlpha;
+    private final int dstAlpha;
+    private final int width;
+    private final boolean eightBit;
+    /**
+     * Multiplier taking each source colour band to 16 bits, or null if they're all 8 or 16 bits
+     * already.
+     */
+    private final float[] srcScale;
+    private final float[] dstMax;
+
+    RowTask(LutTransform lut, RasterRows src, RasterRows dst, int srcAlpha, int dstAlpha,
+        int width) {
+      this.lut = lut;
+      this.src = src;
+      this.dst = dst;
+      this.srcAlpha = srcAlpha;
+      this.dstAlpha = dstAlpha;
+      this.width = width;
+      boolean all8 = true;
+      boolean all16 = true;
+      for (int c = 0; c < lut.numIn; c++) {
+        all8 &= src.maxSample[c] == 255 && src.minSample[c] == 0;
+        all16 &= src.maxSample[c] == 65535 && src.minSample[c] == 0;
+      }
+      eightBit = all8;
+      if (all8 || all16) {
+        srcScale = null;
+      } else {
+        srcScale = new float[lut.numIn];
+        for (int c = 0; c < lut.numIn; c++) {
+          srcScale[c] = 65535.0f / src.maxSample[c];
+        }
+      }
+      dstMax = new float[lut.numOut];
+      for (int c = 0; c < lut.numOut; c++) {
+        dstMax[c] = dst.maxSample[c];
+      }
+    }
+
+    @Override
+    public void run(int yStart, int yEnd) {
+      int nIn = lut.numIn;
+      int srcStep = src.numBands;
+      int dstStep = dst.numBands;
+      int[] in = new int[width * srcStep];
+      int[] out = new int[width * dstStep];
+      float[] coords = new float[width * nIn];
+      int alphaMax = dstAlpha >= 0 ? dst.maxSample[dstAlpha] : 0;
+      float alphaScale = srcAlpha >= 0 && dstAlpha >= 0
+          ? (float) alphaMax / src.maxSample[srcAlpha] : 0.0f;
+      for (int y = yStart; y < yEnd; y++) {
+        src.getSamples(0, y, width, in, 0);
+        if (srcScale != null) {
+          for (int c = 0; c < nIn; c++) {
+            float scale = srcScale[c];
+            for (int i = c; i < in.length; i += srcStep) {
+              int v = (int) (in[i] * scale + 0.5f);
+              in[i] = v < 0 ? 0 : v > 65535 ? 65535 : v;
+            }
+          }
+        }
+        lut.convert(in, 0, srcStep, eightBit, out, 0, dstStep, dstMax, coords, width);
+        if (dstAlpha >= 0) {
+          for (int x = 0, d = dstAlpha; x < width; x++, d += dstStep) {
+            out[d] = srcAlpha >= 0
+                ? (int) (in[x * srcStep + srcAlpha] * alphaScale + 0.5f) : alphaMax;
+          }
+        }
+        dst.setSamples(0, y, width, out, 0);
+      }
+    }
   }
 }
@@ -0,0 +1,243 @@
+package sun.java2d.cmm;
+
+/**
+ * A chain of profiles compiled into lookup tables. Conversion runs in three steps, each a table
+ * lookup:
+ * <ol>
+ * <li>per-channel input curves take device values to linear values, pre-scaled to grid
+ * coordinates. 8-bit samples index a 256-entry table directly; 16-bit samples interpolate in a
+ * 4097-entry table;</li>
+ * <li>a 1-D or 3-D grid of the linear output for each linear input, interpolated linearly or
+ * trilinearly. For a plain matrix/TRC chain the grid function is linear, so interpolation is
+ * exact; only the gamut clipping of intermediate profiles makes it curve;</li>
+ * <li>per-channel output curves take linear values back to device values.</li>
+ * </ol>
+ * Instances are immutable and thread-safe.
+ */
+final class LutTransform {
+  private static final int GRID_POINTS_1D = 256;
+  private static final int GRID_POINTS_3D = 17;
+  /**
+   * Intervals in the 16-bit input tables. Must be 4096 for the index arithmetic in {@link
+   * #shape16}.
+   */
+  private static final int INPUT_SEGMENTS = 4096;
+  private static final int OUTPUT_SEGMENTS = 4096;
+
+  final int numIn;
+  final int numOut;
+  private final int gridPoints;
+  private final float[][] input8;
+  private final float[][] input16;
+  private final float[] grid;
+  private final float[][] output;
+
+  /**
+   * @param chain the input profile, any intermediate profiles, and the output profile; at least
+   *     two entries, each with 1 or 3 components
+   */
+  LutTransform(ProfileModel[] chain) {
+    ProfileModel first = chain[0];
+    ProfileModel last = chain[chain.length - 1];
+    numIn = first.numComponents;
+    numOut = last.numComponents;
+    gridPoints = numIn == 1 ? GRID_POINTS_1D : GRID_POINTS_3D;
+    float scale = gridPoints - 1;
+
+    input8 = new float[numIn][256];
+    input16 = new float[numIn][INPUT_SEGMENTS + 1];
+    for (int c = 0; c < numIn; c++) {
+      ToneCurve curve = first.curves[c];
+      for (int i = 0; i < 256; i++) {
+        input8[c][i] = (float) clamp(curve.eval(i / 255.0)) * scale;
+      }
+      for (int i = 0; i <= INPUT_SEGMENTS; i++) {
+        input16[c][i] = (float) clamp(curve.eval(i / (double) INPUT_SEGMENTS)) * scale;
+      }
+    }
+
+    int nodes = numIn == 1 ? gridPoints : gridPoints * gridPoints * gridPoints;
+    grid = new float[nodes * numOut];
+    double[] lin = new double[numIn];
+    double[] out = new double[numOut];
+    for (int n = 0; n < nodes; n++) {
+      for (int c = numIn - 1, rest = n; c >= 0; c--, rest /= gridPoints) {
+        lin[c] = rest % gridPoints / (double) (gridPoints - 1);
+      }
+      evalLinear(chain, lin, out);
+      for (int c = 0; c < numOut; c++) {
+        grid[n * numOut + c] = (float) out[c];
+      }
+    }
+
+    output = new float[numOut][OUTPUT_SEGMENTS + 1];
+    for (int c = 0; c < numOut; c++) {
+      ToneCurve curve = last.curves[c];
+      for (int i = 0; i <= OUTPUT_SEGMENTS; i++) {
+        output[c][i] = (float) clamp(curve.inverse(i / (double) OUTPUT_SEGMENTS));
+      }
+    }
+  }
+
+  private static double clamp(double v) {
+    return v < 0.0 ? 0.0 : v > 1.0 ? 1.0 : v;
+  }
+
+  /**
+   * Maps linear input values through the chain to linear output values, without clamping the
+   * result.
+   */
+  private static void evalLinear(ProfileModel[] chain, double[] lin, double[] out) {
+    double[] xyz = new double[3];
+    multiply(chain[0].toPcs, lin, xyz);
+    for (int i = 1; i < chain.length - 1; i++) {
+      ProfileModel middle = chain[i];
+      double[] device = new double[middle.numComponents];
+      multiply(middle.fromPcs, xyz, device);
+      for (int c = 0; c < device.length; c++) {
+        device[c] = clamp(device[c]);
+      }
+      multiply(middle.toPcs, device, xyz);
+    }
+    multiply(chain[chain.length - 1].fromPcs, xyz, out);
+  }
+
+  private static void multiply(double[] matrix, double[] in, double[] out) {
+    int cols = in.length;
+    for (int r = 0; r < out.length; r++) {
+      double sum = 0.0;
+      for (int c = 0; c < cols; c++) {
+        sum += matrix[r * cols + c] * in[c];
+      }
+      out[r] = sum;
+    }
+  }
+
+  /**
+   * Interpolates a 16-bit sample in a table of {@link #INPUT_SEGMENTS} intervals.
+   */
+  private static float shape16(float[] table, int v) {
+    // v * 65537 / 2^32 is v / 65535 to within 2^-32, and the product fits in 32 unsigned bits
+    int t = v * 65537;
+    int i = t >>> 20;
+    float frac = (t & 0xfffff) * (1.0f / 0x100000);
+    float lo = table[i];
+    return lo + frac * (table[i + 1] - lo);
+  }
+
+  /**
+   * Converts {@code count} pixels.
+   *
+   * @param src {@link #numIn} samples per pixel, each in [0, 255] or [0, 65535]
+   * @param srcOff index of the first pixel's first sample
+   * @param srcStep distance between pixels in {@code src}
+   * @param eightBit whether the source samples are 8-bit, rather than 16-bit
+   * @param dst receives {@link #numOut} samples per pixel
+   * @param dstOff index of the first pixel's first sample
+   * @param dstStep distance between pixels in {@code dst}
+   * @param dstMax largest value of each output channel, to which [0, 1] is scaled
+   * @param coords scratch space of at least {@code count * numIn} elements
+   */
+  void convert(int[] src, int srcOff, int srcStep, boolean eightBit, int[] dst, int dstOff,
+      int dstStep, float[] dstMax, float[] coords, int count) {
+    for (int c = 0; c < numIn; c++) {
+      float[] table = eightBit ? input8[c] : input16[c];
+      for (int x = 0, s = srcOff + c, o = c; x < count; x++, s += srcStep, o += numIn) {
+        coords[o] = eightBit ? table[src[s]] : shape16(table, src[s]);
+      }
+    }
+    if (numIn == 1) {
+      interpolate1(coords, dst, dstOff, dstStep, dstMax, count);
+    } else {
+      interpolate3(coords, dst, dstOff, dstStep, dstMax, count);
+    }
+  }
+
+  private void interpolate1(
+      float[] coords, int[] dst, int dstOff, int dstStep, float[] dstMax, int count) {
+    int last = gridPoints - 2;
+    int nOut = numOut;
+    for (int x = 0, d = dstOff; x < count; x++, d += dstStep) {
+      float u = coords[x];
+      int i = (int) u;
+      if (i > last) {
+        i = last;
+      }
+      float t = u - i;
+      int base = i * nOut;
+      for (int c = 0; c < nOut; c++) {
+        float v0 = grid[base + c];
+        dst[d + c] = shapeOutput(c, v0 + t * (grid[base + nOut + c] - v0), dstMax[c]);
+      }
+    }
+  }
+
+  private void interpolate3(
+      float[] coords, int[] dst, int dstOff, int dstStep, float[] dstMax, int count) {
+    int g = gridPoints;
+    int last = g - 2;
+    int nOut = numOut;
+    int stepB = nOut;
+    int stepG = g * nOut;
+    int stepR = g * g * nOut;
+    float[] lut = grid;
+    for (int x = 0, o = 0, d = dstOff; x < count; x++, o += 3, d += dstStep) {
+      float ur = coords[o];
+      float ug = coords[o + 1];
+      float ub = coords[o + 2];
+      int ir = (int) ur;
+      int ig = (int) ug;
+      int ib = (int) ub;
+      if (ir > last) {
+        ir = last;
+      }
+      if (ig > last) {
+        ig = last;
+      }
+      if (ib > last) {
+        ib = last;
+      }
+      float tr = ur - ir;
+      float tg = ug - ig;
+      float tb = ub - ib;
+      int base = ir * stepR + ig * stepG + ib * stepB;
+      for (int c = 0; c < nOut; c++) {
+        int p = base + c;
+        float c000 = lut[p];
+        float c001 = lut[p + stepB];
+        float c010 = lut[p + stepG];
+        float c011 = lut[p + stepG + stepB];
+        float c100 = lut[p + stepR];
+        float c101 = lut[p + stepR + stepB];
+        float c110 = lut[p + stepR + stepG];
+        float c111 = lut[p + stepR + stepG + stepB];
+        float c00 = c000 + tb * (c001 - c000);
+        float c01 = c010 + tb * (c011 - c010);
+        float c10 = c100 + tb * (c101 - c100);
+        float c11 = c110 + tb * (c111 - c110);
+        float c0 = c00 + tg * (c01 - c00);
+        float c1 = c10 + tg * (c11 - c10);
+        dst[d + c] = shapeOutput(c, c0 + tr * (c1 - c0), dstMax[c]);
+      }
+    }
+  }
+
+  /**
+   * Maps a linear output value through the output curve and scales it to [0, max].
+   */
+  private int shapeOutput(int channel, float v, float max) {
+    if (v <= 0.0f) {
+      v = 0.0f;
+    } else if (v >= 1.0f) {
+      v = 1.0f;
+    }
+    float t = v * OUTPUT_SEGMENTS;
+    int i = (int) t;
+    if (i >= OUTPUT_SEGMENTS) {
+      i = OUTPUT_SEGMENTS - 1;
+    }
+    float[] table = output[channel];
+    float lo = table[i];
+    return (int) ((lo + (t - i) * (table[i + 1] - lo)) * max + 0.5f);
+  }
+}
@@ -1,10 +1,19 @@
 package sun.java2d.cmm;
 
+import java.awt.color.CMMException;
 import java.awt.color.ColorSpace;
 import java.awt.color.ICC_Profile;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
- * Partial reimplementation of the OpenJDK class for use by SkinJob.
+ * Partial reimplementation of the OpenJDK class for use by SkinJob. In place of LittleCMS, this
+ * handles matrix/TRC RGB, gray and XYZ profiles, which covers every standard color space except
+ * CS_PYCC. Rendering intents are ignored, since such profiles only support colorimetric
+ * conversion.
  */
 public enum PCMM {
   INSTANCE;
@@ -12,39 +21,117 @@ public enum PCMM {
   public static ColorSpace LINEAR_RGBspace;
   public static ColorSpace GRAYspace;
 
+  /**
+   * Compiled lookup tables kept for reuse; each takes about 160 KB.
+   */
+  private static final int MAX_CACHED_LUTS = 8;
+
+  private final Map<ICC_Profile, ProfileModel> models = new WeakHashMap<>();
+  private final Map<List<ProfileModel>, LutTransform> luts =
+      new LinkedHashMap<List<ProfileModel>, LutTransform>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<ProfileModel>, LutTransform> eldest) {
+          return size() > MAX_CACHED_LUTS;
+        }
+      };
+
+  private static byte[] getTag(Profile p, int tagSignature) {
+    byte[] tag = p.getTag(tagSignature);
+    if (tag == null) {
+      throw new CMMException("ICC profile tag not found");
+    }
+    return tag;
+  }
+
   public int getTagSize(Profile p, int tagSignature) {
-    // TODO
-    return 0;
+    return getTag(p, tagSignature).length;
   }
 
   public void getTagData(Profile p, int tagSignature, byte[] tagData) {
-    // TODO
+    byte[] tag = getTag(p, tagSignature);
+    System.arraycopy(tag, 0, tagData, 0, Math.min(tag.length, tagData.length));
   }
 
   public int getProfileSize(Profile cmmProfile) {
-    // TODO
-    return 0;
+    return cmmProfile.getSize();
   }
 
   public void getProfileData(Profile cmmProfile, byte[] profileData) {
-    // TODO
+    byte[] data = cmmProfile.getData();
+    System.arraycopy(data, 0, profileData, 0, Math.min(data.length, profileData.length));
   }
 
   public void setTagData(Profile cmmProfile, int tagSignature, byte[] tagData) {
-    // TODO
+    cmmProfile.setTag(tagSignature, tagData);
+    // The models don't record which Profile they came from, so start over
+    synchronized (this) {
+      models.clear();
+      luts.clear();
+    }
   }
 
   public Profile loadProfile(byte[] profileData) {
     return new Profile(profileData);
   }
 
-  public ColorTransform createTransform(ICC_Profile profile, int any, int in) {
-    // TODO
-    return null;
+  /**
+   * Returns the data of a built-in standard profile, such as "sRGB.pf", or null if there's no
+   * such profile.
+   */
+  public byte[] getStandardProfileData(String fileName) {
+    return StandardProfiles.create(fileName);
+  }
+
+  /**
+   * @throws CMMException if the profile isn't supported
+   */
+  public ColorTransform createTransform(ICC_Profile profile, int renderType, int transformType) {
+    ProfileModel model;
+    synchronized (this) {
+      model = models.get(profile);
+    }
+    if (model == null) {
+      model = ProfileModel.of(profile);
+      synchronized (this) {
+        models.put(profile, model);
+      }
+    }
+    return new ColorTransform(new ProfileModel[] {model}, transformType);
   }
 
   public ColorTransform createTransform(ColorTransform[] transformList) {
-    // TODO
-    return null;
+    int length = 0;
+    for (ColorTransform t : transformList) {
+      length += t.getChain().length;
+    }
+    ProfileModel[] chain = new ProfileModel[length];
+    int i = 0;
+    for (ColorTransform t : transformList) {
+      ProfileModel[] part = t.getChain();
+      System.arraycopy(part, 0, chain, i, part.length);
+      i += part.length;
+    }
+    int type = transformList.length == 1 ? transformList[0].getType() : ColorTransform.Any;
+    return new ColorTransform(chain, type);
+  }
+
+  /**
+   * Returns the lookup tables for a chain of at least two profiles, building them if they aren't
+   * cached.
+   */
+  LutTransform getLut(ProfileModel[] chain) {
+    // ProfileModel doesn't override equals, so this compares the profiles by identity
+    List<ProfileModel> key = Arrays.asList(chain);
+    synchronized (this) {
+      LutTransform lut = luts.get(key);
+      if (lut != null) {
+        return lut;
+      }
+    }
+    LutTransform lut = new LutTransform(chain);
+    synchronized (this) {
+      luts.put(key, lut);
+    }
+    return lut;
   }
 }
@@ -1,11 +1,114 @@
 package sun.java2d.cmm;
 
+import java.awt.color.ICC_Profile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
- * Created by chris on 12/6/2016.
+ * The CMM's copy of an ICC profile: its 128-byte header and a table of tags, each held as a
+ * separate byte array so that tags can be read and replaced individually. The profile is
+ * serialized again on demand, with the size field in the header updated.
  */
-
 public class Profile {
+  private static final int HEADER_SIZE = 128;
+  private static final int TAG_ENTRY_SIZE = 12;
+  /**
+   * 'acsp', which every ICC profile has at offset 36.
+   */
+  private static final int MAGIC = 0x61637370;
+
+  private final byte[] header = new byte[HEADER_SIZE];
+  private final Map<Integer, byte[]> tags = new LinkedHashMap<>();
+
+  /**
+   * @throws IllegalArgumentException if {@code profileData} isn't a well-formed ICC profile
+   */
   public Profile(byte[] profileData) {
-    // TODO
+    if (profileData == null || profileData.length < HEADER_SIZE + 4
+        || getInt(profileData, ICC_Profile.icHdrMagic) != MAGIC) {
+      throw new IllegalArgumentException("Invalid ICC Profile Data");
+    }
+    int size = getInt(profileData, ICC_Profile.icHdrSize);
+    if (size < HEADER_SIZE + 4 || size > profileData.length) {
+      throw new IllegalArgumentException("Invalid ICC Profile Data");
+    }
+    System.arraycopy(profileData, 0, header, 0, HEADER_SIZE);
+    int count = getInt(profileData, HEADER_SIZE);
+    if (count < 0 || count > (size - HEADER_SIZE - 4) / TAG_ENTRY_SIZE) {
+      throw new IllegalArgumentException("Invalid ICC Profile Data");
+    }
+    for (int i = 0, entry = HEADER_SIZE + 4; i < count; i++, entry += TAG_ENTRY_SIZE) {
+      int signature = getInt(profileData, entry);
+      int offset = getInt(profileData, entry + 4);
+      int length = getInt(profileData, entry + 8);
+      if (offset < 0 || length < 0 || offset > size - length) {
+        throw new IllegalArgumentException("Invalid ICC Profile Data");
+      }
+      byte[] data = new byte[length];
+      System.arraycopy(profileData, offset, data, 0, length);
+      tags.put(signature, data);
+    }
+  }
+
+  static int getInt(byte[] data, int offset) {
+    return (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16
+        | (data[offset + 2] & 0xff) << 8 | data[offset + 3] & 0xff;
+  }
+
+  static void putInt(byte[] data, int offset, int value) {
+    data[offset] = (byte) (value >>> 24);
+    data[offset + 1] = (byte) (value >>> 16);
+    data[offset + 2] = (byte) (value >>> 8);
+    data[offset + 3] = (byte) value;
+  }
+
+  /**
+   * Returns the tag with the given signature, or the header for {@link ICC_Profile#icSigHead}; or
+   * null if there's no such tag. The result must not be modified.
+   */
+  synchronized byte[] getTag(int signature) {
+    if (signature == ICC_Profile.icSigHead) {
+      return header;
+    }
+    return tags.get(signature);
+  }
+
+  synchronized void setTag(int signature, byte[] data) {
+    if (signature == ICC_Profile.icSigHead) {
+      System.arraycopy(data, 0, header, 0, Math.min(data.length, HEADER_SIZE));
+    } else {
+      tags.put(signature, data.clone());
+    }
+  }
+
+  /**
+   * Serializes the profile, with each tag aligned to 4 bytes.
+   */
+  synchronized byte[] getData() {
+    int size = getSize();
+    byte[] profileData = new byte[size];
+    System.arraycopy(header, 0, profileData, 0, HEADER_SIZE);
+    putInt(profileData, ICC_Profile.icHdrSize, size);
+    putInt(profileData, HEADER_SIZE, tags.size());
+    int entry = HEADER_SIZE + 4;
+    int offset = entry + tags.size() * TAG_ENTRY_SIZE;
+    for (Map.Entry<Integer, byte[]> tag : tags.entrySet()) {
+      byte[] data = tag.getValue();
+      putInt(profileData, entry, tag.getKey());
+      putInt(profileData, entry + 4, offset);
+      putInt(profileData, entry + 8, data.length);
+      System.arraycopy(data, 0, profileData, offset, data.length);
+      entry += TAG_ENTRY_SIZE;
+      offset += data.length + 3 & ~3;
+    }
+    return profileData;
+  }
+
+  synchronized int getSize() {
+    int size = HEADER_SIZE + 4 + tags.size() * TAG_ENTRY_SIZE;
+    for (byte[] data : tags.values()) {
+      size += data.length + 3 & ~3;
+    }
+    return size;
   }
 }
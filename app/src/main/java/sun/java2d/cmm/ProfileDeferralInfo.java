@@ -1,32 +1,27 @@
 package sun.java2d.cmm;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.InputStream;
 
 /**
- * Created by chris on 12/6/2016.
+ * Describes a standard profile whose data is loaded only when first needed. As in OpenJDK, this is
+ * an {@link InputStream} only so that it can be passed where a stream is expected; reading it
+ * yields no profile data, and it doesn't open the file itself.
  */
-public class ProfileDeferralInfo extends BufferedInputStream {
+public class ProfileDeferralInfo extends InputStream {
   public String filename;
   public int colorSpaceType;
   public int numComponents;
   public int profileClass;
 
   public ProfileDeferralInfo(String filename, int typeXyz, int numComponents, int profileClass) {
-    super(createFileInputStream(filename));
     colorSpaceType = typeXyz;
     this.filename = filename;
     this.numComponents = numComponents;
     this.profileClass = profileClass;
   }
 
-  private static InputStream createFileInputStream(String filename) {
-    try {
-      return new FileInputStream(filename);
-    } catch (FileNotFoundException e) {
-      throw new RuntimeException(e);
-    }
+  @Override
+  public int read() {
+    return 0;
   }
 }
@@ -0,0 +1,121 @@
+package sun.java2d.cmm;
+
+import java.awt.color.CMMException;
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_Profile;
+
+/**
+ * What the CMM needs to know about a profile to convert between its device space and the XYZ
+ * profile connection space (PCS). Every supported profile is a tone curve per component, taking
+ * device values in [0, 1] to linear values, followed by a linear map to XYZ:
+ * <ul>
+ * <li>matrix/TRC RGB profiles, where the map is the matrix of colorant tags;</li>
+ * <li>gray profiles, where the linear value is scaled by the D50 PCS illuminant;</li>
+ * <li>XYZ profiles, whose encoded values in [0, 1] cover XYZ in [0, 1 + 32767/32768], the same
+ * range that {@link java.awt.color.ICC_ColorSpace} uses.</li>
+ * </ul>
+ */
+final class ProfileModel {
+  /**
+   * Largest XYZ value that ICC_ColorSpace can represent.
+   */
+  static final double ALMOST_TWO = 1.0 + 32767.0 / 32768.0;
+  private static final double[] D50 = {0.9642, 1.0, 0.8249};
+  /**
+   * The PCS itself, which a transform with only an input or only an output profile converts to or
+   * from.
+   */
+  static final ProfileModel XYZ = xyz();
+
+  final int numComponents;
+  /**
+   * Device to linear, one per component.
+   */
+  final ToneCurve[] curves;
+  /**
+   * Linear to XYZ: 3 rows of {@link #numComponents} columns, row-major.
+   */
+  final double[] toPcs;
+  /**
+   * XYZ to linear: {@link #numComponents} rows of 3 columns, row-major.
+   */
+  final double[] fromPcs;
+
+  private ProfileModel(ToneCurve[] curves, double[] toPcs, double[] fromPcs) {
+    numComponents = curves.length;
+    this.curves = curves;
+    this.toPcs = toPcs;
+    this.fromPcs = fromPcs;
+  }
+
+  /**
+   * Models a profile.
+   *
+   * @throws CMMException if the profile isn't a matrix/TRC RGB, gray or XYZ profile
+   */
+  static ProfileModel of(ICC_Profile profile) {
+    switch (profile.getColorSpaceType()) {
+      case ColorSpace.TYPE_XYZ:
+        return XYZ;
+      case ColorSpace.TYPE_GRAY:
+        return gray(ToneCurve.parse(profile.getData(ICC_Profile.icSigGrayTRCTag)));
+      case ColorSpace.TYPE_RGB:
+        return rgb(profile);
+      default:
+        throw new CMMException("Only matrix/TRC RGB, gray and XYZ profiles are supported");
+    }
+  }
+
+  private static ProfileModel xyz() {
+    ToneCurve[] curves = {ToneCurve.IDENTITY, ToneCurve.IDENTITY, ToneCurve.IDENTITY};
+    double s = ALMOST_TWO;
+    double r = 1.0 / ALMOST_TWO;
+    return new ProfileModel(curves, new double[] {s, 0, 0, 0, s, 0, 0, 0, s},
+        new double[] {r, 0, 0, 0, r, 0, 0, 0, r});
+  }
+
+  private static ProfileModel gray(ToneCurve curve) {
+    return new ProfileModel(
+        new ToneCurve[] {curve}, D50.clone(), new double[] {0, 1.0 / D50[1], 0});
+  }
+
+  private static ProfileModel rgb(ICC_Profile profile) {
+    ToneCurve[] curves = {
+        ToneCurve.parse(profile.getData(ICC_Profile.icSigRedTRCTag)),
+        ToneCurve.parse(profile.getData(ICC_Profile.icSigGreenTRCTag)),
+        ToneCurve.parse(profile.getData(ICC_Profile.icSigBlueTRCTag))
+    };
+    int[] columnTags = {
+        ICC_Profile.icSigRedColorantTag,
+        ICC_Profile.icSigGreenColorantTag,
+        ICC_Profile.icSigBlueColorantTag
+    };
+    double[] m = new double[9];
+    for (int column = 0; column < 3; column++) {
+      byte[] tag = profile.getData(columnTags[column]);
+      if (tag == null || tag.length < 20) {
+        throw new CMMException("Missing or truncated colorant tag");
+      }
+      for (int row = 0; row < 3; row++) {
+        m[row * 3 + column] = Profile.getInt(tag, 8 + 4 * row) / 65536.0;
+      }
+    }
+    return new ProfileModel(curves, m, invert(m));
+  }
+
+  private static double[] invert(double[] m) {
+    double c00 = m[4] * m[8] - m[5] * m[7];
+    double c01 = m[5] * m[6] - m[3] * m[8];
+    double c02 = m[3] * m[7] - m[4] * m[6];
+    double det = m[0] * c00 + m[1] * c01 + m[2] * c02;
+    if (Math.abs(det) < 1.0e-12) {
+      throw new CMMException("Colorant matrix is singular");
+    }
+    double r = 1.0 / det;
+    return new double[] {
+        c00 * r, (m[2] * m[7] - m[1] * m[8]) * r, (m[1] * m[5] - m[2] * m[4]) * r,
+        c01 * r, (m[0] * m[8] - m[2] * m[6]) * r, (m[2] * m[3] - m[0] * m[5]) * r,
+        c02 * r, (m[1] * m[6] - m[0] * m[7]) * r, (m[0] * m[4] - m[1] * m[3]) * r
+    };
+  }
+}
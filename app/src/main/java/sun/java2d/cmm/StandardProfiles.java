@@ -0,0 +1,164 @@
+package sun.java2d.cmm;
+
+import java.awt.color.ICC_Profile;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Builds the standard profiles that the JDK ships as .pf files under lib/cmm, which don't exist on
+ * Android. Each is a minimal ICC v2 matrix/TRC (or XYZ) profile with D50 colorants, so {@link
+ * ProfileModel} can read it like any other profile.
+ */
+final class StandardProfiles {
+  private static final int HEADER_SIZE = 128;
+  private static final int XYZ_TYPE = 0x58595a20; /* 'XYZ ' */
+  private static final int CURV_TYPE = 0x63757276; /* 'curv' */
+  private static final int DESC_TYPE = 0x64657363; /* 'desc' */
+  private static final double[] D50 = {0.9642, 1.0, 0.8249};
+  /**
+   * The sRGB primaries, chromatically adapted to D50 (IEC 61966-2-1, annex F), as columns.
+   */
+  private static final double[][] SRGB_COLORANTS = {
+      {0.4360747, 0.2225045, 0.0139322},
+      {0.3850649, 0.7168786, 0.0971045},
+      {0.1430804, 0.0606169, 0.7141733}
+  };
+  private static final int SRGB_CURVE_POINTS = 1024;
+
+  private StandardProfiles() {
+  }
+
+  /**
+   * Returns the bytes of a standard profile, or null if {@code fileName} isn't one that can be
+   * built.
+   */
+  static byte[] create(String fileName) {
+    switch (fileName) {
+      case "sRGB.pf":
+        return rgb("sRGB IEC61966-2.1", srgbCurve());
+      case "LINEAR_RGB.pf":
+        return rgb("Linear RGB", gammaCurve(1.0));
+      case "GRAY.pf":
+        return profile(ICC_Profile.icSigDisplayClass, ICC_Profile.icSigGrayData, "Linear Gray",
+            new int[] {ICC_Profile.icSigGrayTRCTag}, new byte[][] {gammaCurve(1.0)});
+      case "CIEXYZ.pf":
+        return profile(ICC_Profile.icSigAbstractClass, ICC_Profile.icSigXYZData, "CIE XYZ",
+            new int[0], new byte[0][]);
+      default:
+        return null;
+    }
+  }
+
+  private static byte[] rgb(String description, byte[] curve) {
+    int[] signatures = {
+        ICC_Profile.icSigRedColorantTag,
+        ICC_Profile.icSigGreenColorantTag,
+        ICC_Profile.icSigBlueColorantTag,
+        ICC_Profile.icSigRedTRCTag,
+        ICC_Profile.icSigGreenTRCTag,
+        ICC_Profile.icSigBlueTRCTag
+    };
+    byte[][] tags = {
+        xyz(SRGB_COLORANTS[0]), xyz(SRGB_COLORANTS[1]), xyz(SRGB_COLORANTS[2]), curve, curve, curve
+    };
+    return profile(ICC_Profile.icSigDisplayClass, ICC_Profile.icSigRgbData, description,
+        signatures, tags);
+  }
+
+  /**
+   * Assembles a profile with a description, a D50 white point and the given tags.
+   */
+  private static byte[] profile(int profileClass, int colorSpace, String description,
+      int[] signatures, byte[][] tags) {
+    int count = signatures.length + 2;
+    int[] allSignatures = new int[count];
+    byte[][] allTags = new byte[count][];
+    allSignatures[0] = ICC_Profile.icSigProfileDescriptionTag;
+    allTags[0] = desc(description);
+    allSignatures[1] = ICC_Profile.icSigMediaWhitePointTag;
+    allTags[1] = xyz(D50);
+    System.arraycopy(signatures, 0, allSignatures, 2, signatures.length);
+    System.arraycopy(tags, 0, allTags, 2, tags.length);
+
+    int size = HEADER_SIZE + 4 + 12 * count;
+    for (byte[] tag : allTags) {
+      size += tag.length + 3 & ~3;
+    }
+    byte[] data = new byte[size];
+    Profile.putInt(data, ICC_Profile.icHdrSize, size);
+    Profile.putInt(data, ICC_Profile.icHdrVersion, 0x02100000);
+    Profile.putInt(data, ICC_Profile.icHdrDeviceClass, profileClass);
+    Profile.putInt(data, ICC_Profile.icHdrColorSpace, colorSpace);
+    Profile.putInt(data, ICC_Profile.icHdrPcs, ICC_Profile.icSigXYZData);
+    Profile.putInt(data, ICC_Profile.icHdrMagic, 0x61637370); /* 'acsp' */
+    for (int i = 0; i < 3; i++) {
+      Profile.putInt(data, ICC_Profile.icHdrIlluminant + 4 * i, s15Fixed16(D50[i]));
+    }
+    Profile.putInt(data, HEADER_SIZE, count);
+    int offset = HEADER_SIZE + 4 + 12 * count;
+    for (int i = 0, entry = HEADER_SIZE + 4; i < count; i++, entry += 12) {
+      Profile.putInt(data, entry, allSignatures[i]);
+      Profile.putInt(data, entry + 4, offset);
+      Profile.putInt(data, entry + 8, allTags[i].length);
+      System.arraycopy(allTags[i], 0, data, offset, allTags[i].length);
+      offset += allTags[i].length + 3 & ~3;
+    }
+    return data;
+  }
+
+  private static int s15Fixed16(double v) {
+    return (int) Math.round(v * 65536.0);
+  }
+
+  private static byte[] xyz(double[] value) {
+    byte[] tag = new byte[20];
+    Profile.putInt(tag, 0, XYZ_TYPE);
+    for (int i = 0; i < 3; i++) {
+      Profile.putInt(tag, 8 + 4 * i, s15Fixed16(value[i]));
+    }
+    return tag;
+  }
+
+  /**
+   * A {@code desc} tag with only the ASCII description; the Unicode and ScriptCode parts are
+   * empty.
+   */
+  private static byte[] desc(String description) {
+    byte[] ascii = (description + '\0').getBytes(Charset.forName("US-ASCII"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] word = new byte[4];
+    Profile.putInt(word, 0, DESC_TYPE);
+    out.write(word, 0, 4);
+    out.write(new byte[4], 0, 4);
+    Profile.putInt(word, 0, ascii.length);
+    out.write(word, 0, 4);
+    out.write(ascii, 0, ascii.length);
+    // Unicode language code and count, ScriptCode code, count and 67-byte string
+    out.write(new byte[8 + 2 + 1 + 67], 0, 78);
+    return out.toByteArray();
+  }
+
+  private static byte[] gammaCurve(double gamma) {
+    byte[] tag = new byte[14];
+    Profile.putInt(tag, 0, CURV_TYPE);
+    Profile.putInt(tag, 8, 1);
+    int fixed = (int) Math.round(gamma * 256.0);
+    tag[12] = (byte) (fixed >> 8);
+    tag[13] = (byte) fixed;
+    return tag;
+  }
+
+  private static byte[] srgbCurve() {
+    byte[] tag = new byte[12 + 2 * SRGB_CURVE_POINTS];
+    Profile.putInt(tag, 0, CURV_TYPE);
+    Profile.putInt(tag, 8, SRGB_CURVE_POINTS);
+    for (int i = 0; i < SRGB_CURVE_POINTS; i++) {
+      double v = i / (double) (SRGB_CURVE_POINTS - 1);
+      double linear = v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+      int sample = (int) Math.round(linear * 65535.0);
+      tag[12 + 2 * i] = (byte) (sample >> 8);
+      tag[13 + 2 * i] = (byte) sample;
+    }
+    return tag;
+  }
+}
@@ -0,0 +1,158 @@
+package sun.java2d.cmm;
+
+import java.awt.color.CMMException;
+
+/**
+ * A monotonic tone reproduction curve from an ICC {@code curv} or {@code para} tag, mapping
+ * device values in [0, 1] to linear values in [0, 1].
+ */
+abstract class ToneCurve {
+  private static final int CURV = 0x63757276; /* 'curv' */
+  private static final int PARA = 0x70617261; /* 'para' */
+  private static final int INVERSE_ITERATIONS = 40;
+
+  static final ToneCurve IDENTITY = new Gamma(1.0);
+
+  /**
+   * Parses a {@code curv} or {@code para} tag.
+   *
+   * @throws CMMException if the tag is missing, truncated or of another type
+   */
+  static ToneCurve parse(byte[] tag) {
+    if (tag == null || tag.length < 12) {
+      throw new CMMException("Missing or truncated tone curve");
+    }
+    int type = Profile.getInt(tag, 0);
+    if (type == CURV) {
+      int count = Profile.getInt(tag, 8);
+      if (count < 0 || tag.length < 12 + 2 * count) {
+        throw new CMMException("Truncated curv tag");
+      }
+      if (count == 0) {
+        return IDENTITY;
+      }
+      if (count == 1) {
+        return new Gamma(getU16(tag, 12) / 256.0);
+      }
+      float[] table = new float[count];
+      for (int i = 0; i < count; i++) {
+        table[i] = getU16(tag, 12 + 2 * i) / 65535.0f;
+      }
+      return new Sampled(table);
+    }
+    if (type == PARA) {
+      int function = getU16(tag, 8);
+      int[] paramCounts = {1, 3, 4, 5, 7};
+      if (function >= paramCounts.length || tag.length < 12 + 4 * paramCounts[function]) {
+        throw new CMMException("Unsupported or truncated para tag");
+      }
+      double[] params = new double[7];
+      for (int i = 0; i < paramCounts[function]; i++) {
+        params[i] = Profile.getInt(tag, 12 + 4 * i) / 65536.0;
+      }
+      return new Parametric(function, params);
+    }
+    throw new CMMException("Unsupported tone curve type");
+  }
+
+  private static int getU16(byte[] data, int offset) {
+    return (data[offset] & 0xff) << 8 | data[offset + 1] & 0xff;
+  }
+
+  /**
+   * Maps a device value to a linear value.
+   */
+  abstract double eval(double x);
+
+  /**
+   * Maps a linear value back to a device value, by bisection unless a subclass knows better.
+   */
+  double inverse(double y) {
+    double lo = 0.0;
+    double hi = 1.0;
+    boolean rising = eval(1.0) >= eval(0.0);
+    for (int i = 0; i < INVERSE_ITERATIONS; i++) {
+      double mid = (lo + hi) * 0.5;
+      if (eval(mid) < y == rising) {
+        lo = mid;
+      } else {
+        hi = mid;
+      }
+    }
+    return (lo + hi) * 0.5;
+  }
+
+  private static final class Gamma extends ToneCurve {
+    private final double gamma;
+
+    Gamma(double gamma) {
+      this.gamma = gamma;
+    }
+
+    @Override
+    double eval(double x) {
+      return x <= 0.0 ? 0.0 : gamma == 1.0 ? x : Math.pow(x, gamma);
+    }
+
+    @Override
+    double inverse(double y) {
+      return y <= 0.0 ? 0.0 : gamma == 1.0 ? y : Math.pow(y, 1.0 / gamma);
+    }
+  }
+
+  private static final class Sampled extends ToneCurve {
+    private final float[] table;
+
+    Sampled(float[] table) {
+      this.table = table;
+    }
+
+    @Override
+    double eval(double x) {
+      int last = table.length - 1;
+      double pos = Math.max(0.0, Math.min(1.0, x)) * last;
+      int i = Math.min((int) pos, last - 1);
+      double frac = pos - i;
+      return table[i] + frac * (table[i + 1] - table[i]);
+    }
+  }
+
+  /**
+   * The five parametric function types of ICC.1:2004, section 10.15.
+   */
+  private static final class Parametric extends ToneCurve {
+    private final int function;
+    private final double g, a, b, c, d, e, f;
+
+    Parametric(int function, double[] params) {
+      this.function = function;
+      g = params[0];
+      a = params[1];
+      b = params[2];
+      c = params[3];
+      d = params[4];
+      e = params[5];
+      f = params[6];
+    }
+
+    @Override
+    double eval(double x) {
+      switch (function) {
+        case 0:
+          return x <= 0.0 ? 0.0 : Math.pow(x, g);
+        case 1:
+          return x >= -b / a ? power(a * x + b) : 0.0;
+        case 2:
+          return x >= -b / a ? power(a * x + b) + c : c;
+        case 3:
+          return x >= d ? power(a * x + b) : c * x;
+        default:
+          return x >= d ? power(a * x + b) + e : c * x + f;
+      }
+    }
+
+    private double power(double base) {
+      return base <= 0.0 ? 0.0 : Math.pow(base, g);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+  @test
+ * @summary Verifies every Porter-Duff rule of the AlphaComposite
+ *          CompositeContext, with and without extra alpha, on INT_ARGB,
+ *          INT_ARGB_PRE and 4BYTE_ABGR rasters.
+ *
+ * @run main ComposeRulesTest
+ */
+
+import java.awt.AlphaComposite;
+import java.awt.CompositeContext;
+import java.awt.image.BufferedImage;
+
+public final class ComposeRulesTest {
+
+    private static final int SRC = 0xc0ff4020;
+    private static final int DST = 0x8020a0ff;
+    private static final double TOLERANCE = 2.5;
+
+    private ComposeRulesTest() {
+    }
+
+    public static void main(String[] args) {
+        int[] types = {
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_4BYTE_ABGR,
+        };
+        for (int srcType : types) {
+            for (int dstType : types) {
+                for (int rule = AlphaComposite.CLEAR; rule <= AlphaComposite.XOR; rule++) {
+                    check(srcType, dstType, rule, 1.0f);
+                    check(srcType, dstType, rule, 0.5f);
+                }
+            }
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static void check(int srcType, int dstType, int rule, float extraAlpha) {
+        BufferedImage src = new BufferedImage(8, 4, srcType);
+        BufferedImage dst = new BufferedImage(8, 4, dstType);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 8; x++) {
+                src.setRGB(x, y, SRC);
+                dst.setRGB(x, y, DST);
+            }
+        }
+        AlphaComposite ac = AlphaComposite.getInstance(rule, extraAlpha);
+        CompositeContext ctx = ac.createContext(src.getColorModel(), dst.getColorModel(), null);
+        ctx.compose(src.getRaster(), dst.getRaster(), dst.getRaster());
+        ctx.dispose();
+
+        double[] expected = expected(rule, extraAlpha);
+        int actual = dst.getRGB(5, 2);
+        for (int c = 0; c < 4; c++) {
+            int v = actual >>> (24 - 8 * c) & 0xff;
+            // Colour is meaningless once the result is (almost) transparent
+            if (Math.abs(v - expected[c]) > TOLERANCE && (c == 0 || expected[0] > 8)) {
+                throw new RuntimeException("Rule " + rule + ", extra alpha " + extraAlpha
+                        + ", types " + srcType + "->" + dstType + ": expected "
+                        + expected[0] + "," + expected[1] + "," + expected[2] + ","
+                        + expected[3] + " but got " + Integer.toHexString(actual));
+            }
+        }
+    }
+
+    /**
+     * Returns the non-premultiplied ARGB result, each component in [0, 255].
+     */
+    private static double[] expected(int rule, float extraAlpha) {
+        double as = (SRC >>> 24) / 255.0 * extraAlpha;
+        double ad = (DST >>> 24) / 255.0;
+        double fs;
+        double fd;
+        switch (rule) {
+            case AlphaComposite.CLEAR:    fs = 0;      fd = 0;      break;
+            case AlphaComposite.SRC:      fs = 1;      fd = 0;      break;
+            case AlphaComposite.SRC_OVER: fs = 1;      fd = 1 - as; break;
+            case AlphaComposite.DST_OVER: fs = 1 - ad; fd = 1;      break;
+            case AlphaComposite.SRC_IN:   fs = ad;     fd = 0;      break;
+            case AlphaComposite.DST_IN:   fs = 0;      fd = as;     break;
+            case AlphaComposite.SRC_OUT:  fs = 1 - ad; fd = 0;      break;
+            case AlphaComposite.DST_OUT:  fs = 0;      fd = 1 - as; break;
+            case AlphaComposite.DST:      fs = 0;      fd = 1;      break;
+            case AlphaComposite.SRC_ATOP: fs = ad;     fd = 1 - as; break;
+            case AlphaComposite.DST_ATOP: fs = 1 - ad; fd = as;     break;
+            default:                      fs = 1 - ad; fd = 1 - as; break;
+        }
+        double ar = as * fs + ad * fd;
+        double[] result = new double[4];
+        result[0] = ar * 255;
+        for (int c = 1; c < 4; c++) {
+            int shift = 24 - 8 * c;
+            double cs = (SRC >>> shift & 0xff) * as;
+            double cd = (DST >>> shift & 0xff) * ad;
+            result[c] = ar == 0 ? 0 : (cs * fs + cd * fd) / ar;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+  @test
+ * @summary Verifies the outlines returned by BasicStroke.createStrokedShape
+ *          for each cap and join style, the miter limit, dashing with a
+ *          phase, closed subpaths and curves.
+ *
+ * @run main StrokedShapeTest
+ */
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+
+public final class StrokedShapeTest {
+
+    private StrokedShapeTest() {
+    }
+
+    public static void main(String[] args) {
+        Shape line = new Line2D.Float(0, 0, 10, 0);
+        Shape butt = stroke(line, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+        check(butt, 5, 0.9, true);
+        check(butt, 5, -0.9, true);
+        check(butt, 5, 1.1, false);
+        check(butt, -0.5, 0, false);
+        check(butt, 10.5, 0, false);
+        Shape square = stroke(line, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
+        check(square, -0.9, 0.9, true);
+        check(square, 10.9, -0.9, true);
+        check(square, -1.1, 0, false);
+        Shape round = stroke(line, BasicStroke.CAP_ROUND, BasicStroke.JOIN_MITER);
+        check(round, -0.9, 0, true);
+        check(round, -0.9, 0.9, false);
+        check(round, 10.6, 0.6, true);
+
+        Path2D corner = new Path2D.Float();
+        corner.moveTo(0, 0);
+        corner.lineTo(10, 0);
+        corner.lineTo(10, 10);
+        Shape miter = stroke(corner, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+        check(miter, 10.9, -0.9, true);
+        check(miter, 8.5, 1.5, false);
+        Shape bevel = stroke(corner, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL);
+        check(bevel, 10.9, -0.9, false);
+        check(bevel, 10.4, -0.4, true);
+        Shape roundJoin = stroke(corner, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND);
+        check(roundJoin, 10.9, -0.9, false);
+        check(roundJoin, 10.6, -0.6, true);
+        // A right angle needs a miter limit of sqrt(2)
+        Shape limited = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1.4f)
+                .createStrokedShape(corner);
+        check(limited, 10.9, -0.9, false);
+
+        Shape dashed = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10,
+                new float[] {5, 5}, 0).createStrokedShape(new Line2D.Float(0, 0, 20, 0));
+        check(dashed, 2, 0, true);
+        check(dashed, 7, 0, false);
+        check(dashed, 12, 0, true);
+        check(dashed, 17, 0, false);
+        Shape shifted = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10,
+                new float[] {5, 5}, 5).createStrokedShape(new Line2D.Float(0, 0, 20, 0));
+        check(shifted, 2, 0, false);
+        check(shifted, 7, 0, true);
+
+        Shape ring = stroke(new Rectangle2D.Float(0, 0, 10, 10),
+                BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+        check(ring, 5, 5, false);
+        check(ring, 0.5, 5, true);
+        check(ring, -0.9, 5, true);
+        check(ring, -1.1, 5, false);
+        check(ring, -0.9, -0.9, true);
+        Shape dashedRing = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10,
+                new float[] {6, 3}, 0).createStrokedShape(new Rectangle2D.Float(0, 0, 10, 10));
+        check(dashedRing, 2, 0, true);
+        check(dashedRing, 7, 0, false);
+        // The last dash runs round the starting corner into the first, so the corner is mitered
+        check(dashedRing, -0.9, -0.9, true);
+
+        Shape circle = stroke(new Ellipse2D.Float(-10, -10, 20, 20),
+                BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+        check(circle, 0, 0, false);
+        check(circle, 10.5, 0, true);
+        check(circle, 7.07, 7.07, true);
+        check(circle, 0, -9.5, true);
+        check(circle, 11.2, 0, false);
+        check(circle, 8.5, 0, false);
+        System.out.println("Test PASSED.");
+    }
+
+    private static Shape stroke(Shape s, int cap, int join) {
+        return new BasicStroke(2, cap, join).createStrokedShape(s);
+    }
+
+    private static void check(Shape outline, double x, double y, boolean expected) {
+        if (outline.contains(x, y) != expected) {
+            throw new RuntimeException("Outline should " + (expected ? "" : "not ")
+                    + "contain " + x + "," + y);
+        }
+    }
+}
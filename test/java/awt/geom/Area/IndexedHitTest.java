@@ -0,0 +1,129 @@
+/*
+  @test
+ * @summary Hit tests an area with tens of thousands of segments, whose curves
+ *          Area indexes by y, against brute force tests of its outline.
+ *
+ * @run main IndexedHitTest
+ */
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+public final class IndexedHitTest {
+
+    private static final int SEGMENTS = 50000;
+    private static final int QUERIES = 20000;
+    private static final Rectangle2D HOLE = new Rectangle2D.Double(300, 300, 400, 400);
+    private static final double[] xs = new double[SEGMENTS];
+    private static final double[] ys = new double[SEGMENTS];
+
+    private IndexedHitTest() {
+    }
+
+    public static void main(String[] args) {
+        // A wavy ring, so that most rows cross many segments
+        Path2D.Double outer = new Path2D.Double();
+        for (int i = 0; i < SEGMENTS; i++) {
+            double angle = 2 * Math.PI * i / SEGMENTS;
+            double r = 400 + 40 * Math.sin(angle * 300);
+            xs[i] = 500 + r * Math.cos(angle);
+            ys[i] = 500 + r * Math.sin(angle);
+            if (i == 0) {
+                outer.moveTo(xs[i], ys[i]);
+            } else {
+                outer.lineTo(xs[i], ys[i]);
+            }
+        }
+        outer.closePath();
+        Area area = new Area(outer);
+        area.subtract(new Area(HOLE));
+
+        Random random = new Random(5);
+        double[][] points = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            points[i] = new double[] {random.nextDouble() * 1000, random.nextDouble() * 1000,
+                    random.nextDouble() * 20, random.nextDouble() * 20};
+        }
+        long start = System.nanoTime();
+        int inside = 0;
+        for (double[] p : points) {
+            if (area.contains(p[0], p[1])) {
+                inside++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d points tested in %.1f us each, %d inside%n",
+                QUERIES, elapsed / 1e3 / QUERIES, inside);
+
+        // Brute force is slow, so only some of the points are checked against it
+        for (int i = 0; i < QUERIES; i += 10) {
+            double[] p = points[i];
+            if (area.contains(p[0], p[1]) != inArea(p[0], p[1])) {
+                throw new RuntimeException("contains(" + p[0] + ", " + p[1] + ") is wrong");
+            }
+            if (area.intersects(p[0], p[1], p[2], p[3])
+                    != intersects(p[0], p[1], p[2], p[3])) {
+                throw new RuntimeException("intersects(" + p[0] + ", " + p[1] + ", "
+                        + p[2] + ", " + p[3] + ") is wrong");
+            }
+            if (area.contains(p[0], p[1], p[2], p[3])
+                    != contains(p[0], p[1], p[2], p[3])) {
+                throw new RuntimeException("contains(" + p[0] + ", " + p[1] + ", "
+                        + p[2] + ", " + p[3] + ") is wrong");
+            }
+        }
+        if (area.intersects(-10, -10, 5, 5) || !area.intersects(0, 0, 1000, 1000)
+                || area.contains(0, 0, 1000, 1000)) {
+            throw new RuntimeException("Queries around the whole area are wrong");
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    /**
+     * Whether the point is inside the ring, counting crossings of a ray to
+     * its right, and outside the hole.
+     */
+    private static boolean inArea(double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = SEGMENTS - 1; i < SEGMENTS; j = i++) {
+            if ((ys[i] > y) != (ys[j] > y)
+                    && x < xs[j] + (y - ys[j]) * (xs[i] - xs[j]) / (ys[i] - ys[j])) {
+                inside = !inside;
+            }
+        }
+        return inside && !(x > HOLE.getMinX() && x < HOLE.getMaxX()
+                && y > HOLE.getMinY() && y < HOLE.getMaxY());
+    }
+
+    private static boolean crossesRing(Rectangle2D r) {
+        for (int i = 0, j = SEGMENTS - 1; i < SEGMENTS; j = i++) {
+            if (r.intersectsLine(xs[j], ys[j], xs[i], ys[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyCornerInArea(double x, double y, double w, double h) {
+        return inArea(x, y) || inArea(x + w, y) || inArea(x, y + h) || inArea(x + w, y + h);
+    }
+
+    private static boolean allCornersInArea(double x, double y, double w, double h) {
+        return inArea(x, y) && inArea(x + w, y) && inArea(x, y + h) && inArea(x + w, y + h);
+    }
+
+    private static boolean intersects(double x, double y, double w, double h) {
+        // Also true when the rectangle straddles the edge of the hole
+        return anyCornerInArea(x, y, w, h)
+                || crossesRing(new Rectangle2D.Double(x, y, w, h))
+                || HOLE.intersects(x, y, w, h) && !HOLE.contains(x, y, w, h);
+    }
+
+    private static boolean contains(double x, double y, double w, double h) {
+        return allCornersInArea(x, y, w, h)
+                && !crossesRing(new Rectangle2D.Double(x, y, w, h))
+                && !HOLE.intersects(x, y, w, h);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+  @test
+ * @summary Times unions of 1,000-segment polygons, the sweep that Area's
+ *          boolean operations run, and checks the union against its inputs.
+ *
+ * @run main PolygonUnionPerf
+ */
+
+import java.awt.Polygon;
+import java.awt.geom.Area;
+import java.util.Random;
+
+public final class PolygonUnionPerf {
+
+    private static final int SEGMENTS = 1000;
+    private static final int POLYGONS = 4;
+    private static final int ROUNDS = 20;
+    private static final long MAX_SECONDS = 20;
+
+    private PolygonUnionPerf() {
+    }
+
+    public static void main(String[] args) {
+        Polygon[] polygons = new Polygon[POLYGONS];
+        for (int i = 0; i < POLYGONS; i++) {
+            polygons[i] = star(200 + 120 * (i % 2), 200 + 120 * (i / 2), i);
+        }
+
+        // Warm up, then time
+        Area union = unionOf(polygons);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            union = unionOf(polygons);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d unions of %d %d-segment polygons: %.1f ms each%n",
+                ROUNDS, POLYGONS, SEGMENTS, elapsed / 1e6 / ROUNDS);
+        if (elapsed / 1000000000L > MAX_SECONDS) {
+            throw new RuntimeException("Polygon unions are slow: "
+                    + elapsed / 1000000000L + " seconds");
+        }
+
+        Random random = new Random(3);
+        for (int i = 0; i < 20000; i++) {
+            double x = random.nextDouble() * 500;
+            double y = random.nextDouble() * 500;
+            boolean expected = false;
+            for (Polygon p : polygons) {
+                expected |= p.contains(x, y);
+            }
+            if (union.contains(x, y) != expected) {
+                throw new RuntimeException("Union is wrong at " + x + ", " + y);
+            }
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static Area unionOf(Polygon[] polygons) {
+        Area union = new Area();
+        for (Polygon p : polygons) {
+            union.add(new Area(p));
+        }
+        return union;
+    }
+
+    /**
+     * Returns a star of SEGMENTS / 2 points around the given center.
+     */
+    private static Polygon star(int cx, int cy, int seed) {
+        Polygon p = new Polygon();
+        for (int i = 0; i < SEGMENTS; i++) {
+            double angle = 2 * Math.PI * i / SEGMENTS + seed * 0.01;
+            double r = i % 2 == 0 ? 150 : 120;
+            p.addPoint(cx + (int) Math.round(r * Math.cos(angle)),
+                    cy + (int) Math.round(r * Math.sin(angle)));
+        }
+        return p;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+  @test
+ * @summary Checks add, subtract, intersect and exclusiveOr of rectangles and
+ *          rectilinear areas, and their outlines, against a grid of cells.
+ *
+ * @run main RectilinearOps
+ */
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.util.Random;
+
+public final class RectilinearOps {
+
+    private static final int SIZE = 24;
+    private static final int ROUNDS = 500;
+
+    private RectilinearOps() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        for (int round = 0; round < ROUNDS; round++) {
+            Area area = new Area();
+            boolean[][] cells = new boolean[SIZE][SIZE];
+            for (int step = 0; step < 6; step++) {
+                Rectangle r = randomRectangle(random);
+                int op = random.nextInt(4);
+                apply(area, new Area(r), op);
+                for (int y = 0; y < SIZE; y++) {
+                    for (int x = 0; x < SIZE; x++) {
+                        boolean inRect = r.contains(x, y);
+                        switch (op) {
+                            case 0: cells[y][x] |= inRect; break;
+                            case 1: cells[y][x] &= !inRect; break;
+                            case 2: cells[y][x] &= inRect; break;
+                            default: cells[y][x] ^= inRect; break;
+                        }
+                    }
+                }
+                check(area, cells, "round " + round + ", step " + step);
+            }
+
+            // The outline, read back through the general path code, must enclose the same cells
+            Area outline = new Area(new Path2D.Double(area));
+            check(outline, cells, "outline of round " + round);
+            if (!outline.equals(area)) {
+                throw new RuntimeException("Outline differs in round " + round);
+            }
+
+            // Mixing with a curved shape still works
+            Area mixed = new Area(area);
+            mixed.add(new Area(new Ellipse2D.Double(-10, -10, 5, 5)));
+            mixed.subtract(new Area(new Ellipse2D.Double(-10, -10, 5, 5)));
+            check(mixed, cells, "mixed round " + round);
+
+            // A mirror image, and a translation
+            Area mirrored = area.createTransformedArea(
+                    new AffineTransform(-1, 0, 0, 1, SIZE, 0));
+            Area moved = area.createTransformedArea(
+                    AffineTransform.getTranslateInstance(0.5, 0.5));
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    if (mirrored.contains(SIZE - x - 0.5, y + 0.5) != cells[y][x]) {
+                        throw new RuntimeException("Mirror image is wrong in round " + round);
+                    }
+                    if (moved.contains(x + 1, y + 1) != cells[y][x]) {
+                        throw new RuntimeException("Translation is wrong in round " + round);
+                    }
+                }
+            }
+        }
+
+        Area rect = new Area(new Rectangle(2, 3, 4, 5));
+        if (!rect.isRectangular() || !rect.isPolygonal() || !rect.isSingular()
+                || !rect.getBounds().equals(new Rectangle(2, 3, 4, 5))) {
+            throw new RuntimeException("Rectangle is misdescribed");
+        }
+        Area two = new Area(rect);
+        two.add(new Area(new Rectangle(10, 3, 4, 5)));
+        if (two.isRectangular() || two.isSingular()) {
+            throw new RuntimeException("Two rectangles are misdescribed");
+        }
+        two.subtract(new Area(new Rectangle(0, 0, 20, 20)));
+        if (!two.isEmpty() || !two.getPathIterator(null).isDone()) {
+            throw new RuntimeException("Emptied area isn't empty");
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static Rectangle randomRectangle(Random random) {
+        int x = random.nextInt(SIZE);
+        int y = random.nextInt(SIZE);
+        return new Rectangle(x, y, random.nextInt(SIZE - x + 1), random.nextInt(SIZE - y + 1));
+    }
+
+    private static void apply(Area area, Area rhs, int op) {
+        switch (op) {
+            case 0: area.add(rhs); break;
+            case 1: area.subtract(rhs); break;
+            case 2: area.intersect(rhs); break;
+            default: area.exclusiveOr(rhs); break;
+        }
+    }
+
+    private static void check(Area area, boolean[][] cells, String where) {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                boolean expected = cells[y][x];
+                if (area.contains(x + 0.5, y + 0.5) != expected
+                        || area.contains(x, y) != expected
+                        || area.contains(x + 0.25, y + 0.25, 0.5, 0.5) != expected
+                        || area.intersects(x + 0.25, y + 0.25, 0.5, 0.5) != expected) {
+                    throw new RuntimeException("Cell " + x + ", " + y + " is wrong at "
+                            + where + "; expected " + expected);
+                }
+            }
+        }
+        for (int y = 0; y + 1 < SIZE; y++) {
+            for (int x = 0; x + 1 < SIZE; x++) {
+                boolean all = cells[y][x] && cells[y][x + 1] && cells[y + 1][x]
+                        && cells[y + 1][x + 1];
+                boolean any = cells[y][x] || cells[y][x + 1] || cells[y + 1][x]
+                        || cells[y + 1][x + 1];
+                if (area.contains(x, y, 2, 2) != all || area.intersects(x, y, 2, 2) != any) {
+                    throw new RuntimeException("2x2 block at " + x + ", " + y
+                            + " is wrong at " + where);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+  @test
+ * @summary Checks that flattened curves and scaled arcs stay within the
+ *          flatness asked for, and within the segment limit.
+ *
+ * @run main FlatteningAccuracy
+ */
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.QuadCurve2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class FlatteningAccuracy {
+
+    private static final int SAMPLES = 1000;
+    private static final double EPSILON = 1e-9;
+
+    private FlatteningAccuracy() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(11);
+        for (int round = 0; round < 2000; round++) {
+            double scale = Math.pow(10, random.nextInt(5) - 1);
+            double flatness = 0.01 + random.nextDouble();
+            int limit = random.nextInt(12);
+            double[] c = new double[8];
+            for (int i = 0; i < c.length; i++) {
+                c[i] = random.nextDouble() * scale;
+            }
+            CubicCurve2D cubic = new CubicCurve2D.Double(c[0], c[1], c[2], c[3],
+                    c[4], c[5], c[6], c[7]);
+            QuadCurve2D quad = new QuadCurve2D.Double(c[0], c[1], c[2], c[3], c[4], c[5]);
+            check(cubic, flatness, limit, "cubic in round " + round);
+            check(quad, flatness, limit, "quad in round " + round);
+        }
+
+        // A circle 4000 pixels across on the device
+        AffineTransform at = AffineTransform.getScaleInstance(1000, 1000);
+        double flatness = 0.25;
+        List<double[]> points = flatten(new Arc2D.Double(-2, -2, 4, 4, 30, 360, Arc2D.OPEN)
+                .getPathIterator(at, flatness));
+        for (double[] p : points) {
+            double error = Math.abs(Math.hypot(p[0], p[1]) - 2000);
+            if (error > 0.1 + flatness) {
+                throw new RuntimeException("Circle is off by " + error);
+            }
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static void check(java.awt.Shape curve, double flatness, int limit, String what) {
+        List<double[]> points = flatten(new FlatteningPathIterator(
+                curve.getPathIterator(null), flatness, limit));
+        if (points.size() - 1 > 1 << limit) {
+            throw new RuntimeException(what + " has " + (points.size() - 1)
+                    + " segments, more than the limit of " + limit + " allows");
+        }
+        double[] first = points.get(0);
+        double[] last = points.get(points.size() - 1);
+        double[] curvePoints = sample(curve);
+        int n = curvePoints.length;
+        if (first[0] != curvePoints[0] || first[1] != curvePoints[1]
+                || last[0] != curvePoints[n - 2] || last[1] != curvePoints[n - 1]) {
+            throw new RuntimeException(what + " doesn't keep its end points");
+        }
+        if (points.size() - 1 == 1 << limit) {
+            // Too few segments to be held to the flatness
+            return;
+        }
+        for (int i = 0; i < n; i += 2) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int j = 1; j < points.size(); j++) {
+                double[] a = points.get(j - 1);
+                double[] b = points.get(j);
+                best = Math.min(best, Line2D.ptSegDist(a[0], a[1], b[0], b[1],
+                        curvePoints[i], curvePoints[i + 1]));
+            }
+            if (best > flatness * (1 + EPSILON) + EPSILON) {
+                throw new RuntimeException(what + " strays " + best
+                        + " from its flattening, more than " + flatness);
+            }
+        }
+    }
+
+    private static double[] sample(java.awt.Shape curve) {
+        double[] c = new double[6];
+        PathIterator pi = curve.getPathIterator(null);
+        pi.currentSegment(c);
+        double x0 = c[0];
+        double y0 = c[1];
+        pi.next();
+        int type = pi.currentSegment(c);
+        double[] result = new double[2 * (SAMPLES + 1)];
+        for (int i = 0; i <= SAMPLES; i++) {
+            double t = (double) i / SAMPLES;
+            double u = 1 - t;
+            if (type == PathIterator.SEG_QUADTO) {
+                result[2 * i] = u * u * x0 + 2 * u * t * c[0] + t * t * c[2];
+                result[2 * i + 1] = u * u * y0 + 2 * u * t * c[1] + t * t * c[3];
+            } else {
+                result[2 * i] = u * u * u * x0 + 3 * u * u * t * c[0]
+                        + 3 * u * t * t * c[2] + t * t * t * c[4];
+                result[2 * i + 1] = u * u * u * y0 + 3 * u * u * t * c[1]
+                        + 3 * u * t * t * c[3] + t * t * t * c[5];
+            }
+        }
+        result[2 * SAMPLES] = type == PathIterator.SEG_QUADTO ? c[2] : c[4];
+        result[2 * SAMPLES + 1] = type == PathIterator.SEG_QUADTO ? c[3] : c[5];
+        return result;
+    }
+
+    private static List<double[]> flatten(PathIterator pi) {
+        List<double[]> points = new ArrayList<>();
+        double[] c = new double[6];
+        for (; !pi.isDone(); pi.next()) {
+            if (pi.currentSegment(c) != PathIterator.SEG_CLOSE) {
+                points.add(new double[] {c[0], c[1]});
+            }
+        }
+        return points;
+    }
+}
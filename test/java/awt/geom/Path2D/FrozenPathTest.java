@@ -0,0 +1,162 @@
+/*
+  @test
+ * @summary Checks that quad and cubic paths hit test the same through their
+ *          own coordinates as through their iterators, and that a frozen
+ *          copy keeps the path's segments, winding rule, bounds, hit tests
+ *          and transformed iterators.
+ *
+ * @run main FrozenPathTest
+ */
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import skinjob.util.FrozenPath2D;
+
+public final class FrozenPathTest {
+
+    private static final AffineTransform[] TRANSFORMS = {
+        null,
+        new AffineTransform(),
+        AffineTransform.getTranslateInstance(-20.5, 7.25),
+        AffineTransform.getRotateInstance(0.7, 50, 50),
+        new AffineTransform(1.5, 0.25, -0.5, 2, 3, -4),
+    };
+
+    private FrozenPathTest() {
+    }
+
+    public static void main(String[] args) {
+        for (int rule : new int[] {Path2D.WIND_NON_ZERO, Path2D.WIND_EVEN_ODD}) {
+            Path2D.Float quad = new Path2D.Float(rule);
+            quad.moveTo(10, 50);
+            quad.quadTo(30, 0, 50, 50);
+            quad.quadTo(70, 100, 90, 50);
+            quad.lineTo(90, 90);
+            quad.quadTo(50, 120, 10, 90);
+            quad.closePath();
+            quad.moveTo(40, 60);
+            quad.quadTo(50, 80, 60, 60);
+            quad.quadTo(50, 40, 40, 60);
+            quad.closePath();
+            check("quad", quad);
+            check("quad double", new Path2D.Double(quad));
+
+            Path2D.Float cubic = new Path2D.Float(rule);
+            cubic.moveTo(10, 50);
+            cubic.curveTo(20, -10, 40, 110, 50, 50);
+            cubic.curveTo(60, -10, 80, 110, 90, 50);
+            cubic.lineTo(90, 90);
+            cubic.curveTo(70, 120, 30, 60, 10, 90);
+            cubic.closePath();
+            cubic.moveTo(30, 70);
+            cubic.curveTo(40, 90, 60, 90, 70, 70);
+            cubic.curveTo(60, 50, 40, 50, 30, 70);
+            cubic.closePath();
+            check("cubic", cubic);
+            check("cubic double", new Path2D.Double(cubic));
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static void check(String name, Path2D path) {
+        checkCrossings(name, path);
+        FrozenPath2D frozen = path.sjFreeze();
+        // Frozen paths store floats, so compare against the path rounded the same way
+        Path2D.Float rounded = new Path2D.Float(path);
+        checkSame(name + " frozen", rounded.getPathIterator(null), frozen.getPathIterator(null));
+        checkSame(name + " of", rounded.getPathIterator(null),
+                FrozenPath2D.of(path, null).getPathIterator(null));
+        if (frozen.getWindingRule() != path.getWindingRule()) {
+            throw new RuntimeException(name + ": winding rule " + frozen.getWindingRule()
+                    + " != " + path.getWindingRule());
+        }
+        if (!frozen.getBounds2D().equals(rounded.getBounds2D())) {
+            throw new RuntimeException(name + ": bounds " + frozen.getBounds2D() + " != "
+                    + rounded.getBounds2D());
+        }
+        checkHitTests(name + " frozen", rounded, frozen);
+        for (AffineTransform at : TRANSFORMS) {
+            String atName = name + " " + at;
+            checkSame(atName, rounded.getPathIterator(at), frozen.getPathIterator(at));
+            Path2D.Float transformed = new Path2D.Float(path, at);
+            checkSame(atName + " freeze", transformed.getPathIterator(null),
+                    path.sjFreeze(at).getPathIterator(null));
+        }
+    }
+
+    /**
+     * Checks that the path's hit tests, which walk its coordinates directly, agree with the
+     * static ones that walk its iterator.
+     */
+    private static void checkCrossings(String name, Path2D path) {
+        for (double y = -5; y <= 125; y += 2.5) {
+            for (double x = -5; x <= 105; x += 2.5) {
+                boolean expected = Path2D.contains(path.getPathIterator(null), x, y);
+                if (path.contains(x, y) != expected) {
+                    throw new RuntimeException(name + ": contains(" + x + ", " + y + ") != "
+                            + expected);
+                }
+                for (double size : new double[] {1, 7.5, 30}) {
+                    expected = Path2D.contains(path.getPathIterator(null), x, y, size, size);
+                    if (path.contains(x, y, size, size) != expected) {
+                        throw new RuntimeException(name + ": contains(" + x + ", " + y + ", "
+                                + size + ") != " + expected);
+                    }
+                    expected = Path2D.intersects(path.getPathIterator(null), x, y, size, size);
+                    if (path.intersects(x, y, size, size) != expected) {
+                        throw new RuntimeException(name + ": intersects(" + x + ", " + y + ", "
+                                + size + ") != " + expected);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkHitTests(String name, Path2D path, FrozenPath2D frozen) {
+        for (double y = -5; y <= 125; y += 2.5) {
+            for (double x = -5; x <= 105; x += 2.5) {
+                if (frozen.contains(x, y) != path.contains(x, y)) {
+                    throw new RuntimeException(name + ": contains(" + x + ", " + y + ")");
+                }
+                for (double size : new double[] {1, 7.5, 30}) {
+                    Rectangle2D r = new Rectangle2D.Double(x, y, size, size);
+                    if (frozen.contains(r) != path.contains(r)) {
+                        throw new RuntimeException(name + ": contains(" + r + ")");
+                    }
+                    if (frozen.intersects(r) != path.intersects(r)) {
+                        throw new RuntimeException(name + ": intersects(" + r + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkSame(String name, PathIterator expected, PathIterator actual) {
+        if (actual.getWindingRule() != expected.getWindingRule()) {
+            throw new RuntimeException(name + ": winding rule " + actual.getWindingRule()
+                    + " != " + expected.getWindingRule());
+        }
+        double[] e = new double[6];
+        double[] a = new double[6];
+        int segment = 0;
+        for (; !expected.isDone(); expected.next(), actual.next(), segment++) {
+            if (actual.isDone()) {
+                throw new RuntimeException(name + ": ends after " + segment + " segments");
+            }
+            Arrays.fill(e, 0);
+            Arrays.fill(a, 0);
+            int type = expected.currentSegment(e);
+            if (actual.currentSegment(a) != type || !Arrays.equals(a, e)) {
+                throw new RuntimeException(name + ": segment " + segment + " is "
+                        + Arrays.toString(a) + ", expected " + Arrays.toString(e));
+            }
+        }
+        if (!actual.isDone()) {
+            throw new RuntimeException(name + ": has more than " + segment + " segments");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+  @test
+ * @summary Verifies that AffineTransformOp succeeds for every interpolation type,
+ *          that whole-pixel translations and quarter turns move pixels exactly,
+ *          that interpolating a flat image stays flat, and that destination
+ *          pixels outside the transformed source are left untouched.
+ *
+ * @run main ResampleInvariantsTest
+ */
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+public final class ResampleInvariantsTest {
+
+    private static final int W = 53;
+    private static final int H = 37;
+    private static final int UNTOUCHED = 7;
+    private static final int[] INTERPOLATIONS = {
+        AffineTransformOp.TYPE_NEAREST_NEIGHBOR,
+        AffineTransformOp.TYPE_BILINEAR,
+        AffineTransformOp.TYPE_BICUBIC
+    };
+
+    private ResampleInvariantsTest() {
+    }
+
+    public static void main(String[] args) {
+        int[] types = {
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_USHORT_GRAY
+        };
+        Random random = new Random(7);
+        for (int type : types) {
+            BufferedImage src = new BufferedImage(W, H, type);
+            for (int y = 0; y < H; y++) {
+                for (int x = 0; x < W; x++) {
+                    src.setRGB(x, y, random.nextInt());
+                }
+            }
+            for (int interp : INTERPOLATIONS) {
+                checkTranslation(src.getRaster(), interp);
+                checkQuarterTurn(src.getRaster(), interp);
+                checkFlat(type, interp);
+            }
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static WritableRaster filter(Raster src, AffineTransform xform, int interp,
+                                         int w, int h) {
+        WritableRaster dst = src.createCompatibleWritableRaster(w, h);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                for (int b = 0; b < dst.getNumBands(); b++) {
+                    dst.setSample(x, y, b, UNTOUCHED);
+                }
+            }
+        }
+        new AffineTransformOp(xform, interp).filter(src, dst);
+        return dst;
+    }
+
+    private static void checkTranslation(Raster src, int interp) {
+        int dx = 5;
+        int dy = -3;
+        Raster dst = filter(src, AffineTransform.getTranslateInstance(dx, dy), interp,
+                            W + 10, H + 10);
+        for (int y = 0; y < H + 10; y++) {
+            for (int x = 0; x < W + 10; x++) {
+                int sx = x - dx;
+                int sy = y - dy;
+                boolean inside = sx >= 0 && sx < W && sy >= 0 && sy < H;
+                for (int b = 0; b < src.getNumBands(); b++) {
+                    int expected = inside ? src.getSample(sx, sy, b) : UNTOUCHED;
+                    expect(expected, dst.getSample(x, y, b), "translate", interp, x, y);
+                }
+            }
+        }
+    }
+
+    private static void checkQuarterTurn(Raster src, int interp) {
+        AffineTransform rotate = new AffineTransform(0, 1, -1, 0, H, 0);
+        Raster dst = filter(src, rotate, interp, H, W);
+        for (int y = 0; y < W; y++) {
+            for (int x = 0; x < H; x++) {
+                for (int b = 0; b < src.getNumBands(); b++) {
+                    expect(src.getSample(y, H - 1 - x, b), dst.getSample(x, y, b),
+                           "quarter turn", interp, x, y);
+                }
+            }
+        }
+    }
+
+    private static void checkFlat(int type, int interp) {
+        BufferedImage src = new BufferedImage(W, H, type);
+        WritableRaster raster = src.getRaster();
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                for (int b = 0; b < raster.getNumBands(); b++) {
+                    raster.setSample(x, y, b, 100 + b);
+                }
+            }
+        }
+        AffineTransform xform = AffineTransform.getRotateInstance(0.4, W / 2.0, H / 2.0);
+        xform.scale(1.3, 0.9);
+        Raster dst = filter(raster, xform, interp, W, H);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                for (int b = 0; b < raster.getNumBands(); b++) {
+                    int v = dst.getSample(x, y, b);
+                    if (v != UNTOUCHED && v != 100 + b) {
+                        throw new RuntimeException("Test FAILED: flat image became " + v
+                                + " at (" + x + ", " + y + ") with interpolation " + interp);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void expect(int expected, int actual, String what, int interp,
+                               int x, int y) {
+        if (expected != actual) {
+            throw new RuntimeException("Test FAILED: " + what + " with interpolation "
+                    + interp + " at (" + x + ", " + y + "): expected " + expected
+                    + ", got " + actual);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+  @test
+ * @summary Verifies that BufferedImage.getRGB and setRGB, one pixel at a time
+ *          and in blocks, give the same results as converting each pixel
+ *          through the image's ColorModel and Raster, for each predefined
+ *          type, for subimages, and after coerceData.
+ *
+ * @run main BulkRGBTest
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Random;
+
+public final class BulkRGBTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_INT_ARGB_PRE,
+        BufferedImage.TYPE_INT_BGR,
+        BufferedImage.TYPE_3BYTE_BGR,
+        BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_4BYTE_ABGR_PRE,
+        BufferedImage.TYPE_USHORT_565_RGB,
+        BufferedImage.TYPE_BYTE_GRAY,
+        BufferedImage.TYPE_USHORT_GRAY,
+        BufferedImage.TYPE_BYTE_INDEXED,
+    };
+
+    private BulkRGBTest() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        for (int type : TYPES) {
+            BufferedImage image = new BufferedImage(41, 29, type);
+            check(image, random);
+            check(image.getSubimage(5, 3, 30, 17), random);
+            if (image.getColorModel().hasAlpha()) {
+                // Premultiplication changes, but the type stays the same
+                image.coerceData(!image.isAlphaPremultiplied());
+                check(image, random);
+                image.coerceData(!image.isAlphaPremultiplied());
+                check(image, random);
+            }
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static void check(BufferedImage image, Random random) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        WritableRaster raster = image.getRaster();
+        ColorModel cm = image.getColorModel();
+
+        // Arbitrary samples, including premultiplied colors brighter than their alpha
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                for (int b = 0; b < raster.getNumBands(); b++) {
+                    int bits = raster.getSampleModel().getSampleSize(b);
+                    raster.setSample(x, y, b, random.nextInt(1 << bits));
+                }
+            }
+        }
+        int[] block = image.getRGB(2, 1, w - 4, h - 2, null, 3, w);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int expected = cm.getRGB(raster.getDataElements(x, y, null));
+                check(image, "getRGB(" + x + ", " + y + ")", image.getRGB(x, y), expected);
+                if (x >= 2 && x < w - 2 && y >= 1 && y < h - 1) {
+                    check(image, "block getRGB at " + x + ", " + y,
+                            block[3 + (y - 1) * w + x - 2], expected);
+                }
+            }
+        }
+
+        int[] colors = new int[w * h];
+        for (int i = 0; i < colors.length; i++) {
+            int alpha = random.nextInt(4) * 0x55;
+            colors[i] = i % 7 == 0 ? colors[Math.max(0, i - 1)]
+                    : alpha << 24 | random.nextInt(1 << 24);
+        }
+        image.setRGB(1, 2, w - 1, h - 3, colors, 5, w);
+        for (int y = 2; y < h - 1; y++) {
+            for (int x = 1; x < w; x++) {
+                int rgb = colors[5 + (y - 2) * w + x - 1];
+                checkPixel(image, "block setRGB at " + x + ", " + y, x, y, rgb);
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            int x = random.nextInt(w);
+            int y = random.nextInt(h);
+            int rgb = random.nextInt();
+            image.setRGB(x, y, rgb);
+            checkPixel(image, "setRGB(" + x + ", " + y + ")", x, y, rgb);
+        }
+
+        try {
+            image.getRGB(w, 0);
+            throw new RuntimeException("No exception reading outside type "
+                    + image.getType());
+        } catch (ArrayIndexOutOfBoundsException expected) {
+        }
+    }
+
+    private static void checkPixel(BufferedImage image, String what, int x, int y, int rgb) {
+        Object expected = image.getColorModel().getDataElements(rgb, null);
+        Object actual = image.getRaster().getDataElements(x, y, null);
+        if (!Arrays.deepEquals(new Object[] {expected}, new Object[] {actual})) {
+            throw new RuntimeException(what + " of " + Integer.toHexString(rgb)
+                    + " stored wrong data in type " + image.getType());
+        }
+    }
+
+    private static void check(BufferedImage image, String what, int actual, int expected) {
+        if (actual != expected) {
+            throw new RuntimeException(what + " returned " + Integer.toHexString(actual)
+                    + ", expected " + Integer.toHexString(expected) + " in type "
+                    + image.getType());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+  @test
+ * @summary Verifies ColorConvertOp between the standard sRGB, linear RGB and
+ *          gray color spaces against the sRGB transfer function, and that
+ *          alpha is carried over.
+ *
+ * @run main StandardSpacesTest
+ */
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+
+public final class StandardSpacesTest {
+
+    private static final int W = 256;
+    private static final int H = 4;
+    private static final double TOLERANCE = 1.5;
+
+    private StandardSpacesTest() {
+    }
+
+    public static void main(String[] args) {
+        checkSrgbToLinear();
+        checkGrayToSrgb();
+        System.out.println("Test PASSED.");
+    }
+
+    private static double toLinear(double v) {
+        return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static double toSrgb(double v) {
+        return v <= 0.0031308 ? v * 12.92 : 1.055 * Math.pow(v, 1 / 2.4) - 0.055;
+    }
+
+    private static void checkSrgbToLinear() {
+        BufferedImage src = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int alpha = (x * 31 + y) & 0xff;
+                src.setRGB(x, y, alpha << 24 | x << 16 | (255 - x) << 8 | (x * 7 & 0xff));
+            }
+        }
+        ColorSpace linear = ColorSpace.getInstance(ColorSpace.CS_LINEAR_RGB);
+        BufferedImage dst = new ColorConvertOp(
+                ColorSpace.getInstance(ColorSpace.CS_sRGB), linear, null).filter(src, null);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int p = src.getRGB(x, y);
+                int[] q = dst.getRaster().getPixel(x, y, (int[]) null);
+                for (int c = 0; c < 3; c++) {
+                    int v = p >> (16 - 8 * c) & 0xff;
+                    check("linear", x, y, q[c], toLinear(v / 255.0) * 255);
+                }
+                if (q[3] != p >>> 24) {
+                    throw new RuntimeException("Alpha changed at " + x + "," + y
+                            + ": " + (p >>> 24) + " -> " + q[3]);
+                }
+            }
+        }
+    }
+
+    private static void checkGrayToSrgb() {
+        BufferedImage src = new BufferedImage(W, H, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                src.getRaster().setSample(x, y, 0, x);
+            }
+        }
+        BufferedImage dst = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+        new ColorConvertOp(null).filter(src, dst);
+        for (int x = 0; x < W; x++) {
+            int p = dst.getRGB(x, 0);
+            double expected = toSrgb(x / 255.0) * 255;
+            for (int c = 0; c < 3; c++) {
+                check("sRGB", x, 0, p >> (16 - 8 * c) & 0xff, expected);
+            }
+        }
+    }
+
+    private static void check(String what, int x, int y, int actual, double expected) {
+        if (Math.abs(actual - expected) > TOLERANCE) {
+            throw new RuntimeException(what + " mismatch at " + x + "," + y
+                    + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+  @test
+ * @summary Verifies ConvolveOp against a direct 2-D convolution for separable and
+ *          non-separable kernels, both edge conditions, and packed, interleaved
+ *          and generic rasters.
+ *
+ * @run main ConvolveReferenceTest
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+public final class ConvolveReferenceTest {
+
+    private static final int W = 61;
+    private static final int H = 47;
+
+    private ConvolveReferenceTest() {
+    }
+
+    public static void main(String[] args) {
+        int[] types = {
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_USHORT_GRAY
+        };
+        Kernel[] kernels = {
+            gaussian(9),
+            gaussian(4),
+            new Kernel(3, 3, new float[] {0, -1, 0, -1, 5, -1, 0, -1, 0}),
+            new Kernel(5, 1, new float[] {0.1f, 0.2f, 0.4f, 0.2f, 0.1f})
+        };
+        Random random = new Random(42);
+        for (int type : types) {
+            BufferedImage src = new BufferedImage(W, H, type);
+            for (int y = 0; y < H; y++) {
+                for (int x = 0; x < W; x++) {
+                    src.setRGB(x, y, random.nextInt());
+                }
+            }
+            for (Kernel kernel : kernels) {
+                for (int edge = ConvolveOp.EDGE_ZERO_FILL; edge <= ConvolveOp.EDGE_NO_OP; edge++) {
+                    check(src.getRaster(), kernel, edge, type);
+                }
+            }
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static Kernel gaussian(int size) {
+        float[] row = new float[size];
+        row[0] = 1;
+        for (int n = 1; n < size; n++) {
+            for (int i = n; i > 0; i--) {
+                row[i] += row[i - 1];
+            }
+        }
+        float sum = 0;
+        for (float v : row) {
+            sum += v;
+        }
+        float[] data = new float[size * size];
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                data[j * size + i] = row[i] * row[j] / (sum * sum);
+            }
+        }
+        return new Kernel(size, size, data);
+    }
+
+    private static void check(Raster src, Kernel kernel, int edge, int type) {
+        WritableRaster dst = new ConvolveOp(kernel, edge, null).filter(src, null);
+        int kw = kernel.getWidth();
+        int kh = kernel.getHeight();
+        float[] k = kernel.getKernelData(null);
+        int cx = kw / 2;
+        int cy = kh / 2;
+        int max = (1 << src.getSampleModel().getSampleSize(0)) - 1;
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                boolean interior = x >= cx && x < W - cx && y >= cy && y < H - cy;
+                for (int b = 0; b < src.getNumBands(); b++) {
+                    int expected;
+                    if (!interior) {
+                        expected = edge == ConvolveOp.EDGE_NO_OP ? src.getSample(x, y, b) : 0;
+                    } else {
+                        float sum = 0;
+                        for (int j = 0; j < kh; j++) {
+                            for (int i = 0; i < kw; i++) {
+                                float weight = k[(kh - 1 - j) * kw + kw - 1 - i];
+                                sum += weight * src.getSample(x - cx + i, y - cy + j, b);
+                            }
+                        }
+                        expected = Math.max(0, Math.min(max, Math.round(sum)));
+                    }
+                    int actual = dst.getSample(x, y, b);
+                    if (Math.abs(actual - expected) > 1) {
+                        throw new RuntimeException("Test FAILED: type " + type + ", kernel "
+                                + kw + "x" + kh + ", edge " + edge + " at (" + x + ", " + y
+                                + ") band " + b + ": expected " + expected + ", got " + actual);
+                    }
+                }
+            }
+        }
+    }
+}
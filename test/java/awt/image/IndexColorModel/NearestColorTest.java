@@ -0,0 +1,149 @@
+/*
+  @test
+ * @summary Verifies that IndexColorModel.getDataElements(int, Object) picks
+ *          the nearest palette entry, lowest index first on ties, for opaque,
+ *          gray and translucent palettes, including when called concurrently
+ *          from several threads.
+ *
+ * @run main NearestColorTest
+ */
+
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class NearestColorTest {
+
+    private static final int LOOKUPS = 20000;
+    private static final int THREADS = 4;
+
+    private NearestColorTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        for (int t = 0; t < 12; t++) {
+            int size = 1 + random.nextInt(256);
+            int[] cmap = new int[size];
+            boolean gray = t % 3 == 0;
+            boolean alpha = t % 4 == 3;
+            for (int i = 0; i < size; i++) {
+                int v;
+                if (gray) {
+                    // Few distinct levels, so that ties are common
+                    int g = random.nextInt(16) * 17;
+                    v = g << 16 | g << 8 | g;
+                } else if (t % 3 == 1) {
+                    v = random.nextInt(6) * 51 << 16 | random.nextInt(6) * 51 << 8
+                            | random.nextInt(6) * 51;
+                } else {
+                    v = random.nextInt(1 << 24);
+                }
+                cmap[i] = (alpha ? random.nextInt(256) << 24 : 0xff000000) | v;
+            }
+            IndexColorModel icm = new IndexColorModel(8, size, cmap, 0, alpha,
+                    -1, DataBuffer.TYPE_BYTE);
+            check(icm, cmap, random.nextLong());
+        }
+        System.out.println("Test PASSED.");
+    }
+
+    private static void check(final IndexColorModel icm, final int[] cmap, long seed)
+            throws Exception {
+        final Random random = new Random(seed);
+        final int[] colors = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            colors[i] = random.nextInt();
+        }
+        final Throwable[] failure = new Throwable[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int n = 0; n < THREADS; n++) {
+            final int first = n;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        byte[] pixel = new byte[1];
+                        for (int i = first; i < LOOKUPS; i += THREADS) {
+                            icm.getDataElements(colors[i], pixel);
+                            int expected = nearest(icm, cmap, colors[i]);
+                            if ((pixel[0] & 0xff) != expected) {
+                                throw new RuntimeException("Color "
+                                        + Integer.toHexString(colors[i]) + " mapped to "
+                                        + (pixel[0] & 0xff) + ", expected " + expected);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new RuntimeException(failure[0]);
+        }
+    }
+
+    private static boolean isAllGrayOpaque(IndexColorModel icm, int[] cmap) {
+        if (icm.hasAlpha()) {
+            return false;
+        }
+        for (int c : cmap) {
+            if ((c >> 16 & 0xff) != (c & 0xff) || (c >> 8 & 0xff) != (c & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nearest(IndexColorModel icm, int[] cmap, int rgb) {
+        int red = rgb >> 16 & 0xff;
+        int green = rgb >> 8 & 0xff;
+        int blue = rgb & 0xff;
+        int alpha = rgb >>> 24;
+        if (isAllGrayOpaque(icm, cmap)) {
+            int gray = (red * 77 + green * 150 + blue * 29 + 128) / 256;
+            int best = 0;
+            int bestDist = Integer.MAX_VALUE;
+            for (int i = 0; i < cmap.length; i++) {
+                int d = Math.abs((cmap[i] & 0xff) - gray);
+                if (d < bestDist) {
+                    best = i;
+                    bestDist = d;
+                }
+            }
+            return best;
+        }
+        boolean opaque = !icm.hasAlpha();
+        if (!opaque && alpha == 0 && icm.getTransparentPixel() >= 0) {
+            return icm.getTransparentPixel();
+        }
+        int best = 0;
+        int bestError = Integer.MAX_VALUE;
+        for (int i = 0; i < cmap.length; i++) {
+            int c = cmap[i];
+            int dr = (c >> 16 & 0xff) - red;
+            int dg = (c >> 8 & 0xff) - green;
+            int db = (c & 0xff) - blue;
+            int error = dr * dr + dg * dg + db * db;
+            if (!opaque) {
+                int da = (c >>> 24) - alpha;
+                error += da * da;
+            }
+            if (error < bestError) {
+                best = i;
+                bestError = error;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+  @test
+ * @summary Verifies that LookupOp honors the offset of byte and short lookup
+ *          tables, rejects samples below the offset, and that RescaleOp with
+ *          a single factor leaves the alpha of an INT_ARGB image alone.
+ *
+ * @run main TableOffsetTest
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ByteLookupTable;
+import java.awt.image.LookupOp;
+import java.awt.image.LookupTable;
+import java.awt.image.RescaleOp;
+import java.awt.image.ShortLookupTable;
+import java.awt.image.WritableRaster;
+
+public final class TableOffsetTest {
+
+    private static final int W = 40;
+    private static final int H = 30;
+    private static final int OFFSET = 16;
+
+    private TableOffsetTest() {
+    }
+
+    public static void main(String[] args) {
+        byte[] bytes = new byte[256 - OFFSET];
+        short[] shorts = new short[256 - OFFSET];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (255 - i);
+            shorts[i] = (short) (i / 2);
+        }
+        checkOffset(new ByteLookupTable(OFFSET, bytes), bytes, null);
+        checkOffset(new ShortLookupTable(OFFSET, shorts), null, shorts);
+        checkRejected(new ByteLookupTable(OFFSET, bytes));
+        checkRescale();
+        System.out.println("Test PASSED.");
+    }
+
+    private static BufferedImage createGray(int min) {
+        BufferedImage img = new BufferedImage(W, H, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = img.getRaster();
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                raster.setSample(x, y, 0, min + (x * 7 + y * 13) % (256 - min));
+            }
+        }
+        return img;
+    }
+
+    private static void checkOffset(LookupTable table, byte[] bytes, short[] shorts) {
+        BufferedImage src = createGray(OFFSET);
+        WritableRaster in = src.getRaster();
+        WritableRaster out = new LookupOp(table, null).filter(in, null);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int index = in.getSample(x, y, 0) - OFFSET;
+                int expected = bytes != null ? bytes[index] & 0xff : shorts[index];
+                int actual = out.getSample(x, y, 0);
+                if (actual != expected) {
+                    throw new RuntimeException("Test FAILED: " + table.getClass().getSimpleName()
+                            + " at (" + x + ", " + y + "): expected " + expected + ", got "
+                            + actual);
+                }
+            }
+        }
+    }
+
+    private static void checkRejected(LookupTable table) {
+        BufferedImage src = createGray(OFFSET);
+        src.getRaster().setSample(3, 4, 0, OFFSET - 1);
+        try {
+            new LookupOp(table, null).filter(src.getRaster(), null);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new RuntimeException("Test FAILED: sample below the table offset was accepted");
+    }
+
+    private static void checkRescale() {
+        BufferedImage src = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                src.setRGB(x, y, (x * 6 << 24) | (y * 8 << 16) | (x * 3 << 8) | 200);
+            }
+        }
+        BufferedImage dst = new RescaleOp(1.5f, -10.0f, null).filter(src, null);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int in = src.getRGB(x, y);
+                int expected = in & 0xff000000;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int v = (int) (((in >> shift) & 0xff) * 1.5f - 10.0f);
+                    expected |= Math.max(0, Math.min(255, v)) << shift;
+                }
+                int actual = dst.getRGB(x, y);
+                if (actual != expected) {
+                    throw new RuntimeException("Test FAILED: rescale at (" + x + ", " + y
+                            + "): expected " + Integer.toHexString(expected) + ", got "
+                            + Integer.toHexString(actual));
+                }
+            }
+        }
+    }
+}